@@ -0,0 +1,98 @@
+package org.example.service;
+
+import org.bouncycastle.util.encoders.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh encryptHybrid hiện tại (dùng lại Cipher/SecureRandom, hex bằng bảng tra)
+ * với cách cũ tạo KeyGenerator, SecureRandom và hai Cipher mới cho mỗi lần gọi.
+ * Payload giống request điểm thi, public key RSA-2048 như backend.
+ *
+ * Chạy: mvn -Pjmh compile exec:exec -Djmh.args="EncryptionServiceBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionServiceBenchmark {
+    private static final String PAYLOAD = "{\"studentCode\":\"AT190000\"}";
+
+    private EncryptionService encryptionService;
+    private PublicKey publicKey;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        publicKey = generator.generateKeyPair().getPublic();
+        encryptionService = EncryptionService.getInstance();
+        encryptionService.setPublicKey(Base64.toBase64String(publicKey.getEncoded()));
+        encryptionService.warmUp();
+    }
+
+    @Benchmark
+    public EncryptionService.EncryptionResult reusedPrimitives() {
+        return encryptionService.encryptHybrid(PAYLOAD);
+    }
+
+    @Benchmark
+    public EncryptionService.EncryptionResult perCallPrimitives() throws Exception {
+        return encryptHybridPerCall(publicKey, PAYLOAD);
+    }
+
+    /**
+     * encryptHybrid trước khi tối ưu (giữ nguyên từng bước để làm mốc so sánh)
+     */
+    private static EncryptionService.EncryptionResult encryptHybridPerCall(PublicKey publicKey, String data)
+            throws Exception {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        SecretKey aesKey = keyGenerator.generateKey();
+
+        byte[] iv = new byte[16];
+        SecureRandom random = new SecureRandom();
+        random.nextBytes(iv);
+
+        Cipher aesCipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        aesCipher.init(Cipher.ENCRYPT_MODE, aesKey, new IvParameterSpec(iv));
+        byte[] encryptedData = aesCipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+
+        Cipher rsaCipher = Cipher.getInstance("RSA/ECB/PKCS1Padding");
+        rsaCipher.init(Cipher.ENCRYPT_MODE, publicKey);
+        byte[] encryptedKey = rsaCipher.doFinal(formatHex(aesKey.getEncoded()).getBytes(StandardCharsets.UTF_8));
+
+        return new EncryptionService.EncryptionResult(
+                Base64.toBase64String(encryptedKey),
+                Base64.toBase64String(encryptedData),
+                formatHex(iv));
+    }
+
+    private static String formatHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+}
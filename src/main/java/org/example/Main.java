@@ -5,11 +5,18 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import org.example.service.LocalStorageService;
+import org.example.service.StartupMetrics;
+import org.example.service.StartupWarmup;
 
 public class Main extends Application {
     
     @Override
     public void start(Stage primaryStage) throws Exception {
+        StartupMetrics.mark("fx-start");
+        // DNS, OkHttp client, public key và cipher được chuẩn bị song song trong lúc dựng form
+        StartupWarmup.start();
+        
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/LoginScreen.fxml"));
         Parent root = loader.load();
         
@@ -20,9 +27,17 @@ public class Main extends Application {
         primaryStage.setResizable(false);
         primaryStage.centerOnScreen();
         primaryStage.show();
+        StartupMetrics.mark("login-ui-shown");
+    }
+    
+    @Override
+    public void stop() {
+        // Thread ghi local storage là daemon: ghi nốt các thay đổi đang chờ trước khi JVM thoát
+        LocalStorageService.getInstance().flush();
     }
     
     public static void main(String[] args) {
+        StartupMetrics.mark("main");
         launch(args);
     }
 }
\ No newline at end of file
@@ -22,5 +22,7 @@ public class AppConfig {
     public static final String VIRTUAL_CALENDAR_ENDPOINT = "/api/v1/auth/virtual-calendar";
     public static final String SCORES_ENDPOINT = "/api/v1/ranking/scores";
     public static final String SCORE_BATCH_ENDPOINT = "/api/v1/score-batch/student";
+    public static final String SCORE_BATCH_SAVE_ENDPOINT = "/api/v1/score-batch/create-or-update";
+    public static final String SCHOLARSHIP_FILTER_ENDPOINT = "/api/v1/semester/filter/scholarship";
 }
 
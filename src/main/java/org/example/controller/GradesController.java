@@ -20,6 +20,9 @@ import org.example.model.GradeItem;
 import org.example.service.ApiService;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class GradesController {
     @FXML
@@ -81,73 +84,83 @@ public class GradesController {
         gradesTable.getItems().clear();
         
         new Thread(() -> {
+            GradesResult result;
             try {
                 String response = apiService.getGrades(authToken);
-                JsonElement element = JsonParser.parseString(response);
-                
-                Platform.runLater(() -> {
-                    try {
-                        double totalPoints = 0;
-                        int totalCredits = 0;
-                        
-                        if (element.isJsonArray()) {
-                            JsonArray gradesArray = element.getAsJsonArray();
-                            for (JsonElement item : gradesArray) {
-                                JsonObject gradeObj = item.getAsJsonObject();
-                                GradeItem gradeItem = parseGradeItem(gradeObj);
-                                gradesTable.getItems().add(gradeItem);
-                                
-                                // Tính GPA
-                                if (gradeItem.getCredit() > 0 && gradeItem.getAverage() > 0) {
-                                    totalPoints += gradeItem.getAverage() * gradeItem.getCredit();
-                                    totalCredits += gradeItem.getCredit();
-                                }
-                            }
-                        } else if (element.isJsonObject()) {
-                            JsonObject obj = element.getAsJsonObject();
-                            if (obj.has("grades") && obj.get("grades").isJsonArray()) {
-                                JsonArray gradesArray = obj.getAsJsonArray("grades");
-                                for (JsonElement item : gradesArray) {
-                                    JsonObject gradeObj = item.getAsJsonObject();
-                                    GradeItem gradeItem = parseGradeItem(gradeObj);
-                                    gradesTable.getItems().add(gradeItem);
-                                    
-                                    if (gradeItem.getCredit() > 0 && gradeItem.getAverage() > 0) {
-                                        totalPoints += gradeItem.getAverage() * gradeItem.getCredit();
-                                        totalCredits += gradeItem.getCredit();
-                                    }
-                                }
-                            }
-                            
-                            // Lấy GPA từ response nếu có
-                            if (obj.has("gpa")) {
-                                gpaLabel.setText("GPA: " + obj.get("gpa").getAsString());
-                            }
-                        }
-                        
-                        // Tính GPA nếu chưa có
-                        if (totalCredits > 0 && gpaLabel.getText().isEmpty()) {
-                            double gpa = totalPoints / totalCredits;
-                            gpaLabel.setText(String.format("GPA: %.2f", gpa));
-                        }
-                        
-                        statusLabel.setText("Đã tải " + gradesTable.getItems().size() + " môn học");
-                    } catch (Exception e) {
-                        statusLabel.setText("Lỗi khi parse dữ liệu");
-                        e.printStackTrace();
-                    }
-                });
-                
+                result = parseGradesResponse(response);
             } catch (IOException e) {
                 Platform.runLater(() -> {
                     statusLabel.setText("Lỗi khi tải bảng điểm");
                     showAlert(Alert.AlertType.ERROR, "Lỗi", 
                             "Không thể tải bảng điểm: " + e.getMessage());
                 });
+                return;
+            } catch (Exception e) {
+                Platform.runLater(() -> statusLabel.setText("Lỗi khi parse dữ liệu"));
+                e.printStackTrace();
+                return;
             }
+            
+            Platform.runLater(() -> showGrades(result));
         }).start();
     }
     
+    /**
+     * Parse bảng điểm và tính GPA (trên thread nền)
+     */
+    private GradesResult parseGradesResponse(String response) {
+        JsonElement element = JsonParser.parseString(response);
+        List<GradeItem> items = new ArrayList<>();
+        String gpaText = null;
+        
+        JsonArray gradesArray = null;
+        if (element.isJsonArray()) {
+            gradesArray = element.getAsJsonArray();
+        } else if (element.isJsonObject()) {
+            JsonObject obj = element.getAsJsonObject();
+            if (obj.has("grades") && obj.get("grades").isJsonArray()) {
+                gradesArray = obj.getAsJsonArray("grades");
+            }
+            
+            // Lấy GPA từ response nếu có
+            if (obj.has("gpa")) {
+                gpaText = "GPA: " + obj.get("gpa").getAsString();
+            }
+        }
+        
+        double totalPoints = 0;
+        int totalCredits = 0;
+        if (gradesArray != null) {
+            for (JsonElement item : gradesArray) {
+                GradeItem gradeItem = parseGradeItem(item.getAsJsonObject());
+                items.add(gradeItem);
+                
+                // Tính GPA
+                if (gradeItem.getCredit() > 0 && gradeItem.getAverage() > 0) {
+                    totalPoints += gradeItem.getAverage() * gradeItem.getCredit();
+                    totalCredits += gradeItem.getCredit();
+                }
+            }
+        }
+        
+        // Tính GPA nếu server không trả về
+        if (gpaText == null && totalCredits > 0) {
+            gpaText = String.format("GPA: %.2f", totalPoints / totalCredits);
+        }
+        return new GradesResult(items, gpaText);
+    }
+    
+    /**
+     * Gắn bảng điểm đã tính xong lên UI trong một lần
+     */
+    private void showGrades(GradesResult result) {
+        gradesTable.getItems().setAll(result.items);
+        if (result.gpaText != null) {
+            gpaLabel.setText(result.gpaText);
+        }
+        statusLabel.setText("Đã tải " + result.items.size() + " môn học");
+    }
+    
     private GradeItem parseGradeItem(JsonObject obj) {
         GradeItem item = new GradeItem();
         item.setSubject(getStringValue(obj, "subject", "subjectName", "courseName"));
@@ -211,5 +224,17 @@ public class GradesController {
         alert.setContentText(message);
         alert.showAndWait();
     }
+    
+    /**
+     * Bảng điểm đã parse và tính toán xong trên thread nền
+     */
+    private static final class GradesResult {
+        private final List<GradeItem> items;
+        private final String gpaText; // null nếu không tính được GPA
+        
+        private GradesResult(List<GradeItem> items, String gpaText) {
+            this.items = Collections.unmodifiableList(items);
+            this.gpaText = gpaText;
+        }
+    }
 }
-
@@ -17,8 +17,12 @@ import org.example.service.ApiService;
 import org.example.service.EncryptionService;
 import org.example.service.EncryptionService.EncryptionResult;
 import org.example.service.LocalStorageService;
+import org.example.service.PublicKeyCache;
+import org.example.service.StartupMetrics;
+import org.example.service.StartupWarmup;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class LoginController {
     @FXML
@@ -47,23 +51,25 @@ public class LoginController {
     }
     
     private void loadPublicKey() {
-        new Thread(() -> {
-            try {
-                String publicKeyResponse = apiService.getPublicKey();
-                System.out.println("Public key response: " + publicKeyResponse.substring(0, Math.min(100, publicKeyResponse.length())) + "...");
-                encryptionService.setPublicKey(publicKeyResponse);
-                Platform.runLater(() -> {
-                    loginButton.setDisable(false);
-                    System.out.println("Public key loaded successfully");
-                });
-            } catch (Exception e) {
+        // Public key đã được lấy song song từ lúc khởi động (StartupWarmup), ở đây chỉ chờ kết quả
+        StartupWarmup.publicKeyReady().whenComplete((result, error) -> {
+            if (error != null) {
                 Platform.runLater(() -> {
                     showAlert(Alert.AlertType.ERROR, "Lỗi", 
                             "Không thể kết nối đến server. Vui lòng kiểm tra lại.");
-                    e.printStackTrace();
+                    error.printStackTrace();
                 });
+                return;
             }
-        }).start();
+            Platform.runLater(() -> {
+                loginButton.setDisable(false);
+                System.out.println("Public key loaded successfully");
+                // Lần chạy tạo CDS archive (profile appcds-dump) thoát ngay khi đã dùng được
+                if (StartupMetrics.interactive() && Boolean.getBoolean("kma.startup.exitWhenInteractive")) {
+                    Platform.exit();
+                }
+            });
+        });
     }
     
     @FXML
@@ -87,31 +93,30 @@ public class LoginController {
         
         new Thread(() -> {
             try {
-                // Đảm bảo public key đã được load (lấy lại để đảm bảo key mới nhất)
-                String publicKey = apiService.getPublicKey();
-                encryptionService.setPublicKey(publicKey);
-                System.out.println("Public key reloaded before login");
-                
                 // Tạo JSON chứa username và password
                 JsonObject loginData = new JsonObject();
                 loginData.addProperty("username", username);
                 loginData.addProperty("password", password);
                 
                 String dataToEncrypt = loginData.toString();
-                System.out.println("Data to encrypt: " + dataToEncrypt);
-                
-                // Mã hóa bằng hybrid encryption (RSA + AES)
-                EncryptionResult encryptionResult = 
-                    encryptionService.encryptHybrid(dataToEncrypt);
-                
-                System.out.println("Encryption completed. Key length: " + encryptionResult.getEncryptedKey().length());
                 
-                // Gọi API đăng nhập với format mới
-                String response = apiService.login(
-                    encryptionResult.getEncryptedKey(),
-                    encryptionResult.getEncryptedData(),
-                    encryptionResult.getIv()
-                );
+                // Public key lấy từ cache (revalidate bằng ETag khi hết hạn); nếu server
+                // báo không giải mã được thì lấy lại key và mã hóa lại một lần
+                AtomicReference<EncryptionResult> encryptionRef = new AtomicReference<>();
+                String response = PublicKeyCache.getInstance().call(() -> {
+                    // Mã hóa bằng hybrid encryption (RSA + AES)
+                    EncryptionResult result = encryptionService.encryptHybrid(dataToEncrypt);
+                    encryptionRef.set(result);
+                    System.out.println("Encryption completed. Key length: " + result.getEncryptedKey().length());
+                    
+                    // Gọi API đăng nhập với format mới
+                    return apiService.login(
+                        result.getEncryptedKey(),
+                        result.getEncryptedData(),
+                        result.getIv()
+                    );
+                });
+                EncryptionResult encryptionResult = encryptionRef.get();
                 
                 // Parse response mới với format: { "code": "200", "data": {...} }
                 JsonObject jsonResponse = JsonParser.parseString(response).getAsJsonObject();
@@ -210,6 +215,9 @@ public class LoginController {
             stage.setResizable(true);
             stage.setTitle("KMA Legend Desktop - Trang chủ");
             
+            // Màn hình chính đã hiển thị: load trước các màn hình hay dùng
+            controller.preloadScreens();
+            
         } catch (IOException e) {
             showAlert(Alert.AlertType.ERROR, "Lỗi", 
                     "Không thể tải màn hình chính.");
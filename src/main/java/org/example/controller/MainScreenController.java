@@ -10,6 +10,7 @@ import javafx.scene.control.Label;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
 import org.example.model.StudentInfo;
+import org.example.service.LocalDataCache;
 import org.example.service.LocalStorageService;
 
 import java.io.IOException;
@@ -58,6 +59,9 @@ public class MainScreenController {
     private StudentInfo studentInfo;
     private String studentScheduleJson;
 
+    // Các màn hình con đã load được giữ lại giữa các lần chuyển tab
+    private final ScreenRegistry screenRegistry = ScreenRegistry.getInstance();
+
     @FXML
     public void initialize() {
         // Load từ local storage khi khởi tạo
@@ -70,7 +74,7 @@ public class MainScreenController {
             LocalStorageService storage = LocalStorageService.getInstance();
 
             // Load student info
-            JsonObject studentInfoObj = storage.loadStudentInfo();
+            JsonObject studentInfoObj = LocalDataCache.getInstance().get(LocalDataCache.STUDENT_INFO);
             if (studentInfoObj != null) {
                 studentInfo = new StudentInfo();
                 studentInfo.setStudentCode(getStringValue(studentInfoObj, "student_code"));
@@ -133,27 +137,51 @@ public class MainScreenController {
         }
     }
 
-    @FXML
-    private void handleViewSchedule() {
-        try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/ScheduleScreen.fxml"));
-            Parent centerContent = loader.load();
-
-            ScheduleController controller = loader.getController();
-            controller.setAuthToken(authToken);
-            if (studentInfo != null) {
-                controller.setStudentInfo(studentInfo);
+    /**
+     * Load trước các màn hình hay được mở ngay sau khi vào màn hình chính.
+     * Chỉ lịch học được nạp dữ liệu sẵn (từ JSON đã có, không gọi mạng); các màn hình khác
+     * chỉ parse FXML trước, dữ liệu được tải khi mở lần đầu.
+     */
+    public void preloadScreens() {
+        screenRegistry.preload(ScreenRegistry.SCHEDULE, screen -> {
+            if (studentScheduleJson != null && !studentScheduleJson.isEmpty()) {
+                prepareSchedule(screen);
             }
+        });
+        screenRegistry.preload(ScreenRegistry.SCORES, null);
+        screenRegistry.preload(ScreenRegistry.VIRTUAL_SCHEDULE, null);
+    }
+
+    /**
+     * Hiển thị màn hình ở vùng giữa (màn hình cũ được giữ lại trong registry, không bị hủy)
+     */
+    private void showScreen(Parent content, Button menuButton) {
+        mainBorderPane.setCenter(content);
+        setActiveButton(menuButton);
+    }
+
+    private void prepareSchedule(ScreenRegistry.Loaded<ScheduleController> screen) {
+        ScheduleController controller = screen.getController();
+        controller.setAuthToken(authToken);
+        if (studentInfo != null) {
+            controller.setStudentInfo(studentInfo);
+        }
+        if (screen.needsData()) {
             // Load schedule từ JSON nếu có, nếu không thì gọi API
             if (studentScheduleJson != null && !studentScheduleJson.isEmpty()) {
-                controller.loadScheduleFromJson(studentScheduleJson);
+                screen.trackDataLoad(controller.loadScheduleFromJson(studentScheduleJson));
             } else {
-                controller.loadSchedule();
+                screen.trackDataLoad(controller.loadSchedule());
             }
+        }
+    }
 
-            mainBorderPane.setCenter(centerContent);
-            setActiveButton(scheduleButton);
-
+    @FXML
+    private void handleViewSchedule() {
+        try {
+            ScreenRegistry.Loaded<ScheduleController> screen = screenRegistry.get(ScreenRegistry.SCHEDULE);
+            prepareSchedule(screen);
+            showScreen(screen.getRoot(), scheduleButton);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -162,12 +190,12 @@ public class MainScreenController {
     @FXML
     private void handleVirtualSchedule() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/VirtualScheduleScreen.fxml"));
-            Parent centerContent = loader.load();
-            VirtualScheduleController controller = loader.getController();
-            controller.loadVirtualCalendar();
-            mainBorderPane.setCenter(centerContent);
-            setActiveButton(virtualScheduleButton);
+            ScreenRegistry.Loaded<VirtualScheduleController> screen = screenRegistry
+                    .get(ScreenRegistry.VIRTUAL_SCHEDULE);
+            if (screen.needsData()) {
+                screen.trackDataLoad(screen.getController().loadVirtualCalendar());
+            }
+            showScreen(screen.getRoot(), virtualScheduleButton);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -176,12 +204,11 @@ public class MainScreenController {
     @FXML
     private void handleViewScores() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/ScoresScreen.fxml"));
-            Parent centerContent = loader.load();
-            ScoresController controller = loader.getController();
-            controller.loadScores();
-            mainBorderPane.setCenter(centerContent);
-            setActiveButton(scoresButton);
+            ScreenRegistry.Loaded<ScoresController> screen = screenRegistry.get(ScreenRegistry.SCORES);
+            if (screen.needsData()) {
+                screen.trackDataLoad(screen.getController().loadScores());
+            }
+            showScreen(screen.getRoot(), scoresButton);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -190,12 +217,9 @@ public class MainScreenController {
     @FXML
     private void handleViewScholarship() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/ScholarshipScreen.fxml"));
-            Parent centerContent = loader.load();
-            ScholarshipController controller = loader.getController();
-            controller.initialize();
-            mainBorderPane.setCenter(centerContent);
-            setActiveButton(scholarshipButton);
+            // Danh sách học bổng chỉ tải khi người dùng chọn khóa (initialize đã được FXMLLoader gọi)
+            ScreenRegistry.Loaded<ScholarshipController> screen = screenRegistry.get(ScreenRegistry.SCHOLARSHIP);
+            showScreen(screen.getRoot(), scholarshipButton);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -203,6 +227,8 @@ public class MainScreenController {
 
     @FXML
     private void handleLogout() {
+        // Hủy request và bỏ các màn hình của phiên đăng nhập cũ
+        screenRegistry.clear();
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/LoginScreen.fxml"));
             Parent root = loader.load();
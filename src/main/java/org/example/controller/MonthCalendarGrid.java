@@ -0,0 +1,310 @@
+package org.example.controller;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Cursor;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Lưới lịch tháng dùng chung cho màn hình lịch học và lịch học ảo.
+ * Lưới giữ cố định 6 x 7 ô ngày, tạo một lần và dùng lại khi chuyển tháng; mỗi ô nhớ
+ * ngày và danh sách buổi học đang hiển thị nên chỉ ô nào thực sự thay đổi mới được vẽ lại.
+ * Dữ liệu theo ngày của các tháng vừa xem được giữ trong cache LRU, gọi invalidate khi dữ liệu đổi.
+ *
+ * @param <T> kiểu buổi học (ScheduleItem, VirtualCourse.ScheduleSlot)
+ */
+final class MonthCalendarGrid<T> {
+    private static final int WEEKS = 6;
+    private static final int MAX_SUBJECTS = 2;
+    private static final int CACHED_MONTHS = 6;
+    private static final String[] DAY_NAMES = { "Chủ Nhật", "Thứ 2", "Thứ 3", "Thứ 4", "Thứ 5", "Thứ 6", "Thứ 7" };
+
+    /**
+     * Cách hiển thị và xử lý buổi học của từng màn hình
+     */
+    interface DayAdapter<T> {
+        /**
+         * Tên môn hiển thị trong ô ngày
+         */
+        String subjectOf(T item);
+
+        /**
+         * Bấm vào ngày có lịch
+         */
+        void openDay(LocalDate date, List<T> items);
+
+        /**
+         * Tooltip chi tiết của ngày, null nếu không dùng tooltip
+         */
+        default String tooltipOf(LocalDate date, List<T> items) {
+            return null;
+        }
+    }
+
+    private final DayAdapter<T> adapter;
+    private final Function<YearMonth, Map<LocalDate, List<T>>> monthLoader;
+    private final Map<YearMonth, Map<LocalDate, List<T>>> monthCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<YearMonth, Map<LocalDate, List<T>>> eldest) {
+            return size() > CACHED_MONTHS;
+        }
+    };
+
+    private final VBox monthBox = new VBox(15);
+    private final List<DayCell> cells = new ArrayList<>(WEEKS * 7);
+
+    /**
+     * @param monthLoader nhóm buổi học của một tháng theo ngày (chỉ các ngày trong tháng)
+     */
+    MonthCalendarGrid(DayAdapter<T> adapter, Function<YearMonth, Map<LocalDate, List<T>>> monthLoader) {
+        this.adapter = adapter;
+        this.monthLoader = monthLoader;
+
+        monthBox.setPadding(new Insets(20));
+        monthBox.setAlignment(Pos.CENTER);
+        monthBox.setStyle(
+                "-fx-background-color: linear-gradient(to bottom, #1a1a1a, #0d0d0d); -fx-border-color: #00d4ff; -fx-border-radius: 12; -fx-border-width: 2; -fx-effect: dropshadow(three-pass-box, rgba(0,212,255,0.3), 10, 0, 0, 3);");
+
+        GridPane calendarGrid = new GridPane();
+        calendarGrid.setHgap(3);
+        calendarGrid.setVgap(3);
+        calendarGrid.setPadding(new Insets(10));
+        calendarGrid.setStyle("-fx-background-color: #0d0d0d; -fx-background-radius: 8;");
+
+        // Header cho các ngày trong tuần
+        for (int i = 0; i < 7; i++) {
+            Label dayHeader = new Label(DAY_NAMES[i]);
+            dayHeader.setStyle(
+                    "-fx-font-weight: bold; -fx-font-size: 13px; -fx-text-fill: #00d4ff; -fx-padding: 12px; -fx-alignment: center; -fx-background-color: linear-gradient(to bottom, #2a2a2a, #1a1a1a); -fx-background-radius: 6 6 0 0; -fx-border-color: #00d4ff; -fx-border-width: 0 0 1 0;");
+            dayHeader.setMaxWidth(Double.MAX_VALUE);
+            dayHeader.setPrefHeight(45);
+            GridPane.setHgrow(dayHeader, Priority.ALWAYS);
+            calendarGrid.add(dayHeader, i, 0);
+        }
+
+        for (int row = 0; row < WEEKS; row++) {
+            for (int col = 0; col < 7; col++) {
+                DayCell cell = new DayCell();
+                cells.add(cell);
+                calendarGrid.add(cell.box, col, row + 1);
+            }
+        }
+
+        monthBox.getChildren().add(calendarGrid);
+    }
+
+    VBox getNode() {
+        return monthBox;
+    }
+
+    /**
+     * Dữ liệu đã thay đổi: bỏ cache các tháng (lần show tiếp theo vẫn chỉ vẽ lại các ô khác đi)
+     */
+    void invalidate() {
+        monthCache.clear();
+    }
+
+    /**
+     * Hiển thị một tháng, dùng lại các ô sẵn có
+     */
+    void show(YearMonth yearMonth) {
+        Map<LocalDate, List<T>> itemsByDate = monthCache.computeIfAbsent(yearMonth, monthLoader);
+
+        // Ô đầu tiên là Chủ Nhật của tuần chứa ngày 1
+        LocalDate firstDay = yearMonth.atDay(1);
+        LocalDate calendarStart = firstDay.with(DayOfWeek.SUNDAY);
+        if (calendarStart.isAfter(firstDay)) {
+            calendarStart = calendarStart.minusWeeks(1);
+        }
+        // Số tuần thực sự cần (4-6), các hàng còn lại được ẩn
+        LocalDate lastDay = yearMonth.atEndOfMonth();
+        int weeks = (int) ((lastDay.toEpochDay() - calendarStart.toEpochDay()) / 7) + 1;
+
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < cells.size(); i++) {
+            DayCell cell = cells.get(i);
+            boolean visible = i / 7 < weeks;
+            cell.box.setVisible(visible);
+            cell.box.setManaged(visible);
+            if (visible) {
+                LocalDate date = calendarStart.plusDays(i);
+                List<T> items = itemsByDate.getOrDefault(date, Collections.emptyList());
+                cell.update(date, YearMonth.from(date).equals(yearMonth), date.equals(today), items);
+            }
+        }
+    }
+
+    /**
+     * Một ô ngày; các label được tạo sẵn và chỉ đổi nội dung/ẩn hiện
+     */
+    private final class DayCell {
+        private final VBox box = new VBox(4);
+        private final Label dayNumber = new Label();
+        private final Label countLabel = new Label();
+        private final Label[] subjectLabels = new Label[MAX_SUBJECTS];
+        private final Label moreLabel = new Label();
+        private final Tooltip tooltip = new Tooltip();
+        private boolean tooltipInstalled = false;
+
+        // Trạng thái đang hiển thị
+        private LocalDate date;
+        private boolean currentMonth;
+        private boolean today;
+        private List<T> items = Collections.emptyList();
+        private String baseStyle;
+        private String hoverStyle;
+
+        private DayCell() {
+            box.setPadding(new Insets(5));
+            box.setAlignment(Pos.TOP_CENTER);
+            box.setMaxWidth(Double.MAX_VALUE);
+            box.setPrefHeight(130);
+            GridPane.setHgrow(box, Priority.ALWAYS);
+
+            countLabel.setStyle(
+                    "-fx-font-size: 10px; -fx-text-fill: #00ff88; -fx-font-weight: bold; -fx-background-color: #003d1a; -fx-padding: 2 6 2 6; -fx-background-radius: 10; -fx-border-color: #00ff88; -fx-border-width: 1;");
+            for (int i = 0; i < MAX_SUBJECTS; i++) {
+                Label subjectLabel = new Label();
+                subjectLabel.setStyle(
+                        "-fx-font-size: 9px; -fx-text-fill: #00d4ff; -fx-padding: 2 4 2 4; -fx-background-color: #003d4d; -fx-background-radius: 4; -fx-max-width: 100; -fx-border-color: #00d4ff; -fx-border-width: 0.5;");
+                subjectLabel.setWrapText(true);
+                subjectLabels[i] = subjectLabel;
+            }
+            moreLabel.setStyle("-fx-font-size: 9px; -fx-text-fill: #99a8b8; -fx-font-style: italic;");
+            tooltip.setStyle("-fx-font-size: 11px; -fx-background-color: #1a1a1a; -fx-text-fill: #ffffff;");
+
+            box.getChildren().add(dayNumber);
+            box.getChildren().add(countLabel);
+            box.getChildren().addAll(subjectLabels);
+            box.getChildren().add(moreLabel);
+
+            box.setOnMouseEntered(e -> box.setStyle(hoverStyle));
+            box.setOnMouseExited(e -> box.setStyle(baseStyle));
+            box.setOnMouseClicked(e -> {
+                if (!items.isEmpty()) {
+                    adapter.openDay(date, new ArrayList<>(items));
+                }
+            });
+        }
+
+        /**
+         * Vẽ lại ô nếu ngày, trạng thái hoặc danh sách buổi học khác lần trước
+         */
+        private void update(LocalDate date, boolean currentMonth, boolean today, List<T> items) {
+            if (date.equals(this.date) && currentMonth == this.currentMonth && today == this.today
+                    && sameItems(items)) {
+                return;
+            }
+            this.date = date;
+            this.currentMonth = currentMonth;
+            this.today = today;
+            this.items = new ArrayList<>(items);
+            render();
+        }
+
+        /**
+         * So theo equals: ScheduleSlot bằng nhau theo giá trị (ngày, tiết, lớp) dù mỗi lần đọc
+         * là một instance mới; ScheduleItem không override equals nên vẫn so theo identity
+         */
+        private boolean sameItems(List<T> other) {
+            return other.equals(items);
+        }
+
+        private void render() {
+            boolean hasItems = !items.isEmpty();
+
+            // Style theo ngày - Theme đen, ngày có lịch được highlight xanh cyan
+            String backgroundColor = today ? "#003d4d"
+                    : (currentMonth ? (hasItems ? "#002a33" : "#1a1a1a") : "#0d0d0d");
+            String borderColor = today || hasItems ? "#00d4ff" : "#333333";
+            int borderWidth = today ? 3 : (hasItems ? 2 : 1);
+            baseStyle = String.format(
+                    "-fx-background-color: %s; -fx-border-color: %s; -fx-border-radius: 6; -fx-border-width: %d;",
+                    backgroundColor, borderColor, borderWidth);
+            if (hasItems) {
+                hoverStyle = String.format(
+                        "-fx-background-color: %s; -fx-border-color: #00ffff; -fx-border-radius: 6; -fx-border-width: 3; -fx-cursor: hand; -fx-effect: dropshadow(three-pass-box, rgba(0,255,255,0.5), 5, 0, 0, 2);",
+                        today ? "#004d5d" : (currentMonth ? "#002a33" : "#0d0d0d"));
+            } else {
+                hoverStyle = String.format(
+                        "-fx-background-color: %s; -fx-border-color: #555555; -fx-border-radius: 6; -fx-border-width: 1;",
+                        currentMonth ? "#2a2a2a" : "#0d0d0d");
+            }
+            box.setStyle(box.isHover() ? hoverStyle : baseStyle);
+            box.setCursor(hasItems ? Cursor.HAND : Cursor.DEFAULT);
+
+            // Số ngày
+            dayNumber.setText(String.valueOf(date.getDayOfMonth()));
+            dayNumber.setStyle(String.format(
+                    "-fx-font-weight: %s; -fx-font-size: %dpx; -fx-text-fill: %s;",
+                    today ? "bold" : "normal",
+                    today ? 16 : 14,
+                    today ? "#00d4ff" : (currentMonth ? "#ffffff" : "#666666")));
+
+            // Số buổi học
+            setShown(countLabel, hasItems);
+            if (hasItems) {
+                countLabel.setText(items.size() + " buổi");
+            }
+
+            // Tối đa 2 môn học đầu tiên (không lặp tên môn)
+            Set<String> displayedSubjects = new HashSet<>();
+            int displayedCount = 0;
+            for (T item : items) {
+                if (displayedCount >= MAX_SUBJECTS) {
+                    break;
+                }
+                String subjectText = adapter.subjectOf(item);
+                if (subjectText != null && displayedSubjects.add(subjectText)) {
+                    if (subjectText.length() > 15) {
+                        subjectText = subjectText.substring(0, 13) + "...";
+                    }
+                    subjectLabels[displayedCount++].setText(subjectText);
+                }
+            }
+            for (int i = 0; i < MAX_SUBJECTS; i++) {
+                setShown(subjectLabels[i], i < displayedCount);
+            }
+
+            int maxDisplay = Math.min(items.size(), MAX_SUBJECTS);
+            setShown(moreLabel, items.size() > maxDisplay);
+            if (items.size() > maxDisplay) {
+                moreLabel.setText("+" + (items.size() - maxDisplay) + " nữa");
+            }
+
+            // Tooltip chi tiết (nếu màn hình có dùng)
+            String tooltipText = hasItems ? adapter.tooltipOf(date, items) : null;
+            if (tooltipText != null) {
+                tooltip.setText(tooltipText);
+                if (!tooltipInstalled) {
+                    Tooltip.install(box, tooltip);
+                    tooltipInstalled = true;
+                }
+            } else if (tooltipInstalled) {
+                Tooltip.uninstall(box, tooltip);
+                tooltipInstalled = false;
+            }
+        }
+
+        private void setShown(Label label, boolean shown) {
+            label.setVisible(shown);
+            label.setManaged(shown);
+        }
+    }
+}
@@ -22,7 +22,6 @@ import javafx.scene.control.Separator;
 import javafx.scene.control.SplitPane;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
-import javafx.scene.control.Tooltip;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
@@ -30,21 +29,31 @@ import javafx.stage.Stage;
 import org.example.model.ScheduleItem;
 import org.example.model.StudentInfo;
 import org.example.service.ApiService;
+import org.example.service.BinarySnapshot;
 import org.example.service.IcsExportService;
+import org.example.service.LocalStorageService;
+import org.example.service.RequestScope;
+import org.example.service.ScheduleDateIndex;
 
 import java.io.File;
 import java.io.IOException;
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class ScheduleController {
+    private static final DateTimeFormatter MONTH_KEY_FORMATTER = DateTimeFormatter.ofPattern("MM/yyyy");
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter MONTH_TITLE_FORMATTER =
+            DateTimeFormatter.ofPattern("MMMM yyyy", java.util.Locale.forLanguageTag("vi"));
+
     @FXML
     private TableView<ScheduleItem> scheduleTable;
     
@@ -119,9 +128,30 @@ public class ScheduleController {
     
     private String authToken;
     private ApiService apiService;
+    private final RequestScope requestScope = new RequestScope(); // Request của màn hình, hủy khi rời màn hình
     private StudentInfo studentInfo;
     private List<ScheduleItem> allScheduleItems = new ArrayList<>();
-    private List<ScheduleItem> filteredScheduleItems = new ArrayList<>();
+    private List<ScheduleItem> filteredScheduleItems = new ArrayList<>(); // View trên scheduleIndex
+    private final ScheduleDateIndex scheduleIndex = new ScheduleDateIndex();
+    // Dấu vân tay của JSON đã tạo ra lịch đang hiển thị (0: không rõ nguồn)
+    private long displayedScheduleFingerprint = 0;
+    private final MonthCalendarGrid<ScheduleItem> monthGrid = new MonthCalendarGrid<>(
+            new MonthCalendarGrid.DayAdapter<ScheduleItem>() {
+                @Override
+                public String subjectOf(ScheduleItem item) {
+                    return item.getSubject();
+                }
+
+                @Override
+                public void openDay(LocalDate date, List<ScheduleItem> items) {
+                    showDayDetailsDialog(date, items);
+                }
+
+                @Override
+                public String tooltipOf(LocalDate date, List<ScheduleItem> items) {
+                    return buildDayTooltip(date, items);
+                }
+            }, this::loadMonthItems);
     private Map<String, VBox> monthBoxMap = new HashMap<>();
     private Map<LocalDate, VBox> dayBoxMap = new HashMap<>();
     private boolean isInitialLoad = true;
@@ -193,8 +223,18 @@ public class ScheduleController {
     }
     
     private void loadFromLocalStorage() {
+        LocalStorageService storage = LocalStorageService.getInstance();
+        try {
+            // Ưu tiên snapshot nhị phân: các buổi học đã tách sẵn, không parse JSON
+            BinarySnapshot.Schedule snapshot = storage.loadScheduleSnapshot();
+            if (snapshot != null) {
+                displaySchedule(new ArrayList<>(snapshot.getItems()), snapshot.getSourceFingerprint());
+                return;
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading schedule snapshot: " + e.getMessage());
+        }
         try {
-            org.example.service.LocalStorageService storage = org.example.service.LocalStorageService.getInstance();
             String scheduleJson = storage.loadSchedule();
             if (scheduleJson != null && !scheduleJson.isEmpty()) {
                 // Không load filter state nữa, hiển thị tất cả lịch học
@@ -205,33 +245,59 @@ public class ScheduleController {
         }
     }
     
-    public void loadScheduleFromJson(String scheduleJson) {
+    /**
+     * Hiển thị lịch từ JSON đã có.
+     *
+     * @return future hoàn thành khi lịch đã hiển thị, lỗi nếu JSON không hợp lệ
+     */
+    public CompletableFuture<Void> loadScheduleFromJson(String scheduleJson) {
+        // Lịch đang hiển thị được tạo từ đúng JSON này (snapshot lúc khởi tạo): không parse lại
+        long fingerprint = BinarySnapshot.fingerprint(scheduleJson);
+        if (fingerprint == displayedScheduleFingerprint && !allScheduleItems.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
         statusLabel.setText("Đang xử lý lịch học...");
         scheduleTable.getItems().clear();
         allScheduleItems.clear();
         
+        CompletableFuture<Void> loaded = new CompletableFuture<>();
         Platform.runLater(() -> {
             try {
                 JsonArray scheduleArray = JsonParser.parseString(scheduleJson).getAsJsonArray();
-                parseAndDisplaySchedule(scheduleArray);
+                parseAndDisplaySchedule(scheduleArray, fingerprint);
+                loaded.complete(null);
             } catch (Exception e) {
                 statusLabel.setText("Lỗi khi parse dữ liệu");
                 e.printStackTrace();
+                loaded.completeExceptionally(e);
             }
         });
+        return loaded;
     }
     
-    public void loadSchedule() {
+    /**
+     * Tải lịch học từ API.
+     *
+     * @return future hoàn thành khi lịch đã hiển thị, lỗi nếu tải hoặc parse thất bại
+     */
+    public CompletableFuture<Void> loadSchedule() {
         statusLabel.setText("Đang tải lịch học...");
         scheduleTable.getItems().clear();
         allScheduleItems.clear();
         
-        new Thread(() -> {
-            try {
-                String response = apiService.getSchedule(authToken);
-                JsonElement element = JsonParser.parseString(response);
-                
-                Platform.runLater(() -> {
+        CompletableFuture<Void> loaded = new CompletableFuture<>();
+        requestScope.track(apiService.getScheduleAsync(authToken))
+                .thenApply(JsonParser::parseString)
+                .whenComplete((element, error) -> requestScope.runLater(() -> {
+                    if (error != null) {
+                        statusLabel.setText("Lỗi khi tải lịch học");
+                        showAlert(Alert.AlertType.ERROR, "Lỗi", 
+                                "Không thể tải lịch học: " + RequestScope.unwrap(error).getMessage());
+                        loaded.completeExceptionally(error);
+                        return;
+                    }
+
                     try {
                         JsonArray scheduleArray = null;
                         if (element.isJsonArray()) {
@@ -246,28 +312,30 @@ public class ScheduleController {
                         }
                         
                         if (scheduleArray != null) {
-                            parseAndDisplaySchedule(scheduleArray);
+                            parseAndDisplaySchedule(scheduleArray, 0);
+                            loaded.complete(null);
                         } else {
                             statusLabel.setText("Không tìm thấy dữ liệu lịch học");
+                            loaded.completeExceptionally(new IOException("Không tìm thấy dữ liệu lịch học"));
                         }
                     } catch (Exception e) {
                         statusLabel.setText("Lỗi khi parse dữ liệu");
                         e.printStackTrace();
+                        loaded.completeExceptionally(e);
                     }
-                });
-                
-            } catch (IOException e) {
-                Platform.runLater(() -> {
-                    statusLabel.setText("Lỗi khi tải lịch học");
-                    showAlert(Alert.AlertType.ERROR, "Lỗi", 
-                            "Không thể tải lịch học: " + e.getMessage());
-                });
-            }
-        }).start();
+                }));
+        return loaded;
     }
     
-    private void parseAndDisplaySchedule(JsonArray scheduleArray) {
-        allScheduleItems.clear();
+    /**
+     * Hủy các request đang chạy khi rời màn hình
+     */
+    public void dispose() {
+        requestScope.cancelAll();
+    }
+    
+    private void parseAndDisplaySchedule(JsonArray scheduleArray, long sourceFingerprint) {
+        List<ScheduleItem> parsedItems = new ArrayList<>();
         
         for (JsonElement item : scheduleArray) {
             JsonObject scheduleObj = item.getAsJsonObject();
@@ -303,8 +371,7 @@ public class ScheduleController {
                     scheduleItem.setTeacher(teacher);
                     scheduleItem.setDay(formatDate(date));
                     
-                    allScheduleItems.add(scheduleItem);
-                    scheduleTable.getItems().add(scheduleItem);
+                    parsedItems.add(scheduleItem);
                 } catch (Exception e) {
                     System.err.println("Error parsing date: " + days[i] + " - " + e.getMessage());
                 }
@@ -312,18 +379,25 @@ public class ScheduleController {
         }
         
         // Sắp xếp theo thời gian tăng dần (ngày và giờ)
-        allScheduleItems.sort((a, b) -> {
-            // So sánh theo ngày trước
-            int dateCompare = a.getDate().compareTo(b.getDate());
-            if (dateCompare != 0) {
-                return dateCompare;
-            }
-            // Nếu cùng ngày, so sánh theo giờ bắt đầu
-            if (a.getStartTime() != null && b.getStartTime() != null) {
-                return a.getStartTime().compareTo(b.getStartTime());
-            }
-            return 0;
-        });
+        parsedItems.sort(ScheduleDateIndex.CHRONOLOGICAL);
+        displaySchedule(parsedItems, sourceFingerprint);
+        
+        // Lưu snapshot để lần mở sau hiển thị ngay, không parse lại JSON
+        try {
+            LocalStorageService.getInstance().saveScheduleSnapshot(parsedItems, sourceFingerprint);
+        } catch (IOException e) {
+            System.err.println("Error saving schedule snapshot: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Hiển thị các buổi học đã sắp xếp theo thời gian và dựng chỉ mục theo ngày một lần
+     */
+    private void displaySchedule(List<ScheduleItem> sortedItems, long sourceFingerprint) {
+        allScheduleItems = sortedItems;
+        displayedScheduleFingerprint = sourceFingerprint;
+        scheduleIndex.build(allScheduleItems);
+        monthGrid.invalidate();
         
         // Cập nhật table với dữ liệu đã sắp xếp
         scheduleTable.getItems().clear();
@@ -335,8 +409,7 @@ public class ScheduleController {
         updateFilterOptions();
         
         // Không apply filter, hiển thị tất cả lịch học
-        filteredScheduleItems.clear();
-        filteredScheduleItems.addAll(allScheduleItems);
+        filteredScheduleItems = scheduleIndex.all();
         
         // Hiển thị calendar view
         if (isCalendarView) {
@@ -444,12 +517,9 @@ public class ScheduleController {
         monthFilterComboBox.getItems().clear();
         monthFilterComboBox.getItems().add("Tất cả tháng");
         
-        allScheduleItems.stream()
-            .filter(item -> item.getDate() != null)
-            .map(item -> item.getDate().format(DateTimeFormatter.ofPattern("MM/yyyy")))
-            .distinct()
-            .sorted()
-            .forEach(month -> monthFilterComboBox.getItems().add(month));
+        for (YearMonth month : scheduleIndex.getMonths()) {
+            monthFilterComboBox.getItems().add(month.format(MONTH_KEY_FORMATTER));
+        }
     }
     
     @FXML
@@ -460,18 +530,10 @@ public class ScheduleController {
         // Nếu đang ở calendar view, cập nhật tháng hiển thị
         if (isCalendarView) {
             String selectedMonth = monthFilterComboBox.getSelectionModel().getSelectedItem();
-            if (selectedMonth != null && !"Tất cả tháng".equals(selectedMonth)) {
-                try {
-                    String[] parts = selectedMonth.split("/");
-                    if (parts.length == 2) {
-                        int month = Integer.parseInt(parts[0]);
-                        int year = Integer.parseInt(parts[1]);
-                        currentDisplayMonth = YearMonth.of(year, month);
-                        displayCalendarGridView();
-                    }
-                } catch (Exception e) {
-                    // Ignore
-                }
+            YearMonth month = parseMonthKey(monthFilterComboBox.getSelectionModel().getSelectedItem());
+            if (month != null) {
+                currentDisplayMonth = month;
+                displayCalendarGridView();
             }
         }
     }
@@ -507,7 +569,7 @@ public class ScheduleController {
             currentDisplayMonth = YearMonth.from(today);
             
             // Set filter về tháng và ngày hiện tại
-            String currentMonthKey = currentDisplayMonth.format(DateTimeFormatter.ofPattern("MM/yyyy"));
+            String currentMonthKey = currentDisplayMonth.format(MONTH_KEY_FORMATTER);
             int monthIndex = monthFilterComboBox.getItems().indexOf(currentMonthKey);
             if (monthIndex >= 0) {
                 monthFilterComboBox.getSelectionModel().select(monthIndex);
@@ -517,7 +579,7 @@ public class ScheduleController {
                 monthFilterComboBox.getItems().sort((a, b) -> {
                     if ("Tất cả tháng".equals(a)) return -1;
                     if ("Tất cả tháng".equals(b)) return 1;
-                    return a.compareTo(b);
+                    return parseMonthKey(a).compareTo(parseMonthKey(b)); // Theo thời gian, không theo chuỗi
                 });
                 monthIndex = monthFilterComboBox.getItems().indexOf(currentMonthKey);
                 if (monthIndex >= 0) {
@@ -561,7 +623,7 @@ public class ScheduleController {
             org.example.service.LocalStorageService storage = org.example.service.LocalStorageService.getInstance();
             String monthFilter = monthFilterComboBox.getSelectionModel().getSelectedItem();
             String dateFilter = dateFilterPicker.getValue() != null ? 
-                dateFilterPicker.getValue().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")) : null;
+                dateFilterPicker.getValue().format(DATE_FORMATTER) : null;
             storage.saveFilterState(monthFilter, dateFilter);
         } catch (IOException e) {
             System.err.println("Error saving filter state: " + e.getMessage());
@@ -586,7 +648,7 @@ public class ScheduleController {
                 if (filterState.has("dateFilter")) {
                     String dateStr = filterState.get("dateFilter").getAsString();
                     try {
-                        LocalDate date = LocalDate.parse(dateStr, DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+                        LocalDate date = LocalDate.parse(dateStr, DATE_FORMATTER);
                         dateFilterPicker.setValue(date);
                     } catch (Exception e) {
                         System.err.println("Error parsing saved date: " + e.getMessage());
@@ -599,26 +661,17 @@ public class ScheduleController {
     }
     
     private void applyFilter() {
-        filteredScheduleItems.clear();
-        
-        String selectedMonth = monthFilterComboBox.getSelectionModel().getSelectedItem();
+        YearMonth selectedMonth = parseMonthKey(monthFilterComboBox.getSelectionModel().getSelectedItem());
         LocalDate selectedDate = dateFilterPicker.getValue();
         
-        for (ScheduleItem item : allScheduleItems) {
-            if (item.getDate() == null) continue;
-            
-            // Filter by month
-            boolean monthMatch = selectedMonth == null || 
-                                "Tất cả tháng".equals(selectedMonth) ||
-                                item.getDate().format(DateTimeFormatter.ofPattern("MM/yyyy")).equals(selectedMonth);
-            
-            // Filter by date
-            boolean dateMatch = selectedDate == null || item.getDate().equals(selectedDate);
-            
-            if (monthMatch && dateMatch) {
-                filteredScheduleItems.add(item);
-            }
+        // Giao khoảng ngày của tháng và ngày được chọn rồi cắt trên chỉ mục
+        LocalDate from = selectedMonth != null ? selectedMonth.atDay(1) : null;
+        LocalDate to = selectedMonth != null ? selectedMonth.atEndOfMonth() : null;
+        if (selectedDate != null) {
+            from = from == null || selectedDate.isAfter(from) ? selectedDate : from;
+            to = to == null || selectedDate.isBefore(to) ? selectedDate : to;
         }
+        filteredScheduleItems = from != null && from.isAfter(to) ? Collections.emptyList() : scheduleIndex.between(from, to);
         
         // Cập nhật table
         scheduleTable.getItems().clear();
@@ -653,45 +706,34 @@ public class ScheduleController {
             Platform.runLater(() -> {
                 scrollToMonth(selectedDate);
             });
-        } else if (selectedMonth != null && !"Tất cả tháng".equals(selectedMonth)) {
+        } else if (selectedMonth != null) {
             // Filter theo tháng: scroll đến đầu tháng đó
-            try {
-                String[] parts = selectedMonth.split("/");
-                if (parts.length == 2) {
-                    int month = Integer.parseInt(parts[0]);
-                    int year = Integer.parseInt(parts[1]);
-                    LocalDate monthStart = LocalDate.of(year, month, 1);
-                    Platform.runLater(() -> {
-                        scrollToMonth(monthStart);
-                    });
-                }
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    scrollToTop();
-                });
-            }
+            LocalDate monthStart = selectedMonth.atDay(1);
+            Platform.runLater(() -> {
+                scrollToMonth(monthStart);
+            });
+        }
+    }
+    
+    /**
+     * Chuyển mục "MM/yyyy" của combo box thành YearMonth, null với "Tất cả tháng" hoặc giá trị lạ
+     */
+    private YearMonth parseMonthKey(String monthKey) {
+        if (monthKey == null || "Tất cả tháng".equals(monthKey)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(monthKey, MONTH_KEY_FORMATTER);
+        } catch (DateTimeParseException e) {
+            return null;
         }
     }
     
     private void scrollToTodayOrNearest() {
         LocalDate today = LocalDate.now();
         
-        // Tìm ngày hôm nay trước
-        boolean hasToday = allScheduleItems.stream()
-            .anyMatch(item -> item.getDate() != null && item.getDate().equals(today));
-        
-        LocalDate targetDate;
-        if (hasToday) {
-            // Nếu có lịch hôm nay, scroll đến đầu tháng chứa hôm nay
-            targetDate = today;
-        } else {
-            // Nếu không có lịch hôm nay, tìm ngày gần nhất từ hôm nay trở đi
-            targetDate = allScheduleItems.stream()
-                .filter(item -> item.getDate() != null && !item.getDate().isBefore(today))
-                .map(ScheduleItem::getDate)
-                .min(LocalDate::compareTo)
-                .orElse(null);
-        }
+        // Ngày có lịch gần nhất từ hôm nay trở đi (chính là hôm nay nếu hôm nay có lịch)
+        LocalDate targetDate = scheduleIndex.firstDateOnOrAfter(today);
         
         if (targetDate != null) {
             // Scroll đến đầu tháng chứa ngày này
@@ -716,7 +758,7 @@ public class ScheduleController {
         if (scrollPane == null || container == null) return;
         
         // Lấy tháng từ targetDate
-        String monthKey = targetDate.format(DateTimeFormatter.ofPattern("MM/yyyy"));
+        String monthKey = targetDate.format(MONTH_KEY_FORMATTER);
         VBox targetMonthBox = monthBoxMap.get(monthKey);
         
         if (targetMonthBox == null) return;
@@ -784,13 +826,11 @@ public class ScheduleController {
     
     private LocalDate parseDate(String dateStr) throws DateTimeParseException {
         // Format: dd/MM/yyyy
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-        return LocalDate.parse(dateStr, formatter);
+        return LocalDate.parse(dateStr, DATE_FORMATTER);
     }
     
     private String formatDate(LocalDate date) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-        return date.format(formatter);
+        return date.format(DATE_FORMATTER);
     }
     
     private void displayCalendarView() {
@@ -802,7 +842,7 @@ public class ScheduleController {
         
         // Sử dụng filteredScheduleItems thay vì allScheduleItems
         List<ScheduleItem> itemsToDisplay = filteredScheduleItems.isEmpty() ? 
-            allScheduleItems : filteredScheduleItems;
+            scheduleIndex.all() : filteredScheduleItems;
         
         // Nếu filter theo ngày và không có lịch, hiển thị message
         LocalDate selectedDate = dateFilterPicker.getValue();
@@ -817,20 +857,21 @@ public class ScheduleController {
             return;
         }
         
-        // Group by month
-        Map<String, List<ScheduleItem>> monthlySchedule = new HashMap<>();
-        for (ScheduleItem item : itemsToDisplay) {
-            if (item.getDate() != null) {
-                String monthKey = item.getDate().format(DateTimeFormatter.ofPattern("MM/yyyy"));
-                monthlySchedule.computeIfAbsent(monthKey, k -> new ArrayList<>()).add(item);
+        // Danh sách đã sắp xếp theo ngày: mỗi tháng là một đoạn liên tiếp, cắt theo ranh giới tháng
+        int start = 0;
+        while (start < itemsToDisplay.size()) {
+            YearMonth month = YearMonth.from(itemsToDisplay.get(start).getDate());
+            LocalDate monthEnd = month.atEndOfMonth();
+            int end = start + 1;
+            while (end < itemsToDisplay.size() && !itemsToDisplay.get(end).getDate().isAfter(monthEnd)) {
+                end++;
             }
-        }
-        
-        // Display each month
-        for (Map.Entry<String, List<ScheduleItem>> entry : monthlySchedule.entrySet()) {
-            VBox monthBox = createMonthView(entry.getKey(), entry.getValue());
+            
+            String monthKey = month.format(MONTH_KEY_FORMATTER);
+            VBox monthBox = createMonthView(monthKey, itemsToDisplay.subList(start, end));
             calendarContainer.getChildren().add(monthBox);
-            monthBoxMap.put(entry.getKey(), monthBox);
+            monthBoxMap.put(monthKey, monthBox);
+            start = end;
         }
     }
     
@@ -843,217 +884,42 @@ public class ScheduleController {
             currentDisplayMonth = YearMonth.from(today);
         }
         
-        fullCalendarContainer.getChildren().clear();
-        dayBoxMap.clear();
-        
-        // Hiển thị tất cả lịch học, không cần filter
-        List<ScheduleItem> itemsToDisplay = allScheduleItems;
-        
-        // Lọc các items trong tháng hiện tại
-        List<ScheduleItem> monthItems = new ArrayList<>();
-        for (ScheduleItem item : itemsToDisplay) {
-            if (item.getDate() != null) {
-                YearMonth itemMonth = YearMonth.from(item.getDate());
-                if (itemMonth.equals(currentDisplayMonth)) {
-                    monthItems.add(item);
-                }
-            }
-        }
-        
         // Cập nhật label tháng
         if (currentMonthLabel != null) {
-            String monthName = currentDisplayMonth.format(DateTimeFormatter.ofPattern("MMMM yyyy", java.util.Locale.forLanguageTag("vi")));
+            String monthName = currentDisplayMonth.format(MONTH_TITLE_FORMATTER);
             currentMonthLabel.setText("📅 " + monthName);
         }
         
-        // Hiển thị calendar grid cho tháng hiện tại
-        VBox monthCalendarBox = createMonthCalendarGrid(currentDisplayMonth, monthItems);
-        fullCalendarContainer.getChildren().add(monthCalendarBox);
+        // Hiển thị tất cả lịch học của tháng hiện tại (không theo filter) trên lưới dùng lại
+        monthGrid.show(currentDisplayMonth);
+        if (!fullCalendarContainer.getChildren().contains(monthGrid.getNode())) {
+            fullCalendarContainer.getChildren().setAll(monthGrid.getNode());
+        }
     }
     
-    private VBox createMonthCalendarGrid(YearMonth yearMonth, List<ScheduleItem> items) {
-        VBox monthBox = new VBox(15);
-        monthBox.setPadding(new Insets(20));
-        monthBox.setAlignment(javafx.geometry.Pos.CENTER);
-        monthBox.setStyle("-fx-background-color: linear-gradient(to bottom, #1a1a1a, #0d0d0d); -fx-border-color: #00d4ff; -fx-border-radius: 12; -fx-border-width: 2; -fx-effect: dropshadow(three-pass-box, rgba(0,212,255,0.3), 10, 0, 0, 3);");
-        
-        // Tạo map để nhóm lịch theo ngày
+    /**
+     * Nhóm các buổi học của một tháng theo ngày (dữ liệu cho lưới lịch)
+     */
+    private Map<LocalDate, List<ScheduleItem>> loadMonthItems(YearMonth month) {
         Map<LocalDate, List<ScheduleItem>> dailySchedule = new HashMap<>();
-        for (ScheduleItem item : items) {
-            if (item.getDate() != null) {
-                dailySchedule.computeIfAbsent(item.getDate(), k -> new ArrayList<>()).add(item);
-            }
-        }
-        
-        // Tạo calendar grid
-        GridPane calendarGrid = new GridPane();
-        calendarGrid.setHgap(3);
-        calendarGrid.setVgap(3);
-        calendarGrid.setPadding(new Insets(10));
-        calendarGrid.setStyle("-fx-background-color: #0d0d0d; -fx-background-radius: 8;");
-        
-        // Header cho các ngày trong tuần
-        String[] dayNames = {"Chủ Nhật", "Thứ 2", "Thứ 3", "Thứ 4", "Thứ 5", "Thứ 6", "Thứ 7"};
-        for (int i = 0; i < 7; i++) {
-            Label dayHeader = new Label(dayNames[i]);
-            dayHeader.setStyle("-fx-font-weight: bold; -fx-font-size: 13px; -fx-text-fill: #00d4ff; -fx-padding: 12px; -fx-alignment: center; -fx-background-color: linear-gradient(to bottom, #2a2a2a, #1a1a1a); -fx-background-radius: 6 6 0 0; -fx-border-color: #00d4ff; -fx-border-width: 0 0 1 0;");
-            dayHeader.setMaxWidth(Double.MAX_VALUE);
-            dayHeader.setPrefHeight(45);
-            GridPane.setHgrow(dayHeader, Priority.ALWAYS);
-            calendarGrid.add(dayHeader, i, 0);
-        }
-        
-        // Lấy ngày đầu tiên của tháng và ngày cuối cùng
-        LocalDate firstDay = yearMonth.atDay(1);
-        LocalDate lastDay = yearMonth.atEndOfMonth();
-        
-        // Tìm ngày đầu tiên trong tuần (Chủ Nhật)
-        LocalDate calendarStart = firstDay.with(DayOfWeek.SUNDAY);
-        if (calendarStart.isAfter(firstDay)) {
-            calendarStart = calendarStart.minusWeeks(1);
-        }
-        
-        // Tìm ngày cuối cùng trong tuần (Thứ 7)
-        LocalDate calendarEnd = lastDay.with(DayOfWeek.SATURDAY);
-        if (calendarEnd.isBefore(lastDay)) {
-            calendarEnd = calendarEnd.plusWeeks(1);
-        }
-        
-        LocalDate currentDate = calendarStart;
-        int row = 1;
-        LocalDate today = LocalDate.now();
-        
-        while (!currentDate.isAfter(calendarEnd)) {
-            for (int col = 0; col < 7; col++) {
-                final LocalDate dateForCell = currentDate;
-                List<ScheduleItem> dayItems = dailySchedule.getOrDefault(dateForCell, new ArrayList<>());
-                VBox dayCell = createDayCell(dateForCell, yearMonth, dayItems, dateForCell.equals(today));
-                dayCell.setMaxWidth(Double.MAX_VALUE);
-                dayCell.setPrefHeight(130);
-                GridPane.setHgrow(dayCell, Priority.ALWAYS);
-                
-                // Thêm click handler để hiển thị popup
-                if (!dayItems.isEmpty()) {
-                    final List<ScheduleItem> itemsForDialog = new ArrayList<>(dayItems);
-                    dayCell.setOnMouseClicked(e -> showDayDetailsDialog(dateForCell, itemsForDialog));
-                }
-                
-                calendarGrid.add(dayCell, col, row);
-                
-                currentDate = currentDate.plusDays(1);
-            }
-            row++;
+        for (ScheduleItem item : scheduleIndex.inMonth(month)) {
+            dailySchedule.computeIfAbsent(item.getDate(), k -> new ArrayList<>()).add(item);
         }
-        
-        monthBox.getChildren().add(calendarGrid);
-        return monthBox;
+        return dailySchedule;
     }
     
-    private VBox createDayCell(LocalDate date, YearMonth yearMonth, List<ScheduleItem> items, boolean isToday) {
-        VBox dayCell = new VBox(4);
-        dayCell.setPadding(new Insets(5));
-        dayCell.setAlignment(javafx.geometry.Pos.TOP_CENTER);
-        
-        // Xác định style dựa trên ngày - Theme đen
-        boolean isCurrentMonth = YearMonth.from(date).equals(yearMonth);
-        String backgroundColor = isToday ? "#003d4d" : (isCurrentMonth ? "#1a1a1a" : "#0d0d0d");
-        String borderColor = isToday ? "#00d4ff" : (items.isEmpty() ? "#333333" : "#00d4ff");
-        String textColor = isToday ? "#00d4ff" : (isCurrentMonth ? "#ffffff" : "#666666");
-        int borderWidth = isToday ? 3 : (items.isEmpty() ? 1 : 2);
-        
-        dayCell.setStyle(String.format(
-            "-fx-background-color: %s; -fx-border-color: %s; -fx-border-radius: 6; -fx-border-width: %d;",
-            backgroundColor, borderColor, borderWidth
-        ));
-        
-        // Số ngày
-        Label dayNumber = new Label(String.valueOf(date.getDayOfMonth()));
-        dayNumber.setStyle(String.format(
-            "-fx-font-weight: %s; -fx-font-size: %dpx; -fx-text-fill: %s;",
-            isToday ? "bold" : "normal",
-            isToday ? 16 : 14,
-            textColor
-        ));
-        dayCell.getChildren().add(dayNumber);
-        
-        // Hiển thị số lượng buổi học
-        if (!items.isEmpty()) {
-            // Thêm background highlight cho ngày có lịch - màu xanh cyan nổi bật
-            if (!isToday) {
-                dayCell.setStyle(String.format(
-                    "-fx-background-color: %s; -fx-border-color: %s; -fx-border-radius: 6; -fx-border-width: %d;",
-                    isCurrentMonth ? "#002a33" : "#0d0d0d", "#00d4ff", 2
-                ));
-            }
-            
-            Label countLabel = new Label(items.size() + " buổi");
-            countLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: #00ff88; -fx-font-weight: bold; -fx-background-color: #003d1a; -fx-padding: 2 6 2 6; -fx-background-radius: 10; -fx-border-color: #00ff88; -fx-border-width: 1;");
-            dayCell.getChildren().add(countLabel);
-            
-            // Hiển thị tối đa 2 môn học đầu tiên
-            int maxDisplay = Math.min(items.size(), 2);
-            for (int i = 0; i < maxDisplay; i++) {
-                ScheduleItem item = items.get(i);
-                String subjectText = item.getSubject();
-                if (subjectText.length() > 15) {
-                    subjectText = subjectText.substring(0, 13) + "...";
-                }
-                Label subjectLabel = new Label(subjectText);
-                subjectLabel.setStyle("-fx-font-size: 9px; -fx-text-fill: #00d4ff; -fx-padding: 2 4 2 4; -fx-background-color: #003d4d; -fx-background-radius: 4; -fx-max-width: 100; -fx-border-color: #00d4ff; -fx-border-width: 0.5;");
-                subjectLabel.setWrapText(true);
-                dayCell.getChildren().add(subjectLabel);
-            }
-            
-            if (items.size() > 2) {
-                Label moreLabel = new Label("+" + (items.size() - 2) + " nữa");
-                moreLabel.setStyle("-fx-font-size: 9px; -fx-text-fill: #99a8b8; -fx-font-style: italic;");
-                dayCell.getChildren().add(moreLabel);
-            }
-            
-            // Thêm tooltip với thông tin chi tiết
-            StringBuilder tooltipText = new StringBuilder();
-            tooltipText.append(formatDate(date)).append("\n");
-            tooltipText.append(items.size()).append(" buổi học:\n");
-            for (ScheduleItem item : items) {
-                tooltipText.append("• ").append(item.getTimeRange())
-                    .append(" - ").append(item.getSubject()).append("\n");
-            }
-            Tooltip tooltip = new Tooltip(tooltipText.toString().trim());
-            tooltip.setStyle("-fx-font-size: 11px; -fx-background-color: #1a1a1a; -fx-text-fill: #ffffff;");
-            Tooltip.install(dayCell, tooltip);
-        }
-        
-        // Thêm hover effect và cursor
-        if (!items.isEmpty()) {
-            dayCell.setCursor(javafx.scene.Cursor.HAND);
+    /**
+     * Tooltip của ô ngày: giờ học và tên môn của từng buổi
+     */
+    private String buildDayTooltip(LocalDate date, List<ScheduleItem> items) {
+        StringBuilder tooltipText = new StringBuilder();
+        tooltipText.append(formatDate(date)).append("\n");
+        tooltipText.append(items.size()).append(" buổi học:\n");
+        for (ScheduleItem item : items) {
+            tooltipText.append("• ").append(item.getTimeRange())
+                .append(" - ").append(item.getSubject()).append("\n");
         }
-        
-        dayCell.setOnMouseEntered(e -> {
-            if (!items.isEmpty() || isCurrentMonth) {
-                dayCell.setStyle(String.format(
-                    "-fx-background-color: %s; -fx-border-color: #00ffff; -fx-border-radius: 6; -fx-border-width: 3; -fx-cursor: hand; -fx-effect: dropshadow(three-pass-box, rgba(0,255,255,0.5), 5, 0, 0, 2);",
-                    isToday ? "#003d4d" : (isCurrentMonth ? "#002a33" : "#0d0d0d")
-                ));
-            } else {
-                dayCell.setStyle(String.format(
-                    "-fx-background-color: %s; -fx-border-color: #555555; -fx-border-radius: 6; -fx-border-width: 1;",
-                    isCurrentMonth ? "#2a2a2a" : "#0d0d0d"
-                ));
-            }
-        });
-        
-        dayCell.setOnMouseExited(e -> {
-            String bgColor = isToday ? "#003d4d" : (isCurrentMonth ? (!items.isEmpty() ? "#002a33" : "#1a1a1a") : "#0d0d0d");
-            dayCell.setStyle(String.format(
-                "-fx-background-color: %s; -fx-border-color: %s; -fx-border-radius: 6; -fx-border-width: %d;",
-                bgColor, borderColor, borderWidth
-            ));
-        });
-        
-        // Lưu dayBox vào map để scroll đến đúng ngày
-        dayBoxMap.put(date, dayCell);
-        
-        return dayCell;
+        return tooltipText.toString().trim();
     }
     
     private void showDayDetailsDialog(LocalDate date, List<ScheduleItem> items) {
@@ -11,12 +11,17 @@ import javafx.fxml.FXML;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
+import org.example.config.AppConfig;
 import org.example.model.ScholarshipItem;
 import org.example.service.ApiService;
 import org.example.service.EncryptionService;
+import org.example.service.PublicKeyCache;
+import org.example.service.ResponseCache;
+import org.example.service.RequestScope;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ScholarshipController {
     @FXML
@@ -54,6 +59,9 @@ public class ScholarshipController {
     
     private ApiService apiService;
     private EncryptionService encryptionService;
+    private final PublicKeyCache publicKeyCache = PublicKeyCache.getInstance();
+    private final ResponseCache responseCache = ResponseCache.getInstance();
+    private final RequestScope requestScope = new RequestScope(); // Request của màn hình, hủy khi rời màn hình
     
     @FXML
     public void initialize() {
@@ -252,87 +260,124 @@ public class ScholarshipController {
         statusLabel.setText("Đang tải danh sách học bổng...");
         scholarshipTable.getItems().clear();
         
-        new Thread(() -> {
-            try {
-                // Lấy public key
-                String publicKey = apiService.getPublicKey();
-                encryptionService.setPublicKey(publicKey);
+        // Hiển thị ngay danh sách đã lưu của khóa này (nếu có), đồng thời mã hóa bằng public key
+        // đã cache (tự lấy lại key nếu server không giải mã được) và gọi API; chỉ hiển thị lại
+        // khi danh sách mới khác bản đã lưu
+        String cacheKey = ResponseCache.key(AppConfig.SCHOLARSHIP_FILTER_ENDPOINT, selectedCourse);
+        AtomicBoolean showingCached = new AtomicBoolean(false);
+        requestScope.track(responseCache.load(cacheKey, () -> publicKeyCache.callAsync(() -> {
+                    // Tạo JSON chứa code để mã hóa
+                    JsonObject dataToEncrypt = new JsonObject();
+                    dataToEncrypt.addProperty("code", selectedCourse);
                 
-                // Tạo JSON chứa code để mã hóa
-                JsonObject dataToEncrypt = new JsonObject();
-                dataToEncrypt.addProperty("code", selectedCourse);
+                    String dataString = dataToEncrypt.toString();
                 
-                String dataString = dataToEncrypt.toString();
+                    // Mã hóa bằng hybrid encryption
+                    EncryptionService.EncryptionResult encryptionResult = 
+                        encryptionService.encryptHybrid(dataString);
                 
-                // Mã hóa bằng hybrid encryption
-                EncryptionService.EncryptionResult encryptionResult = 
-                    encryptionService.encryptHybrid(dataString);
-                
-                // Gọi API filter scholarship
-                String response = apiService.filterScholarship(
-                    encryptionResult.getEncryptedKey(),
-                    encryptionResult.getEncryptedData(),
-                    encryptionResult.getIv()
-                );
-                
-                // Parse response
-                JsonElement element = JsonParser.parseString(response);
-                
-                Platform.runLater(() -> {
+                    // Gọi API filter scholarship
+                    return requestScope.track(apiService.filterScholarshipAsync(
+                        encryptionResult.getEncryptedKey(),
+                        encryptionResult.getEncryptedData(),
+                        encryptionResult.getIv()
+                    ));
+                }), cached -> {
                     try {
-                        List<ScholarshipItem> items = new ArrayList<>();
-                        
-                        if (element.isJsonArray()) {
-                            JsonArray array = element.getAsJsonArray();
-                            for (JsonElement jsonElement : array) {
-                                JsonObject obj = jsonElement.getAsJsonObject();
-                                ScholarshipItem item = parseScholarshipItem(obj);
-                                items.add(item);
-                            }
-                        } else if (element.isJsonObject()) {
-                            JsonObject obj = element.getAsJsonObject();
-                            // Nếu response là object chứa array
-                            if (obj.has("data") && obj.get("data").isJsonArray()) {
-                                JsonArray array = obj.getAsJsonArray("data");
-                                for (JsonElement jsonElement : array) {
-                                    JsonObject itemObj = jsonElement.getAsJsonObject();
-                                    ScholarshipItem item = parseScholarshipItem(itemObj);
-                                    items.add(item);
-                                }
-                            } else {
-                                // Thử parse trực tiếp
-                                ScholarshipItem item = parseScholarshipItem(obj);
-                                items.add(item);
+                        List<ScholarshipItem> items = parseScholarshipResponse(cached);
+                        showingCached.set(true);
+                        requestScope.runLater(() -> showScholarshipItems(items));
+                    } catch (RuntimeException e) {
+                        System.err.println("Bỏ qua danh sách học bổng đã lưu không hợp lệ: " + e.getMessage());
+                    }
+                }))
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = RequestScope.unwrap(error);
+                        requestScope.runLater(() -> {
+                            if (showingCached.get()) {
+                                statusLabel.setText(statusLabel.getText() + " (dữ liệu đã lưu, không thể cập nhật)");
+                                return;
                             }
-                        }
-                        
-                        // Tự động đánh số thứ hạng và tính xếp loại
-                        for (int i = 0; i < items.size(); i++) {
-                            ScholarshipItem item = items.get(i);
-                            item.setRank(i + 1); // Đánh số từ 1
-                            item.calculateClassification(); // Tính xếp loại
-                        }
-                        
-                        scholarshipTable.getItems().addAll(items);
-                        statusLabel.setText("Đã tải " + items.size() + " sinh viên");
-                        
+                            statusLabel.setText("Lỗi khi tải danh sách học bổng");
+                            showAlert(Alert.AlertType.ERROR, "Lỗi", 
+                                    "Không thể tải danh sách học bổng: " + cause.getMessage());
+                            cause.printStackTrace();
+                        });
+                        return;
+                    }
+                    if (response == null) {
+                        return; // Không đổi so với bản đang hiển thị
+                    }
+
+                    List<ScholarshipItem> items;
+                    try {
+                        // Parse response
+                        items = parseScholarshipResponse(response);
                     } catch (Exception e) {
-                        statusLabel.setText("Lỗi khi parse dữ liệu");
-                        showAlert(Alert.AlertType.ERROR, "Lỗi", 
-                                "Không thể parse dữ liệu từ server: " + e.getMessage());
-                        e.printStackTrace();
+                        requestScope.runLater(() -> {
+                            statusLabel.setText("Lỗi khi parse dữ liệu");
+                            showAlert(Alert.AlertType.ERROR, "Lỗi", 
+                                    "Không thể parse dữ liệu từ server: " + e.getMessage());
+                            e.printStackTrace();
+                        });
+                        return;
                     }
+                    requestScope.runLater(() -> showScholarshipItems(items));
+                    responseCache.put(cacheKey, response);
                 });
-                
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    statusLabel.setText("Lỗi khi tải danh sách học bổng");
-                    showAlert(Alert.AlertType.ERROR, "Lỗi", 
-                            "Không thể tải danh sách học bổng: " + e.getMessage());
-                    e.printStackTrace();
-                });
+    }
+    
+    /**
+     * Parse danh sách học bổng từ response (chạy trên thread nền)
+     */
+    private List<ScholarshipItem> parseScholarshipResponse(String response) {
+        JsonElement element = JsonParser.parseString(response);
+        List<ScholarshipItem> items = new ArrayList<>();
+        
+        if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            for (JsonElement jsonElement : array) {
+                JsonObject obj = jsonElement.getAsJsonObject();
+                ScholarshipItem item = parseScholarshipItem(obj);
+                items.add(item);
+            }
+        } else if (element.isJsonObject()) {
+            JsonObject obj = element.getAsJsonObject();
+            // Nếu response là object chứa array
+            if (obj.has("data") && obj.get("data").isJsonArray()) {
+                JsonArray array = obj.getAsJsonArray("data");
+                for (JsonElement jsonElement : array) {
+                    JsonObject itemObj = jsonElement.getAsJsonObject();
+                    ScholarshipItem item = parseScholarshipItem(itemObj);
+                    items.add(item);
+                }
+            } else {
+                // Thử parse trực tiếp
+                ScholarshipItem item = parseScholarshipItem(obj);
+                items.add(item);
             }
-        }).start();
+        }
+        
+        // Tự động đánh số thứ hạng và tính xếp loại
+        for (int i = 0; i < items.size(); i++) {
+            ScholarshipItem item = items.get(i);
+            item.setRank(i + 1); // Đánh số từ 1
+            item.calculateClassification(); // Tính xếp loại
+        }
+        return items;
+    }
+    
+    private void showScholarshipItems(List<ScholarshipItem> items) {
+        scholarshipTable.getItems().setAll(items);
+        statusLabel.setText("Đã tải " + items.size() + " sinh viên");
+    }
+    
+    /**
+     * Hủy các request đang chạy khi rời màn hình
+     */
+    public void dispose() {
+        requestScope.cancelAll();
     }
     
     private ScholarshipItem parseScholarshipItem(JsonObject obj) {
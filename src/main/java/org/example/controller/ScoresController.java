@@ -5,12 +5,17 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import javafx.application.Platform;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -24,16 +29,31 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
+import org.example.config.AppConfig;
+import org.example.model.GradingPolicy;
 import org.example.model.ScoreItem;
 import org.example.service.ApiService;
 import org.example.service.EncryptionService;
+import org.example.service.LocalDataCache;
 import org.example.service.LocalStorageService;
+import org.example.service.PublicKeyCache;
+import org.example.service.ResponseCache;
+import org.example.service.RequestScope;
+import org.example.service.ScoreHistory;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ScoresController {
     @FXML
@@ -93,9 +113,18 @@ public class ScoresController {
     @FXML
     private Button virtualScoresButton;
 
+    @FXML
+    private Button historyButton;
+
     private ApiService apiService;
     private EncryptionService encryptionService;
     private LocalStorageService localStorageService;
+    private LocalDataCache localDataCache;
+    private final PublicKeyCache publicKeyCache = PublicKeyCache.getInstance();
+    private final ResponseCache responseCache = ResponseCache.getInstance();
+    private final RequestScope requestScope = new RequestScope(); // Request của màn hình, hủy khi rời màn hình
+    private ScoreHistory scoreHistory; // Lịch sử điểm của sinh viên đang xem
+    private final Set<ScoreItem> recentlyChangedScores = new HashSet<>(); // Các dòng vừa có điểm mới
 
     // Màu sắc cho điểm số dựa trên giá trị
     private String getScoreColor(double score) {
@@ -125,6 +154,7 @@ public class ScoresController {
         apiService = ApiService.getInstance();
         encryptionService = EncryptionService.getInstance();
         localStorageService = LocalStorageService.getInstance();
+        localDataCache = LocalDataCache.getInstance();
 
         // Setup công thức tính GPA
         if (formulaLabel != null) {
@@ -228,6 +258,8 @@ public class ScoresController {
 
                     if (item.isFailed()) {
                         setStyle("-fx-background-color: #F30024FF; -fx-background-insets: 0;");
+                    } else if (recentlyChangedScores.contains(item)) {
+                        setStyle("-fx-background-color: #1b5e20; -fx-background-insets: 0;");
                     } else if (item.isRecentSemester()) {
                         // setStyle("-fx-background-color: #fff9c4; -fx-background-insets: 0;");
                     } else {
@@ -295,7 +327,12 @@ public class ScoresController {
         }
     }
 
-    public void loadScores() {
+    /**
+     * Tải bảng điểm (hiển thị bản đã lưu trước nếu có).
+     *
+     * @return future hoàn thành khi đã có dữ liệu mới từ server, lỗi nếu không lấy được
+     */
+    public CompletableFuture<Void> loadScores() {
         // statusLabel.setText("Đang tải điểm thi...");
         scoresTable.getItems().clear();
         name.setText("");
@@ -309,184 +346,329 @@ public class ScoresController {
                     "GPA tính theo các môn kì gần nhất, CPA tính theo tất cả các môn học");
         }
 
-        new Thread(() -> {
-            try {
-                // Load credentials từ local storage
-                JsonObject credentials = localStorageService.loadCredentials();
-                if (credentials == null) {
-                    Platform.runLater(() -> {
-                        showAlert(Alert.AlertType.ERROR, "Lỗi",
-                                "Không tìm thấy thông tin đăng nhập. Vui lòng đăng nhập lại.");
-                        handleBack();
-                    });
-                    return;
-                }
+        // Load credentials từ local storage
+        String studentCode;
+        try {
+            JsonObject credentials = localDataCache.get(LocalDataCache.CREDENTIALS);
+            if (credentials == null) {
+                // Đợi màn hình được gắn vào scene rồi mới quay lại
+                Platform.runLater(() -> {
+                    showAlert(Alert.AlertType.ERROR, "Lỗi",
+                            "Không tìm thấy thông tin đăng nhập. Vui lòng đăng nhập lại.");
+                    handleBack();
+                });
+                return CompletableFuture.failedFuture(new IOException("Không tìm thấy thông tin đăng nhập"));
+            }
 
-                // Lấy studentCode từ student info
-                JsonObject studentInfo = localStorageService.loadStudentInfo();
-                if (studentInfo == null || !studentInfo.has("student_code")) {
-                    Platform.runLater(() -> {
-                        showAlert(Alert.AlertType.ERROR, "Lỗi",
-                                "Không tìm thấy mã sinh viên. Vui lòng đăng nhập lại.");
-                        handleBack();
-                    });
-                    return;
+            // Lấy studentCode từ student info
+            JsonObject studentInfo = localDataCache.get(LocalDataCache.STUDENT_INFO);
+            if (studentInfo == null || !studentInfo.has("student_code")) {
+                // Đợi màn hình được gắn vào scene rồi mới quay lại
+                Platform.runLater(() -> {
+                    showAlert(Alert.AlertType.ERROR, "Lỗi",
+                            "Không tìm thấy mã sinh viên. Vui lòng đăng nhập lại.");
+                    handleBack();
+                });
+                return CompletableFuture.failedFuture(new IOException("Không tìm thấy mã sinh viên"));
+            }
+
+            studentCode = studentInfo.get("student_code").getAsString();
+            scoreHistory = ScoreHistory.forStudent(studentCode);
+        } catch (IOException e) {
+            showAlert(Alert.AlertType.ERROR, "Lỗi", "Không thể tải điểm thi: " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // Hiển thị ngay bảng điểm đã lưu (nếu có), đồng thời mã hóa studentCode bằng public key
+        // đã cache và gọi API điểm thi; chỉ vẽ lại khi dữ liệu mới khác bản đã lưu
+        String cacheKey = ResponseCache.key(AppConfig.SCORES_ENDPOINT, studentCode);
+        ScoreHistory history = scoreHistory;
+        AtomicBoolean showingCached = new AtomicBoolean(false);
+        CompletableFuture<Void> loaded = requestScope.track(responseCache.load(cacheKey, () -> publicKeyCache.callAsync(() -> {
+                    // Tạo JSON chứa studentCode để mã hóa
+                    JsonObject dataToEncrypt = new JsonObject();
+                    dataToEncrypt.addProperty("studentCode", studentCode);
+
+                    String dataString = dataToEncrypt.toString();
+
+                    // Mã hóa bằng hybrid encryption
+                    EncryptionService.EncryptionResult encryptionResult = encryptionService.encryptHybrid(dataString);
+
+                    // Gọi API điểm thi
+                    return requestScope.track(apiService.getScoresAsync(
+                            encryptionResult.getEncryptedKey(),
+                            encryptionResult.getEncryptedData(),
+                            encryptionResult.getIv()));
+                }), cached -> {
+                    try {
+                        ScoresResult result = parseScoresResponse(cached, false);
+                        // Bản đã lưu cũng là một lần đồng bộ trước đó (trùng thì không ghi thêm)
+                        recordHistory(history, result);
+                        showingCached.set(true);
+                        requestScope.runLater(() -> showScores(result));
+                    } catch (RuntimeException e) {
+                        System.err.println("Bỏ qua bảng điểm đã lưu không hợp lệ: " + e.getMessage());
+                    }
+                }))
+                .thenAccept(response -> {
+                    if (response == null) {
+                        return; // Không đổi so với bản đang hiển thị
+                    }
+                    ScoresResult result = parseScoresResponse(response, true);
+                    ScoreHistory.Diff changes = recordHistory(history, result);
+                    requestScope.runLater(() -> showUpdatedScores(result, changes));
+                    responseCache.put(cacheKey, response);
+                });
+        loaded.exceptionally(error -> {
+            Throwable cause = RequestScope.unwrap(error);
+            if (showingCached.get()) {
+                // Vẫn đang hiển thị bản đã lưu, không làm phiền người dùng
+                System.err.println("Không thể làm mới điểm thi: " + cause.getMessage());
+                return null;
+            }
+            requestScope.runLater(() -> {
+                // statusLabel.setText("Lỗi khi tải điểm thi");
+                showAlert(Alert.AlertType.ERROR, "Lỗi",
+                        "Không thể tải điểm thi: " + cause.getMessage());
+                cause.printStackTrace();
+            });
+            return null;
+        });
+        return loaded;
+    }
+
+    /**
+     * Parse response điểm thi và tính GPA/CPA (trên thread nền).
+     * Bảng điểm mới lấy từ server được lưu backup để khôi phục trong VirtualScoresController.
+     */
+    private ScoresResult parseScoresResponse(String response, boolean saveBackup) {
+        // Parse response
+        JsonObject jsonResponse = JsonParser.parseString(response).getAsJsonObject();
+
+        // Kiểm tra code nếu có
+        if (jsonResponse.has("code")) {
+            String code = jsonResponse.get("code").getAsString();
+            if (!"200".equals(code)) {
+                String message = jsonResponse.has("message") ? jsonResponse.get("message").getAsString()
+                        : "Không thể tải điểm thi";
+                throw new CompletionException(new IOException(message));
+            }
+        }
+
+        // Lấy dữ liệu từ response
+        JsonObject listScoreDTO = jsonResponse.has("listScoreDTO")
+                ? jsonResponse.getAsJsonObject("listScoreDTO")
+                : null;
+        JsonArray subjectDTOS = jsonResponse.has("subjectDTOS")
+                ? jsonResponse.getAsJsonArray("subjectDTOS")
+                : null;
+
+        // Tạo set các môn học kì gần nhất để highlight
+        Set<String> recentSemesterSubjects = new HashSet<>();
+        if (subjectDTOS != null) {
+            for (JsonElement element : subjectDTOS) {
+                JsonObject subjectObj = element.getAsJsonObject();
+                if (subjectObj.has("subjectName") && !subjectObj.get("subjectName").isJsonNull()) {
+                    recentSemesterSubjects.add(subjectObj.get("subjectName").getAsString());
                 }
+            }
+        }
 
-                String studentCode = studentInfo.get("student_code").getAsString();
+        // Parse student info
+        String studentName = "";
+        String studentCodeDisplay = "";
+        String studentClass = "";
+        if (listScoreDTO != null && listScoreDTO.has("studentDTO")) {
+            JsonObject studentDTO = listScoreDTO.getAsJsonObject("studentDTO");
+            studentName = getStringValue(studentDTO, "studentName");
+            studentCodeDisplay = getStringValue(studentDTO, "studentCode");
+            studentClass = getStringValue(studentDTO, "studentClass");
+        }
 
-                // Lấy public key
-                String publicKey = apiService.getPublicKey();
-                encryptionService.setPublicKey(publicKey);
+        // Parse scores
+        JsonArray scoreDTOS = (listScoreDTO != null && listScoreDTO.has("scoreDTOS"))
+                ? listScoreDTO.getAsJsonArray("scoreDTOS")
+                : null;
+
+        List<ScoreItem> allScores = new ArrayList<>();
+        List<ScoreItem> recentSemesterScores = new ArrayList<>();
+        if (scoreDTOS != null) {
+            for (JsonElement element : scoreDTOS) {
+                JsonObject scoreObj = element.getAsJsonObject();
+                ScoreItem scoreItem = parseScoreItem(scoreObj);
+
+                // Đảm bảo tính điểm chữ nếu chưa có
+                scoreItem.ensureScoreText();
+
+                // Đánh dấu môn học kì gần nhất
+                if (recentSemesterSubjects.contains(scoreItem.getSubjectName())) {
+                    scoreItem.setRecentSemester(true);
+                    recentSemesterScores.add(scoreItem);
+                }
 
-                // Tạo JSON chứa studentCode để mã hóa
-                JsonObject dataToEncrypt = new JsonObject();
-                dataToEncrypt.addProperty("studentCode", studentCode);
+                // Kiểm tra môn trượt
+                if (scoreItem.checkFailed()) {
+                    scoreItem.setFailed(true);
+                }
 
-                String dataString = dataToEncrypt.toString();
+                allScores.add(scoreItem);
+            }
+        }
 
-                // Mã hóa bằng hybrid encryption
-                EncryptionService.EncryptionResult encryptionResult = encryptionService.encryptHybrid(dataString);
+        // Lưu backup scores để có thể restore trong VirtualScoresController
+        if (saveBackup) {
+            try {
+                localStorageService.saveBackupScores(allScores);
+            } catch (Exception e) {
+                System.err.println("Không thể lưu backup scores: " + e.getMessage());
+            }
+        }
 
-                // Gọi API điểm thi
-                String response = apiService.getScores(
-                        encryptionResult.getEncryptedKey(),
-                        encryptionResult.getEncryptedData(),
-                        encryptionResult.getIv());
+        // GPA tính theo môn kì gần nhất, CPA tính theo tất cả
+        return new ScoresResult(studentName, studentCodeDisplay, studentClass, allScores,
+                calculateGPA(recentSemesterScores), calculateCPA(allScores));
+    }
 
-                // Parse response
-                JsonObject jsonResponse = JsonParser.parseString(response).getAsJsonObject();
+    /**
+     * Ghi bảng điểm vào lịch sử, trả về thay đổi so với bản gần nhất (null nếu không ghi được)
+     */
+    private ScoreHistory.Diff recordHistory(ScoreHistory history, ScoresResult result) {
+        try {
+            return history.record(result.scores, result.gpa, result.cpa);
+        } catch (IOException e) {
+            System.err.println("Không thể lưu lịch sử điểm: " + e.getMessage());
+            return null;
+        }
+    }
 
-                // Kiểm tra code nếu có
-                if (jsonResponse.has("code")) {
-                    String code = jsonResponse.get("code").getAsString();
-                    if (!"200".equals(code)) {
-                        String message = jsonResponse.has("message") ? jsonResponse.get("message").getAsString()
-                                : "Không thể tải điểm thi";
-                        throw new IOException(message);
-                    }
+    /**
+     * Gắn bảng điểm mới từ server: nếu bảng đang hiển thị đúng bản gần nhất trong lịch sử và chỉ
+     * có môn đổi điểm thì chỉ thay các dòng đó; thêm/bớt môn hoặc đổi đánh dấu kì gần nhất/trượt
+     * thì vẽ lại cả bảng. Các môn mới có điểm được tô màu.
+     */
+    private void showUpdatedScores(ScoresResult result, ScoreHistory.Diff changes) {
+        ObservableList<ScoreItem> rows = scoresTable.getItems();
+        Map<String, ScoreItem> freshScores = ScoreHistory.keyed(result.scores);
+        boolean firstSync = changes == null || changes.getSince() == 0;
+        if (firstSync || !changes.getAdded().isEmpty() || !changes.getRemoved().isEmpty()
+                || rows.size() != result.scores.size() || flagsChanged(rows, freshScores)) {
+            recentlyChangedScores.clear();
+            showScores(result);
+        } else {
+            List<String> rowKeys = new ArrayList<>(ScoreHistory.keyed(rows).keySet());
+            recentlyChangedScores.clear();
+            for (String key : changes.getChanged()) {
+                int index = rowKeys.indexOf(key);
+                if (index >= 0) {
+                    rows.set(index, freshScores.get(key));
                 }
+            }
+            gpaLabel.setText(String.format("%.2f", result.gpa));
+            cpaLabel.setText(String.format("%.2f", result.cpa));
+        }
 
-                // Lấy dữ liệu từ response
-                JsonObject listScoreDTO = jsonResponse.has("listScoreDTO")
-                        ? jsonResponse.getAsJsonObject("listScoreDTO")
-                        : null;
-                JsonArray subjectDTOS = jsonResponse.has("subjectDTOS")
-                        ? jsonResponse.getAsJsonArray("subjectDTOS")
-                        : null;
-
-                // Tạo set các môn học kì gần nhất để highlight
-                Set<String> recentSemesterSubjects = new HashSet<>();
-                if (subjectDTOS != null) {
-                    for (JsonElement element : subjectDTOS) {
-                        JsonObject subjectObj = element.getAsJsonObject();
-                        if (subjectObj.has("subjectName") && !subjectObj.get("subjectName").isJsonNull()) {
-                            recentSemesterSubjects.add(subjectObj.get("subjectName").getAsString());
-                        }
-                    }
-                }
+        if (firstSync || changes.isEmpty()) {
+            return;
+        }
+        List<String> updatedKeys = new ArrayList<>(changes.getAdded());
+        updatedKeys.addAll(changes.getChanged());
+        for (String key : updatedKeys) {
+            recentlyChangedScores.add(freshScores.get(key));
+        }
+        scoresTable.refresh();
+        if (!updatedKeys.isEmpty()) {
+            showAlert(Alert.AlertType.INFORMATION, "Điểm mới",
+                    "Có " + updatedKeys.size() + " môn có điểm mới:\n" + String.join("\n", updatedKeys));
+        }
+    }
 
-                // Parse student info
-                String studentName = "";
-                String studentCodeDisplay = "";
-                String studentClass = "";
-                if (listScoreDTO != null && listScoreDTO.has("studentDTO")) {
-                    JsonObject studentDTO = listScoreDTO.getAsJsonObject("studentDTO");
-                    studentName = getStringValue(studentDTO, "studentName");
-                    studentCodeDisplay = getStringValue(studentDTO, "studentCode");
-                    studentClass = getStringValue(studentDTO, "studentClass");
-                }
+    /**
+     * Có dòng nào đang hiển thị khác bảng điểm mới ở đánh dấu kì gần nhất/trượt (quyết định cách tô màu dòng)
+     */
+    private static boolean flagsChanged(List<ScoreItem> rows, Map<String, ScoreItem> freshScores) {
+        for (Map.Entry<String, ScoreItem> entry : ScoreHistory.keyed(rows).entrySet()) {
+            ScoreItem fresh = freshScores.get(entry.getKey());
+            if (fresh == null || fresh.isRecentSemester() != entry.getValue().isRecentSemester()
+                    || fresh.isFailed() != entry.getValue().isFailed()) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                // Parse scores
-                final JsonArray scoreDTOS = (listScoreDTO != null && listScoreDTO.has("scoreDTOS"))
-                        ? listScoreDTO.getAsJsonArray("scoreDTOS")
-                        : null;
+    /**
+     * Biểu đồ GPA/CPA qua các lần bảng điểm thay đổi (lấy từ lịch sử local, không gọi server)
+     */
+    @FXML
+    private void showScoreTrend() {
+        List<ScoreHistory.Point> trajectory;
+        try {
+            trajectory = scoreHistory != null ? scoreHistory.trajectory() : Collections.emptyList();
+        } catch (IOException e) {
+            showAlert(Alert.AlertType.ERROR, "Lỗi", "Không thể đọc lịch sử điểm: " + e.getMessage());
+            return;
+        }
+        if (trajectory.isEmpty()) {
+            showAlert(Alert.AlertType.INFORMATION, "Thông báo", "Chưa có lịch sử điểm.");
+            return;
+        }
 
-                final String finalStudentName = studentName;
-                final String finalStudentCode = studentCodeDisplay;
-                final String finalStudentClass = studentClass;
-                final Set<String> finalRecentSemesterSubjects = recentSemesterSubjects;
+        Stage popupStage = new Stage();
+        popupStage.initModality(Modality.WINDOW_MODAL);
+        popupStage.initOwner(historyButton.getScene().getWindow());
+        popupStage.initStyle(StageStyle.DECORATED);
+        popupStage.setTitle("Lịch sử GPA/CPA");
 
-                Platform.runLater(() -> {
-                    // Hiển thị thông tin sinh viên
-                    StringBuilder studentInfoText = new StringBuilder();
-                    if (!finalStudentName.isEmpty()) {
-                        studentInfoText.append("Họ tên: ").append(finalStudentName);
-                    }
-                    if (!finalStudentCode.isEmpty()) {
-                        if (studentInfoText.length() > 0)
-                            studentInfoText.append(" | ");
-                        studentInfoText.append("Mã SV: ").append(finalStudentCode);
-                    }
-                    if (!finalStudentClass.isEmpty()) {
-                        if (studentInfoText.length() > 0)
-                            studentInfoText.append(" | ");
-                        studentInfoText.append("Lớp: ").append(finalStudentClass);
-                    }
-                    // studentInfoLabel.setText(studentInfoText.toString());
-                    this.name.setText(finalStudentName);
-                    this.studentId.setText(finalStudentCode);
-                    this.sClass.setText(finalStudentClass);
-
-                    List<ScoreItem> allScores = new ArrayList<>();
-                    List<ScoreItem> recentSemesterScores = new ArrayList<>();
-
-                    // Parse và hiển thị điểm
-                    if (scoreDTOS != null) {
-                        for (JsonElement element : scoreDTOS) {
-                            JsonObject scoreObj = element.getAsJsonObject();
-                            ScoreItem scoreItem = parseScoreItem(scoreObj);
-
-                            // Đảm bảo tính điểm chữ nếu chưa có
-                            scoreItem.ensureScoreText();
-
-                            // Đánh dấu môn học kì gần nhất
-                            if (finalRecentSemesterSubjects.contains(scoreItem.getSubjectName())) {
-                                scoreItem.setRecentSemester(true);
-                                recentSemesterScores.add(scoreItem);
-                            }
-
-                            // Kiểm tra môn trượt
-                            if (scoreItem.checkFailed()) {
-                                scoreItem.setFailed(true);
-                            }
-
-                            allScores.add(scoreItem);
-                            scoresTable.getItems().add(scoreItem);
-                        }
-                    }
+        VBox root = new VBox(15);
+        root.setPadding(new Insets(25));
+        root.setStyle("-fx-background-color: #1a1a1a;");
 
-                    // Tính GPA (theo môn kì gần nhất)
-                    double gpa = calculateGPA(recentSemesterScores);
-                    gpaLabel.setText(String.format("%.2f", gpa));
+        Label titleLabel = new Label("📈 GPA/CPA qua các lần cập nhật điểm");
+        titleLabel.setStyle("-fx-font-size: 20px; -fx-font-weight: bold; -fx-text-fill: white;");
 
-                    // Tính CPA (tổng tất cả)
-                    double cpa = calculateCPA(allScores);
-                    cpaLabel.setText(String.format("%.2f", cpa));
+        CategoryAxis timeAxis = new CategoryAxis();
+        NumberAxis scoreAxis = new NumberAxis(0, 4, 0.5);
+        LineChart<String, Number> chart = new LineChart<>(timeAxis, scoreAxis);
+        chart.setAnimated(false);
+        chart.setStyle("-fx-background-color: #1a1a1a;");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm").withZone(ZoneId.systemDefault());
+        XYChart.Series<String, Number> gpaSeries = new XYChart.Series<>();
+        gpaSeries.setName("GPA");
+        XYChart.Series<String, Number> cpaSeries = new XYChart.Series<>();
+        cpaSeries.setName("CPA");
+        for (ScoreHistory.Point point : trajectory) {
+            String time = formatter.format(Instant.ofEpochMilli(point.getTimestamp()));
+            gpaSeries.getData().add(new XYChart.Data<>(time, point.getGpa()));
+            cpaSeries.getData().add(new XYChart.Data<>(time, point.getCpa()));
+        }
+        chart.getData().add(gpaSeries);
+        chart.getData().add(cpaSeries);
 
-                    // Lưu backup scores để có thể restore trong VirtualScoresController
-                    try {
-                        JsonObject backupData = new JsonObject();
-                        backupData.add("scoreDTOS", scoreDTOS);
-                        localStorageService.saveBackupScores(backupData.toString());
-                    } catch (Exception e) {
-                        System.err.println("Không thể lưu backup scores: " + e.getMessage());
-                    }
+        root.getChildren().addAll(titleLabel, chart);
+        popupStage.setScene(new Scene(root, 800, 500));
+        popupStage.showAndWait();
+    }
 
-                    // statusLabel.setText("Đã tải " + scoresTable.getItems().size() + " môn học");
-                    this.subject.setText(String.valueOf(scoresTable.getItems().size())); // You may want to set this to
-                                                                                         // an appropriate value
-                });
+    /**
+     * Gắn bảng điểm đã tính xong lên UI trong một lần
+     */
+    private void showScores(ScoresResult result) {
+        this.name.setText(result.studentName);
+        this.studentId.setText(result.studentCode);
+        this.sClass.setText(result.studentClass);
+
+        scoresTable.getItems().setAll(result.scores);
+        gpaLabel.setText(String.format("%.2f", result.gpa));
+        cpaLabel.setText(String.format("%.2f", result.cpa));
+        this.subject.setText(String.valueOf(result.scores.size()));
+    }
 
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    // statusLabel.setText("Lỗi khi tải điểm thi");
-                    showAlert(Alert.AlertType.ERROR, "Lỗi",
-                            "Không thể tải điểm thi: " + e.getMessage());
-                    e.printStackTrace();
-                });
-            }
-        }).start();
+    /**
+     * Hủy các request đang chạy khi rời màn hình
+     */
+    public void dispose() {
+        requestScope.cancelAll();
     }
 
     /**
@@ -501,7 +683,7 @@ public class ScoresController {
         int totalCredits = 0;
 
         for (ScoreItem item : recentSemesterScores) {
-            double score4 = ScoreItem.convertToScale4(item.getScoreOverall());
+            double score4 = GradingPolicy.current().toScale4(item.getScoreOverall());
             int credit = item.getSubjectCredit();
 
             if (credit > 0) {
@@ -525,7 +707,7 @@ public class ScoresController {
         int totalCredits = 0;
 
         for (ScoreItem item : allScores) {
-            double score4 = ScoreItem.convertToScale4(item.getScoreOverall());
+            double score4 = GradingPolicy.current().toScale4(item.getScoreOverall());
             int credit = item.getSubjectCredit();
 
             if (credit > 0) {
@@ -608,20 +790,12 @@ public class ScoresController {
 
         tableContainer.getChildren().add(headerRow);
 
-        // Data rows
-        String[][] data = {
-                { "9.0 - 10.0", "4", "A+", "Xuất sắc" },
-                { "8.5 - 8.9", "3.8", "A", "Giỏi" },
-                { "7.8 - 8.4", "3.5", "B+", "Khá" },
-                { "7.0 - 7.7", "3", "B", "Khá" },
-                { "6.3 - 6.9", "2.4", "C+", "Trung bình" },
-                { "5.5 - 6.2", "2", "C", "Trung bình" },
-                { "4.8 - 5.4", "1.5", "D+", "Trung bình yếu" },
-                { "4.0 - 4.7", "1", "D", "Trung bình yếu" },
-                { "0.0 - 3.9", "0", "F", "Kém" }
-        };
-
-        for (int i = 0; i < data.length; i++) {
+        // Data rows (lấy từ quy chế hiện hành để khớp với cách tính điểm)
+        List<GradingPolicy.Grade> grades = GradingPolicy.current().getGrades();
+        for (int i = 0; i < grades.size(); i++) {
+            GradingPolicy.Grade grade = grades.get(i);
+            String[] cells = { grade.getRangeText(), grade.getPoints4Text(), grade.getLetter(),
+                    grade.getClassification() };
             HBox dataRow = new HBox();
             dataRow.setPadding(new Insets(10, 12, 10, 12));
             dataRow.setSpacing(10);
@@ -631,7 +805,7 @@ public class ScoresController {
                 dataRow.setStyle("-fx-background-color: #1a1a1a;");
             }
 
-            for (String cell : data[i]) {
+            for (String cell : cells) {
                 Label cellLabel = new Label(cell);
                 cellLabel.setStyle("-fx-text-fill: white; -fx-font-size: 12px;");
                 cellLabel.setPrefWidth(120);
@@ -719,4 +893,26 @@ public class ScoresController {
         alert.setContentText(message);
         alert.showAndWait();
     }
+
+    /**
+     * Bảng điểm đã parse và tính toán xong trên thread nền
+     */
+    private static final class ScoresResult {
+        private final String studentName;
+        private final String studentCode;
+        private final String studentClass;
+        private final List<ScoreItem> scores;
+        private final double gpa;
+        private final double cpa;
+
+        private ScoresResult(String studentName, String studentCode, String studentClass, List<ScoreItem> scores,
+                double gpa, double cpa) {
+            this.studentName = studentName;
+            this.studentCode = studentCode;
+            this.studentClass = studentClass;
+            this.scores = Collections.unmodifiableList(scores);
+            this.gpa = gpa;
+            this.cpa = cpa;
+        }
+    }
 }
@@ -0,0 +1,169 @@
+package org.example.controller;
+
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Giữ các màn hình con của màn hình chính (node gốc + controller) đã load để dùng lại.
+ * Chuyển tab không phải parse lại FXML, áp CSS và gọi lại API; số màn hình được giữ có giới hạn,
+ * màn hình lâu không dùng nhất bị dispose khi vượt giới hạn.
+ * Mỗi màn hình nhớ thời điểm tải dữ liệu thành công, quá STALE_AFTER_MS thì coi là cũ và cần tải lại;
+ * lần tải lỗi không được tính, mở lại màn hình sẽ tải lại ngay.
+ * Chỉ dùng trên JavaFX Application Thread (controller chạm vào UI ngay trong initialize).
+ */
+public final class ScreenRegistry {
+    private static final int MAX_SCREENS = 3;
+    private static final long STALE_AFTER_MS = 10 * 60 * 1000L; // 10 phút
+
+    public static final Screen<ScheduleController> SCHEDULE =
+            new Screen<>("/fxml/ScheduleScreen.fxml", ScheduleController::dispose);
+    public static final Screen<VirtualScheduleController> VIRTUAL_SCHEDULE =
+            new Screen<>("/fxml/VirtualScheduleScreen.fxml", VirtualScheduleController::dispose);
+    public static final Screen<ScoresController> SCORES =
+            new Screen<>("/fxml/ScoresScreen.fxml", ScoresController::dispose);
+    public static final Screen<ScholarshipController> SCHOLARSHIP =
+            new Screen<>("/fxml/ScholarshipScreen.fxml", ScholarshipController::dispose);
+
+    private static ScreenRegistry instance;
+
+    // Thứ tự truy cập: phần tử đầu là màn hình lâu không dùng nhất
+    private final Map<Screen<?>, Loaded<?>> screens = new LinkedHashMap<>(8, 0.75f, true);
+
+    private ScreenRegistry() {
+    }
+
+    public static ScreenRegistry getInstance() {
+        if (instance == null) {
+            instance = new ScreenRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Lấy màn hình đã load, hoặc load FXML nếu chưa có
+     */
+    @SuppressWarnings("unchecked")
+    public <C> Loaded<C> get(Screen<C> screen) throws IOException {
+        Loaded<C> loaded = (Loaded<C>) screens.get(screen);
+        if (loaded != null) {
+            return loaded;
+        }
+
+        FXMLLoader loader = new FXMLLoader(ScreenRegistry.class.getResource(screen.fxmlPath));
+        Parent root = loader.load();
+        loaded = new Loaded<>(screen, root, loader.getController());
+        screens.put(screen, loaded);
+        evictOverflow();
+        return loaded;
+    }
+
+    /**
+     * Load trước một màn hình ở lượt chạy kế tiếp của FX thread (sau khi màn hình hiện tại đã vẽ).
+     * Bỏ qua nếu màn hình đã có; onLoaded (có thể null) được gọi khi vừa load xong.
+     */
+    public <C> void preload(Screen<C> screen, Consumer<Loaded<C>> onLoaded) {
+        Platform.runLater(() -> {
+            if (screens.containsKey(screen)) {
+                return;
+            }
+            try {
+                Loaded<C> loaded = get(screen);
+                if (onLoaded != null) {
+                    onLoaded.accept(loaded);
+                }
+            } catch (IOException e) {
+                System.err.println("Error preloading " + screen.fxmlPath + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Dispose và bỏ tất cả màn hình (đăng xuất)
+     */
+    public void clear() {
+        for (Loaded<?> loaded : screens.values()) {
+            loaded.dispose();
+        }
+        screens.clear();
+    }
+
+    private void evictOverflow() {
+        Iterator<Loaded<?>> iterator = screens.values().iterator();
+        while (screens.size() > MAX_SCREENS && iterator.hasNext()) {
+            Loaded<?> eldest = iterator.next();
+            iterator.remove();
+            eldest.dispose();
+        }
+    }
+
+    /**
+     * Một loại màn hình: file FXML và cách hủy request của controller
+     */
+    public static final class Screen<C> {
+        private final String fxmlPath;
+        private final Consumer<C> disposer;
+
+        private Screen(String fxmlPath, Consumer<C> disposer) {
+            this.fxmlPath = fxmlPath;
+            this.disposer = disposer;
+        }
+    }
+
+    /**
+     * Màn hình đã load: node gốc, controller và thời điểm tải dữ liệu gần nhất
+     */
+    public static final class Loaded<C> {
+        private final Screen<C> screen;
+        private final Parent root;
+        private final C controller;
+        private long dataLoadedAt = 0;
+        private boolean loading = false; // Đang có một lần tải dữ liệu chưa xong
+
+        private Loaded(Screen<C> screen, Parent root, C controller) {
+            this.screen = screen;
+            this.root = root;
+            this.controller = controller;
+        }
+
+        public Parent getRoot() {
+            return root;
+        }
+
+        public C getController() {
+            return controller;
+        }
+
+        /**
+         * Chưa tải dữ liệu hoặc dữ liệu đã cũ (và không có lần tải nào đang chạy)
+         */
+        public boolean needsData() {
+            return !loading
+                    && (dataLoadedAt == 0 || System.currentTimeMillis() - dataLoadedAt > STALE_AFTER_MS);
+        }
+
+        /**
+         * Theo dõi một lần tải dữ liệu: chỉ đánh dấu đã tải khi future hoàn thành thành công
+         */
+        public void trackDataLoad(CompletableFuture<?> load) {
+            loading = true;
+            load.whenComplete((result, error) -> Platform.runLater(() -> {
+                loading = false;
+                if (error == null) {
+                    dataLoadedAt = System.currentTimeMillis();
+                }
+            }));
+        }
+
+        private void dispose() {
+            screen.disposer.accept(controller);
+        }
+    }
+}
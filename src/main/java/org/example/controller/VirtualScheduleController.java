@@ -1,9 +1,6 @@
 package org.example.controller;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -18,12 +15,20 @@ import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
-import java.time.DayOfWeek;
 import java.time.YearMonth;
+import org.example.config.AppConfig;
 import org.example.model.VirtualCourse;
 import org.example.service.ApiService;
+import org.example.service.CourseSearchIndex;
 import org.example.service.EncryptionService;
+import org.example.service.LocalDataCache;
 import org.example.service.LocalStorageService;
+import org.example.service.PublicKeyCache;
+import org.example.service.ResponseCache;
+import org.example.service.RequestScope;
+import org.example.service.ScheduleConflictIndex;
+import org.example.service.TimetableOptimizer;
+import org.example.service.VirtualCalendarDecoder;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -31,9 +36,11 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public class VirtualScheduleController {
@@ -44,10 +51,10 @@ public class VirtualScheduleController {
     private ComboBox<String> subjectComboBox;
 
     @FXML
-    private ScrollPane coursesScrollPane;
+    private TextField searchField;
 
     @FXML
-    private VBox coursesContainer;
+    private ListView<VirtualCourse> coursesListView;
 
     @FXML
     private ScrollPane selectedScheduleScrollPane;
@@ -70,6 +77,9 @@ public class VirtualScheduleController {
     @FXML
     private Button toggleInfoButton;
 
+    @FXML
+    private Button autoScheduleButton;
+
     @FXML
     private SplitPane mainSplitPane;
 
@@ -127,13 +137,31 @@ public class VirtualScheduleController {
     private ApiService apiService;
     private EncryptionService encryptionService;
     private LocalStorageService localStorageService;
+    private LocalDataCache localDataCache;
+    private final RequestScope requestScope = new RequestScope(); // Request của màn hình, hủy khi rời màn hình
 
     private List<VirtualCourse> allCourses = new ArrayList<>();
     private List<VirtualCourse> selectedCourses = new ArrayList<>();
     private Map<String, List<VirtualCourse>> coursesByCourse = new HashMap<>(); // Group by course (AT22, AT21...)
     private Map<String, List<VirtualCourse>> coursesByDisplayName = new HashMap<>(); // Group by displayCourseName (để
                                                                                      // filter theo môn)
-    private Map<VirtualCourse, CheckBox> courseCheckBoxMap = new HashMap<>();
+    private final ScheduleConflictIndex conflictIndex = new ScheduleConflictIndex(); // Bitset lịch học để kiểm tra trùng
+    private final MonthCalendarGrid<VirtualCourse.ScheduleSlot> monthGrid = new MonthCalendarGrid<>(
+            new MonthCalendarGrid.DayAdapter<VirtualCourse.ScheduleSlot>() {
+                @Override
+                public String subjectOf(VirtualCourse.ScheduleSlot slot) {
+                    VirtualCourse course = slot.getVirtualCourse();
+                    return course.getDisplayCourseName() != null ? course.getDisplayCourseName()
+                            : course.getCourseName();
+                }
+
+                @Override
+                public void openDay(LocalDate date, List<VirtualCourse.ScheduleSlot> slots) {
+                    showDayDetailsDialog(date, slots);
+                }
+            }, this::loadMonthSlots); // Lưới lịch tháng dùng lại giữa các lần chuyển tháng
+    private final CourseSearchIndex searchIndex = new CourseSearchIndex(); // Chỉ mục tìm kiếm theo từ khóa
+    private static final String UPDATING_SUFFIX = " | Đang cập nhật...";
     private YearMonth currentDisplayMonth;
 
     @FXML
@@ -141,12 +169,17 @@ public class VirtualScheduleController {
         apiService = ApiService.getInstance();
         encryptionService = EncryptionService.getInstance();
         localStorageService = LocalStorageService.getInstance();
+        localDataCache = LocalDataCache.getInstance();
 
         courseComboBox.setOnAction(e -> {
             updateSubjectComboBox();
             applyFilters();
         });
         subjectComboBox.setOnAction(e -> applyFilters());
+        searchField.textProperty().addListener((obs, oldText, newText) -> applyFilters());
+
+        // Danh sách lớp ảo hóa: chỉ các dòng đang hiển thị mới có node, cell được tái sử dụng khi cuộn
+        coursesListView.setCellFactory(listView -> new CourseCell());
 
         // Setup registration statistics table
         courseColumn.setCellValueFactory(new PropertyValueFactory<>("course"));
@@ -284,96 +317,182 @@ public class VirtualScheduleController {
         }
     }
 
-    public void loadVirtualCalendar() {
+    /**
+     * Tải danh sách môn học ảo (hiển thị bản đã lưu trước nếu có).
+     *
+     * @return future hoàn thành khi đã giải mã xong danh sách mới từ server, lỗi nếu không lấy được
+     */
+    public CompletableFuture<Void> loadVirtualCalendar() {
         statusLabel.setText("Đang tải danh sách môn học ảo...");
 
-        new Thread(() -> {
-            try {
-                // Load credentials từ local storage
-                JsonObject credentials = localStorageService.loadCredentials();
-                if (credentials == null) {
-                    Platform.runLater(() -> {
-                        showAlert(Alert.AlertType.ERROR, "Lỗi",
-                                "Không tìm thấy thông tin đăng nhập. Vui lòng đăng nhập lại.");
-                    });
+        // Load credentials từ local storage
+        JsonObject credentials;
+        String studentCode = null;
+        try {
+            credentials = localDataCache.get(LocalDataCache.CREDENTIALS);
+            JsonObject studentInfo = localDataCache.get(LocalDataCache.STUDENT_INFO);
+            if (studentInfo != null && studentInfo.has("student_code")) {
+                studentCode = studentInfo.get("student_code").getAsString();
+            }
+        } catch (IOException e) {
+            credentials = null;
+        }
+        if (credentials == null) {
+            showAlert(Alert.AlertType.ERROR, "Lỗi",
+                    "Không tìm thấy thông tin đăng nhập. Vui lòng đăng nhập lại.");
+            return CompletableFuture.failedFuture(new IOException("Không tìm thấy thông tin đăng nhập"));
+        }
+
+        String encryptedKey = credentials.get("encryptedKey").getAsString();
+        String encryptedData = credentials.get("encryptedData").getAsString();
+        String iv = credentials.get("iv").getAsString();
+
+        // Hiển thị ngay danh sách đã lưu (nếu có); đồng thời đảm bảo có public key (dùng cache)
+        // rồi gọi API virtual calendar. Response được giải mã dạng stream: nếu chưa hiển thị bản
+        // đã lưu thì các lớp được đưa lên UI theo từng lô ngay khi về, ngược lại chỉ hiển thị lại
+        // khi danh sách mới khác bản đã lưu
+        ResponseCache responseCache = ResponseCache.getInstance();
+        String cacheKey = ResponseCache.key(AppConfig.VIRTUAL_CALENDAR_ENDPOINT, studentCode);
+        CalendarLoad load = new CalendarLoad();
+
+        CompletableFuture.runAsync(() -> showCachedCalendar(responseCache, cacheKey, load));
+
+        CompletableFuture<Void> loaded = requestScope.track(PublicKeyCache.getInstance().ensurePublicKeyAsync()
+                .thenCompose(ignored -> requestScope.track(apiService.streamVirtualCalendarAsync(
+                        encryptedKey, encryptedData, iv,
+                        body -> decodeFreshCalendar(body, responseCache, cacheKey, load)))));
+        loaded.exceptionally(error -> {
+            Throwable cause = RequestScope.unwrap(error);
+            requestScope.runLater(() -> {
+                if (load.cachedShown) {
+                    // Vẫn dùng được bản đã lưu
+                    statusLabel.setText(statusLabel.getText().replace(UPDATING_SUFFIX, "")
+                            + " | Không thể cập nhật, đang dùng dữ liệu đã lưu");
                     return;
                 }
-
-                // Lấy public key
-                String publicKey = apiService.getPublicKey();
-                encryptionService.setPublicKey(publicKey);
-
-                // Gọi API virtual calendar
-                String response = apiService.getVirtualCalendar(
-                        credentials.get("encryptedKey").getAsString(),
-                        credentials.get("encryptedData").getAsString(),
-                        credentials.get("iv").getAsString());
-
-                // Parse response
-                JsonObject jsonResponse = JsonParser.parseString(response).getAsJsonObject();
-
-                if (!"200".equals(jsonResponse.get("code").getAsString())) {
-                    String message = jsonResponse.has("message") ? jsonResponse.get("message").getAsString()
-                            : "Không thể tải danh sách môn học ảo";
-                    throw new IOException(message);
+                if (load.liveStarted) {
+                    // Danh sách đang hiện dở (chưa dựng combo, chỉ mục, dữ liệu trùng lịch): bỏ đi
+                    // để không dùng nhầm một danh sách thiếu lớp
+                    beginCourseLoad();
                 }
+                statusLabel.setText("Lỗi khi tải danh sách môn học ảo");
+                showAlert(Alert.AlertType.ERROR, "Lỗi",
+                        "Không thể tải danh sách môn học ảo: " + cause.getMessage());
+                cause.printStackTrace();
+            });
+            return null;
+        });
+        return loaded;
+    }
 
-                JsonArray virtualCalendar = jsonResponse.getAsJsonArray("virtual_calendar");
-
-                Platform.runLater(() -> {
-                    parseAndDisplayCourses(virtualCalendar);
-                });
+    /**
+     * Giải mã bản đã lưu (thread nền) và hiển thị nếu dữ liệu mới chưa bắt đầu về
+     */
+    private void showCachedCalendar(ResponseCache responseCache, String cacheKey, CalendarLoad load) {
+        List<VirtualCourse> courses = new ArrayList<>();
+        try (InputStream cached = responseCache.openCached(cacheKey)) {
+            if (cached == null) {
+                return;
+            }
+            VirtualCalendarDecoder.decode(cached, VirtualCalendarDecoder.DEFAULT_CHUNK_SIZE, courses::addAll);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Bỏ qua danh sách môn học ảo đã lưu không hợp lệ: " + e.getMessage());
+            return;
+        }
 
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    statusLabel.setText("Lỗi khi tải danh sách môn học ảo");
-                    showAlert(Alert.AlertType.ERROR, "Lỗi",
-                            "Không thể tải danh sách môn học ảo: " + e.getMessage());
-                    e.printStackTrace();
-                });
+        synchronized (load) {
+            // Dữ liệu mới đã bắt đầu hiển thị thì không đè bản cũ lên
+            if (load.freshStarted) {
+                return;
             }
-        }).start();
+            load.cachedShown = true;
+            requestScope.runLater(() -> {
+                showCourses(courses);
+                statusLabel.setText(statusLabel.getText() + UPDATING_SUFFIX);
+            });
+        }
     }
 
-    private void parseAndDisplayCourses(JsonArray virtualCalendar) {
-        allCourses.clear();
-        coursesByCourse.clear();
-        coursesByDisplayName.clear();
-
-        for (JsonElement element : virtualCalendar) {
-            JsonObject courseObj = element.getAsJsonObject();
-
-            VirtualCourse course = new VirtualCourse();
-            course.setCourse(getStringValue(courseObj, "course"));
-            course.setBaseTime(getStringValue(courseObj, "base_time"));
-
-            // Lưu course_name từ ngoài (tên thường, không có mã lớp) - dùng để filter
-            String displayCourseName = getStringValue(courseObj, "course_name");
-            course.setDisplayCourseName(displayCourseName);
+    /**
+     * Giải mã response mới trên thread của OkHttp, đồng thời ghi vào cache.
+     * Chỉ lưu vào cache khi giải mã thành công.
+     */
+    private Void decodeFreshCalendar(InputStream body, ResponseCache responseCache, String cacheKey,
+            CalendarLoad load) throws IOException {
+        boolean live;
+        synchronized (load) {
+            load.freshStarted = true;
+            live = !load.cachedShown;
+        }
 
-            if (courseObj.has("details")) {
-                JsonObject details = courseObj.getAsJsonObject("details");
-                // Sử dụng course_name từ details (có mã lớp trong ngoặc như A22C10D901)
-                String detailsCourseName = getStringValue(details, "course_name");
-                if (detailsCourseName != null && !detailsCourseName.isEmpty()) {
-                    // Giữ nguyên course_name từ details, không thêm đuôi (badge sẽ hiển thị riêng)
-                    course.setCourseName(detailsCourseName);
+        ResponseCache.StreamingEntry entry = responseCache.beginStreaming(cacheKey);
+        try {
+            List<VirtualCourse> courses = new ArrayList<>();
+            if (live) {
+                load.liveStarted = true;
+                requestScope.runLater(this::beginCourseLoad);
+            }
+            VirtualCalendarDecoder.decode(entry.tee(body), VirtualCalendarDecoder.DEFAULT_CHUNK_SIZE, chunk -> {
+                if (live) {
+                    requestScope.runLater(() -> appendCourses(chunk));
                 } else {
-                    course.setCourseName(displayCourseName);
+                    courses.addAll(chunk);
                 }
+            });
+            boolean changed = entry.commit();
 
-                course.setCourseCode(getStringValue(details, "course_code"));
-                course.setTeacher(getStringValue(details, "teacher"));
-                course.setStudyLocation(getStringValue(details, "study_location"));
-                course.setStudyDays(getStringValue(details, "study_days"));
-                course.setLessons(getStringValue(details, "lessons"));
+            if (live) {
+                requestScope.runLater(this::finishCourseLoad);
+            } else if (changed) {
+                requestScope.runLater(() -> showCourses(courses));
             } else {
-                course.setCourseName(displayCourseName);
+                // Không đổi so với bản đang hiển thị
+                requestScope.runLater(() -> statusLabel
+                        .setText(statusLabel.getText().replace(UPDATING_SUFFIX, "")));
             }
+            return null;
+        } catch (IOException | RuntimeException e) {
+            entry.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Hủy các request đang chạy khi rời màn hình
+     */
+    public void dispose() {
+        requestScope.cancelAll();
+    }
+
+    /**
+     * Hiển thị toàn bộ danh sách lớp trong một lần
+     */
+    private void showCourses(List<VirtualCourse> courses) {
+        beginCourseLoad();
+        appendCourses(courses);
+        finishCourseLoad();
+    }
 
-            // Không parse schedule slots ngay - sẽ parse lazy khi cần
-            // course.parseScheduleSlots(); // Comment out để lazy load
+    /**
+     * Xóa danh sách cũ trước khi nhận các lô lớp mới. Các lớp đang chọn thuộc danh sách cũ cũng bị bỏ;
+     * restoreSelectedCourses chọn lại đúng các lớp đó (theo tên, đã lưu mỗi lần chọn) trên danh sách mới.
+     */
+    private void beginCourseLoad() {
+        allCourses.clear();
+        coursesByCourse.clear();
+        coursesByDisplayName.clear();
+        conflictIndex.clear();
+        coursesListView.getItems().clear();
+        selectedCourses.clear();
+        updateSelectedScheduleDisplay();
+        updateRegistrationTable();
+    }
 
+    /**
+     * Thêm một lô lớp vừa giải mã, hiển thị ngay trong danh sách
+     */
+    private void appendCourses(List<VirtualCourse> courses) {
+        for (VirtualCourse course : courses) {
             allCourses.add(course);
 
             // Group by course (AT22, AT21, etc.)
@@ -381,11 +500,22 @@ public class VirtualScheduleController {
             coursesByCourse.computeIfAbsent(courseKey, k -> new ArrayList<>()).add(course);
 
             // Group by displayCourseName (để filter theo môn học)
+            String displayCourseName = course.getDisplayCourseName();
             if (displayCourseName != null && !displayCourseName.isEmpty()) {
                 coursesByDisplayName.computeIfAbsent(displayCourseName, k -> new ArrayList<>()).add(course);
             }
         }
 
+        coursesListView.getItems().addAll(courses);
+        statusLabel.setText("Đang tải danh sách môn học ảo... (" + allCourses.size() + " lớp)");
+    }
+
+    /**
+     * Dựng chỉ mục, bộ lọc và thống kê khi đã nhận đủ danh sách lớp
+     */
+    private void finishCourseLoad() {
+        searchIndex.build(allCourses);
+
         // Update course combo box
         courseComboBox.getItems().clear();
         courseComboBox.getItems().add("Tất cả khóa");
@@ -458,143 +588,168 @@ public class VirtualScheduleController {
         String selectedCourse = courseComboBox.getSelectionModel().getSelectedItem();
         String selectedSubject = subjectComboBox.getSelectionModel().getSelectedItem();
 
-        List<VirtualCourse> coursesToShow = new ArrayList<>(allCourses);
-
-        // Filter by course (AT22, AT21...)
-        if (selectedCourse != null && !"Tất cả khóa".equals(selectedCourse)) {
-            coursesToShow = coursesToShow.stream()
-                    .filter(c -> selectedCourse.equals(c.getCourse()))
-                    .collect(Collectors.toList());
+        String query = searchField.getText();
+        boolean filterCourse = selectedCourse != null && !"Tất cả khóa".equals(selectedCourse);
+        boolean filterSubject = selectedSubject != null && !"Tất cả môn".equals(selectedSubject);
+
+        // Bắt đầu từ tập nhỏ nhất có sẵn: kết quả tìm kiếm, nhóm theo môn hoặc nhóm theo khóa
+        List<VirtualCourse> candidates;
+        if (query != null && !query.isBlank()) {
+            candidates = searchIndex.search(query);
+        } else if (filterSubject) {
+            candidates = coursesByDisplayName.getOrDefault(selectedSubject, Collections.emptyList());
+            filterSubject = false;
+        } else if (filterCourse) {
+            candidates = coursesByCourse.getOrDefault(selectedCourse, Collections.emptyList());
+            filterCourse = false;
+        } else {
+            candidates = allCourses;
         }
 
-        // Filter by subject (displayCourseName)
-        if (selectedSubject != null && !"Tất cả môn".equals(selectedSubject)) {
-            coursesToShow = coursesToShow.stream()
-                    .filter(c -> selectedSubject.equals(c.getDisplayCourseName()))
-                    .collect(Collectors.toList());
+        List<VirtualCourse> coursesToShow = new ArrayList<>(candidates.size());
+        for (VirtualCourse course : candidates) {
+            // Filter by course (AT22, AT21...) và subject (displayCourseName)
+            if (filterCourse && !selectedCourse.equals(course.getCourse())) {
+                continue;
+            }
+            if (filterSubject && !selectedSubject.equals(course.getDisplayCourseName())) {
+                continue;
+            }
+            coursesToShow.add(course);
         }
 
         displayCourses(coursesToShow);
     }
 
     private void displayCourses(List<VirtualCourse> courses) {
-        coursesContainer.getChildren().clear();
-        courseCheckBoxMap.clear();
-
-        for (VirtualCourse course : courses) {
-            VBox courseBox = createCourseBox(course);
-            coursesContainer.getChildren().add(courseBox);
-        }
+        coursesListView.getItems().setAll(courses);
     }
 
-    private VBox createCourseBox(VirtualCourse course) {
-        VBox courseBox = new VBox(10);
-        courseBox.setPadding(new Insets(15));
-        courseBox.setStyle(
-                "-fx-background-color: #2a2a2a; -fx-border-color: #00d4ff; -fx-border-radius: 8; -fx-border-width: 1; -fx-effect: dropshadow(three-pass-box, rgba(0,212,255,0.2), 5, 0, 0, 2);");
-
-        // Hover effect
-        courseBox.setOnMouseEntered(e -> {
-            courseBox.setStyle(
-                    "-fx-background-color: #333333; -fx-border-color: #00d4ff; -fx-border-radius: 8; -fx-border-width: 2; -fx-effect: dropshadow(three-pass-box, rgba(0,212,255,0.4), 7, 0, 0, 3);");
-        });
-        courseBox.setOnMouseExited(e -> {
-            courseBox.setStyle(
-                    "-fx-background-color: #2a2a2a; -fx-border-color: #00d4ff; -fx-border-radius: 8; -fx-border-width: 1; -fx-effect: dropshadow(three-pass-box, rgba(0,212,255,0.2), 5, 0, 0, 2);");
-        });
-
-        HBox headerBox = new HBox(10);
-        headerBox.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
-
-        CheckBox checkBox = new CheckBox();
-        checkBox.setUserData(course);
-        checkBox.setOnAction(e -> handleCourseSelection(course, checkBox.isSelected()));
-        courseCheckBoxMap.put(course, checkBox);
-
-        // Update checkbox state
-        checkBox.setSelected(selectedCourses.contains(course));
+    /**
+     * Vẽ lại trạng thái checkbox của các dòng đang hiển thị theo selectedCourses
+     */
+    private void refreshCourseList() {
+        coursesListView.refresh();
+    }
 
-        // Style checkbox for dark theme
-        checkBox.setStyle("-fx-text-fill: #ffffff;");
+    /**
+     * Cell hiển thị một lớp ảo. Các node được tạo một lần cho mỗi cell và chỉ
+     * cập nhật nội dung khi cell được gán lớp khác.
+     */
+    private class CourseCell extends ListCell<VirtualCourse> {
+        private static final String BOX_STYLE = "-fx-background-color: #2a2a2a; -fx-border-color: #00d4ff; -fx-border-radius: 8; -fx-border-width: 1; -fx-effect: dropshadow(three-pass-box, rgba(0,212,255,0.2), 5, 0, 0, 2);";
+        private static final String BOX_HOVER_STYLE = "-fx-background-color: #333333; -fx-border-color: #00d4ff; -fx-border-radius: 8; -fx-border-width: 2; -fx-effect: dropshadow(three-pass-box, rgba(0,212,255,0.4), 7, 0, 0, 3);";
+
+        private final VBox courseBox = new VBox(10);
+        private final CheckBox checkBox = new CheckBox();
+        private final Label courseNameLabel = new Label();
+        private final Label classBadge = new Label();
+        private final Label classLabel = new Label();
+        private final Label codeLabel = new Label();
+        private final Label timeLabel = new Label();
+        private final Label detailTimeLabel = new Label();
+        private final Label teacherLabel = new Label();
+        private final Label locationLabel = new Label();
+
+        CourseCell() {
+            courseBox.setPadding(new Insets(15));
+            courseBox.setStyle(BOX_STYLE);
+
+            // Hover effect
+            courseBox.setOnMouseEntered(e -> courseBox.setStyle(BOX_HOVER_STYLE));
+            courseBox.setOnMouseExited(e -> courseBox.setStyle(BOX_STYLE));
+
+            HBox headerBox = new HBox(10);
+            headerBox.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
+
+            checkBox.setOnAction(e -> {
+                if (getItem() != null) {
+                    handleCourseSelection(getItem(), checkBox.isSelected());
+                }
+            });
 
-        // Hiển thị lớp số nếu có
-        String classNumber = course.getClassNumber();
-        HBox titleBox = new HBox(8);
-        titleBox.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
+            // Style checkbox for dark theme
+            checkBox.setStyle("-fx-text-fill: #ffffff;");
 
-        Label courseNameLabel = new Label(course.getCourseName());
-        courseNameLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 15px; -fx-text-fill: #ffffff;");
-        courseNameLabel.setWrapText(true);
+            HBox titleBox = new HBox(8);
+            titleBox.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
 
-        // Hiển thị: checkbox, tên môn học, lớp số (nếu có)
-        titleBox.getChildren().add(checkBox);
-        titleBox.getChildren().add(courseNameLabel);
+            courseNameLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 15px; -fx-text-fill: #ffffff;");
+            courseNameLabel.setWrapText(true);
 
-        if (!classNumber.isEmpty()) {
-            Label classLabel = new Label(classNumber);
-            classLabel.setStyle(
+            classBadge.setStyle(
                     "-fx-font-weight: bold; -fx-font-size: 12px; -fx-text-fill: #ffffff; -fx-background-color: linear-gradient(to bottom, #00d4ff, #0099cc); -fx-padding: 5 10 5 10; -fx-background-radius: 12; -fx-effect: dropshadow(one-pass-box, rgba(0,212,255,0.4), 3, 0, 0, 1);");
-            titleBox.getChildren().add(classLabel);
-        }
+            classBadge.setMinWidth(Region.USE_PREF_SIZE);
 
-        headerBox.getChildren().add(titleBox);
+            // Hiển thị: checkbox, tên môn học, lớp số (nếu có)
+            titleBox.getChildren().addAll(checkBox, courseNameLabel, classBadge);
+            headerBox.getChildren().add(titleBox);
 
-        // Course info
-        VBox infoBox = new VBox(6);
-        infoBox.setPadding(new Insets(8, 0, 0, 0));
+            // Course info
+            VBox infoBox = new VBox(6);
+            infoBox.setPadding(new Insets(8, 0, 0, 0));
 
-        // Hiển thị lớp số nếu có (sử dụng lại biến classNumber đã khai báo ở trên)
-        if (!classNumber.isEmpty()) {
-            Label classLabel = new Label("📚 Lớp: " + classNumber);
             classLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #00d4ff; -fx-font-weight: bold;");
-            infoBox.getChildren().add(classLabel);
-        }
-
-        if (course.getCourseCode() != null && !course.getCourseCode().isEmpty()) {
-            Label codeLabel = new Label("🔢 Mã môn: " + course.getCourseCode());
             codeLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #99a8b8;");
-            infoBox.getChildren().add(codeLabel);
-        }
-
-        // Hiển thị thời gian từ base_time
-        if (course.getBaseTime() != null && !course.getBaseTime().isEmpty()) {
-            Label timeLabel = new Label("⏰ " + course.getBaseTime());
             timeLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #00ff88; -fx-font-weight: 500;");
             timeLabel.setWrapText(true);
-            infoBox.getChildren().add(timeLabel);
+            detailTimeLabel.setStyle(
+                    "-fx-font-size: 13px; -fx-text-fill: #00d4ff; -fx-font-weight: bold; -fx-background-color: #003d4d; -fx-padding: 4 8 4 8; -fx-background-radius: 4; -fx-border-color: #00d4ff; -fx-border-width: 1;");
+            teacherLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #99a8b8;");
+            locationLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #99a8b8;");
+
+            infoBox.getChildren().addAll(classLabel, codeLabel, timeLabel, detailTimeLabel, teacherLabel,
+                    locationLabel);
+            courseBox.getChildren().addAll(headerBox, infoBox);
+
+            // Cho phép label xuống dòng theo chiều rộng của ListView
+            setPrefWidth(0);
+            setStyle("-fx-background-color: transparent; -fx-padding: 0 0 12 0;");
         }
 
-        // Hiển thị thông tin chi tiết từ schedule slots (nếu có)
-        if (course.getLessons() != null && !course.getLessons().isEmpty()) {
-            // Parse một vài lessons đầu để hiển thị thời gian
-            String[] lessonArray = course.getLessons().split("\\s+");
-            if (lessonArray.length > 0) {
-                String firstLesson = lessonArray[0];
-                String timeRange = course.mapLessonsToTimeRange(firstLesson);
-                if (!timeRange.equals(firstLesson)) {
-                    Label detailTimeLabel = new Label("🕐 " + timeRange);
-                    detailTimeLabel.setStyle(
-                            "-fx-font-size: 13px; -fx-text-fill: #00d4ff; -fx-font-weight: bold; -fx-background-color: #003d4d; -fx-padding: 4 8 4 8; -fx-background-radius: 4; -fx-border-color: #00d4ff; -fx-border-width: 1;");
-                    infoBox.getChildren().add(detailTimeLabel);
+        @Override
+        protected void updateItem(VirtualCourse course, boolean empty) {
+            super.updateItem(course, empty);
+            if (empty || course == null) {
+                setGraphic(null);
+                return;
+            }
+
+            checkBox.setSelected(selectedCourses.contains(course));
+            courseNameLabel.setText(course.getCourseName());
+
+            String classNumber = course.getClassNumber();
+            setOptionalText(classBadge, classNumber, "");
+            setOptionalText(classLabel, classNumber, "📚 Lớp: ");
+            setOptionalText(codeLabel, course.getCourseCode(), "🔢 Mã môn: ");
+
+            // Hiển thị thời gian từ base_time
+            setOptionalText(timeLabel, course.getBaseTime(), "⏰ ");
+
+            // Hiển thị thời gian của buổi học đầu tiên (nếu map được)
+            String timeRange = null;
+            if (course.getLessons() != null && !course.getLessons().isEmpty()) {
+                String firstLesson = course.getLessons().split("\\s+")[0];
+                String mapped = course.mapLessonsToTimeRange(firstLesson);
+                if (!mapped.equals(firstLesson)) {
+                    timeRange = mapped;
                 }
             }
-        }
+            setOptionalText(detailTimeLabel, timeRange, "🕐 ");
 
-        if (course.getTeacher() != null && !course.getTeacher().isEmpty()) {
-            Label teacherLabel = new Label("👤 " + course.getTeacher());
-            teacherLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #99a8b8;");
-            infoBox.getChildren().add(teacherLabel);
-        }
+            setOptionalText(teacherLabel, course.getTeacher(), "👤 ");
+            setOptionalText(locationLabel, course.getStudyLocation(), "📍 ");
 
-        if (course.getStudyLocation() != null && !course.getStudyLocation().isEmpty()) {
-            Label locationLabel = new Label("📍 " + course.getStudyLocation());
-            locationLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #99a8b8;");
-            infoBox.getChildren().add(locationLabel);
+            courseBox.setStyle(BOX_STYLE);
+            setGraphic(courseBox);
         }
 
-        courseBox.getChildren().addAll(headerBox, infoBox);
-
-        return courseBox;
+        private void setOptionalText(Label label, String value, String prefix) {
+            boolean present = value != null && !value.isEmpty();
+            label.setText(present ? prefix + value : "");
+            label.setVisible(present);
+            label.setManaged(present);
+        }
     }
 
     private void handleCourseSelection(VirtualCourse course, boolean selected) {
@@ -609,12 +764,8 @@ public class VirtualScheduleController {
                         .orElse(null);
 
                 if (existingCourse != null && !existingCourse.equals(course)) {
-                    // Xóa lớp cũ
+                    // Xóa lớp cũ (checkbox được cập nhật khi refresh danh sách)
                     selectedCourses.remove(existingCourse);
-                    // Uncheck checkbox của lớp cũ
-                    if (courseCheckBoxMap.containsKey(existingCourse)) {
-                        courseCheckBoxMap.get(existingCourse).setSelected(false);
-                    }
                 }
             }
 
@@ -623,7 +774,7 @@ public class VirtualScheduleController {
 
             if (!conflictingCourses.isEmpty()) {
                 // Có trùng lịch, hủy selection và thông báo
-                courseCheckBoxMap.get(course).setSelected(false);
+                refreshCourseList();
 
                 StringBuilder message = new StringBuilder("Môn học này trùng lịch với:\n");
                 for (VirtualCourse conflict : conflictingCourses) {
@@ -640,6 +791,7 @@ public class VirtualScheduleController {
             selectedCourses.remove(course);
         }
 
+        refreshCourseList();
         updateSelectedScheduleDisplay();
         updateRegistrationTable();
 
@@ -648,36 +800,8 @@ public class VirtualScheduleController {
     }
 
     private List<VirtualCourse> findConflictingCourses(VirtualCourse newCourse) {
-        List<VirtualCourse> conflicts = new ArrayList<>();
-
-        for (VirtualCourse selectedCourse : selectedCourses) {
-            if (hasScheduleConflict(newCourse, selectedCourse)) {
-                conflicts.add(selectedCourse);
-            }
-        }
-
-        return conflicts;
-    }
-
-    private boolean hasScheduleConflict(VirtualCourse course1, VirtualCourse course2) {
-        // Parse slots khi cần kiểm tra conflict
-        List<VirtualCourse.ScheduleSlot> slots1 = course1.getScheduleSlots();
-        List<VirtualCourse.ScheduleSlot> slots2 = course2.getScheduleSlots();
-
-        // Giới hạn số lượng so sánh để tránh quá tải
-        int maxCompare = Math.min(slots1.size(), 100);
-        int maxCompare2 = Math.min(slots2.size(), 100);
-
-        for (int i = 0; i < maxCompare; i++) {
-            VirtualCourse.ScheduleSlot slot1 = slots1.get(i);
-            for (int j = 0; j < maxCompare2; j++) {
-                VirtualCourse.ScheduleSlot slot2 = slots2.get(j);
-                if (slot1.conflictsWith(slot2)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        // So sánh bitset (ngày, tiết) đã mã hóa sẵn, chính xác với mọi độ dài lịch
+        return conflictIndex.findConflicts(newCourse, selectedCourses);
     }
 
     private void updateSelectedScheduleDisplay() {
@@ -690,38 +814,33 @@ public class VirtualScheduleController {
         updateSelectedCoursesTable();
     }
 
+    /**
+     * Danh sách lớp đã chọn thay đổi: bỏ cache các tháng rồi hiển thị lại
+     * (chỉ các ô ngày có danh sách buổi học khác đi mới được vẽ lại)
+     */
     private void displayCalendarGrid(VBox container, YearMonth yearMonth) {
+        monthGrid.invalidate();
+        showCalendarMonth(container, yearMonth);
+    }
+
+    /**
+     * Hiển thị một tháng trên lưới lịch dùng lại (chuyển tháng không dựng lại các ô)
+     */
+    private void showCalendarMonth(VBox container, YearMonth yearMonth) {
         if (container == null)
             return;
 
-        container.getChildren().clear();
-
         if (selectedCourses.isEmpty()) {
             Label emptyLabel = new Label("Chưa có môn học nào được chọn");
             emptyLabel.setStyle("-fx-text-fill: #7f8c8d; -fx-font-size: 16px; -fx-padding: 50px;");
-            container.getChildren().add(emptyLabel);
+            container.getChildren().setAll(emptyLabel);
             return;
         }
 
-        // Thu thập tất cả schedule slots từ selectedCourses
-        Map<LocalDate, List<VirtualCourse.ScheduleSlot>> slotsByDate = new HashMap<>();
-        for (VirtualCourse course : selectedCourses) {
-            for (VirtualCourse.ScheduleSlot slot : course.getScheduleSlots()) {
-                slotsByDate.computeIfAbsent(slot.getDate(), k -> new ArrayList<>()).add(slot);
-            }
+        monthGrid.show(yearMonth);
+        if (!container.getChildren().contains(monthGrid.getNode())) {
+            container.getChildren().setAll(monthGrid.getNode());
         }
-
-        // Lọc slots trong tháng hiện tại
-        Map<LocalDate, List<VirtualCourse.ScheduleSlot>> monthSlots = new HashMap<>();
-        for (Map.Entry<LocalDate, List<VirtualCourse.ScheduleSlot>> entry : slotsByDate.entrySet()) {
-            if (YearMonth.from(entry.getKey()).equals(yearMonth)) {
-                monthSlots.put(entry.getKey(), entry.getValue());
-            }
-        }
-
-        // Tạo calendar grid
-        VBox monthBox = createMonthCalendarGrid(yearMonth, monthSlots);
-        container.getChildren().add(monthBox);
     }
 
     private VBox createDayScheduleBox(LocalDate date, List<VirtualCourse.ScheduleSlot> slots) {
@@ -899,9 +1018,6 @@ public class VirtualScheduleController {
 
                         if (conflictingCourses.isEmpty()) {
                             selectedCourses.add(course);
-                            if (courseCheckBoxMap.containsKey(course)) {
-                                courseCheckBoxMap.get(course).setSelected(true);
-                            }
                             foundCount++;
                         } else {
                             // Có trùng lịch, bỏ qua
@@ -918,6 +1034,7 @@ public class VirtualScheduleController {
                 notFoundCount += courseNamesToImport.size();
 
                 // Cập nhật UI
+                refreshCourseList();
                 updateSelectedScheduleDisplay();
                 updateRegistrationTable();
 
@@ -956,9 +1073,7 @@ public class VirtualScheduleController {
         updateRegistrationTable();
 
         // Uncheck all checkboxes
-        for (Map.Entry<VirtualCourse, CheckBox> entry : courseCheckBoxMap.entrySet()) {
-            entry.getValue().setSelected(false);
-        }
+        refreshCourseList();
 
         // Lưu vào local storage (xóa tất cả)
         saveSelectedCourses();
@@ -1179,6 +1294,204 @@ public class VirtualScheduleController {
         dialog.showAndWait();
     }
 
+    @FXML
+    private void handleAutoSchedule() {
+        if (allCourses.isEmpty()) {
+            showAlert(Alert.AlertType.WARNING, "Cảnh báo", "Chưa tải danh sách môn học ảo.");
+            return;
+        }
+
+        Dialog<Void> dialog = new Dialog<>();
+        dialog.setTitle("🤖 Tự động xếp lịch");
+        dialog.setHeaderText(null);
+
+        VBox content = new VBox(15);
+        content.setPadding(new Insets(20));
+        content.setStyle("-fx-background-color: #1a1a1a;");
+        content.setPrefWidth(700);
+
+        // Chỉ lấy lớp của khóa đang lọc (nếu có)
+        String selectedCohort = courseComboBox.getSelectionModel().getSelectedItem();
+        boolean allCohorts = selectedCohort == null || "Tất cả khóa".equals(selectedCohort);
+
+        Label subjectTitle = new Label("📚 Chọn các môn cần xếp"
+                + (allCohorts ? "" : " (khóa " + selectedCohort + ")"));
+        subjectTitle.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #ffffff;");
+
+        // Mặc định chọn các môn đang có trong lịch
+        Set<String> currentSubjects = selectedCourses.stream()
+                .map(VirtualCourse::getDisplayCourseName)
+                .filter(name -> name != null && !name.isEmpty())
+                .collect(Collectors.toSet());
+
+        Map<String, javafx.beans.property.BooleanProperty> subjectChecks = new LinkedHashMap<>();
+        List<String> subjectNames = (allCohorts ? allCourses : coursesByCourse.getOrDefault(selectedCohort,
+                Collections.emptyList())).stream()
+                .map(VirtualCourse::getDisplayCourseName)
+                .filter(name -> name != null && !name.isEmpty())
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        for (String name : subjectNames) {
+            subjectChecks.put(name, new javafx.beans.property.SimpleBooleanProperty(currentSubjects.contains(name)));
+        }
+
+        ListView<String> subjectList = new ListView<>();
+        subjectList.getItems().setAll(subjectNames);
+        subjectList.setCellFactory(javafx.scene.control.cell.CheckBoxListCell.forListView(subjectChecks::get));
+        subjectList.setPrefHeight(220);
+        subjectList.setStyle("-fx-background-color: #1a1a1a; -fx-control-inner-background: #1a1a1a;");
+
+        Label objectiveTitle = new Label("🎯 Mục tiêu");
+        objectiveTitle.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #ffffff;");
+        CheckBox fewestDaysCheck = new CheckBox("Ít ngày lên trường nhất");
+        fewestDaysCheck.setSelected(true);
+        CheckBox noEveningCheck = new CheckBox("Tránh học buổi tối (tiết 13-16)");
+        noEveningCheck.setSelected(true);
+        CheckBox fewestGapsCheck = new CheckBox("Ít tiết trống trong ngày");
+        fewestGapsCheck.setSelected(true);
+        for (CheckBox check : List.of(fewestDaysCheck, noEveningCheck, fewestGapsCheck)) {
+            check.setStyle("-fx-text-fill: #ffffff;");
+        }
+
+        Button solveButton = new Button("Tìm phương án");
+        solveButton.setStyle(
+                "-fx-background-color: #2a2a2a; -fx-text-fill: #ffffff; -fx-border-color: #00d4ff; -fx-border-width: 1; -fx-border-radius: 5; -fx-background-radius: 5;");
+
+        Label resultStatus = new Label();
+        resultStatus.setStyle("-fx-font-size: 13px; -fx-text-fill: #99a8b8;");
+        VBox resultBox = new VBox(10);
+
+        solveButton.setOnAction(e -> {
+            Map<String, List<VirtualCourse>> sectionsBySubject = new LinkedHashMap<>();
+            for (Map.Entry<String, javafx.beans.property.BooleanProperty> entry : subjectChecks.entrySet()) {
+                if (!entry.getValue().get()) {
+                    continue;
+                }
+                List<VirtualCourse> sections = coursesByDisplayName.getOrDefault(entry.getKey(),
+                        Collections.emptyList()).stream()
+                        .filter(c -> allCohorts || selectedCohort.equals(c.getCourse()))
+                        .collect(Collectors.toList());
+                sectionsBySubject.put(entry.getKey(), sections);
+            }
+            if (sectionsBySubject.isEmpty()) {
+                resultStatus.setText("Vui lòng chọn ít nhất một môn.");
+                return;
+            }
+
+            // Lớp của các môn không xếp lại được giữ nguyên: phương án phải khớp với chúng
+            List<VirtualCourse> fixedCourses = selectedCourses.stream()
+                    .filter(c -> !sectionsBySubject.containsKey(c.getDisplayCourseName()))
+                    .collect(Collectors.toList());
+
+            TimetableOptimizer.Objectives objectives = new TimetableOptimizer.Objectives(
+                    fewestDaysCheck.isSelected() ? 10 : 0,
+                    noEveningCheck.isSelected() ? 30 : 0,
+                    fewestGapsCheck.isSelected() ? 1 : 0);
+
+            solveButton.setDisable(true);
+            resultStatus.setText("Đang tìm phương án...");
+            resultBox.getChildren().clear();
+
+            new Thread(() -> {
+                TimetableOptimizer.Result result = new TimetableOptimizer(conflictIndex)
+                        .optimize(sectionsBySubject, fixedCourses, objectives, 5);
+
+                Platform.runLater(() -> {
+                    solveButton.setDisable(false);
+                    List<TimetableOptimizer.Timetable> timetables = result.getTimetables();
+                    if (timetables.isEmpty()) {
+                        resultStatus.setText("❌ Không có cách xếp nào không trùng lịch cho các môn đã chọn"
+                                + (fixedCourses.isEmpty() ? "." : " và " + fixedCourses.size() + " lớp đang giữ trong lịch."));
+                        return;
+                    }
+                    resultStatus.setText("Tìm thấy " + timetables.size() + " phương án tốt nhất"
+                            + (result.isComplete() ? "" : " (dừng sớm do hết thời gian)"));
+                    for (int i = 0; i < timetables.size(); i++) {
+                        resultBox.getChildren().add(createTimetableBox(i + 1, timetables.get(i), dialog));
+                    }
+                });
+            }).start();
+        });
+
+        content.getChildren().addAll(subjectTitle, subjectList, objectiveTitle, fewestDaysCheck, noEveningCheck,
+                fewestGapsCheck, solveButton, resultStatus, resultBox);
+
+        ScrollPane scrollPane = new ScrollPane(content);
+        scrollPane.setFitToWidth(true);
+        scrollPane.setPrefHeight(600);
+        scrollPane.setStyle("-fx-background-color: #1a1a1a;");
+
+        dialog.getDialogPane().setContent(scrollPane);
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+        dialog.getDialogPane().setStyle("-fx-background-color: #1a1a1a;");
+
+        dialog.showAndWait();
+    }
+
+    private VBox createTimetableBox(int rank, TimetableOptimizer.Timetable timetable, Dialog<Void> dialog) {
+        VBox box = new VBox(6);
+        box.setPadding(new Insets(12));
+        box.setStyle(
+                "-fx-background-color: #2a2a2a; -fx-border-color: #00d4ff; -fx-border-radius: 8; -fx-border-width: 1;");
+
+        Label title = new Label(String.format("Phương án %d: %d ngày lên trường | %d buổi tối | %d tiết trống",
+                rank, timetable.getCampusDays(), timetable.getEveningDays(), timetable.getGapLessons()));
+        title.setStyle("-fx-font-weight: bold; -fx-font-size: 14px; -fx-text-fill: #00d4ff;");
+        box.getChildren().add(title);
+
+        for (VirtualCourse course : timetable.getSections()) {
+            Label courseLabel = new Label("• " + course.getCourseName());
+            courseLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #ffffff;");
+            box.getChildren().add(courseLabel);
+        }
+
+        Button applyButton = new Button("Áp dụng");
+        applyButton.setStyle(
+                "-fx-background-color: #003d4d; -fx-text-fill: #ffffff; -fx-border-color: #00d4ff; -fx-border-width: 1; -fx-border-radius: 5; -fx-background-radius: 5;");
+        applyButton.setOnAction(e -> {
+            applyTimetable(timetable);
+            dialog.close();
+        });
+        box.getChildren().add(applyButton);
+        return box;
+    }
+
+    /**
+     * Thay các lớp của những môn trong phương án bằng lớp được đề xuất.
+     * Phương án được tìm quanh các lớp đang giữ nên bình thường luôn khớp; nếu lịch đã đổi từ lúc tìm
+     * và có lớp bị trùng thì không áp dụng gì, giữ nguyên lịch cũ và báo các lớp bị trùng.
+     */
+    private void applyTimetable(TimetableOptimizer.Timetable timetable) {
+        Set<String> subjects = timetable.getSections().stream()
+                .map(VirtualCourse::getDisplayCourseName)
+                .collect(Collectors.toSet());
+        List<VirtualCourse> kept = selectedCourses.stream()
+                .filter(c -> !subjects.contains(c.getDisplayCourseName()))
+                .collect(Collectors.toList());
+
+        List<String> conflicts = new ArrayList<>();
+        for (VirtualCourse course : timetable.getSections()) {
+            for (VirtualCourse conflict : conflictIndex.findConflicts(course, kept)) {
+                conflicts.add(course.getCourseName() + " ↔ " + conflict.getCourseName());
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            showAlert(Alert.AlertType.WARNING, "Không thể áp dụng",
+                    "Lịch đã thay đổi, phương án bị trùng với các lớp đang giữ:\n" + String.join("\n", conflicts)
+                            + "\n\nVui lòng tìm lại phương án.");
+            return;
+        }
+
+        selectedCourses.removeIf(c -> subjects.contains(c.getDisplayCourseName()));
+        selectedCourses.addAll(timetable.getSections());
+
+        refreshCourseList();
+        updateSelectedScheduleDisplay();
+        updateRegistrationTable();
+        saveSelectedCourses();
+    }
+
     @FXML
     private void handlePrevMonth() {
         if (currentDisplayMonth != null) {
@@ -1187,7 +1500,7 @@ public class VirtualScheduleController {
                 updateMonthLabel(currentMonthLabel, currentDisplayMonth);
             }
             if (fullCalendarContainer != null) {
-                displayCalendarGrid(fullCalendarContainer, currentDisplayMonth);
+                showCalendarMonth(fullCalendarContainer, currentDisplayMonth);
             }
         }
     }
@@ -1200,7 +1513,7 @@ public class VirtualScheduleController {
                 updateMonthLabel(currentMonthLabel, currentDisplayMonth);
             }
             if (fullCalendarContainer != null) {
-                displayCalendarGrid(fullCalendarContainer, currentDisplayMonth);
+                showCalendarMonth(fullCalendarContainer, currentDisplayMonth);
             }
         }
     }
@@ -1214,182 +1527,21 @@ public class VirtualScheduleController {
         }
     }
 
-    private VBox createMonthCalendarGrid(YearMonth yearMonth,
-            Map<LocalDate, List<VirtualCourse.ScheduleSlot>> slotsByDate) {
-        VBox monthBox = new VBox(15);
-        monthBox.setPadding(new Insets(20));
-        monthBox.setAlignment(Pos.CENTER);
-        monthBox.setStyle(
-                "-fx-background-color: linear-gradient(to bottom, #1a1a1a, #0d0d0d); -fx-border-color: #00d4ff; -fx-border-radius: 12; -fx-border-width: 2; -fx-effect: dropshadow(three-pass-box, rgba(0,212,255,0.3), 10, 0, 0, 3);");
-
-        // Tạo calendar grid
-        GridPane calendarGrid = new GridPane();
-        calendarGrid.setHgap(3);
-        calendarGrid.setVgap(3);
-        calendarGrid.setPadding(new Insets(10));
-        calendarGrid.setStyle("-fx-background-color: #0d0d0d; -fx-background-radius: 8;");
-
-        // Header cho các ngày trong tuần
-        String[] dayNames = { "Chủ Nhật", "Thứ 2", "Thứ 3", "Thứ 4", "Thứ 5", "Thứ 6", "Thứ 7" };
-        for (int i = 0; i < 7; i++) {
-            Label dayHeader = new Label(dayNames[i]);
-            dayHeader.setStyle(
-                    "-fx-font-weight: bold; -fx-font-size: 13px; -fx-text-fill: #00d4ff; -fx-padding: 12px; -fx-alignment: center; -fx-background-color: linear-gradient(to bottom, #2a2a2a, #1a1a1a); -fx-background-radius: 6 6 0 0; -fx-border-color: #00d4ff; -fx-border-width: 0 0 1 0;");
-            dayHeader.setMaxWidth(Double.MAX_VALUE);
-            dayHeader.setPrefHeight(45);
-            GridPane.setHgrow(dayHeader, Priority.ALWAYS);
-            calendarGrid.add(dayHeader, i, 0);
-        }
-
-        // Lấy ngày đầu tiên và cuối cùng của tháng
-        LocalDate firstDay = yearMonth.atDay(1);
-        LocalDate lastDay = yearMonth.atEndOfMonth();
-
-        // Tìm ngày đầu tiên trong tuần (Chủ Nhật)
-        LocalDate calendarStart = firstDay.with(DayOfWeek.SUNDAY);
-        if (calendarStart.isAfter(firstDay)) {
-            calendarStart = calendarStart.minusWeeks(1);
-        }
-
-        // Tìm ngày cuối cùng trong tuần (Thứ 7)
-        LocalDate calendarEnd = lastDay.with(DayOfWeek.SATURDAY);
-        if (calendarEnd.isBefore(lastDay)) {
-            calendarEnd = calendarEnd.plusWeeks(1);
-        }
-
-        LocalDate currentDate = calendarStart;
-        int row = 1;
-        LocalDate today = LocalDate.now();
-
-        while (!currentDate.isAfter(calendarEnd)) {
-            for (int col = 0; col < 7; col++) {
-                final LocalDate dateForCell = currentDate;
-                List<VirtualCourse.ScheduleSlot> daySlots = slotsByDate.getOrDefault(dateForCell, new ArrayList<>());
-                VBox dayCell = createDayCell(dateForCell, yearMonth, daySlots, dateForCell.equals(today));
-                dayCell.setMaxWidth(Double.MAX_VALUE);
-                dayCell.setPrefHeight(130);
-                GridPane.setHgrow(dayCell, Priority.ALWAYS);
-
-                // Thêm click handler để hiển thị popup
-                if (!daySlots.isEmpty()) {
-                    final List<VirtualCourse.ScheduleSlot> slotsForDialog = new ArrayList<>(daySlots);
-                    dayCell.setOnMouseClicked(e -> showDayDetailsDialog(dateForCell, slotsForDialog));
-                }
-
-                calendarGrid.add(dayCell, col, row);
-
-                currentDate = currentDate.plusDays(1);
-            }
-            row++;
-        }
-
-        monthBox.getChildren().add(calendarGrid);
-        return monthBox;
-    }
-
-    private VBox createDayCell(LocalDate date, YearMonth yearMonth, List<VirtualCourse.ScheduleSlot> slots,
-            boolean isToday) {
-        VBox dayCell = new VBox(4);
-        dayCell.setPadding(new Insets(5));
-        dayCell.setAlignment(Pos.TOP_CENTER);
-
-        // Xác định style dựa trên ngày - Theme đen
-        boolean isCurrentMonth = YearMonth.from(date).equals(yearMonth);
-        String backgroundColor = isToday ? "#003d4d" : (isCurrentMonth ? "#1a1a1a" : "#0d0d0d");
-        String borderColor = isToday ? "#00d4ff" : (slots.isEmpty() ? "#333333" : "#00d4ff");
-        String textColor = isToday ? "#00d4ff" : (isCurrentMonth ? "#ffffff" : "#666666");
-        int borderWidth = isToday ? 3 : (slots.isEmpty() ? 1 : 2);
-
-        dayCell.setStyle(String.format(
-                "-fx-background-color: %s; -fx-border-color: %s; -fx-border-radius: 6; -fx-border-width: %d;",
-                backgroundColor, borderColor, borderWidth));
-
-        // Số ngày
-        Label dayNumber = new Label(String.valueOf(date.getDayOfMonth()));
-        dayNumber.setStyle(String.format(
-                "-fx-font-weight: %s; -fx-font-size: %dpx; -fx-text-fill: %s;",
-                isToday ? "bold" : "normal",
-                isToday ? 16 : 14,
-                textColor));
-        dayCell.getChildren().add(dayNumber);
-
-        // Hiển thị số lượng buổi học
-        if (!slots.isEmpty()) {
-            // Thêm background highlight cho ngày có lịch - màu xanh cyan nổi bật
-            if (!isToday) {
-                dayCell.setStyle(String.format(
-                        "-fx-background-color: %s; -fx-border-color: %s; -fx-border-radius: 6; -fx-border-width: %d;",
-                        isCurrentMonth ? "#002a33" : "#0d0d0d", "#00d4ff", 2));
-            }
-
-            Label countLabel = new Label(slots.size() + " buổi");
-            countLabel.setStyle(
-                    "-fx-font-size: 10px; -fx-text-fill: #00ff88; -fx-font-weight: bold; -fx-background-color: #003d1a; -fx-padding: 2 6 2 6; -fx-background-radius: 10; -fx-border-color: #00ff88; -fx-border-width: 1;");
-            dayCell.getChildren().add(countLabel);
-
-            // Hiển thị tối đa 2 môn học đầu tiên
-            int maxDisplay = Math.min(slots.size(), 2);
-            Set<String> displayedSubjects = new HashSet<>();
-            int displayedCount = 0;
-
-            for (VirtualCourse.ScheduleSlot slot : slots) {
-                if (displayedCount >= maxDisplay)
-                    break;
-
-                VirtualCourse course = slot.getVirtualCourse();
-                String subjectText = course.getDisplayCourseName() != null ? course.getDisplayCourseName()
-                        : course.getCourseName();
-
-                if (displayedSubjects.add(subjectText)) {
-                    if (subjectText.length() > 15) {
-                        subjectText = subjectText.substring(0, 13) + "...";
-                    }
-                    Label subjectLabel = new Label(subjectText);
-                    subjectLabel.setStyle(
-                            "-fx-font-size: 9px; -fx-text-fill: #00d4ff; -fx-padding: 2 4 2 4; -fx-background-color: #003d4d; -fx-background-radius: 4; -fx-max-width: 100; -fx-border-color: #00d4ff; -fx-border-width: 0.5;");
-                    subjectLabel.setWrapText(true);
-                    dayCell.getChildren().add(subjectLabel);
-                    displayedCount++;
+    /**
+     * Nhóm các buổi học của các lớp đã chọn trong một tháng theo ngày (dữ liệu cho lưới lịch)
+     */
+    private Map<LocalDate, List<VirtualCourse.ScheduleSlot>> loadMonthSlots(YearMonth yearMonth) {
+        long firstDay = yearMonth.atDay(1).toEpochDay();
+        long lastDay = yearMonth.atEndOfMonth().toEpochDay();
+        Map<LocalDate, List<VirtualCourse.ScheduleSlot>> monthSlots = new HashMap<>();
+        for (VirtualCourse course : selectedCourses) {
+            for (VirtualCourse.ScheduleSlot slot : course.getScheduleSlots()) {
+                if (slot.getEpochDay() >= firstDay && slot.getEpochDay() <= lastDay) {
+                    monthSlots.computeIfAbsent(slot.getDate(), k -> new ArrayList<>()).add(slot);
                 }
             }
-
-            if (slots.size() > maxDisplay) {
-                Label moreLabel = new Label("+" + (slots.size() - maxDisplay) + " nữa");
-                moreLabel.setStyle("-fx-font-size: 9px; -fx-text-fill: #00d4ff; -fx-font-style: italic;");
-                dayCell.getChildren().add(moreLabel);
-            }
-
-            // Thêm cursor và hover effect - màu xanh cyan sáng
-            dayCell.setCursor(javafx.scene.Cursor.HAND);
-            dayCell.setOnMouseEntered(e -> {
-                dayCell.setStyle(String.format(
-                        "-fx-background-color: %s; -fx-border-color: #00ffff; -fx-border-radius: 6; -fx-border-width: 3; -fx-cursor: hand; -fx-effect: dropshadow(three-pass-box, rgba(0,255,255,0.5), 5, 0, 0, 2);",
-                        isToday ? "#004d5d" : (isCurrentMonth ? "#002a33" : "#0d0d0d")));
-            });
-
-            dayCell.setOnMouseExited(e -> {
-                String bgColor = isToday ? "#003d4d"
-                        : (isCurrentMonth ? (!slots.isEmpty() ? "#002a33" : "#1a1a1a") : "#0d0d0d");
-                dayCell.setStyle(String.format(
-                        "-fx-background-color: %s; -fx-border-color: %s; -fx-border-radius: 6; -fx-border-width: %d;",
-                        bgColor, borderColor, borderWidth));
-            });
-        } else {
-            // Hover effect cho ngày không có lịch
-            dayCell.setOnMouseEntered(e -> {
-                dayCell.setStyle(String.format(
-                        "-fx-background-color: %s; -fx-border-color: #555555; -fx-border-radius: 6; -fx-border-width: 1;",
-                        isCurrentMonth ? "#2a2a2a" : "#0d0d0d"));
-            });
-
-            dayCell.setOnMouseExited(e -> {
-                dayCell.setStyle(String.format(
-                        "-fx-background-color: %s; -fx-border-color: %s; -fx-border-radius: 6; -fx-border-width: %d;",
-                        backgroundColor, borderColor, borderWidth));
-            });
         }
-
-        return dayCell;
+        return monthSlots;
     }
 
     private void showDayDetailsDialog(LocalDate date, List<VirtualCourse.ScheduleSlot> slots) {
@@ -1492,13 +1644,6 @@ public class VirtualScheduleController {
         return date.format(formatter);
     }
 
-    private String getStringValue(JsonObject obj, String key) {
-        if (obj.has(key) && !obj.get(key).isJsonNull()) {
-            return obj.get(key).getAsString();
-        }
-        return "";
-    }
-
     /**
      * Trích xuất số lớp từ course_name (helper method)
      */
@@ -1631,7 +1776,7 @@ public class VirtualScheduleController {
      */
     private void restoreSelectedCourses() {
         try {
-            com.google.gson.JsonArray savedSelections = localStorageService.loadVirtualScheduleSelections();
+            com.google.gson.JsonArray savedSelections = localDataCache.get(LocalDataCache.VIRTUAL_SCHEDULE_SELECTIONS);
             if (savedSelections == null || savedSelections.size() == 0) {
                 return;
             }
@@ -1659,10 +1804,6 @@ public class VirtualScheduleController {
 
                 if (conflictingCourses.isEmpty()) {
                     selectedCourses.add(course);
-                    // Update checkbox nếu đã có trong map
-                    if (courseCheckBoxMap.containsKey(course)) {
-                        courseCheckBoxMap.get(course).setSelected(true);
-                    }
                     restoredCount++;
                 }
             }
@@ -1673,11 +1814,7 @@ public class VirtualScheduleController {
                 updateRegistrationTable();
 
                 // Update lại tất cả checkboxes để đảm bảo đồng bộ
-                Platform.runLater(() -> {
-                    for (Map.Entry<VirtualCourse, CheckBox> entry : courseCheckBoxMap.entrySet()) {
-                        entry.getValue().setSelected(selectedCourses.contains(entry.getKey()));
-                    }
-                });
+                Platform.runLater(this::refreshCourseList);
 
                 statusLabel.setText(statusLabel.getText() + " | Đã khôi phục " + restoredCount + " môn học đã chọn");
             }
@@ -1737,6 +1874,15 @@ public class VirtualScheduleController {
         }
     }
 
+    /**
+     * Trạng thái một lần tải virtual calendar: bản đã lưu và dữ liệu mới, bên nào được hiển thị
+     */
+    private static final class CalendarLoad {
+        private volatile boolean cachedShown = false;
+        private boolean freshStarted = false;
+        private volatile boolean liveStarted = false; // Đã bắt đầu hiện từng lô lớp mới lên UI
+    }
+
     /**
      * Data class cho bảng danh sách lớp đã chọn
      */
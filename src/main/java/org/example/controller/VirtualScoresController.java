@@ -5,6 +5,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
 import javafx.fxml.FXML;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -18,23 +19,23 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
+import javafx.stage.WindowEvent;
 import javafx.util.converter.DoubleStringConverter;
 import javafx.util.converter.IntegerStringConverter;
-import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
+import org.example.model.GradingPolicy;
 import org.example.model.ScoreItem;
 import org.example.model.VirtualScoreItem;
 import org.example.service.ApiService;
+import org.example.service.CpaPlanner;
 import org.example.service.EncryptionService;
-import org.example.service.LocalStorageService;
+import org.example.service.GpaAggregator;
+import org.example.service.LocalDataCache;
+import org.example.service.PublicKeyCache;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 public class VirtualScoresController {
     @FXML
@@ -105,7 +106,7 @@ public class VirtualScoresController {
 
     private ApiService apiService;
     private EncryptionService encryptionService;
-    private LocalStorageService localStorageService;
+    private LocalDataCache localDataCache;
 
     // Lưu thông tin batch để gửi lại khi save
     private Long batchId;
@@ -117,11 +118,17 @@ public class VirtualScoresController {
     // Track changes để hiển thị cảnh báo khi đóng
     private boolean hasUnsavedChanges = false;
 
+    // Hủy đăng ký nhận backup điểm mới khi đóng cửa sổ
+    private Runnable backupScoresSubscription;
+
+    // GPA và thống kê tính cộng dồn theo thay đổi của từng môn
+    private final GpaAggregator gpaAggregator = new GpaAggregator();
+
     @FXML
     public void initialize() {
         apiService = ApiService.getInstance();
         encryptionService = EncryptionService.getInstance();
-        localStorageService = LocalStorageService.getInstance();
+        localDataCache = LocalDataCache.getInstance();
 
         // Setup table columns
         selectedColumn.setCellValueFactory(new PropertyValueFactory<>("selected"));
@@ -176,28 +183,28 @@ public class VirtualScoresController {
         // Setup row factory for highlighting failed subjects
         setupRowFactory();
 
-        // Listen to selection changes to recalculate GPA and update select all button
-        scoresTable.getItems()
-                .addListener((javafx.collections.ListChangeListener.Change<? extends VirtualScoreItem> c) -> {
-                    while (c.next()) {
-                        if (c.wasAdded()) {
-                            for (VirtualScoreItem item : c.getAddedSubList()) {
-                                // Listen to property changes for new items
-                                item.selectedProperty().addListener((obs, oldVal, newVal) -> {
-                                    calculateGPA();
-                                    updateSelectAllButtonText();
-                                });
-                                item.scoreOverallProperty().addListener((obs, oldVal, newVal) -> calculateGPA());
-                                item.subjectCreditProperty().addListener((obs, oldVal, newVal) -> calculateGPA());
-                            }
-                            calculateGPA();
-                            updateSelectAllButtonText();
-                        } else if (c.wasRemoved()) {
-                            calculateGPA();
-                            updateSelectAllButtonText();
-                        }
-                    }
-                });
+        // GPA, thống kê và nút chọn tất cả bind vào bộ tổng hợp cộng dồn:
+        // mỗi thay đổi của một môn chỉ cập nhật phần chênh lệch, không quét lại cả bảng
+        gpaAggregator.bind(scoresTable.getItems());
+        gpaLabel.textProperty().bind(Bindings.createStringBinding(
+                () -> gpaAggregator.hasGpaProperty().get()
+                        ? String.format("GPA: %.2f", gpaAggregator.gpaProperty().get())
+                        : "GPA: -",
+                gpaAggregator.gpaProperty(), gpaAggregator.hasGpaProperty()));
+        if (statisticsLabel != null) {
+            statisticsLabel.textProperty().bind(Bindings.createStringBinding(
+                    () -> String.format("✅ Hoàn thành: %d môn | ❌ Chưa đạt: %d môn | 💎 Tín chỉ: %d",
+                            gpaAggregator.completedCountProperty().get(),
+                            gpaAggregator.failedCountProperty().get(),
+                            gpaAggregator.completedCreditsProperty().get()),
+                    gpaAggregator.completedCountProperty(), gpaAggregator.failedCountProperty(),
+                    gpaAggregator.completedCreditsProperty()));
+        }
+        if (selectAllButton != null) {
+            selectAllButton.textProperty().bind(Bindings.when(gpaAggregator.allSelectedProperty())
+                    .then("☐ Bỏ chọn tất cả")
+                    .otherwise("✓ Chọn tất cả"));
+        }
 
         // Format điểm số columns
         scoreOverallColumn.setCellFactory(column -> new TableCell<VirtualScoreItem, Double>() {
@@ -261,7 +268,6 @@ public class VirtualScoresController {
                     if (item != null) {
                         scoresTable.getItems().remove(item);
                         hasUnsavedChanges = true;
-                        calculateGPA();
                     }
                 });
             }
@@ -296,6 +302,13 @@ public class VirtualScoresController {
             restoreButton.setOnAction(e -> restoreFromBackupScores());
         }
 
+        // Màn hình xem điểm thi lưu backup mới thì báo ngay, không cần mở lại cửa sổ
+        backupScoresSubscription = localDataCache.subscribe(LocalDataCache.BACKUP_SCORES, backupScores -> {
+            if (backupScores != null) {
+                statusLabel.setText("Đã có điểm mới từ bảng điểm thi, bấm \"Khôi phục từ điểm thi\" để cập nhật");
+            }
+        });
+
         // Setup select all button
         if (selectAllButton != null) {
             selectAllButton.setOnAction(e -> selectAllSubjects());
@@ -324,7 +337,6 @@ public class VirtualScoresController {
             item.setScoreFirst(event.getNewValue());
             item.calculateOverallScore();
             hasUnsavedChanges = true;
-            calculateGPA();
             scoresTable.refresh();
         });
 
@@ -333,7 +345,6 @@ public class VirtualScoresController {
             item.setScoreSecond(event.getNewValue());
             item.calculateOverallScore();
             hasUnsavedChanges = true;
-            calculateGPA();
             scoresTable.refresh();
         });
 
@@ -342,7 +353,6 @@ public class VirtualScoresController {
             item.setScoreFinal(event.getNewValue());
             item.calculateOverallScore();
             hasUnsavedChanges = true;
-            calculateGPA();
             scoresTable.refresh();
         });
 
@@ -356,7 +366,6 @@ public class VirtualScoresController {
             VirtualScoreItem item = event.getRowValue();
             item.setSubjectCredit(event.getNewValue());
             hasUnsavedChanges = true;
-            calculateGPA(); // This will also update statistics
         });
     }
 
@@ -384,16 +393,12 @@ public class VirtualScoresController {
         statusLabel.setText("Đang tải bảng điểm ảo...");
         scoresTable.getItems().clear();
         studentInfoLabel.setText("");
-        gpaLabel.setText("GPA: -");
         hasUnsavedChanges = false; // Reset khi tải lại
-        if (statisticsLabel != null) {
-            statisticsLabel.setText("");
-        }
 
         new Thread(() -> {
             try {
                 // Lấy studentCode từ student info
-                JsonObject studentInfo = localStorageService.loadStudentInfo();
+                JsonObject studentInfo = localDataCache.get(LocalDataCache.STUDENT_INFO);
                 if (studentInfo == null || !studentInfo.has("student_code")) {
                     Platform.runLater(() -> {
                         showAlert(Alert.AlertType.ERROR, "Lỗi",
@@ -408,89 +413,9 @@ public class VirtualScoresController {
                 // Gọi API bảng điểm ảo
                 String response = apiService.getScoreBatch(studentCode);
 
-                // Parse response
-                JsonObject jsonResponse = JsonParser.parseString(response).getAsJsonObject();
-
-                String studentNameValue = getStringValue(jsonResponse, "studentName");
-                String studentCodeDisplay = getStringValue(jsonResponse, "studentCode");
-                String studentClassValue = getStringValue(jsonResponse, "studentClass");
-                String lastUpdatedValue = getStringValue(jsonResponse, "lastUpdated");
-
-                // Lưu batchId và studentId nếu có
-                final Long batchIdValue;
-                if (jsonResponse.has("batchId") && !jsonResponse.get("batchId").isJsonNull()) {
-                    batchIdValue = jsonResponse.get("batchId").getAsLong();
-                } else {
-                    batchIdValue = null;
-                }
-
-                final Long studentIdValue;
-                if (jsonResponse.has("studentId") && !jsonResponse.get("studentId").isJsonNull()) {
-                    studentIdValue = jsonResponse.get("studentId").getAsLong();
-                } else {
-                    studentIdValue = null;
-                }
-
-                JsonArray scoreItems = jsonResponse.has("scoreItems")
-                        ? jsonResponse.getAsJsonArray("scoreItems")
-                        : null;
-
-                final String finalStudentName = studentNameValue;
-                final String finalStudentClass = studentClassValue;
-                final String finalLastUpdated = lastUpdatedValue;
-
-                Platform.runLater(() -> {
-                    // Lưu thông tin để dùng khi save
-                    batchId = batchIdValue;
-                    studentId = studentIdValue;
-                    studentName = finalStudentName;
-                    studentClass = finalStudentClass;
-                    lastUpdated = finalLastUpdated;
-
-                    // Hiển thị thông tin sinh viên
-                    StringBuilder studentInfoText = new StringBuilder();
-                    if (!finalStudentName.isEmpty()) {
-                        studentInfoText.append("Họ tên: ").append(finalStudentName);
-                    }
-                    if (!studentCodeDisplay.isEmpty()) {
-                        if (studentInfoText.length() > 0)
-                            studentInfoText.append(" | ");
-                        studentInfoText.append("Mã SV: ").append(studentCodeDisplay);
-                    }
-                    if (!finalStudentClass.isEmpty()) {
-                        if (studentInfoText.length() > 0)
-                            studentInfoText.append(" | ");
-                        studentInfoText.append("Lớp: ").append(finalStudentClass);
-                    }
-                    if (!finalLastUpdated.isEmpty()) {
-                        if (studentInfoText.length() > 0)
-                            studentInfoText.append(" | ");
-                        studentInfoText.append("Cập nhật: ").append(finalLastUpdated);
-                    }
-                    studentInfoLabel.setText(studentInfoText.toString());
-
-                    // Parse và hiển thị điểm
-                    if (scoreItems != null) {
-                        for (JsonElement element : scoreItems) {
-                            JsonObject scoreObj = element.getAsJsonObject();
-                            VirtualScoreItem scoreItem = parseScoreItem(scoreObj);
-
-                            // Đảm bảo tính điểm chữ nếu chưa có
-                            scoreItem.ensureScoreText();
-
-                            // Add listeners for GPA calculation and statistics
-                            scoreItem.selectedProperty().addListener((obs, oldVal, newVal) -> calculateGPA());
-                            scoreItem.scoreOverallProperty().addListener((obs, oldVal, newVal) -> calculateGPA());
-                            scoreItem.subjectCreditProperty().addListener((obs, oldVal, newVal) -> calculateGPA());
-
-                            scoresTable.getItems().add(scoreItem);
-                        }
-                    }
-
-                    calculateGPA(); // This will also update statistics
-                    updateSelectAllButtonText();
-                    statusLabel.setText("Đã tải " + scoresTable.getItems().size() + " môn học");
-                });
+                // Parse và dựng model trên thread nền, FX thread chỉ việc gắn kết quả
+                ScoreBatchResult result = parseScoreBatchResponse(response);
+                Platform.runLater(() -> showScoreBatch(result));
 
             } catch (IOException e) {
                 Platform.runLater(() -> {
@@ -515,6 +440,78 @@ public class VirtualScoresController {
         }).start();
     }
 
+    /**
+     * Parse bảng điểm ảo thành model (trên thread nền)
+     */
+    private ScoreBatchResult parseScoreBatchResponse(String response) {
+        JsonObject jsonResponse = JsonParser.parseString(response).getAsJsonObject();
+
+        String studentNameValue = getStringValue(jsonResponse, "studentName");
+        String studentCodeDisplay = getStringValue(jsonResponse, "studentCode");
+        String studentClassValue = getStringValue(jsonResponse, "studentClass");
+        String lastUpdatedValue = getStringValue(jsonResponse, "lastUpdated");
+
+        // Lưu batchId và studentId nếu có
+        Long batchIdValue = jsonResponse.has("batchId") && !jsonResponse.get("batchId").isJsonNull()
+                ? jsonResponse.get("batchId").getAsLong()
+                : null;
+        Long studentIdValue = jsonResponse.has("studentId") && !jsonResponse.get("studentId").isJsonNull()
+                ? jsonResponse.get("studentId").getAsLong()
+                : null;
+
+        // Thông tin sinh viên hiển thị
+        StringBuilder studentInfoText = new StringBuilder();
+        if (!studentNameValue.isEmpty()) {
+            studentInfoText.append("Họ tên: ").append(studentNameValue);
+        }
+        if (!studentCodeDisplay.isEmpty()) {
+            if (studentInfoText.length() > 0)
+                studentInfoText.append(" | ");
+            studentInfoText.append("Mã SV: ").append(studentCodeDisplay);
+        }
+        if (!studentClassValue.isEmpty()) {
+            if (studentInfoText.length() > 0)
+                studentInfoText.append(" | ");
+            studentInfoText.append("Lớp: ").append(studentClassValue);
+        }
+        if (!lastUpdatedValue.isEmpty()) {
+            if (studentInfoText.length() > 0)
+                studentInfoText.append(" | ");
+            studentInfoText.append("Cập nhật: ").append(lastUpdatedValue);
+        }
+
+        List<VirtualScoreItem> items = new ArrayList<>();
+        if (jsonResponse.has("scoreItems")) {
+            for (JsonElement element : jsonResponse.getAsJsonArray("scoreItems")) {
+                VirtualScoreItem scoreItem = parseScoreItem(element.getAsJsonObject());
+
+                // Đảm bảo tính điểm chữ nếu chưa có
+                scoreItem.ensureScoreText();
+
+                items.add(scoreItem);
+            }
+        }
+
+        return new ScoreBatchResult(batchIdValue, studentIdValue, studentNameValue, studentClassValue,
+                lastUpdatedValue, studentInfoText.toString(), items);
+    }
+
+    /**
+     * Gắn bảng điểm ảo đã dựng xong lên UI trong một lần
+     */
+    private void showScoreBatch(ScoreBatchResult result) {
+        // Lưu thông tin để dùng khi save
+        batchId = result.batchId;
+        studentId = result.studentId;
+        studentName = result.studentName;
+        studentClass = result.studentClass;
+        lastUpdated = result.lastUpdated;
+
+        studentInfoLabel.setText(result.studentInfoText);
+        scoresTable.getItems().setAll(result.items);
+        statusLabel.setText("Đã tải " + result.items.size() + " môn học");
+    }
+
     private VirtualScoreItem parseScoreItem(JsonObject obj) {
         VirtualScoreItem item = new VirtualScoreItem();
         item.setItemId(obj.has("itemId") && !obj.get("itemId").isJsonNull()
@@ -558,11 +555,6 @@ public class VirtualScoresController {
         newItem.calculateOverallScore(); // Tính điểm tổng kết và điểm chữ
         newItem.setSelected(true);
 
-        // Add listeners for GPA calculation and statistics
-        newItem.selectedProperty().addListener((obs, oldVal, newVal) -> calculateGPA());
-        newItem.scoreOverallProperty().addListener((obs, oldVal, newVal) -> calculateGPA());
-        newItem.subjectCreditProperty().addListener((obs, oldVal, newVal) -> calculateGPA());
-
         scoresTable.getItems().add(newItem);
         hasUnsavedChanges = true;
         scoresTable.getSelectionModel().select(newItem);
@@ -580,7 +572,7 @@ public class VirtualScoresController {
         new Thread(() -> {
             try {
                 // Lấy studentCode từ student info
-                JsonObject studentInfo = localStorageService.loadStudentInfo();
+                JsonObject studentInfo = localDataCache.get(LocalDataCache.STUDENT_INFO);
                 if (studentInfo == null || !studentInfo.has("student_code")) {
                     Platform.runLater(() -> {
                         showAlert(Alert.AlertType.ERROR, "Lỗi",
@@ -591,10 +583,6 @@ public class VirtualScoresController {
 
                 String studentCode = studentInfo.get("student_code").getAsString();
 
-                // Lấy public key và thiết lập encryption service
-                String publicKey = apiService.getPublicKey();
-                encryptionService.setPublicKey(publicKey);
-
                 // Tạo payload theo đúng cấu trúc DTO ScoreBatchRequestDTO
                 JsonObject payload = new JsonObject();
 
@@ -633,69 +621,47 @@ public class VirtualScoresController {
                     payload.addProperty("lastUpdated", lastUpdated);
                 }
 
-                // Mã hóa payload bằng hybrid encryption
                 String dataToEncrypt = payload.toString();
-                EncryptionService.EncryptionResult encryptionResult = encryptionService.encryptHybrid(dataToEncrypt);
-
-                // Tạo request body với encrypted data
-                JsonObject requestBody = new JsonObject();
-                requestBody.addProperty("encryptedKey", encryptionResult.getEncryptedKey());
-                requestBody.addProperty("encryptedData", encryptionResult.getEncryptedData());
-                requestBody.addProperty("iv", encryptionResult.getIv());
-
-                // Gọi API POST /api/v1/score-batch/create-or-update
-                OkHttpClient client = new OkHttpClient.Builder()
-                        .connectTimeout(30, TimeUnit.SECONDS)
-                        .readTimeout(30, TimeUnit.SECONDS)
-                        .writeTimeout(30, TimeUnit.SECONDS)
-                        .build();
-
-                RequestBody body = RequestBody.create(
-                        requestBody.toString(),
-                        MediaType.get("application/json; charset=utf-8"));
-
-                Request request = new Request.Builder()
-                        .url(apiService.getBaseUrl() + "/api/v1/score-batch/create-or-update")
-                        .post(body)
-                        .build();
-
-                try (Response response = client.newCall(request).execute()) {
-                    String responseBody = response.body().string();
 
+                // Gọi API POST /api/v1/score-batch/create-or-update qua client dùng chung
+                // Public key lấy từ cache; nếu server không giải mã được thì lấy lại key và gửi lại
+                String responseBody;
+                try {
+                    responseBody = PublicKeyCache.getInstance().call(() -> {
+                        // Mã hóa payload bằng hybrid encryption
+                        EncryptionService.EncryptionResult encryptionResult = encryptionService
+                                .encryptHybrid(dataToEncrypt);
+                        return apiService.saveScoreBatch(
+                                encryptionResult.getEncryptedKey(),
+                                encryptionResult.getEncryptedData(),
+                                encryptionResult.getIv());
+                    });
+                } catch (IOException e) {
+                    // Response không thành công
                     Platform.runLater(() -> {
-                        // Nếu response thành công (status code 200-299), coi như thành công
-                        if (response.isSuccessful()) {
-                            hasUnsavedChanges = false; // Đánh dấu đã lưu
-                            statusLabel.setText("Đã lưu thành công " + scoresTable.getItems().size() + " môn học");
-                            showAlert(Alert.AlertType.INFORMATION, "Thành công",
-                                    "Đã lưu điểm lên hệ thống thành công!");
-
-                            // Cập nhật batchId nếu có trong response
-                            try {
-                                JsonObject jsonResponse = JsonParser.parseString(responseBody).getAsJsonObject();
-                                if (jsonResponse.has("batchId") && !jsonResponse.get("batchId").isJsonNull()) {
-                                    batchId = jsonResponse.get("batchId").getAsLong();
-                                }
-                            } catch (Exception e) {
-                                // Ignore parsing errors if response is not JSON
-                            }
-                        } else {
-                            // Response không thành công
-                            String message = "Không thể lưu điểm";
-                            try {
-                                JsonObject jsonResponse = JsonParser.parseString(responseBody).getAsJsonObject();
-                                if (jsonResponse.has("message")) {
-                                    message = jsonResponse.get("message").getAsString();
-                                }
-                            } catch (Exception e) {
-                                message = "Lỗi HTTP " + response.code();
-                            }
-                            statusLabel.setText("Lỗi khi lưu điểm");
-                            showAlert(Alert.AlertType.ERROR, "Lỗi", message);
-                        }
+                        statusLabel.setText("Lỗi khi lưu điểm");
+                        showAlert(Alert.AlertType.ERROR, "Lỗi", e.getMessage());
                     });
+                    return;
                 }
 
+                Platform.runLater(() -> {
+                    hasUnsavedChanges = false; // Đánh dấu đã lưu
+                    statusLabel.setText("Đã lưu thành công " + scoresTable.getItems().size() + " môn học");
+                    showAlert(Alert.AlertType.INFORMATION, "Thành công",
+                            "Đã lưu điểm lên hệ thống thành công!");
+
+                    // Cập nhật batchId nếu có trong response
+                    try {
+                        JsonObject jsonResponse = JsonParser.parseString(responseBody).getAsJsonObject();
+                        if (jsonResponse.has("batchId") && !jsonResponse.get("batchId").isJsonNull()) {
+                            batchId = jsonResponse.get("batchId").getAsLong();
+                        }
+                    } catch (Exception e) {
+                        // Ignore parsing errors if response is not JSON
+                    }
+                });
+
             } catch (Exception e) {
                 Platform.runLater(() -> {
                     statusLabel.setText("Lỗi khi lưu điểm");
@@ -707,63 +673,6 @@ public class VirtualScoresController {
         }).start();
     }
 
-    private void calculateGPA() {
-        List<VirtualScoreItem> selectedItems = new ArrayList<>();
-        List<VirtualScoreItem> completedItems = new ArrayList<>();
-        List<VirtualScoreItem> failedItems = new ArrayList<>();
-        int totalCompletedCredits = 0;
-
-        for (VirtualScoreItem item : scoresTable.getItems()) {
-            if (item.isSelected() && !item.isPhysicalEducation()) {
-                selectedItems.add(item);
-            }
-
-            // Tính toán thống kê cho tất cả các môn (không chỉ môn đã chọn)
-            if (!item.isPhysicalEducation() && item.getScoreOverall() > 0) {
-                if (!item.checkFailed()) {
-                    completedItems.add(item);
-                    totalCompletedCredits += item.getSubjectCredit();
-                } else {
-                    failedItems.add(item);
-                }
-            }
-        }
-
-        // Tính GPA
-        if (selectedItems.isEmpty()) {
-            gpaLabel.setText("GPA: -");
-        } else {
-            double totalPoints = 0.0;
-            int totalCredits = 0;
-
-            for (VirtualScoreItem item : selectedItems) {
-                double score4 = ScoreItem.convertToScale4(item.getScoreOverall());
-                int credit = item.getSubjectCredit();
-
-                if (credit > 0) {
-                    totalPoints += score4 * credit;
-                    totalCredits += credit;
-                }
-            }
-
-            double gpa = totalCredits > 0 ? totalPoints / totalCredits : 0.0;
-            gpa = Math.round(gpa * 100.0) / 100.0;
-
-            gpaLabel.setText(String.format("GPA: %.2f", gpa));
-        }
-
-        // Cập nhật thống kê
-        updateStatistics(completedItems.size(), failedItems.size(), totalCompletedCredits);
-    }
-
-    private void updateStatistics(int completedCount, int failedCount, int totalCredits) {
-        if (statisticsLabel != null) {
-            String stats = String.format("✅ Hoàn thành: %d môn | ❌ Chưa đạt: %d môn | 💎 Tín chỉ: %d",
-                    completedCount, failedCount, totalCredits);
-            statisticsLabel.setText(stats);
-        }
-    }
-
     private String getStringValue(JsonObject obj, String key) {
         if (obj.has(key) && !obj.get(key).isJsonNull()) {
             return obj.get(key).getAsString();
@@ -811,6 +720,7 @@ public class VirtualScoresController {
 
     // Override để bắt sự kiện đóng window
     public void setupCloseHandler(Stage stage) {
+        stage.addEventHandler(WindowEvent.WINDOW_HIDDEN, event -> backupScoresSubscription.run());
         stage.setOnCloseRequest(event -> {
             if (hasUnsavedChanges) {
                 Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
@@ -871,20 +781,12 @@ public class VirtualScoresController {
 
         tableContainer.getChildren().add(headerRow);
 
-        // Data rows
-        String[][] data = {
-                { "9.0 - 10.0", "4", "A+", "Xuất sắc" },
-                { "8.5 - 8.9", "3.8", "A", "Giỏi" },
-                { "7.8 - 8.4", "3.5", "B+", "Khá" },
-                { "7.0 - 7.7", "3", "B", "Khá" },
-                { "6.3 - 6.9", "2.4", "C+", "Trung bình" },
-                { "5.5 - 6.2", "2", "C", "Trung bình" },
-                { "4.8 - 5.4", "1.5", "D+", "Trung bình yếu" },
-                { "4.0 - 4.7", "1", "D", "Trung bình yếu" },
-                { "0.0 - 3.9", "0", "F", "Kém" }
-        };
-
-        for (int i = 0; i < data.length; i++) {
+        // Data rows (lấy từ quy chế hiện hành để khớp với cách tính điểm)
+        List<GradingPolicy.Grade> grades = GradingPolicy.current().getGrades();
+        for (int i = 0; i < grades.size(); i++) {
+            GradingPolicy.Grade grade = grades.get(i);
+            String[] cells = { grade.getRangeText(), grade.getPoints4Text(), grade.getLetter(),
+                    grade.getClassification() };
             HBox dataRow = new HBox();
             dataRow.setPadding(new Insets(10, 12, 10, 12));
             dataRow.setSpacing(10);
@@ -894,7 +796,7 @@ public class VirtualScoresController {
                 dataRow.setStyle("-fx-background-color: #1a1a1a;");
             }
 
-            for (String cell : data[i]) {
+            for (String cell : cells) {
                 Label cellLabel = new Label(cell);
                 cellLabel.setStyle("-fx-text-fill: white; -fx-font-size: 12px;");
                 cellLabel.setPrefWidth(120);
@@ -938,7 +840,7 @@ public class VirtualScoresController {
         int totalSubjects = scoresTable.getItems().size();
         int failedSubjects = 0;
         int totalCompletedCredits = 0;
-        double currentTotalPoints = 0.0;
+        long currentPointHundredths = 0; // Σ điểm thang 4 (x100) x tín chỉ
         int currentTotalCredits = 0;
 
         for (VirtualScoreItem item : scoresTable.getItems()) {
@@ -947,20 +849,19 @@ public class VirtualScoresController {
                     failedSubjects++;
                 } else {
                     totalCompletedCredits += item.getSubjectCredit();
-                    double score4 = ScoreItem.convertToScale4(item.getScoreOverall());
-                    currentTotalPoints += score4 * item.getSubjectCredit();
+                    double score4 = GradingPolicy.current().toScale4(item.getScoreOverall());
+                    currentPointHundredths += Math.round(score4 * 100) * item.getSubjectCredit();
                     currentTotalCredits += item.getSubjectCredit();
                 }
             }
         }
 
         int completedSubjects = totalSubjects - failedSubjects;
-        double currentGPA = currentTotalCredits > 0 ? currentTotalPoints / currentTotalCredits : 0.0;
+        double currentGPA = currentTotalCredits > 0 ? currentPointHundredths / 100.0 / currentTotalCredits : 0.0;
 
         // Tạo final variables để sử dụng trong lambda
         final int finalTotalCompletedCredits = totalCompletedCredits;
-        final double finalCurrentTotalPoints = currentTotalPoints;
-        final int finalCurrentTotalCredits = currentTotalCredits;
+        final long finalCurrentPointHundredths = currentPointHundredths;
 
         Stage popupStage = new Stage();
         popupStage.initModality(Modality.WINDOW_MODAL);
@@ -1034,7 +935,14 @@ public class VirtualScoresController {
         Label sliderLabel = new Label("Chỉ số khả năng (mức tối thiểu bạn có thể đạt, có thể đạt cao hơn):");
         sliderLabel.setStyle("-fx-font-size: 13px; -fx-text-fill: white;");
 
-        Slider abilitySlider = new Slider(0, 7, 5);
+        // Các mức khả năng: các mức điểm đạt (D -> A+) theo quy chế hiện hành
+        List<GradingPolicy.Grade> passingGrades = GradingPolicy.current().getPassingGrades();
+        String[] gradeLabels = new String[passingGrades.size()];
+        for (int i = 0; i < passingGrades.size(); i++) {
+            gradeLabels[i] = passingGrades.get(i).getLetter();
+        }
+
+        Slider abilitySlider = new Slider(0, gradeLabels.length - 1, Math.min(5, gradeLabels.length - 1));
         abilitySlider.setShowTickLabels(true);
         abilitySlider.setShowTickMarks(true);
         abilitySlider.setMajorTickUnit(1);
@@ -1043,8 +951,7 @@ public class VirtualScoresController {
         abilitySlider.setPrefWidth(560);
         abilitySlider.setMaxWidth(560);
 
-        // Labels cho slider - căn đều với các mốc 0-7
-        String[] gradeLabels = { "D", "D+", "C", "C+", "B", "B+", "A", "A+" };
+        // Labels cho slider - căn đều với các mốc
         HBox sliderLabelsBox = new HBox();
         sliderLabelsBox.setPrefWidth(560);
         sliderLabelsBox.setMaxWidth(560);
@@ -1054,12 +961,12 @@ public class VirtualScoresController {
         for (int i = 0; i < gradeLabels.length; i++) {
             Label gradeLabel = new Label(gradeLabels[i]);
             gradeLabel.setStyle("-fx-font-size: 11px; -fx-text-fill: #99a8b8;");
-            gradeLabel.setPrefWidth(70); // 560 / 8 = 70px mỗi label
+            gradeLabel.setPrefWidth(560.0 / gradeLabels.length); // Chia đều 560px cho các label
             gradeLabel.setAlignment(Pos.CENTER);
             sliderLabelsBox.getChildren().add(gradeLabel);
         }
 
-        Label sliderValueLabel = new Label("B+");
+        Label sliderValueLabel = new Label(gradeLabels[(int) Math.round(abilitySlider.getValue())]);
         sliderValueLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #3F5EFB;");
 
         abilitySlider.valueProperty().addListener((obs, oldVal, newVal) -> {
@@ -1122,198 +1029,89 @@ public class VirtualScoresController {
 
         buttonBox.getChildren().addAll(calculateButton, closeButton);
 
-        // Tính toán khi bấm nút
-        calculateButton.setOnAction(e -> {
+        // Lập kế hoạch: chạy lại ngay khi người dùng sửa thông tin (quy hoạch động chỉ mất vài ms)
+        Runnable recalculate = () -> {
+            String totalCreditsText = totalCreditsField.getText().trim();
+            String targetCPAText = targetCPAField.getText().trim();
+            if (totalCreditsText.isEmpty() || targetCPAText.isEmpty()) {
+                showCPAMessage(finalResultContent, "Nhập thông tin và bấm 'Tính toán' để xem kết quả", "#99a8b8");
+                return;
+            }
+
             try {
-                int totalCreditsNeeded = Integer.parseInt(totalCreditsField.getText().trim());
-                double targetCPA = Double.parseDouble(targetCPAField.getText().trim());
+                int totalCreditsNeeded = Integer.parseInt(totalCreditsText);
+                double targetCPA = Double.parseDouble(targetCPAText);
                 int selectedCredit = credit2Button.isSelected() ? 2 : 3;
                 int abilityIndex = (int) Math.round(abilitySlider.getValue());
 
                 if (totalCreditsNeeded <= 0 || targetCPA < 0 || targetCPA > 4.0) {
-                    resultText.setText("❌ Vui lòng nhập giá trị hợp lệ!");
-                    resultText.setStyle("-fx-font-size: 13px; -fx-text-fill: #ff5252; -fx-wrap-text: true;");
+                    showCPAMessage(finalResultContent, "❌ Vui lòng nhập giá trị hợp lệ!", "#ff5252");
                     return;
                 }
 
-                // Tính toán
                 int remainingCredits = totalCreditsNeeded - finalTotalCompletedCredits;
                 if (remainingCredits <= 0) {
-                    resultText.setText("✅ Bạn đã đạt đủ số tín chỉ cần thiết!");
-                    resultText.setStyle("-fx-font-size: 13px; -fx-text-fill: #4caf50; -fx-wrap-text: true;");
+                    showCPAMessage(finalResultContent, "✅ Bạn đã đạt đủ số tín chỉ cần thiết!", "#4caf50");
                     return;
                 }
-
-                // Tính số điểm cần đạt
-                double totalPointsNeeded = targetCPA * totalCreditsNeeded;
-                double remainingPointsNeeded = totalPointsNeeded - finalCurrentTotalPoints;
-
-                if (remainingPointsNeeded < 0) {
-                    resultText.setText("✅ Bạn đã đạt được CPA mong muốn!");
-                    resultText.setStyle("-fx-font-size: 13px; -fx-text-fill: #4caf50; -fx-wrap-text: true;");
+                if (remainingCredits > CpaPlanner.MAX_REMAINING_CREDITS) {
+                    showCPAMessage(finalResultContent, String.format(
+                            "❌ Số tín chỉ còn lại quá lớn (tối đa %d tín chỉ)!", CpaPlanner.MAX_REMAINING_CREDITS),
+                            "#ff5252");
                     return;
                 }
 
-                // Tính số môn cần đạt
-                int numSubjectsNeeded = (int) Math.ceil((double) remainingCredits / selectedCredit);
-
-                // Điểm thang 4 tương ứng với khả năng (mức tối thiểu)
-                double[] gradePoints = { 1.0, 1.5, 2.0, 2.4, 3.0, 3.5, 3.8, 4.0 };
-                double abilityPoint = gradePoints[abilityIndex];
-
-                // Kiểm tra xem có thể đạt được CPA không (nếu tất cả đạt A+)
-                double maxPossiblePoints = remainingCredits * 4.0;
-                if (remainingPointsNeeded > maxPossiblePoints) {
-                    resultText.setText(
-                            "❌ Không thể đạt được CPA này! Ngay cả khi đạt A+ (4.0) cho tất cả các môn còn lại, bạn vẫn không thể đạt được CPA mong muốn.");
-                    resultText.setStyle("-fx-font-size: 13px; -fx-text-fill: #ff5252; -fx-wrap-text: true;");
+                // Các mức được chọn: từ mức khả năng trở lên
+                CpaPlanner.Plan plan = CpaPlanner.plan(finalCurrentPointHundredths, totalCreditsNeeded,
+                        remainingCredits, selectedCredit, targetCPA,
+                        passingGrades.subList(abilityIndex, passingGrades.size()));
+
+                if (!plan.isFeasible()) {
+                    showCPAMessage(finalResultContent, String.format(
+                            "❌ Không thể đạt được CPA %.2f! Ngay cả khi đạt %s (%s) cho tất cả %d tín chỉ còn lại, " +
+                                    "CPA tối đa chỉ là %.2f.\n\n" +
+                                    "Các môn còn lại cần trung bình %.2f (thang 4), vượt quá mức cao nhất.",
+                            targetCPA, plan.getTopGrade().getLetter(), plan.getTopGrade().getPoints4Text(),
+                            remainingCredits, plan.getMaxCpa(), plan.getRequiredAverage()), "#ff5252");
                     return;
                 }
 
-                // Kiểm tra xem với khả năng tối thiểu (nếu tất cả đạt mức khả năng) có đạt được
-                // không
-                double minPossiblePoints = remainingCredits * abilityPoint;
-
-                // Tính phân bổ điểm
-                int numSubjectsAtAbility = 0;
-                int numSubjectsAtA = 0;
-                int numSubjectsAtAPlus = 0;
-
-                if (remainingPointsNeeded <= minPossiblePoints) {
-                    // Nếu tất cả môn ở mức khả năng đã đủ, phân bổ tất cả ở mức khả năng
-                    numSubjectsAtAbility = numSubjectsNeeded;
-                } else {
-                    // Cần một số môn đạt cao hơn mức khả năng
-                    // Tính xem cần bao nhiêu điểm từ A/A+ để bù đắp
-                    double pointsNeededFromHighGrades = remainingPointsNeeded - minPossiblePoints;
-
-                    // Thử tìm phân bổ tối ưu: nhiều môn ở mức khả năng, còn lại ở A/A+
-                    boolean foundSolution = false;
-
-                    // Thử từ nhiều môn ở mức khả năng nhất có thể
-                    for (int nAbility = numSubjectsNeeded; nAbility >= 0; nAbility--) {
-                        int remainingSubjects = numSubjectsNeeded - nAbility;
-                        int remainingCreditsForHigh = remainingCredits - (nAbility * selectedCredit);
-
-                        if (remainingCreditsForHigh < 0)
-                            continue;
-                        if (remainingCreditsForHigh == 0 && nAbility > 0) {
-                            // Tất cả tín chỉ đã được phân bổ cho mức khả năng
-                            double totalPoints = nAbility * abilityPoint * selectedCredit;
-                            if (Math.abs(totalPoints - remainingPointsNeeded) < 0.1) {
-                                numSubjectsAtAbility = nAbility;
-                                foundSolution = true;
-                                break;
-                            }
-                            continue;
-                        }
-
-                        // Thử phân bổ giữa A và A+ cho số môn còn lại
-                        int maxSubjectsForHigh = (int) Math.ceil((double) remainingCreditsForHigh / selectedCredit);
-                        for (int nA = 0; nA <= maxSubjectsForHigh; nA++) {
-                            int nAPlus = maxSubjectsForHigh - nA;
-                            int creditsA = nA * selectedCredit;
-                            int creditsAPlus = nAPlus * selectedCredit;
-
-                            if (creditsA + creditsAPlus != remainingCreditsForHigh)
-                                continue;
-
-                            double totalPoints = nAbility * abilityPoint * selectedCredit +
-                                    nA * 3.8 * selectedCredit +
-                                    nAPlus * 4.0 * selectedCredit;
-
-                            // Kiểm tra xem có đạt được điểm cần thiết không (cho phép sai số nhỏ)
-                            if (Math.abs(totalPoints - remainingPointsNeeded) < 0.1) {
-                                numSubjectsAtAbility = nAbility;
-                                numSubjectsAtA = nA;
-                                numSubjectsAtAPlus = nAPlus;
-                                foundSolution = true;
-                                break;
-                            }
-                        }
-                        if (foundSolution)
-                            break;
-                    }
-
-                    if (!foundSolution) {
-                        // Nếu không tìm được giải pháp chính xác, tính gần đúng
-                        // Ưu tiên nhiều môn ở mức khả năng
-                        numSubjectsAtAbility = (int) Math.floor((double) remainingCredits / selectedCredit);
-                        int remainingCreditsForHigh = remainingCredits - (numSubjectsAtAbility * selectedCredit);
-                        int remainingSubjectsForHigh = (int) Math
-                                .ceil((double) remainingCreditsForHigh / selectedCredit);
-
-                        double pointsFromAbility = numSubjectsAtAbility * abilityPoint * selectedCredit;
-                        double remainingPointsForHigh = remainingPointsNeeded - pointsFromAbility;
-
-                        if (remainingPointsForHigh > 0 && remainingSubjectsForHigh > 0) {
-                            // Phân bổ giữa A và A+
-                            double avgNeededForHigh = remainingPointsForHigh / remainingCreditsForHigh;
-                            if (avgNeededForHigh >= 3.9) {
-                                // Cần nhiều A+
-                                numSubjectsAtAPlus = remainingSubjectsForHigh;
-                                numSubjectsAtA = 0;
-                            } else {
-                                // Phân bổ giữa A và A+
-                                numSubjectsAtAPlus = (int) Math
-                                        .ceil((remainingPointsForHigh - remainingCreditsForHigh * 3.8)
-                                                / (selectedCredit * 0.2));
-                                if (numSubjectsAtAPlus > remainingSubjectsForHigh) {
-                                    numSubjectsAtAPlus = remainingSubjectsForHigh;
-                                }
-                                numSubjectsAtA = remainingSubjectsForHigh - numSubjectsAtAPlus;
-                            }
-                        }
-                    }
-                }
-
-                // Kiểm tra lại
-                int totalCreditsCheck = numSubjectsAtAPlus * selectedCredit + numSubjectsAtA * selectedCredit
-                        + numSubjectsAtAbility * selectedCredit;
-                double totalPointsCheck = numSubjectsAtAPlus * 4.0 * selectedCredit +
-                        numSubjectsAtA * 3.8 * selectedCredit +
-                        numSubjectsAtAbility * abilityPoint * selectedCredit;
-                double finalCPA = (finalCurrentTotalPoints + totalPointsCheck) / totalCreditsNeeded;
-
-                // Kiểm tra xem có thể đạt được CPA với khả năng hiện tại không
-                if (remainingPointsNeeded > minPossiblePoints) {
-                    // Cần một số môn đạt cao hơn mức khả năng
-                    // Kiểm tra xem phân bổ có hợp lý không
-                    double actualPoints = totalPointsCheck;
-                    if (actualPoints < remainingPointsNeeded - 0.5) {
-                        // Không thể đạt được với khả năng này
-                        finalResultContent.getChildren().clear();
-                        Label errorLabel = new Label(String.format(
-                                "❌ Với khả năng học ở mức %s (%.1f), bạn không thể đạt được CPA mục tiêu %.2f!\n\n" +
-                                        "Để đạt được CPA này, bạn cần:\n" +
-                                        "• Nâng cao khả năng học lên mức cao hơn, hoặc\n" +
-                                        "• Giảm CPA mục tiêu xuống mức thấp hơn.\n\n" +
-                                        "Với khả năng hiện tại, CPA tối đa có thể đạt được là: %.2f",
-                                gradeLabels[abilityIndex], abilityPoint, targetCPA,
-                                (finalCurrentTotalPoints + minPossiblePoints) / totalCreditsNeeded));
-                        errorLabel.setStyle("-fx-font-size: 13px; -fx-text-fill: #ff5252; -fx-wrap-text: true;");
-                        errorLabel.setMaxWidth(500);
-                        finalResultContent.getChildren().add(errorLabel);
-                        return;
-                    }
-                }
-
-                // Tạo bảng kết quả rõ ràng
                 finalResultContent.getChildren().clear();
 
                 // Thông tin tổng quan
+                int numSubjectsNeeded = 0;
+                for (CpaPlanner.Allocation allocation : plan.getAllocations()) {
+                    numSubjectsNeeded += allocation.getSubjects();
+                }
                 VBox summaryBox = new VBox(8);
                 summaryBox.setStyle("-fx-background-color: #1a1a1a; -fx-background-radius: 5px; -fx-padding: 12px;");
                 Label summaryTitle = new Label("📊 Thông tin tổng quan:");
                 summaryTitle.setStyle("-fx-font-size: 14px; -fx-font-weight: bold; -fx-text-fill: white;");
                 Label summaryText = new Label(String.format(
                         "Số tín chỉ còn lại cần đạt: %d tín chỉ\n" +
-                                "Số môn cần đạt (môn %d tín chỉ/môn): %d môn",
-                        remainingCredits, selectedCredit, numSubjectsNeeded));
+                                "Số môn cần đạt (môn %d tín chỉ/môn): %d môn\n" +
+                                "Điểm trung bình tối thiểu các môn còn lại: %.2f (thang 4)",
+                        remainingCredits, selectedCredit, numSubjectsNeeded, plan.getRequiredAverage()));
                 summaryText.setStyle("-fx-font-size: 12px; -fx-text-fill: #e0e0e0; -fx-line-spacing: 5px;");
                 summaryBox.getChildren().addAll(summaryTitle, summaryText);
 
-                // Bảng phân bổ điểm
+                // Ranh giới khả thi với mức khả năng đã chọn
+                VBox boundaryBox = new VBox(8);
+                boundaryBox.setStyle("-fx-background-color: #1a1a1a; -fx-background-radius: 5px; -fx-padding: 12px;");
+                Label boundaryTitle = new Label("📐 Ranh giới khả thi:");
+                boundaryTitle.setStyle("-fx-font-size: 14px; -fx-font-weight: bold; -fx-text-fill: white;");
+                GradingPolicy.Grade uniformGrade = plan.getUniformGrade();
+                Label boundaryText = new Label(String.format(
+                        "CPA thấp nhất (tất cả đạt %s): %.2f\n" +
+                                "CPA cao nhất (tất cả đạt %s): %.2f\n" +
+                                "Phương án đều: tất cả các môn đạt %s",
+                        plan.getMinimumGrade().getLetter(), plan.getMinCpa(),
+                        plan.getTopGrade().getLetter(), plan.getMaxCpa(),
+                        uniformGrade != null ? uniformGrade.getLetter() : "-"));
+                boundaryText.setStyle("-fx-font-size: 12px; -fx-text-fill: #e0e0e0; -fx-line-spacing: 5px;");
+                boundaryBox.getChildren().addAll(boundaryTitle, boundaryText);
+
+                // Bảng phân bổ điểm (phương án ít công sức nhất)
                 VBox tableBox = new VBox(0);
                 tableBox.setStyle(
                         "-fx-background-color: #1a1a1a; -fx-background-radius: 5px; -fx-border-color: #3a3a3a; -fx-border-radius: 5px;");
@@ -1337,19 +1135,9 @@ public class VirtualScoresController {
 
                 // Data rows
                 int rowIndex = 0;
-                if (numSubjectsAtAPlus > 0) {
-                    HBox dataRow = createCPADataRow("A+", numSubjectsAtAPlus, selectedCredit, 4.0, rowIndex % 2 == 0);
-                    tableBox.getChildren().add(dataRow);
-                    rowIndex++;
-                }
-                if (numSubjectsAtA > 0) {
-                    HBox dataRow = createCPADataRow("A", numSubjectsAtA, selectedCredit, 3.8, rowIndex % 2 == 0);
-                    tableBox.getChildren().add(dataRow);
-                    rowIndex++;
-                }
-                if (numSubjectsAtAbility > 0) {
-                    HBox dataRow = createCPADataRow(gradeLabels[abilityIndex], numSubjectsAtAbility, selectedCredit,
-                            abilityPoint, rowIndex % 2 == 0);
+                for (CpaPlanner.Allocation allocation : plan.getAllocations()) {
+                    HBox dataRow = createCPADataRow(allocation.getGrade().getLetter(), allocation.getSubjects(),
+                            allocation.getCreditPerSubject(), allocation.getGrade().getPoints4(), rowIndex % 2 == 0);
                     tableBox.getChildren().add(dataRow);
                     rowIndex++;
                 }
@@ -1375,12 +1163,12 @@ public class VirtualScoresController {
                 totalLabel3.setPrefWidth(100.0);
                 totalLabel3.setAlignment(Pos.CENTER);
 
-                Label totalLabel4 = new Label(String.valueOf(totalCreditsCheck));
+                Label totalLabel4 = new Label(String.valueOf(plan.getRemainingCredits()));
                 totalLabel4.setStyle("-fx-text-fill: white; -fx-font-weight: bold; -fx-font-size: 12px;");
                 totalLabel4.setPrefWidth(100.0);
                 totalLabel4.setAlignment(Pos.CENTER);
 
-                Label totalLabel5 = new Label(String.format("%.1f", totalPointsCheck / totalCreditsCheck));
+                Label totalLabel5 = new Label(String.format("%.2f", plan.getPlannedAverage()));
                 totalLabel5.setStyle("-fx-text-fill: white; -fx-font-weight: bold; -fx-font-size: 12px;");
                 totalLabel5.setPrefWidth(100.0);
                 totalLabel5.setAlignment(Pos.CENTER);
@@ -1392,31 +1180,38 @@ public class VirtualScoresController {
                 VBox cpaBox = new VBox(8);
                 cpaBox.setStyle(
                         "-fx-background-color: #1a3a1a; -fx-background-radius: 5px; -fx-padding: 15px; -fx-border-color: #4caf50; -fx-border-width: 2px; -fx-border-radius: 5px;");
-                Label cpaTitle = new Label("✅ CPA dự kiến khi đạt được:");
+                Label cpaTitle = new Label(plan.isReachedAtMinimum()
+                        ? "✅ Chỉ cần đạt mức khả năng ở mọi môn, CPA dự kiến:"
+                        : "✅ CPA dự kiến khi đạt được:");
                 cpaTitle.setStyle("-fx-font-size: 14px; -fx-font-weight: bold; -fx-text-fill: #4caf50;");
-                Label cpaValue = new Label(String.format("%.2f / %.2f", finalCPA, targetCPA));
+                Label cpaValue = new Label(String.format("%.2f / %.2f", plan.getPlannedCpa(), targetCPA));
                 cpaValue.setStyle("-fx-font-size: 24px; -fx-font-weight: bold; -fx-text-fill: #4caf50;");
-                Label cpaNote = new Label(String.format("(CPA mục tiêu: %.2f)", targetCPA));
+                Label cpaNote = new Label(String.format(
+                        "(CPA mục tiêu: %.2f - phương án vượt mức khả năng ít nhất: %d bậc x tín chỉ)",
+                        targetCPA, plan.getEffort()));
                 cpaNote.setStyle("-fx-font-size: 11px; -fx-text-fill: #99a8b8;");
                 cpaBox.getChildren().addAll(cpaTitle, cpaValue, cpaNote);
 
-                finalResultContent.getChildren().addAll(summaryBox, tableBox, cpaBox);
+                finalResultContent.getChildren().addAll(summaryBox, boundaryBox, tableBox, cpaBox);
                 finalResultContent.setSpacing(15);
 
             } catch (NumberFormatException ex) {
-                finalResultContent.getChildren().clear();
-                Label errorLabel = new Label("❌ Vui lòng nhập số hợp lệ!");
-                errorLabel.setStyle("-fx-font-size: 13px; -fx-text-fill: #ff5252; -fx-wrap-text: true;");
-                errorLabel.setMaxWidth(500);
-                finalResultContent.getChildren().add(errorLabel);
+                showCPAMessage(finalResultContent, "❌ Vui lòng nhập số hợp lệ!", "#ff5252");
             } catch (Exception ex) {
-                finalResultContent.getChildren().clear();
-                Label errorLabel = new Label("❌ Lỗi: " + ex.getMessage());
-                errorLabel.setStyle("-fx-font-size: 13px; -fx-text-fill: #ff5252; -fx-wrap-text: true;");
-                errorLabel.setMaxWidth(500);
-                finalResultContent.getChildren().add(errorLabel);
+                showCPAMessage(finalResultContent, "❌ Lỗi: " + ex.getMessage(), "#ff5252");
                 ex.printStackTrace();
             }
+        };
+
+        calculateButton.setOnAction(e -> recalculate.run());
+        totalCreditsField.textProperty().addListener((obs, oldVal, newVal) -> recalculate.run());
+        targetCPAField.textProperty().addListener((obs, oldVal, newVal) -> recalculate.run());
+        creditTypeGroup.selectedToggleProperty().addListener((obs, oldVal, newVal) -> recalculate.run());
+        abilitySlider.valueProperty().addListener((obs, oldVal, newVal) -> {
+            // Khi kéo slider chỉ tính lại khi sang mốc mới
+            if (Math.round(oldVal.doubleValue()) != Math.round(newVal.doubleValue())) {
+                recalculate.run();
+            }
         });
 
         root.getChildren().addAll(titleLabel, currentInfoBox, inputBox, resultBox, buttonBox);
@@ -1432,9 +1227,9 @@ public class VirtualScoresController {
 
         new Thread(() -> {
             try {
-                // Lấy backup scores từ local storage
-                String backupJson = localStorageService.loadBackupScores();
-                if (backupJson == null || backupJson.isEmpty()) {
+                // Lấy backup scores (đã giải mã sẵn trong cache nếu vừa được lưu)
+                List<ScoreItem> backupScores = localDataCache.get(LocalDataCache.BACKUP_SCORES);
+                if (backupScores == null) {
                     Platform.runLater(() -> {
                         showAlert(Alert.AlertType.INFORMATION, "Thông báo",
                                 "Không tìm thấy điểm backup. Vui lòng vào màn hình 'Xem điểm thi' trước để lưu backup.");
@@ -1443,13 +1238,7 @@ public class VirtualScoresController {
                     return;
                 }
 
-                // Parse backup JSON
-                JsonObject backupData = JsonParser.parseString(backupJson).getAsJsonObject();
-                JsonArray scoreDTOS = backupData.has("scoreDTOS")
-                        ? backupData.getAsJsonArray("scoreDTOS")
-                        : null;
-
-                if (scoreDTOS == null || scoreDTOS.size() == 0) {
+                if (backupScores.isEmpty()) {
                     Platform.runLater(() -> {
                         showAlert(Alert.AlertType.INFORMATION, "Thông báo",
                                 "Không có điểm nào trong backup.");
@@ -1460,41 +1249,32 @@ public class VirtualScoresController {
 
                 // Convert ScoreItem từ backup sang VirtualScoreItem
                 List<VirtualScoreItem> restoredItems = new ArrayList<>();
-                for (JsonElement element : scoreDTOS) {
-                    JsonObject scoreObj = element.getAsJsonObject();
+                for (ScoreItem scoreItem : backupScores) {
                     VirtualScoreItem virtualItem = new VirtualScoreItem();
 
-                    virtualItem.setSubjectName(getStringValue(scoreObj, "subjectName"));
-                    virtualItem.setSubjectCredit(getIntValue(scoreObj, "subjectCredit"));
-                    virtualItem.setScoreFirst(getDoubleValue(scoreObj, "scoreFirst"));
-                    virtualItem.setScoreSecond(getDoubleValue(scoreObj, "scoreSecond"));
-                    virtualItem.setScoreFinal(getDoubleValue(scoreObj, "scoreFinal"));
-                    virtualItem.setScoreOverall(getDoubleValue(scoreObj, "scoreOverall"));
+                    virtualItem.setSubjectName(scoreItem.getSubjectName());
+                    virtualItem.setSubjectCredit(scoreItem.getSubjectCredit());
+                    virtualItem.setScoreFirst(scoreItem.getScoreFirst());
+                    virtualItem.setScoreSecond(scoreItem.getScoreSecond());
+                    virtualItem.setScoreFinal(scoreItem.getScoreFinal());
+                    virtualItem.setScoreOverall(scoreItem.getScoreOverall());
 
-                    String scoreText = getStringValue(scoreObj, "scoreText");
+                    String scoreText = scoreItem.getScoreText();
                     if (scoreText == null || scoreText.isEmpty()) {
                         virtualItem.ensureScoreText();
                     } else {
                         virtualItem.setScoreText(scoreText);
                     }
-
                     virtualItem.setSelected(true); // Mặc định chọn tất cả khi restore
 
-                    // Add listeners
-                    virtualItem.selectedProperty().addListener((obs, oldVal, newVal) -> calculateGPA());
-                    virtualItem.scoreOverallProperty().addListener((obs, oldVal, newVal) -> calculateGPA());
-
                     restoredItems.add(virtualItem);
                 }
 
                 Platform.runLater(() -> {
                     // Xóa các môn hiện tại và thay thế bằng môn từ backup
-                    scoresTable.getItems().clear();
-                    scoresTable.getItems().addAll(restoredItems);
+                    scoresTable.getItems().setAll(restoredItems);
 
                     hasUnsavedChanges = true; // Đánh dấu có thay đổi sau khi restore
-                    calculateGPA();
-                    updateSelectAllButtonText();
                     statusLabel.setText("Đã khôi phục " + restoredItems.size() + " môn học từ backup");
                     showAlert(Alert.AlertType.INFORMATION, "Thành công",
                             "Đã khôi phục " + restoredItems.size() + " môn học từ bảng điểm thi.");
@@ -1516,29 +1296,24 @@ public class VirtualScoresController {
             return;
         }
 
-        boolean allSelected = scoresTable.getItems().stream()
-                .allMatch(VirtualScoreItem::isSelected);
-
         // Nếu tất cả đã được chọn, bỏ chọn tất cả. Ngược lại, chọn tất cả.
-        boolean newValue = !allSelected;
+        boolean newValue = !gpaAggregator.allSelectedProperty().get();
 
         for (VirtualScoreItem item : scoresTable.getItems()) {
-            item.setSelected(newValue);
+            item.setSelected(newValue); // Mỗi môn chỉ cập nhật phần chênh lệch của GPA
         }
-
         scoresTable.refresh();
-        calculateGPA();
-        updateSelectAllButtonText();
     }
 
-    private void updateSelectAllButtonText() {
-        if (selectAllButton != null && !scoresTable.getItems().isEmpty()) {
-            boolean allSelected = scoresTable.getItems().stream()
-                    .allMatch(VirtualScoreItem::isSelected);
-            selectAllButton.setText(allSelected ? "☐ Bỏ chọn tất cả" : "✓ Chọn tất cả");
-        } else if (selectAllButton != null) {
-            selectAllButton.setText("✓ Chọn tất cả");
-        }
+    /**
+     * Thay nội dung kết quả CPA bằng một thông báo
+     */
+    private void showCPAMessage(VBox resultContent, String message, String color) {
+        resultContent.getChildren().clear();
+        Label messageLabel = new Label(message);
+        messageLabel.setStyle("-fx-font-size: 13px; -fx-text-fill: " + color + "; -fx-wrap-text: true;");
+        messageLabel.setMaxWidth(500);
+        resultContent.getChildren().add(messageLabel);
     }
 
     private HBox createCPADataRow(String gradeLabel, int numSubjects, int creditPerSubject, double gradePoint,
@@ -1592,4 +1367,28 @@ public class VirtualScoresController {
         alert.setContentText(message);
         alert.showAndWait();
     }
+
+    /**
+     * Bảng điểm ảo đã parse xong trên thread nền
+     */
+    private static final class ScoreBatchResult {
+        private final Long batchId;
+        private final Long studentId;
+        private final String studentName;
+        private final String studentClass;
+        private final String lastUpdated;
+        private final String studentInfoText;
+        private final List<VirtualScoreItem> items;
+
+        private ScoreBatchResult(Long batchId, Long studentId, String studentName, String studentClass,
+                String lastUpdated, String studentInfoText, List<VirtualScoreItem> items) {
+            this.batchId = batchId;
+            this.studentId = studentId;
+            this.studentName = studentName;
+            this.studentClass = studentClass;
+            this.lastUpdated = lastUpdated;
+            this.studentInfoText = studentInfoText;
+            this.items = Collections.unmodifiableList(items);
+        }
+    }
 }
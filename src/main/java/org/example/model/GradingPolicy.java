@@ -0,0 +1,264 @@
+package org.example.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Quy chế tính điểm: công thức điểm tổng kết, điều kiện trượt và bảng quy đổi
+ * thang 10 -> thang 4 / điểm chữ / xếp loại.
+ * Bảng quy đổi được tính sẵn thành mảng tra cứu theo phần trăm điểm (0.00 - 10.00,
+ * 1001 ô), nên quy đổi một điểm chỉ là một lần đọc mảng.
+ * Hiện chỉ có quy chế v1, áp dụng cho mọi khóa; mã phiên bản được giữ để phân biệt khi có quy chế mới.
+ */
+public final class GradingPolicy {
+    private static final int MAX_HUNDREDTHS = 1000;
+
+    /**
+     * Quy chế hiện hành
+     */
+    public static final GradingPolicy V1 = builder("v1")
+            .componentWeights(0.7, 0.3)
+            .overallWeights(0.3, 0.7)
+            .failBelow(2.0, 4.0)
+            .grade("A+", 9.0, 4.0, "Xuất sắc")
+            .grade("A", 8.5, 3.8, "Giỏi")
+            .grade("B+", 7.8, 3.5, "Khá")
+            .grade("B", 7.0, 3.0, "Khá")
+            .grade("C+", 6.3, 2.4, "Trung bình")
+            .grade("C", 5.5, 2.0, "Trung bình")
+            .grade("D+", 4.8, 1.5, "Trung bình yếu")
+            .grade("D", 4.0, 1.0, "Trung bình yếu")
+            .grade("F", 0.0, 0.0, "Kém")
+            .build();
+
+    private final String version;
+    private final double firstWeight;
+    private final double secondWeight;
+    private final double componentWeight;
+    private final double finalWeight;
+    private final long failFinalBelow; // Ngưỡng trượt tính theo phần trăm điểm, như mảng tra cứu
+    private final long failOverallBelow;
+    private final List<Grade> grades; // Từ cao xuống thấp
+    private final Grade[] lookup = new Grade[MAX_HUNDREDTHS + 1]; // lookup[điểm x 100]
+
+    private GradingPolicy(Builder builder) {
+        this.version = builder.version;
+        this.firstWeight = builder.firstWeight;
+        this.secondWeight = builder.secondWeight;
+        this.componentWeight = builder.componentWeight;
+        this.finalWeight = builder.finalWeight;
+        this.failFinalBelow = hundredths(builder.failFinalBelow);
+        this.failOverallBelow = hundredths(builder.failOverallBelow);
+
+        List<Grade> sorted = new ArrayList<>(builder.grades);
+        sorted.sort((a, b) -> Integer.compare(b.minHundredths, a.minHundredths));
+        if (sorted.isEmpty() || sorted.get(sorted.size() - 1).minHundredths != 0) {
+            throw new IllegalArgumentException("Bảng quy đổi phải có mức bắt đầu từ 0.0");
+        }
+
+        // Gán mức tối đa cho từng mức rồi điền mảng tra cứu
+        List<Grade> grades = new ArrayList<>(sorted.size());
+        int upper = MAX_HUNDREDTHS;
+        for (Grade grade : sorted) {
+            Grade bounded = new Grade(grade.letter, grade.minHundredths, upper, grade.points4, grade.classification);
+            grades.add(bounded);
+            for (int h = grade.minHundredths; h <= upper; h++) {
+                lookup[h] = bounded;
+            }
+            upper = grade.minHundredths - 1;
+        }
+        this.grades = Collections.unmodifiableList(grades);
+    }
+
+    public static Builder builder(String version) {
+        return new Builder(version);
+    }
+
+    /**
+     * Quy chế áp dụng cho các màn hình (cố định, không đổi trong lúc chạy)
+     */
+    public static GradingPolicy current() {
+        return V1;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Mức điểm của một điểm thang 10 (làm tròn tới 0.01, ngoài khoảng 0-10 thì kẹp lại)
+     */
+    public Grade gradeOf(double score10) {
+        long hundredths = hundredths(score10);
+        if (hundredths < 0) {
+            hundredths = 0;
+        } else if (hundredths > MAX_HUNDREDTHS) {
+            hundredths = MAX_HUNDREDTHS;
+        }
+        return lookup[(int) hundredths];
+    }
+
+    /**
+     * Chuyển đổi điểm từ thang 10 sang thang 4
+     */
+    public double toScale4(double score10) {
+        return gradeOf(score10).points4;
+    }
+
+    /**
+     * Điểm chữ từ điểm tổng kết
+     */
+    public String letterOf(double score10) {
+        return gradeOf(score10).letter;
+    }
+
+    /**
+     * Điểm tổng kết từ điểm thành phần 1, 2 và điểm cuối kỳ, làm tròn 2 số sau dấu phẩy.
+     * Quy chế v1: (TP1 x 0.7 + TP2 x 0.3) x 0.3 + Cuối kỳ x 0.7
+     */
+    public double overallScore(double first, double second, double finalScore) {
+        double componentScore = (first * firstWeight) + (second * secondWeight);
+        double overall = (componentScore * componentWeight) + (finalScore * finalWeight);
+        return Math.round(overall * 100.0) / 100.0;
+    }
+
+    /**
+     * Môn trượt nếu điểm cuối kỳ hoặc điểm tổng kết dưới ngưỡng (v1: cuối kỳ < 2 hoặc tổng kết < 4).
+     * Điểm được làm tròn tới 0.01 như khi quy đổi, nên môn có điểm chữ đạt không bị tính là trượt.
+     */
+    public boolean isFailed(double finalScore, double overallScore) {
+        return hundredths(finalScore) < failFinalBelow || hundredths(overallScore) < failOverallBelow;
+    }
+
+    /**
+     * Điểm thang 10 tính theo phần trăm điểm (làm tròn tới 0.01)
+     */
+    private static long hundredths(double score10) {
+        return Math.round(score10 * 100.0);
+    }
+
+    /**
+     * Các mức điểm từ cao xuống thấp (dùng cho bảng quy đổi)
+     */
+    public List<Grade> getGrades() {
+        return grades;
+    }
+
+    /**
+     * Các mức điểm đạt (thang 4 > 0) từ thấp lên cao
+     */
+    public List<Grade> getPassingGrades() {
+        List<Grade> passing = new ArrayList<>();
+        for (int i = grades.size() - 1; i >= 0; i--) {
+            if (grades.get(i).points4 > 0) {
+                passing.add(grades.get(i));
+            }
+        }
+        return passing;
+    }
+
+    /**
+     * Một mức trong bảng quy đổi
+     */
+    public static final class Grade {
+        private final String letter;
+        private final int minHundredths;
+        private final int maxHundredths;
+        private final double points4;
+        private final String classification;
+
+        private Grade(String letter, int minHundredths, int maxHundredths, double points4, String classification) {
+            this.letter = letter;
+            this.minHundredths = minHundredths;
+            this.maxHundredths = maxHundredths;
+            this.points4 = points4;
+            this.classification = classification;
+        }
+
+        public String getLetter() {
+            return letter;
+        }
+
+        public double getMinScore() {
+            return minHundredths / 100.0;
+        }
+
+        public double getPoints4() {
+            return points4;
+        }
+
+        public String getClassification() {
+            return classification;
+        }
+
+        /**
+         * Khoảng điểm thang 10 hiển thị trong bảng quy đổi, ví dụ "8.5 - 8.9"
+         */
+        public String getRangeText() {
+            // Mức trên cùng hiển thị tới 10.0, các mức khác tới ngay dưới mức kế tiếp
+            double max = maxHundredths == MAX_HUNDREDTHS ? 10.0 : Math.floor(maxHundredths / 10.0) / 10.0;
+            return String.format("%.1f - %.1f", getMinScore(), max);
+        }
+
+        /**
+         * Điểm thang 4 không kèm số 0 thừa, ví dụ "4", "3.8"
+         */
+        public String getPoints4Text() {
+            return BigDecimal.valueOf(points4).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    public static final class Builder {
+        private final String version;
+        private double firstWeight;
+        private double secondWeight;
+        private double componentWeight;
+        private double finalWeight;
+        private double failFinalBelow;
+        private double failOverallBelow;
+        private final List<Grade> grades = new ArrayList<>();
+
+        private Builder(String version) {
+            this.version = version;
+        }
+
+        /**
+         * Trọng số TP1, TP2 trong điểm thành phần
+         */
+        public Builder componentWeights(double first, double second) {
+            this.firstWeight = first;
+            this.secondWeight = second;
+            return this;
+        }
+
+        /**
+         * Trọng số điểm thành phần và điểm cuối kỳ trong điểm tổng kết
+         */
+        public Builder overallWeights(double component, double finalScore) {
+            this.componentWeight = component;
+            this.finalWeight = finalScore;
+            return this;
+        }
+
+        /**
+         * Ngưỡng trượt của điểm cuối kỳ và điểm tổng kết
+         */
+        public Builder failBelow(double finalScore, double overall) {
+            this.failFinalBelow = finalScore;
+            this.failOverallBelow = overall;
+            return this;
+        }
+
+        public Builder grade(String letter, double minScore, double points4, String classification) {
+            grades.add(new Grade(letter, (int) Math.round(minScore * 100.0), MAX_HUNDREDTHS, points4,
+                    classification));
+            return this;
+        }
+
+        public GradingPolicy build() {
+            return new GradingPolicy(this);
+        }
+    }
+}
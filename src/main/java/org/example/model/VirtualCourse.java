@@ -1,13 +1,26 @@
 package org.example.model;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.time.format.DateTimeFormatter;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Model cho môn học ảo (virtual course)
  */
 public class VirtualCourse {
+    public static final int LESSONS_PER_DAY = 16;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final Map<Integer, String> LESSON_PATTERNS = new ConcurrentHashMap<>(); // Mẫu tiết dùng chung
+    private static final int[] NO_LESSONS = new int[0];
+    private static final long[] NO_EXTRA_LESSONS = new long[0];
+    private static final Slots NO_SLOTS = new Slots(null, new int[0], new char[0], NO_EXTRA_LESSONS);
+    
     private String course; // AT22, AT21, AT20...
     private String courseCode;
     private String courseName; // Tên đầy đủ có mã lớp
@@ -17,11 +30,9 @@ public class VirtualCourse {
     private String studyLocation;
     private String studyDays; // Chuỗi ngày học
     private String lessons; // Chuỗi tiết học
-    private List<ScheduleSlot> scheduleSlots; // Danh sách các slot lịch học đã parse
-    private boolean slotsParsed = false; // Flag để lazy loading
+    private volatile Slots slots; // Slot đã parse (null = chưa parse, lazy loading)
     
     public VirtualCourse() {
-        this.scheduleSlots = new ArrayList<>();
     }
     
     public String getCourse() {
@@ -175,6 +186,7 @@ public class VirtualCourse {
     
     public void setStudyDays(String studyDays) {
         this.studyDays = studyDays;
+        this.slots = null;
     }
     
     public String getLessons() {
@@ -183,139 +195,335 @@ public class VirtualCourse {
     
     public void setLessons(String lessons) {
         this.lessons = lessons;
+        this.slots = null;
     }
     
     public void setScheduleSlots(List<ScheduleSlot> scheduleSlots) {
-        this.scheduleSlots = scheduleSlots;
-        this.slotsParsed = true;
+        int count = scheduleSlots.size();
+        int[] days = new int[count];
+        char[] masks = new char[count];
+        for (int i = 0; i < count; i++) {
+            ScheduleSlot slot = scheduleSlots.get(i);
+            days[i] = slot.epochDay;
+            masks[i] = slot.lessonMask;
+        }
+        this.slots = new Slots(this, days, masks, NO_EXTRA_LESSONS);
     }
     
     /**
-     * Parse studyDays và lessons thành danh sách ScheduleSlot (lazy loading)
+     * Parse studyDays và lessons thành mảng epoch-day và mask tiết học (lazy loading)
+     * Không dùng regex và không tạo String/LocalDate trung gian cho từng slot.
+     * Mảng được dựng cục bộ rồi mới gán một lần vào field volatile, luồng đọc song song
+     * chỉ thấy hoặc chưa parse hoặc kết quả đầy đủ.
      */
     public void parseScheduleSlots() {
-        if (slotsParsed) {
-            return; // Đã parse rồi, không parse lại
-        }
-        
-        scheduleSlots.clear();
+        slots();
+    }
+    
+    private Slots parseSlots() {
         if (studyDays == null || lessons == null || studyDays.isEmpty() || lessons.isEmpty()) {
-            slotsParsed = true;
-            return;
+            return NO_SLOTS;
         }
         
-        String[] days = studyDays.split("\\s+");
-        String[] lessonArray = lessons.split("\\s+");
+        // Parse toàn bộ slots để kiểm tra trùng lịch chính xác với lớp dài
+        int capacity = Math.min(countTokens(studyDays), countTokens(lessons));
+        int[] days = new int[capacity];
+        char[] masks = new char[capacity];
+        long[] extra = NO_EXTRA_LESSONS;
+        int extraCount = 0;
+        int count = 0;
+        int dayPos = 0;
+        int lessonPos = 0;
         
-        // Giới hạn số lượng slots để tránh memory overflow
-        int maxSlots = Math.min(days.length, lessonArray.length);
-        maxSlots = Math.min(maxSlots, 1000); // Giới hạn tối đa 1000 slots
-        
-        for (int i = 0; i < maxSlots; i++) {
+        for (int i = 0; i < capacity; i++) {
+            int dayStart = skipWhitespace(studyDays, dayPos);
+            int dayEnd = tokenEnd(studyDays, dayStart);
+            int lessonStart = skipWhitespace(lessons, lessonPos);
+            int lessonEnd = tokenEnd(lessons, lessonStart);
+            dayPos = dayEnd;
+            lessonPos = lessonEnd;
+            
             try {
-                LocalDate date = parseDate(days[i]);
-                String lessonStr = lessonArray[i];
-                
-                ScheduleSlot slot = new ScheduleSlot();
-                slot.setDate(date);
-                slot.setLessons(lessonStr);
-                slot.setVirtualCourse(this);
-                
-                scheduleSlots.add(slot);
+                days[count] = parseEpochDay(studyDays, dayStart, dayEnd);
+                masks[count] = (char) parseLessonMask(lessons, lessonStart, lessonEnd);
+                // Tiết ngoài 1-16 không vào được mask: giữ riêng để vẫn kiểm tra trùng chính xác
+                for (int lesson : outOfRangeLessons(lessons, lessonStart, lessonEnd)) {
+                    if (extraCount == extra.length) {
+                        extra = Arrays.copyOf(extra, Math.max(4, extra.length * 2));
+                    }
+                    extra[extraCount++] = ((long) days[count] << 32) | (lesson & 0xFFFFFFFFL);
+                }
+                count++;
             } catch (Exception e) {
-                System.err.println("Error parsing date: " + days[i] + " - " + e.getMessage());
+                System.err.println("Error parsing date: " + studyDays.substring(dayStart, dayEnd) + " - " + e.getMessage());
             }
         }
         
-        slotsParsed = true;
+        if (extraCount > 0) {
+            extra = Arrays.copyOf(extra, extraCount);
+            Arrays.sort(extra);
+            System.err.println("Lessons outside 1-" + LESSONS_PER_DAY + " in " + courseCode + " (" + lessons
+                    + "), checked separately for conflicts");
+        }
+        return new Slots(this, count == capacity ? days : Arrays.copyOf(days, count),
+                count == capacity ? masks : Arrays.copyOf(masks, count), extra);
+    }
+    
+    private Slots slots() {
+        Slots current = slots;
+        if (current == null) {
+            current = parseSlots();
+            slots = current;
+        }
+        return current;
     }
     
     /**
      * Lấy schedule slots (parse nếu chưa parse)
+     * Danh sách chỉ đọc trên mảng epoch-day/mask; slot được tạo khi truy cập và không sửa được,
+     * hai slot cùng ngày, cùng tiết của cùng lớp thì equals nhau
      */
     public List<ScheduleSlot> getScheduleSlots() {
-        if (!slotsParsed) {
-            parseScheduleSlots();
+        return slots();
+    }
+    
+    /**
+     * Số slot lịch học đã parse
+     */
+    public int getSlotCount() {
+        return slots().epochDays.length;
+    }
+    
+    /**
+     * Ngày học của slot thứ i dưới dạng epoch-day
+     */
+    public int getSlotEpochDay(int index) {
+        return slots().epochDays[index];
+    }
+    
+    /**
+     * Mask tiết học của slot thứ i (bit 0 = tiết 1, bit 15 = tiết 16)
+     */
+    public int getSlotLessonMask(int index) {
+        return slots().lessonMasks[index];
+    }
+    
+    /**
+     * Các (ngày, tiết) có số tiết ngoài 1-16 (không biểu diễn được trong mask),
+     * mã hóa (epochDay << 32) | tiết và sắp xếp tăng dần; thường rỗng
+     */
+    public long[] getOutOfRangeLessons() {
+        long[] extra = slots().extraLessons;
+        return extra.length == 0 ? extra : extra.clone();
+    }
+    
+    /**
+     * Chuyển mask tiết học thành chuỗi "1,2,3" (dùng chung một instance cho mỗi mẫu tiết)
+     */
+    public static String lessonPattern(int lessonMask) {
+        return LESSON_PATTERNS.computeIfAbsent(lessonMask, mask -> {
+            StringBuilder result = new StringBuilder();
+            for (int lesson = 1; lesson <= LESSONS_PER_DAY; lesson++) {
+                if ((mask & (1 << (lesson - 1))) != 0) {
+                    if (result.length() > 0) {
+                        result.append(',');
+                    }
+                    result.append(lesson);
+                }
+            }
+            return result.toString();
+        });
+    }
+    
+    /**
+     * Parse chuỗi tiết "1,2,3" trong khoảng [start, end) thành mask 16 bit
+     */
+    public static int parseLessonMask(CharSequence lessonStr, int start, int end) {
+        int mask = 0;
+        int value = 0;
+        boolean hasDigit = false;
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? lessonStr.charAt(i) : ',';
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                hasDigit = true;
+            } else if (c == ',') {
+                if (hasDigit && value >= 1 && value <= LESSONS_PER_DAY) {
+                    mask |= 1 << (value - 1);
+                }
+                value = 0;
+                hasDigit = false;
+            }
+        }
+        return mask;
+    }
+    
+    /**
+     * Các số tiết ngoài khoảng 1-16 trong chuỗi tiết [start, end)
+     */
+    private static int[] outOfRangeLessons(CharSequence lessonStr, int start, int end) {
+        int[] result = null;
+        int count = 0;
+        int value = 0;
+        boolean hasDigit = false;
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? lessonStr.charAt(i) : ',';
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                hasDigit = true;
+            } else if (c == ',') {
+                if (hasDigit && (value < 1 || value > LESSONS_PER_DAY)) {
+                    if (result == null) {
+                        result = new int[4];
+                    } else if (count == result.length) {
+                        result = Arrays.copyOf(result, count * 2);
+                    }
+                    result[count++] = value;
+                }
+                value = 0;
+                hasDigit = false;
+            }
+        }
+        return result == null ? NO_LESSONS : Arrays.copyOf(result, count);
+    }
+    
+    private static int parseEpochDay(String str, int start, int end) {
+        // Đường nhanh cho định dạng cố định dd/MM/yyyy
+        if (end - start == 10 && str.charAt(start + 2) == '/' && str.charAt(start + 5) == '/') {
+            int day = parseDigits(str, start, 2);
+            int month = parseDigits(str, start + 3, 2);
+            int year = parseDigits(str, start + 6, 4);
+            if (day >= 0 && month >= 0 && year >= 0) {
+                return (int) LocalDate.of(year, month, day).toEpochDay();
+            }
+        }
+        return (int) LocalDate.parse(str.substring(start, end), DATE_FORMATTER).toEpochDay();
+    }
+    
+    private static int parseDigits(String str, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    
+    private static int countTokens(String str) {
+        int count = 0;
+        int pos = skipWhitespace(str, 0);
+        while (pos < str.length()) {
+            count++;
+            pos = skipWhitespace(str, tokenEnd(str, pos));
         }
-        return scheduleSlots;
+        return count;
     }
     
-    private LocalDate parseDate(String dateStr) {
-        java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy");
-        return LocalDate.parse(dateStr, formatter);
+    private static int skipWhitespace(String str, int pos) {
+        while (pos < str.length() && Character.isWhitespace(str.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+    
+    private static int tokenEnd(String str, int pos) {
+        while (pos < str.length() && !Character.isWhitespace(str.charAt(pos))) {
+            pos++;
+        }
+        return pos;
     }
     
     /**
-     * Inner class để lưu thông tin slot lịch học
+     * Kết quả parse bất biến: mảng epoch-day/mask, đồng thời là view danh sách slot chỉ đọc
      */
-    public static class ScheduleSlot {
-        private LocalDate date;
-        private String lessons; // Ví dụ: "1,2,3" hoặc "9,10,11,12"
-        private VirtualCourse virtualCourse;
+    private static final class Slots extends AbstractList<ScheduleSlot> implements RandomAccess {
+        private final VirtualCourse course;
+        private final int[] epochDays; // Ngày học của từng slot (epoch-day)
+        private final char[] lessonMasks; // Mask tiết học của từng slot
+        private final long[] extraLessons; // (ngày, tiết) có tiết ngoài 1-16
+        
+        private Slots(VirtualCourse course, int[] epochDays, char[] lessonMasks, long[] extraLessons) {
+            this.course = course;
+            this.epochDays = epochDays;
+            this.lessonMasks = lessonMasks;
+            this.extraLessons = extraLessons;
+        }
+        
+        @Override
+        public ScheduleSlot get(int index) {
+            return new ScheduleSlot(epochDays[index], lessonMasks[index], course);
+        }
+        
+        @Override
+        public int size() {
+            return epochDays.length;
+        }
+    }
+    
+    /**
+     * Slot lịch học (bất biến)
+     */
+    public static final class ScheduleSlot {
+        private final int epochDay;
+        private final char lessonMask; // Bit 0 = tiết 1, ví dụ "1,2,3" -> 0b111
+        private final VirtualCourse virtualCourse;
+        
+        ScheduleSlot(int epochDay, char lessonMask, VirtualCourse virtualCourse) {
+            this.epochDay = epochDay;
+            this.lessonMask = lessonMask;
+            this.virtualCourse = virtualCourse;
+        }
         
         public LocalDate getDate() {
-            return date;
+            return LocalDate.ofEpochDay(epochDay);
         }
         
-        public void setDate(LocalDate date) {
-            this.date = date;
+        public int getEpochDay() {
+            return epochDay;
         }
         
         public String getLessons() {
-            return lessons;
+            return lessonPattern(lessonMask);
         }
         
-        public void setLessons(String lessons) {
-            this.lessons = lessons;
+        public int getLessonMask() {
+            return lessonMask;
         }
         
         public VirtualCourse getVirtualCourse() {
             return virtualCourse;
         }
         
-        public void setVirtualCourse(VirtualCourse virtualCourse) {
-            this.virtualCourse = virtualCourse;
-        }
-        
         /**
          * Kiểm tra xem slot này có trùng với slot khác không
          * Trùng khi: cùng ngày và có tiết học chung
          */
         public boolean conflictsWith(ScheduleSlot other) {
-            if (!this.date.equals(other.date)) {
-                return false;
-            }
-            
-            // Parse lessons thành danh sách số tiết
-            List<Integer> thisLessons = parseLessons(this.lessons);
-            List<Integer> otherLessons = parseLessons(other.lessons);
-            
-            // Kiểm tra có tiết nào trùng không
-            for (Integer lesson : thisLessons) {
-                if (otherLessons.contains(lesson)) {
-                    return true;
-                }
-            }
-            
-            return false;
+            return this.epochDay == other.epochDay && (this.lessonMask & other.lessonMask) != 0;
         }
         
-        private List<Integer> parseLessons(String lessonStr) {
-            List<Integer> result = new ArrayList<>();
-            if (lessonStr == null || lessonStr.isEmpty()) {
-                return result;
+        /**
+         * Bằng nhau theo giá trị: cùng ngày, cùng mask tiết và cùng lớp (so sánh theo identity)
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
             }
-            
-            String[] parts = lessonStr.split(",");
-            for (String part : parts) {
-                try {
-                    result.add(Integer.parseInt(part.trim()));
-                } catch (NumberFormatException e) {
-                    // Ignore invalid numbers
-                }
+            if (!(o instanceof ScheduleSlot)) {
+                return false;
             }
-            return result;
+            ScheduleSlot other = (ScheduleSlot) o;
+            return epochDay == other.epochDay && lessonMask == other.lessonMask
+                    && virtualCourse == other.virtualCourse;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(epochDay, (int) lessonMask, System.identityHashCode(virtualCourse));
         }
     }
 }
-
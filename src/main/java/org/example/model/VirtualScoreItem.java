@@ -36,24 +36,11 @@ public class VirtualScoreItem {
     }
     
     /**
-     * Tính điểm tổng kết từ điểm thành phần 1, 2 và điểm cuối kỳ
-     * Công thức: (TP1 x 0.7 + TP2 x 0.3) x 0.3 + Cuối kỳ x 0.7
-     * Làm tròn 2 số sau dấu phẩy
+     * Tính điểm tổng kết từ điểm thành phần 1, 2 và điểm cuối kỳ theo quy chế hiện hành
+     * (làm tròn 2 số sau dấu phẩy), đồng thời cập nhật điểm chữ
      */
     public void calculateOverallScore() {
-        double tp1 = getScoreFirst();
-        double tp2 = getScoreSecond();
-        double finalScore = getScoreFinal();
-        
-        // Tính điểm thành phần: (TP1 x 0.7 + TP2 x 0.3)
-        double componentScore = (tp1 * 0.7) + (tp2 * 0.3);
-        
-        // Tính điểm tổng kết: (Điểm thành phần x 0.3) + (Cuối kỳ x 0.7)
-        double overall = (componentScore * 0.3) + (finalScore * 0.7);
-        
-        // Làm tròn 2 số sau dấu phẩy
-        overall = Math.round(overall * 100.0) / 100.0;
-        
+        double overall = GradingPolicy.current().overallScore(getScoreFirst(), getScoreSecond(), getScoreFinal());
         setScoreOverall(overall);
         calculateScoreText(overall);
     }
@@ -62,25 +49,7 @@ public class VirtualScoreItem {
      * Tính điểm chữ từ điểm tổng kết
      */
     private void calculateScoreText(double overall) {
-        if (overall >= 9.0) {
-            setScoreText("A+");
-        } else if (overall >= 8.5) {
-            setScoreText("A");
-        } else if (overall >= 7.8) {
-            setScoreText("B+");
-        } else if (overall >= 7.0) {
-            setScoreText("B");
-        } else if (overall >= 6.3) {
-            setScoreText("C+");
-        } else if (overall >= 5.5) {
-            setScoreText("C");
-        } else if (overall >= 4.8) {
-            setScoreText("D+");
-        } else if (overall >= 4.0) {
-            setScoreText("D");
-        } else {
-            setScoreText("F");
-        }
+        setScoreText(GradingPolicy.current().letterOf(overall));
     }
     
     /**
@@ -98,9 +67,7 @@ public class VirtualScoreItem {
      * Trượt nếu: điểm cuối kỳ < 2 HOẶC (điểm cuối kỳ >= 2 nhưng tổng điểm < 4)
      */
     public boolean checkFailed() {
-        double finalScore = getScoreFinal();
-        double overallScore = getScoreOverall();
-        return finalScore < 2.0 || (finalScore >= 2.0 && overallScore < 4.0);
+        return GradingPolicy.current().isFailed(getScoreFinal(), getScoreOverall());
     }
     
     /**
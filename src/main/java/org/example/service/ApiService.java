@@ -3,28 +3,51 @@ package org.example.service;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import okhttp3.*;
+import okhttp3.brotli.BrotliInterceptor;
 import org.example.config.AppConfig;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Service để gọi các API từ backend
+ * Mỗi API có hai dạng: gọi đồng bộ (chặn thread hiện tại) và gọi bất đồng bộ
+ * (hậu tố Async) trả về CompletableFuture; hủy future sẽ hủy luôn HTTP call.
  */
 public class ApiService {
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final int MAX_ERROR_BODY_LENGTH = 1024;
+
     private static ApiService instance;
     private final OkHttpClient client;
     private String baseUrl = AppConfig.BACKEND_BASE_URL;
 
     private ApiService() {
+        // Mọi request đều dùng chung client này để tái sử dụng kết nối (keep-alive) và TLS session
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(8);
+
         this.client = new OkHttpClient.Builder()
                 .connectTimeout(60, TimeUnit.SECONDS)
                 .readTimeout(60, TimeUnit.SECONDS)
                 .writeTimeout(60, TimeUnit.SECONDS)
+                // Giữ tối đa 8 kết nối rảnh trong 5 phút giữa các lần chuyển màn hình
+                .connectionPool(new ConnectionPool(8, 5, TimeUnit.MINUTES))
+                .dispatcher(dispatcher)
+                // HTTP/2 qua TLS (ALPN) để ghép nhiều request trên một kết nối, fallback HTTP/1.1
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                // Ping định kỳ giữ kết nối HTTP/2 sống qua NAT/Wi-Fi
+                .pingInterval(30, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(true)
+                // Gửi Accept-Encoding: br, gzip và tự giải nén response
+                .addInterceptor(BrotliInterceptor.INSTANCE)
                 .build();
     }
 
-    public static ApiService getInstance() {
+    public static synchronized ApiService getInstance() {
         if (instance == null) {
             instance = new ApiService();
         }
@@ -44,63 +67,76 @@ public class ApiService {
      * Trả về public key dạng Base64 string
      */
     public String getPublicKey() throws IOException {
-        Request request = new Request.Builder()
+        return parsePublicKey(execute(publicKeyRequest(), "Unexpected code"));
+    }
+
+    public CompletableFuture<String> getPublicKeyAsync() {
+        // Parse ngay trong handler để trả về đúng future của executeAsync (hủy được HTTP call)
+        return executeAsync(publicKeyRequest(), response -> parsePublicKey(successBody(response, "Unexpected code")));
+    }
+
+    /**
+     * Lấy public key kèm ETag; nếu etag khác null thì gửi If-None-Match
+     * và server có thể trả 304 (không đổi)
+     */
+    public PublicKeyResponse fetchPublicKey(String etag) throws IOException {
+        return execute(conditionalPublicKeyRequest(etag), this::toPublicKeyResponse);
+    }
+
+    public CompletableFuture<PublicKeyResponse> fetchPublicKeyAsync(String etag) {
+        return executeAsync(conditionalPublicKeyRequest(etag), this::toPublicKeyResponse);
+    }
+
+    private Request publicKeyRequest() {
+        return new Request.Builder()
                 .url(baseUrl + AppConfig.PUBLIC_KEY_ENDPOINT)
                 .get()
                 .build();
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code " + response);
-            }
-            String responseBody = response.body().string();
+    private Request conditionalPublicKeyRequest(String etag) {
+        Request.Builder builder = publicKeyRequest().newBuilder();
+        if (etag != null && !etag.isEmpty()) {
+            builder.header("If-None-Match", etag);
+        }
+        return builder.build();
+    }
 
-            // Kiểm tra xem response có phải là JSON không
-            if (responseBody.trim().startsWith("{")) {
-                // Parse JSON response
-                JsonObject jsonResponse = JsonParser.parseString(responseBody).getAsJsonObject();
-                if (jsonResponse.has("publicKey")) {
-                    return jsonResponse.get("publicKey").getAsString();
-                } else if (jsonResponse.has("data")) {
-                    // Có thể public key nằm trong data
-                    JsonObject data = jsonResponse.getAsJsonObject("data");
-                    if (data.has("publicKey")) {
-                        return data.get("publicKey").getAsString();
-                    }
+    private PublicKeyResponse toPublicKeyResponse(Response response) throws IOException {
+        String etag = response.header("ETag");
+        if (response.code() == 304) {
+            return new PublicKeyResponse(true, null, etag);
+        }
+        return new PublicKeyResponse(false, parsePublicKey(successBody(response, "Unexpected code")), etag);
+    }
+
+    private String parsePublicKey(String responseBody) throws IOException {
+        // Kiểm tra xem response có phải là JSON không
+        if (responseBody.trim().startsWith("{")) {
+            // Parse JSON response
+            JsonObject jsonResponse = JsonParser.parseString(responseBody).getAsJsonObject();
+            if (jsonResponse.has("publicKey")) {
+                return jsonResponse.get("publicKey").getAsString();
+            } else if (jsonResponse.has("data")) {
+                // Có thể public key nằm trong data
+                JsonObject data = jsonResponse.getAsJsonObject("data");
+                if (data.has("publicKey")) {
+                    return data.get("publicKey").getAsString();
                 }
-                // Nếu không tìm thấy publicKey, thử lấy toàn bộ response
-                throw new IOException("Public key không tìm thấy trong response JSON");
             }
-
-            // Nếu không phải JSON, trả về trực tiếp
-            return responseBody.trim();
+            // Nếu không tìm thấy publicKey, thử lấy toàn bộ response
+            throw new IOException("Public key không tìm thấy trong response JSON");
         }
+
+        // Nếu không phải JSON, trả về trực tiếp
+        return responseBody.trim();
     }
 
     /**
      * Đăng nhập với format mới (encryptedKey, encryptedData, iv)
      */
     public String login(String encryptedKey, String encryptedData, String iv) throws IOException {
-        JsonObject jsonObject = new JsonObject();
-        jsonObject.addProperty("encryptedKey", encryptedKey);
-        jsonObject.addProperty("encryptedData", encryptedData);
-        jsonObject.addProperty("iv", iv);
-
-        RequestBody body = RequestBody.create(
-                jsonObject.toString(),
-                MediaType.get("application/json; charset=utf-8"));
-
-        Request request = new Request.Builder()
-                .url(baseUrl + AppConfig.LOGIN_ENDPOINT)
-                .post(body)
-                .build();
-
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Login failed: " + response.code());
-            }
-            return response.body().string();
-        }
+        return execute(encryptedPost(AppConfig.LOGIN_ENDPOINT, encryptedKey, encryptedData, iv), "Login failed");
     }
 
     /**
@@ -112,57 +148,36 @@ public class ApiService {
         jsonObject.addProperty("username", username);
         jsonObject.addProperty("password", encryptedPassword);
 
-        RequestBody body = RequestBody.create(
-                jsonObject.toString(),
-                MediaType.get("application/json; charset=utf-8"));
+        RequestBody body = RequestBody.create(jsonObject.toString(), JSON);
 
         Request request = new Request.Builder()
                 .url(baseUrl + AppConfig.LOGIN_ENDPOINT)
                 .post(body)
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Login failed: " + response.code());
-            }
-            return response.body().string();
-        }
+        return execute(request, "Login failed");
     }
 
     /**
      * Lấy lịch học
      */
     public String getSchedule(String token) throws IOException {
-        Request request = new Request.Builder()
-                .url(baseUrl + AppConfig.SCHEDULE_ENDPOINT)
-                .get()
-                .addHeader("Authorization", "Bearer " + token)
-                .build();
+        return execute(authorizedGet(AppConfig.SCHEDULE_ENDPOINT, token), "Failed to get schedule");
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Failed to get schedule: " + response.code());
-            }
-            return response.body().string();
-        }
+    public CompletableFuture<String> getScheduleAsync(String token) {
+        return executeAsync(authorizedGet(AppConfig.SCHEDULE_ENDPOINT, token), "Failed to get schedule");
     }
 
     /**
      * Lấy bảng điểm
      */
     public String getGrades(String token) throws IOException {
-        Request request = new Request.Builder()
-                .url(baseUrl + AppConfig.GRADES_ENDPOINT)
-                .get()
-                .addHeader("Authorization", "Bearer " + token)
-                .build();
+        return execute(authorizedGet(AppConfig.GRADES_ENDPOINT, token), "Failed to get grades");
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Failed to get grades: " + response.code());
-            }
-            return response.body().string();
-        }
+    public CompletableFuture<String> getGradesAsync(String token) {
+        return executeAsync(authorizedGet(AppConfig.GRADES_ENDPOINT, token), "Failed to get grades");
     }
 
     /**
@@ -170,26 +185,28 @@ public class ApiService {
      * Sử dụng cùng format như login: encryptedKey, encryptedData, iv
      */
     public String getVirtualCalendar(String encryptedKey, String encryptedData, String iv) throws IOException {
-        JsonObject jsonObject = new JsonObject();
-        jsonObject.addProperty("encryptedKey", encryptedKey);
-        jsonObject.addProperty("encryptedData", encryptedData);
-        jsonObject.addProperty("iv", iv);
-
-        RequestBody body = RequestBody.create(
-                jsonObject.toString(),
-                MediaType.get("application/json; charset=utf-8"));
+        return execute(encryptedPost(AppConfig.VIRTUAL_CALENDAR_ENDPOINT, encryptedKey, encryptedData, iv),
+                "Failed to get virtual calendar");
+    }
 
-        Request request = new Request.Builder()
-                .url(baseUrl + AppConfig.VIRTUAL_CALENDAR_ENDPOINT)
-                .post(body)
-                .build();
+    public CompletableFuture<String> getVirtualCalendarAsync(String encryptedKey, String encryptedData, String iv) {
+        return executeAsync(encryptedPost(AppConfig.VIRTUAL_CALENDAR_ENDPOINT, encryptedKey, encryptedData, iv),
+                "Failed to get virtual calendar");
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Failed to get virtual calendar: " + response.code());
-            }
-            return response.body().string();
-        }
+    /**
+     * Lấy virtual calendar dạng stream: reader đọc body trực tiếp từ socket trên thread
+     * của OkHttp, không đọc cả response thành String
+     */
+    public <T> CompletableFuture<T> streamVirtualCalendarAsync(String encryptedKey, String encryptedData, String iv,
+            BodyReader<T> reader) {
+        return executeAsync(encryptedPost(AppConfig.VIRTUAL_CALENDAR_ENDPOINT, encryptedKey, encryptedData, iv),
+                response -> {
+                    if (!response.isSuccessful()) {
+                        throw httpError(response, "Failed to get virtual calendar");
+                    }
+                    return reader.read(response.body().byteStream());
+                });
     }
 
     /**
@@ -198,26 +215,13 @@ public class ApiService {
      * encryptedData
      */
     public String getScores(String encryptedKey, String encryptedData, String iv) throws IOException {
-        JsonObject jsonObject = new JsonObject();
-        jsonObject.addProperty("encryptedKey", encryptedKey);
-        jsonObject.addProperty("encryptedData", encryptedData);
-        jsonObject.addProperty("iv", iv);
-
-        RequestBody body = RequestBody.create(
-                jsonObject.toString(),
-                MediaType.get("application/json; charset=utf-8"));
-
-        Request request = new Request.Builder()
-                .url(baseUrl + AppConfig.SCORES_ENDPOINT)
-                .post(body)
-                .build();
+        return execute(encryptedPost(AppConfig.SCORES_ENDPOINT, encryptedKey, encryptedData, iv),
+                "Failed to get scores");
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Failed to get scores: " + response.code());
-            }
-            return response.body().string();
-        }
+    public CompletableFuture<String> getScoresAsync(String encryptedKey, String encryptedData, String iv) {
+        return executeAsync(encryptedPost(AppConfig.SCORES_ENDPOINT, encryptedKey, encryptedData, iv),
+                "Failed to get scores");
     }
 
     /**
@@ -225,16 +229,43 @@ public class ApiService {
      * GET request với studentCode trong URL
      */
     public String getScoreBatch(String studentCode) throws IOException {
-        Request request = new Request.Builder()
+        return execute(scoreBatchRequest(studentCode), "Failed to get score batch");
+    }
+
+    public CompletableFuture<String> getScoreBatchAsync(String studentCode) {
+        return executeAsync(scoreBatchRequest(studentCode), "Failed to get score batch");
+    }
+
+    private Request scoreBatchRequest(String studentCode) {
+        return new Request.Builder()
                 .url(baseUrl + AppConfig.SCORE_BATCH_ENDPOINT + "/" + studentCode)
                 .get()
                 .build();
+    }
+
+    /**
+     * Lưu bảng điểm ảo (tạo mới hoặc cập nhật)
+     * POST /api/v1/score-batch/create-or-update với payload đã mã hóa
+     * Khi thất bại, IOException mang thông báo lỗi từ server (nếu có)
+     */
+    public String saveScoreBatch(String encryptedKey, String encryptedData, String iv) throws IOException {
+        Request request = encryptedPost(AppConfig.SCORE_BATCH_SAVE_ENDPOINT, encryptedKey, encryptedData, iv);
 
         try (Response response = client.newCall(request).execute()) {
+            String responseBody = response.body().string();
             if (!response.isSuccessful()) {
-                throw new IOException("Failed to get score batch: " + response.code());
+                String message = "Lỗi HTTP " + response.code();
+                try {
+                    JsonObject jsonResponse = JsonParser.parseString(responseBody).getAsJsonObject();
+                    if (jsonResponse.has("message")) {
+                        message = jsonResponse.get("message").getAsString();
+                    }
+                } catch (Exception e) {
+                    // Response không phải JSON, giữ mã HTTP
+                }
+                throw new IOException(message);
             }
-            return response.body().string();
+            return responseBody;
         }
     }
 
@@ -244,25 +275,144 @@ public class ApiService {
      * Body: {"code": "AT19"} (đã được mã hóa)
      */
     public String filterScholarship(String encryptedKey, String encryptedData, String iv) throws IOException {
+        return execute(encryptedPost(AppConfig.SCHOLARSHIP_FILTER_ENDPOINT, encryptedKey, encryptedData, iv),
+                "Failed to filter scholarship");
+    }
+
+    public CompletableFuture<String> filterScholarshipAsync(String encryptedKey, String encryptedData, String iv) {
+        return executeAsync(encryptedPost(AppConfig.SCHOLARSHIP_FILTER_ENDPOINT, encryptedKey, encryptedData, iv),
+                "Failed to filter scholarship");
+    }
+
+    private Request authorizedGet(String endpoint, String token) {
+        return new Request.Builder()
+                .url(baseUrl + endpoint)
+                .get()
+                .addHeader("Authorization", "Bearer " + token)
+                .build();
+    }
+
+    /**
+     * POST body {"encryptedKey", "encryptedData", "iv"} dùng chung cho các API mã hóa
+     */
+    private Request encryptedPost(String endpoint, String encryptedKey, String encryptedData, String iv) {
         JsonObject jsonObject = new JsonObject();
         jsonObject.addProperty("encryptedKey", encryptedKey);
         jsonObject.addProperty("encryptedData", encryptedData);
         jsonObject.addProperty("iv", iv);
 
-        RequestBody body = RequestBody.create(
-                jsonObject.toString(),
-                MediaType.get("application/json; charset=utf-8"));
+        RequestBody body = RequestBody.create(jsonObject.toString(), JSON);
 
-        Request request = new Request.Builder()
-                .url(baseUrl + "/api/v1/semester/filter/scholarship")
+        return new Request.Builder()
+                .url(baseUrl + endpoint)
                 .post(body)
                 .build();
+    }
 
+    private String execute(Request request, String errorMessage) throws IOException {
+        return execute(request, response -> successBody(response, errorMessage));
+    }
+
+    private <T> T execute(Request request, ResponseHandler<T> handler) throws IOException {
         try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Failed to filter scholarship: " + response.code());
+            return handler.handle(response);
+        }
+    }
+
+    private CompletableFuture<String> executeAsync(Request request, String errorMessage) {
+        return executeAsync(request, response -> successBody(response, errorMessage));
+    }
+
+    /**
+     * Gửi request qua dispatcher của OkHttp (không chiếm thread của caller).
+     * Hủy future trả về sẽ hủy HTTP call đang chạy.
+     */
+    private <T> CompletableFuture<T> executeAsync(Request request, ResponseHandler<T> handler) {
+        Call call = client.newCall(request);
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
             }
-            return response.body().string();
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    future.complete(handler.handle(response));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+
+        future.whenComplete((body, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
+    private static String successBody(Response response, String errorMessage) throws IOException {
+        if (!response.isSuccessful()) {
+            throw httpError(response, errorMessage);
+        }
+        return response.body().string();
+    }
+
+    /**
+     * Lỗi HTTP kèm body từ server (cắt ngắn) để caller nhận diện được lỗi, ví dụ lỗi giải mã
+     */
+    private static IOException httpError(Response response, String errorMessage) throws IOException {
+        String body = response.body() != null ? response.body().string().trim() : "";
+        if (body.length() > MAX_ERROR_BODY_LENGTH) {
+            body = body.substring(0, MAX_ERROR_BODY_LENGTH);
+        }
+        return new IOException(errorMessage + ": " + response.code() + (body.isEmpty() ? "" : " " + body));
+    }
+
+    @FunctionalInterface
+    private interface ResponseHandler<T> {
+        T handle(Response response) throws IOException;
+    }
+
+    /**
+     * Đọc body response dạng stream
+     */
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    /**
+     * Kết quả lấy public key có điều kiện (If-None-Match)
+     */
+    public static class PublicKeyResponse {
+        private final boolean notModified;
+        private final String publicKey;
+        private final String etag;
+
+        public PublicKeyResponse(boolean notModified, String publicKey, String etag) {
+            this.notModified = notModified;
+            this.publicKey = publicKey;
+            this.etag = etag;
+        }
+
+        /**
+         * Server trả 304: key đang cache vẫn còn hiệu lực
+         */
+        public boolean isNotModified() {
+            return notModified;
+        }
+
+        public String getPublicKey() {
+            return publicKey;
+        }
+
+        public String getEtag() {
+            return etag;
         }
     }
 }
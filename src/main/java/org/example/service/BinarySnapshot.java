@@ -0,0 +1,400 @@
+package org.example.service;
+
+import org.example.model.ScheduleItem;
+import org.example.model.ScoreItem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Định dạng nhị phân gọn cho dữ liệu lịch học và điểm lưu local.
+ *
+ * Khung: [MAGIC:int][VERSION:byte][kind:byte][sourceFingerprint:long][rawLength:int][thân nén Deflate].
+ * Thân: bảng từ điển chuỗi (giáo viên, phòng, môn, giờ...) rồi đến các bản ghi, số nguyên ghi dạng
+ * varint; ngày là epoch-day ghi chênh lệch so với bản ghi trước, điểm ghi theo phần trăm.
+ * Giải mã thẳng ra ScheduleItem/ScoreItem, không qua cây JSON của Gson.
+ */
+public final class BinarySnapshot {
+    private static final int MAGIC = 0x4B4D4142; // "KMAB"
+    private static final byte VERSION = 1;
+    private static final byte KIND_SCHEDULE = 1;
+    private static final byte KIND_SCORES = 2;
+    private static final byte KIND_TEXT = 3;
+    private static final int HEADER_SIZE = 4 + 1 + 1 + 8 + 4;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    // Cờ của một bản ghi điểm
+    private static final int FLAG_RECENT_SEMESTER = 1;
+    private static final int FLAG_FAILED = 1 << 1;
+    private static final int FLAG_RAW_SCORES = 1 << 2; // Có điểm không biểu diễn được theo phần trăm
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * Lịch học đã giải mã cùng dấu vân tay của JSON nguồn
+     */
+    public static final class Schedule {
+        private final List<ScheduleItem> items;
+        private final long sourceFingerprint;
+
+        private Schedule(List<ScheduleItem> items, long sourceFingerprint) {
+            this.items = items;
+            this.sourceFingerprint = sourceFingerprint;
+        }
+
+        public List<ScheduleItem> getItems() {
+            return items;
+        }
+
+        public long getSourceFingerprint() {
+            return sourceFingerprint;
+        }
+    }
+
+    /**
+     * Dấu vân tay 64-bit (FNV-1a) của chuỗi nguồn, để biết snapshot còn khớp dữ liệu không
+     */
+    public static long fingerprint(String source) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < source.length(); i++) {
+            hash ^= source.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public static byte[] encodeSchedule(List<ScheduleItem> items, long sourceFingerprint) {
+        Writer writer = new Writer();
+        Dictionary dictionary = new Dictionary();
+        for (ScheduleItem item : items) {
+            dictionary.add(item.getStartTime());
+            dictionary.add(item.getEndTime());
+            dictionary.add(item.getSubject());
+            dictionary.add(item.getCourseCode());
+            dictionary.add(item.getRoom());
+            dictionary.add(item.getTeacher());
+        }
+        dictionary.writeTo(writer);
+
+        writer.writeVarint(items.size());
+        long previousDay = 0;
+        for (ScheduleItem item : items) {
+            long day = item.getDate().toEpochDay();
+            writer.writeSignedVarint(day - previousDay);
+            previousDay = day;
+            writer.writeVarint(dictionary.indexOf(item.getStartTime()));
+            writer.writeVarint(dictionary.indexOf(item.getEndTime()));
+            writer.writeVarint(dictionary.indexOf(item.getSubject()));
+            writer.writeVarint(dictionary.indexOf(item.getCourseCode()));
+            writer.writeVarint(dictionary.indexOf(item.getRoom()));
+            writer.writeVarint(dictionary.indexOf(item.getTeacher()));
+        }
+        return frame(KIND_SCHEDULE, sourceFingerprint, writer.toByteArray());
+    }
+
+    public static Schedule decodeSchedule(byte[] data) throws IOException {
+        Reader reader = new Reader(unframe(data, KIND_SCHEDULE));
+        String[] dictionary = readDictionary(reader);
+
+        int count = reader.readVarint();
+        List<ScheduleItem> items = new ArrayList<>(count);
+        long day = 0;
+        for (int i = 0; i < count; i++) {
+            day += reader.readSignedVarint();
+            LocalDate date = LocalDate.ofEpochDay(day);
+            String startTime = entry(dictionary, reader);
+            String endTime = entry(dictionary, reader);
+
+            ScheduleItem item = new ScheduleItem();
+            item.setDate(date);
+            item.setStartTime(startTime);
+            item.setEndTime(endTime);
+            item.setTime(startTime + " - " + endTime);
+            item.setSubject(entry(dictionary, reader));
+            item.setCourseCode(entry(dictionary, reader));
+            item.setRoom(entry(dictionary, reader));
+            item.setTeacher(entry(dictionary, reader));
+            item.setDay(date.format(DATE_FORMATTER));
+            items.add(item);
+        }
+        return new Schedule(items, sourceFingerprint(data));
+    }
+
+    public static byte[] encodeScores(List<ScoreItem> items) {
+        Writer writer = new Writer();
+        Dictionary dictionary = new Dictionary();
+        for (ScoreItem item : items) {
+            dictionary.add(item.getSubjectName());
+            dictionary.add(item.getScoreText());
+        }
+        dictionary.writeTo(writer);
+
+        writer.writeVarint(items.size());
+        for (ScoreItem item : items) {
+            double[] scores = {item.getScoreFirst(), item.getScoreSecond(), item.getScoreFinal(), item.getScoreOverall()};
+            boolean raw = false;
+            for (double score : scores) {
+                raw |= !isHundredths(score);
+            }
+            int flags = (item.isRecentSemester() ? FLAG_RECENT_SEMESTER : 0)
+                    | (item.isFailed() ? FLAG_FAILED : 0)
+                    | (raw ? FLAG_RAW_SCORES : 0);
+            writer.writeVarint(flags);
+            writer.writeVarint(dictionary.indexOf(item.getSubjectName()));
+            writer.writeSignedVarint(item.getSubjectCredit());
+            for (double score : scores) {
+                if (raw) {
+                    writer.writeLong(Double.doubleToLongBits(score));
+                } else {
+                    writer.writeSignedVarint(Math.round(score * 100));
+                }
+            }
+            writer.writeVarint(dictionary.indexOf(item.getScoreText()));
+        }
+        return frame(KIND_SCORES, 0, writer.toByteArray());
+    }
+
+    public static List<ScoreItem> decodeScores(byte[] data) throws IOException {
+        Reader reader = new Reader(unframe(data, KIND_SCORES));
+        String[] dictionary = readDictionary(reader);
+
+        int count = reader.readVarint();
+        List<ScoreItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int flags = reader.readVarint();
+            boolean raw = (flags & FLAG_RAW_SCORES) != 0;
+            ScoreItem item = new ScoreItem();
+            item.setSubjectName(entry(dictionary, reader));
+            item.setSubjectCredit((int) reader.readSignedVarint());
+            item.setScoreFirst(readScore(reader, raw));
+            item.setScoreSecond(readScore(reader, raw));
+            item.setScoreFinal(readScore(reader, raw));
+            item.setScoreOverall(readScore(reader, raw));
+            item.setScoreText(entry(dictionary, reader));
+            item.setRecentSemester((flags & FLAG_RECENT_SEMESTER) != 0);
+            item.setFailed((flags & FLAG_FAILED) != 0);
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Nén một chuỗi văn bản (ví dụ JSON gốc từ server)
+     */
+    public static byte[] encodeText(String text) {
+        return frame(KIND_TEXT, 0, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String decodeText(byte[] data) throws IOException {
+        return new String(unframe(data, KIND_TEXT), StandardCharsets.UTF_8);
+    }
+
+    private static double readScore(Reader reader, boolean raw) throws IOException {
+        return raw ? Double.longBitsToDouble(reader.readLong()) : reader.readSignedVarint() / 100.0;
+    }
+
+    private static boolean isHundredths(double score) {
+        double scaled = score * 100;
+        return !Double.isNaN(score) && Math.abs(scaled) < 1e15 && Math.round(scaled) / 100.0 == score;
+    }
+
+    private static String[] readDictionary(Reader reader) throws IOException {
+        int size = reader.readVarint();
+        String[] dictionary = new String[size + 1]; // Chỉ số 0 là null
+        for (int i = 1; i <= size; i++) {
+            dictionary[i] = reader.readString();
+        }
+        return dictionary;
+    }
+
+    private static String entry(String[] dictionary, Reader reader) throws IOException {
+        int index = reader.readVarint();
+        if (index >= dictionary.length) {
+            throw new IOException("Corrupted snapshot");
+        }
+        return dictionary[index];
+    }
+
+    private static byte[] frame(byte kind, long sourceFingerprint, byte[] body) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(body);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + body.length / 4 + 64);
+        out.writeBytes(ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC).put(VERSION).put(kind).putLong(sourceFingerprint).putInt(body.length)
+                .array());
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static byte[] unframe(byte[] data, byte kind) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(data);
+        if (data.length < HEADER_SIZE || header.getInt() != MAGIC || header.get() != VERSION || header.get() != kind) {
+            throw new IOException("Unsupported snapshot format");
+        }
+        header.getLong();
+        int rawLength = header.getInt();
+        if (rawLength < 0) {
+            throw new IOException("Corrupted snapshot");
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, HEADER_SIZE, data.length - HEADER_SIZE);
+            byte[] body = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(body, length, rawLength - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != rawLength) {
+                throw new IOException("Corrupted snapshot");
+            }
+            return body;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted snapshot", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static long sourceFingerprint(byte[] data) {
+        return ByteBuffer.wrap(data, 6, 8).getLong();
+    }
+
+    /**
+     * Bảng chuỗi theo thứ tự xuất hiện; chỉ số 0 dành cho null
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        void add(String value) {
+            if (value != null && !indexes.containsKey(value)) {
+                values.add(value);
+                indexes.put(value, values.size());
+            }
+        }
+
+        int indexOf(String value) {
+            return value != null ? indexes.get(value) : 0;
+        }
+
+        void writeTo(Writer writer) {
+            writer.writeVarint(values.size());
+            for (String value : values) {
+                writer.writeString(value);
+            }
+        }
+    }
+
+    private static final class Writer {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        // Zigzag để số âm nhỏ cũng chỉ tốn ít byte
+        void writeSignedVarint(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (value >>> shift));
+            }
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            out.writeBytes(bytes);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int readVarint() throws IOException {
+            long value = readVarintLong();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Corrupted snapshot");
+            }
+            return (int) value;
+        }
+
+        long readSignedVarint() throws IOException {
+            long value = readVarintLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readLong() throws IOException {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (data[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        String readString() throws IOException {
+            int length = readVarint();
+            require(length);
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private long readVarintLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                require(1);
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupted snapshot");
+        }
+
+        private void require(int length) throws IOException {
+            if (length > data.length - position) {
+                throw new IOException("Corrupted snapshot");
+            }
+        }
+    }
+}
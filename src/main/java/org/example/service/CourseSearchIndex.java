@@ -0,0 +1,173 @@
+package org.example.service;
+
+import org.example.model.VirtualCourse;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Chỉ mục đảo để tìm kiếm môn học ảo theo từ khóa.
+ * Mỗi lớp được tách token (tên môn, giảng viên, phòng học, số lớp, khóa) sau khi
+ * chuẩn hóa bỏ dấu tiếng Việt. Token được sắp xếp để tra theo tiền tố bằng tìm kiếm
+ * nhị phân; danh sách lớp của mỗi token là mảng id tăng dần (thứ tự trong danh mục).
+ */
+public class CourseSearchIndex {
+    private static final int MAX_CACHED_TOKENS = 256;
+
+    private List<VirtualCourse> courses = Collections.emptyList();
+    private String[] tokens = new String[0]; // Token đã chuẩn hóa, sắp xếp tăng dần
+    private int[][] postings = new int[0][]; // postings[i]: id các lớp chứa tokens[i]
+
+    // Kết quả theo từng token truy vấn, dùng lại khi người dùng gõ tiếp
+    private final Map<String, BitSet> tokenMatches = new HashMap<>();
+
+    /**
+     * Xây dựng lại chỉ mục cho toàn bộ danh mục (id = vị trí trong danh sách)
+     */
+    public void build(List<VirtualCourse> catalog) {
+        Map<String, List<Integer>> index = new TreeMap<>();
+        for (int id = 0; id < catalog.size(); id++) {
+            VirtualCourse course = catalog.get(id);
+            addTokens(index, id, course.getCourseName());
+            addTokens(index, id, course.getDisplayCourseName());
+            addTokens(index, id, course.getTeacher());
+            addTokens(index, id, course.getStudyLocation());
+            addTokens(index, id, course.getClassNumber());
+            addTokens(index, id, course.getCourse());
+        }
+
+        String[] newTokens = new String[index.size()];
+        int[][] newPostings = new int[index.size()][];
+        int i = 0;
+        for (Map.Entry<String, List<Integer>> entry : index.entrySet()) {
+            newTokens[i] = entry.getKey();
+            List<Integer> ids = entry.getValue();
+            int[] posting = new int[ids.size()];
+            for (int j = 0; j < posting.length; j++) {
+                posting[j] = ids.get(j);
+            }
+            newPostings[i++] = posting;
+        }
+
+        courses = new ArrayList<>(catalog);
+        tokens = newTokens;
+        postings = newPostings;
+        tokenMatches.clear();
+    }
+
+    /**
+     * Tìm các lớp khớp với mọi từ trong truy vấn (mỗi từ khớp theo tiền tố, không phân biệt dấu).
+     * Kết quả giữ thứ tự của danh mục. Truy vấn rỗng trả về toàn bộ danh mục.
+     */
+    public List<VirtualCourse> search(String query) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return Collections.unmodifiableList(courses);
+        }
+
+        BitSet result = null;
+        for (String token : queryTokens) {
+            BitSet matches = matchPrefix(token);
+            if (result == null) {
+                result = (BitSet) matches.clone();
+            } else {
+                result.and(matches);
+            }
+            if (result.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        List<VirtualCourse> found = new ArrayList<>(result.cardinality());
+        for (int id = result.nextSetBit(0); id >= 0; id = result.nextSetBit(id + 1)) {
+            found.add(courses.get(id));
+        }
+        return found;
+    }
+
+    /**
+     * Các lớp có ít nhất một token bắt đầu bằng tiền tố đã cho
+     */
+    private BitSet matchPrefix(String prefix) {
+        BitSet cached = tokenMatches.get(prefix);
+        if (cached != null) {
+            return cached;
+        }
+
+        BitSet matches = new BitSet(courses.size());
+        int from = Arrays.binarySearch(tokens, prefix);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        for (int i = from; i < tokens.length && tokens[i].startsWith(prefix); i++) {
+            for (int id : postings[i]) {
+                matches.set(id);
+            }
+        }
+
+        if (tokenMatches.size() >= MAX_CACHED_TOKENS) {
+            tokenMatches.clear();
+        }
+        tokenMatches.put(prefix, matches);
+        return matches;
+    }
+
+    private static void addTokens(Map<String, List<Integer>> index, int id, String text) {
+        for (String token : tokenize(text)) {
+            List<Integer> ids = index.computeIfAbsent(token, k -> new ArrayList<>());
+            // Lớp được thêm theo id tăng dần nên chỉ cần so với phần tử cuối
+            if (ids.isEmpty() || ids.get(ids.size() - 1) != id) {
+                ids.add(id);
+            }
+        }
+    }
+
+    /**
+     * Tách chuỗi thành các token đã chuẩn hóa (chữ thường, bỏ dấu, chỉ gồm chữ và số)
+     */
+    static List<String> tokenize(String text) {
+        List<String> result = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return result;
+        }
+
+        String normalized = normalize(text);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letterOrDigit = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                result.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Chuẩn hóa tiếng Việt: chữ thường, bỏ dấu thanh và dấu mũ, đ -> d
+     */
+    public static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (c == 'đ' || c == 'Đ') {
+                c = 'd';
+            }
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,286 @@
+package org.example.service;
+
+import org.example.model.GradingPolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lập kế hoạch điểm cho các môn còn lại để đạt CPA mục tiêu.
+ * Các tín chỉ còn lại được chia thành các môn cùng số tín chỉ (môn cuối nhận phần dư).
+ * Mỗi môn chọn một mức điểm từ mức tối thiểu trở lên; "công sức" của một môn là số bậc
+ * vượt mức tối thiểu nhân với số tín chỉ. Quy hoạch động theo tổng công sức
+ * (best[e] = tổng điểm lớn nhất đạt được với công sức đúng bằng e) cho ra phương án
+ * cần ít công sức nhất mà vẫn đủ điểm. Điểm thang 4 được giữ bằng số nguyên (phần trăm)
+ * nên phép so sánh với mục tiêu là chính xác.
+ */
+public final class CpaPlanner {
+    /**
+     * Giới hạn số tín chỉ còn lại để bảng quy hoạch động luôn nhỏ (chương trình thường ~150 tín chỉ)
+     */
+    public static final int MAX_REMAINING_CREDITS = 400;
+
+    private CpaPlanner() {
+    }
+
+    /**
+     * @param currentPointHundredths Σ điểm thang 4 (x100) x tín chỉ của các môn đã hoàn thành
+     * @param totalCredits           tổng số tín chỉ tính CPA
+     * @param remainingCredits       số tín chỉ còn lại phải học
+     * @param subjectCredit          số tín chỉ mỗi môn còn lại
+     * @param targetCpa              CPA mục tiêu (làm tròn tới 0.01)
+     * @param levels                 các mức điểm được phép chọn, từ thấp (mức tối thiểu) lên cao
+     */
+    public static Plan plan(long currentPointHundredths, int totalCredits, int remainingCredits, int subjectCredit,
+            double targetCpa, List<GradingPolicy.Grade> levels) {
+        if (totalCredits <= 0 || remainingCredits <= 0 || subjectCredit <= 0 || levels.isEmpty()) {
+            throw new IllegalArgumentException("Thông tin tính CPA không hợp lệ");
+        }
+        if (remainingCredits > MAX_REMAINING_CREDITS) {
+            throw new IllegalArgumentException("Số tín chỉ còn lại tối đa là " + MAX_REMAINING_CREDITS);
+        }
+
+        int levelCount = levels.size();
+        int[] points = new int[levelCount];
+        for (int l = 0; l < levelCount; l++) {
+            points[l] = (int) Math.round(levels.get(l).getPoints4() * 100);
+        }
+
+        // Các môn còn lại: đủ môn subjectCredit tín chỉ, môn cuối nhận phần dư
+        int fullSubjects = remainingCredits / subjectCredit;
+        int remainder = remainingCredits % subjectCredit;
+        int[] credits = new int[fullSubjects + (remainder > 0 ? 1 : 0)];
+        Arrays.fill(credits, 0, fullSubjects, subjectCredit);
+        if (remainder > 0) {
+            credits[fullSubjects] = remainder;
+        }
+
+        // Điểm còn thiếu (đơn vị: điểm thang 4 x100 x tín chỉ)
+        long need = Math.round(targetCpa * 100) * (long) totalCredits - currentPointHundredths;
+        long minPoints = (long) points[0] * remainingCredits;
+        long maxPoints = (long) points[levelCount - 1] * remainingCredits;
+
+        // Phương án đều: mức thấp nhất mà tất cả các môn cùng đạt là đủ
+        int uniformLevel = -1;
+        for (int l = 0; l < levelCount; l++) {
+            if ((long) points[l] * remainingCredits >= need) {
+                uniformLevel = l;
+                break;
+            }
+        }
+
+        if (maxPoints < need) {
+            return new Plan(false, need, currentPointHundredths, totalCredits, levels, minPoints, maxPoints,
+                    Collections.emptyList(), 0, 0, uniformLevel, remainingCredits);
+        }
+
+        // best[e]: tổng điểm lớn nhất với công sức đúng bằng e (-1: không đạt được)
+        int maxEffort = remainingCredits * (levelCount - 1);
+        long[] best = new long[maxEffort + 1];
+        long[] next = new long[maxEffort + 1];
+        byte[][] choice = new byte[credits.length][maxEffort + 1];
+        Arrays.fill(best, -1);
+        best[0] = 0;
+        int reached = 0; // Công sức lớn nhất đã đạt tới, giới hạn vòng lặp
+        for (int i = 0; i < credits.length; i++) {
+            Arrays.fill(next, 0, Math.min(maxEffort, reached + credits[i] * (levelCount - 1)) + 1, -1);
+            for (int e = 0; e <= reached; e++) {
+                if (best[e] < 0) {
+                    continue;
+                }
+                for (int l = 0; l < levelCount; l++) {
+                    int ne = e + credits[i] * l;
+                    long value = best[e] + (long) points[l] * credits[i];
+                    if (value > next[ne]) {
+                        next[ne] = value;
+                        choice[i][ne] = (byte) l;
+                    }
+                }
+            }
+            reached = Math.min(maxEffort, reached + credits[i] * (levelCount - 1));
+            long[] swap = best;
+            best = next;
+            next = swap;
+        }
+
+        int effort = -1;
+        for (int e = 0; e <= reached; e++) {
+            if (best[e] >= need) {
+                effort = e;
+                break;
+            }
+        }
+
+        // Truy vết mức của từng môn rồi gộp theo (mức, số tín chỉ)
+        int[][] counts = new int[levelCount][2]; // [mức][0: môn đủ tín chỉ, 1: môn phần dư]
+        int cursor = effort;
+        for (int i = credits.length - 1; i >= 0; i--) {
+            int l = choice[i][cursor];
+            counts[l][credits[i] == subjectCredit ? 0 : 1]++;
+            cursor -= credits[i] * l;
+        }
+
+        List<Allocation> allocations = new ArrayList<>();
+        for (int l = levelCount - 1; l >= 0; l--) {
+            if (counts[l][0] > 0) {
+                allocations.add(new Allocation(levels.get(l), counts[l][0], subjectCredit));
+            }
+            if (counts[l][1] > 0) {
+                allocations.add(new Allocation(levels.get(l), counts[l][1], remainder));
+            }
+        }
+
+        return new Plan(true, need, currentPointHundredths, totalCredits, levels, minPoints, maxPoints,
+                allocations, effort, best[effort], uniformLevel, remainingCredits);
+    }
+
+    /**
+     * Kết quả lập kế hoạch
+     */
+    public static final class Plan {
+        private final boolean feasible;
+        private final long need;
+        private final long currentPointHundredths;
+        private final int totalCredits;
+        private final List<GradingPolicy.Grade> levels;
+        private final long minPoints;
+        private final long maxPoints;
+        private final List<Allocation> allocations;
+        private final int effort;
+        private final long plannedPoints;
+        private final int uniformLevel;
+        private final int remainingCredits;
+
+        private Plan(boolean feasible, long need, long currentPointHundredths, int totalCredits,
+                List<GradingPolicy.Grade> levels, long minPoints, long maxPoints, List<Allocation> allocations,
+                int effort, long plannedPoints, int uniformLevel, int remainingCredits) {
+            this.feasible = feasible;
+            this.need = need;
+            this.currentPointHundredths = currentPointHundredths;
+            this.totalCredits = totalCredits;
+            this.levels = levels;
+            this.minPoints = minPoints;
+            this.maxPoints = maxPoints;
+            this.allocations = Collections.unmodifiableList(allocations);
+            this.effort = effort;
+            this.plannedPoints = plannedPoints;
+            this.uniformLevel = uniformLevel;
+            this.remainingCredits = remainingCredits;
+        }
+
+        /**
+         * Có phương án đạt CPA mục tiêu không (kể cả khi tất cả các môn đạt mức cao nhất)
+         */
+        public boolean isFeasible() {
+            return feasible;
+        }
+
+        /**
+         * Chỉ cần đạt mức tối thiểu ở mọi môn là đủ
+         */
+        public boolean isReachedAtMinimum() {
+            return minPoints >= need;
+        }
+
+        /**
+         * Phân bổ mức điểm cần ít công sức nhất, từ mức cao xuống thấp
+         */
+        public List<Allocation> getAllocations() {
+            return allocations;
+        }
+
+        /**
+         * Tổng số bậc (x tín chỉ) vượt mức tối thiểu của phương án
+         */
+        public int getEffort() {
+            return effort;
+        }
+
+        public int getRemainingCredits() {
+            return remainingCredits;
+        }
+
+        /**
+         * Điểm thang 4 trung bình của các môn còn lại theo phương án
+         */
+        public double getPlannedAverage() {
+            return plannedPoints / 100.0 / remainingCredits;
+        }
+
+        /**
+         * CPA khi đạt đúng phương án
+         */
+        public double getPlannedCpa() {
+            return cpaOf(plannedPoints);
+        }
+
+        /**
+         * Ranh giới khả thi: CPA khi mọi môn đạt mức tối thiểu
+         */
+        public double getMinCpa() {
+            return cpaOf(minPoints);
+        }
+
+        /**
+         * Ranh giới khả thi: CPA khi mọi môn đạt mức cao nhất
+         */
+        public double getMaxCpa() {
+            return cpaOf(maxPoints);
+        }
+
+        /**
+         * Điểm thang 4 trung bình tối thiểu các môn còn lại phải đạt
+         */
+        public double getRequiredAverage() {
+            return Math.max(0, need) / 100.0 / remainingCredits;
+        }
+
+        public GradingPolicy.Grade getMinimumGrade() {
+            return levels.get(0);
+        }
+
+        public GradingPolicy.Grade getTopGrade() {
+            return levels.get(levels.size() - 1);
+        }
+
+        /**
+         * Mức thấp nhất mà nếu mọi môn cùng đạt thì đủ CPA mục tiêu, null nếu không có
+         */
+        public GradingPolicy.Grade getUniformGrade() {
+            return uniformLevel >= 0 ? levels.get(uniformLevel) : null;
+        }
+
+        private double cpaOf(long remainingPoints) {
+            return (currentPointHundredths + remainingPoints) / 100.0 / totalCredits;
+        }
+    }
+
+    /**
+     * Một dòng phân bổ: số môn (cùng số tín chỉ) cần đạt một mức điểm
+     */
+    public static final class Allocation {
+        private final GradingPolicy.Grade grade;
+        private final int subjects;
+        private final int creditPerSubject;
+
+        private Allocation(GradingPolicy.Grade grade, int subjects, int creditPerSubject) {
+            this.grade = grade;
+            this.subjects = subjects;
+            this.creditPerSubject = creditPerSubject;
+        }
+
+        public GradingPolicy.Grade getGrade() {
+            return grade;
+        }
+
+        public int getSubjects() {
+            return subjects;
+        }
+
+        public int getCreditPerSubject() {
+            return creditPerSubject;
+        }
+    }
+}
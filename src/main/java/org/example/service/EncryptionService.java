@@ -1,55 +1,123 @@
 package org.example.service;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.util.encoders.Base64;
 
 import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
-import javax.crypto.SecretKey;
 import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
+import java.security.Provider;
 import java.security.PublicKey;
+import java.security.SecureRandom;
 import java.security.Security;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
 
 /**
  * Service để xử lý hybrid encryption (RSA + AES)
+ * Các primitive được chuẩn bị một lần và dùng lại: provider RSA được chọn khi load class,
+ * một SecureRandom dùng chung (thread-safe), Cipher riêng cho từng thread.
+ * BouncyCastle chỉ được load và đăng ký khi provider của JDK không dùng được
+ * (hoặc khi gọi encrypt() cũ), vì load provider này tốn đáng kể thời gian khởi động.
  */
 public class EncryptionService {
+    private static final String RSA_TRANSFORMATION = "RSA/ECB/PKCS1Padding";
+    private static final String AES_TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    private static final int AES_KEY_BYTES = 32; // AES-256
+    private static final int IV_BYTES = 16;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // Provider cho RSA của hybrid encryption: ưu tiên provider mặc định, không có thì BouncyCastle
+    private static final Provider RSA_PROVIDER = resolveRsaProvider();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final ThreadLocal<Cipher> AES_CIPHER = ThreadLocal.withInitial(
+            () -> newCipher(AES_TRANSFORMATION, null));
+    private static final ThreadLocal<Cipher> RSA_CIPHER = ThreadLocal.withInitial(
+            () -> newCipher(RSA_TRANSFORMATION, RSA_PROVIDER));
+    private static final ThreadLocal<Cipher> RSA_BC_CIPHER = ThreadLocal.withInitial(
+            () -> newCipher(RSA_TRANSFORMATION, BouncyCastle.PROVIDER));
+
     private static EncryptionService instance;
-    private PublicKey publicKey;
-    
-    static {
-        Security.addProvider(new BouncyCastleProvider());
-    }
+    private volatile PublicKey publicKey;
+    private volatile byte[] publicKeyBytes; // DER của key đang dùng, để bỏ qua parse lại key giống hệt
     
     private EncryptionService() {
     }
     
-    public static EncryptionService getInstance() {
+    public static synchronized EncryptionService getInstance() {
         if (instance == null) {
             instance = new EncryptionService();
         }
         return instance;
     }
     
+    /**
+     * Khởi tạo trước Cipher và SecureRandom cho thread hiện tại,
+     * để lần mã hóa đầu tiên không phải chịu chi phí khởi tạo provider
+     */
+    public void warmUp() {
+        AES_CIPHER.get();
+        RSA_CIPHER.get();
+        RANDOM.nextBytes(new byte[IV_BYTES]);
+    }
+    
+    private static Provider resolveRsaProvider() {
+        try {
+            return Cipher.getInstance(RSA_TRANSFORMATION).getProvider();
+        } catch (GeneralSecurityException e) {
+            // Fallback to BouncyCastle
+            return BouncyCastle.PROVIDER;
+        }
+    }
+    
+    /**
+     * BouncyCastle được load và đăng ký lần đầu khi class này được dùng
+     */
+    private static final class BouncyCastle {
+        private static final Provider PROVIDER = new BouncyCastleProvider();
+        
+        static {
+            Security.addProvider(PROVIDER);
+        }
+    }
+    
+    private static Cipher newCipher(String transformation, Provider provider) {
+        try {
+            return provider != null ? Cipher.getInstance(transformation, provider) : Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Không tạo được cipher " + transformation, e);
+        }
+    }
+    
     /**
      * Lưu public key từ backend
+     * Nếu key trùng với key đang dùng thì giữ nguyên, không chạy lại KeyFactory
      */
-    public void setPublicKey(String publicKeyBase64) {
+    public synchronized void setPublicKey(String publicKeyBase64) {
         try {
-            byte[] keyBytes = Base64.decode(publicKeyBase64);
+            // MIME decoder bỏ qua xuống dòng/khoảng trắng giống decoder của BouncyCastle
+            byte[] keyBytes = Base64.getMimeDecoder().decode(publicKeyBase64);
+            if (publicKey != null && Arrays.equals(keyBytes, publicKeyBytes)) {
+                return;
+            }
             X509EncodedKeySpec spec = new X509EncodedKeySpec(keyBytes);
             
             // Thử dùng standard Java crypto trước, nếu không được thì dùng BouncyCastle
+            PublicKey parsedKey;
             try {
                 KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-                this.publicKey = keyFactory.generatePublic(spec);
+                parsedKey = keyFactory.generatePublic(spec);
             } catch (Exception e) {
                 // Fallback to BouncyCastle
-                KeyFactory keyFactory = KeyFactory.getInstance("RSA", "BC");
-                this.publicKey = keyFactory.generatePublic(spec);
+                KeyFactory keyFactory = KeyFactory.getInstance("RSA", BouncyCastle.PROVIDER);
+                parsedKey = keyFactory.generatePublic(spec);
             }
+            this.publicKeyBytes = keyBytes;
+            this.publicKey = parsedKey;
         } catch (Exception e) {
             throw new RuntimeException("Không thể load public key: " + e.getMessage(), e);
         }
@@ -64,10 +132,10 @@ public class EncryptionService {
         }
         
         try {
-            Cipher cipher = Cipher.getInstance("RSA/ECB/PKCS1Padding", "BC");
+            Cipher cipher = RSA_BC_CIPHER.get();
             cipher.init(Cipher.ENCRYPT_MODE, publicKey);
-            byte[] encryptedBytes = cipher.doFinal(data.getBytes("UTF-8"));
-            return Base64.toBase64String(encryptedBytes);
+            byte[] encryptedBytes = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(encryptedBytes);
         } catch (Exception e) {
             throw new RuntimeException("Lỗi khi mã hóa dữ liệu", e);
         }
@@ -83,43 +151,31 @@ public class EncryptionService {
         }
         
         try {
-            // Tạo AES key ngẫu nhiên
-            KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
-            keyGenerator.init(256);
-            SecretKey aesKey = keyGenerator.generateKey();
-            
-            // Tạo IV ngẫu nhiên
-            byte[] iv = new byte[16];
-            java.security.SecureRandom random = new java.security.SecureRandom();
-            random.nextBytes(iv);
+            // Tạo AES key và IV ngẫu nhiên (AES-256 = 32 byte ngẫu nhiên, giống KeyGenerator)
+            byte[] keyAndIv = new byte[AES_KEY_BYTES + IV_BYTES];
+            RANDOM.nextBytes(keyAndIv);
+            SecretKeySpec aesKey = new SecretKeySpec(keyAndIv, 0, AES_KEY_BYTES, "AES");
+            IvParameterSpec ivSpec = new IvParameterSpec(keyAndIv, AES_KEY_BYTES, IV_BYTES);
             
             // Mã hóa data bằng AES
-            Cipher aesCipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
+            Cipher aesCipher = AES_CIPHER.get();
             aesCipher.init(Cipher.ENCRYPT_MODE, aesKey, ivSpec);
-            byte[] encryptedData = aesCipher.doFinal(data.getBytes("UTF-8"));
+            byte[] encryptedData = aesCipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
             
             // Convert AES key bytes thành hex string (backend expect hex string sau khi decrypt RSA)
-            String aesKeyHex = bytesToHex(aesKey.getEncoded());
+            byte[] aesKeyHex = hexBytes(keyAndIv, 0, AES_KEY_BYTES);
             
             // Mã hóa AES key (hex string) bằng RSA
             // Backend sẽ decrypt RSA để lấy hex string, rồi convert hex string thành bytes
-            // Thử dùng standard Java crypto trước
-            Cipher rsaCipher;
-            try {
-                rsaCipher = Cipher.getInstance("RSA/ECB/PKCS1Padding");
-            } catch (Exception e) {
-                // Fallback to BouncyCastle
-                rsaCipher = Cipher.getInstance("RSA/ECB/PKCS1Padding", "BC");
-            }
+            Cipher rsaCipher = RSA_CIPHER.get();
             rsaCipher.init(Cipher.ENCRYPT_MODE, publicKey);
             // Mã hóa hex string của AES key
-            byte[] encryptedKey = rsaCipher.doFinal(aesKeyHex.getBytes("UTF-8"));
+            byte[] encryptedKey = rsaCipher.doFinal(aesKeyHex);
             
             return new EncryptionResult(
-                Base64.toBase64String(encryptedKey),
-                Base64.toBase64String(encryptedData),
-                bytesToHex(iv)
+                Base64.getEncoder().encodeToString(encryptedKey),
+                Base64.getEncoder().encodeToString(encryptedData),
+                new String(hexBytes(keyAndIv, AES_KEY_BYTES, IV_BYTES), StandardCharsets.US_ASCII)
             );
         } catch (Exception e) {
             throw new RuntimeException("Lỗi khi mã hóa dữ liệu", e);
@@ -129,12 +185,21 @@ public class EncryptionService {
     /**
      * Chuyển đổi byte array sang hex string
      */
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder result = new StringBuilder();
-        for (byte b : bytes) {
-            result.append(String.format("%02x", b));
+    private static String bytesToHex(byte[] bytes) {
+        return new String(hexBytes(bytes, 0, bytes.length), StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Hex (chữ thường) dạng byte ASCII, tra bảng thay vì String.format từng byte
+     */
+    private static byte[] hexBytes(byte[] bytes, int offset, int length) {
+        byte[] hex = new byte[length * 2];
+        for (int i = 0; i < length; i++) {
+            int v = bytes[offset + i] & 0xFF;
+            hex[i * 2] = (byte) HEX_DIGITS[v >>> 4];
+            hex[i * 2 + 1] = (byte) HEX_DIGITS[v & 0x0F];
         }
-        return result.toString();
+        return hex;
     }
     
     public boolean isPublicKeyLoaded() {
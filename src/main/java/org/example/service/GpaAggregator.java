@@ -0,0 +1,228 @@
+package org.example.service;
+
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.example.model.GradingPolicy;
+import org.example.model.VirtualScoreItem;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tổng hợp GPA và thống kê của bảng điểm ảo theo kiểu cộng dồn.
+ * Mỗi môn đóng góp một phần cố định vào các tổng (điểm hệ 4 x tín chỉ, tín chỉ, số môn
+ * hoàn thành/trượt...). Khi một thuộc tính của môn thay đổi chỉ cần trừ phần đóng góp cũ
+ * và cộng phần mới (O(1)), không phải quét lại cả bảng.
+ * Điểm hệ 4 có tối đa 2 chữ số thập phân nên tổng được giữ bằng số nguyên (phần trăm)
+ * để không bị sai số cộng dồn.
+ */
+public class GpaAggregator {
+    private final Map<VirtualScoreItem, Tracked> tracked = new IdentityHashMap<>();
+
+    // Các tổng đang cộng dồn
+    private long selectedPointHundredths = 0; // Σ điểm hệ 4 (x100) x tín chỉ của môn được chọn
+    private int selectedCredits = 0;
+    private int selectedGpaCount = 0; // Số môn được chọn tính vào GPA (không tính GDTC)
+    private int selectedCount = 0; // Số môn được chọn (kể cả GDTC)
+    private int completedCount = 0;
+    private int completedCredits = 0;
+    private int failedCount = 0;
+
+    private final ReadOnlyDoubleWrapper gpa = new ReadOnlyDoubleWrapper(0.0);
+    private final ReadOnlyBooleanWrapper hasGpa = new ReadOnlyBooleanWrapper(false);
+    private final ReadOnlyIntegerWrapper completed = new ReadOnlyIntegerWrapper(0);
+    private final ReadOnlyIntegerWrapper completedCreditTotal = new ReadOnlyIntegerWrapper(0);
+    private final ReadOnlyIntegerWrapper failed = new ReadOnlyIntegerWrapper(0);
+    private final ReadOnlyBooleanWrapper allSelected = new ReadOnlyBooleanWrapper(false);
+
+    private final ListChangeListener<VirtualScoreItem> listListener = change -> {
+        while (change.next()) {
+            for (VirtualScoreItem item : change.getRemoved()) {
+                detach(item);
+            }
+            for (VirtualScoreItem item : change.getAddedSubList()) {
+                attach(item);
+            }
+        }
+        publish();
+    };
+
+    /**
+     * Theo dõi danh sách môn: môn được thêm/xóa khỏi danh sách sẽ tự được cộng/trừ
+     */
+    public void bind(ObservableList<VirtualScoreItem> items) {
+        items.addListener(listListener);
+        for (VirtualScoreItem item : items) {
+            attach(item);
+        }
+        publish();
+    }
+
+    /**
+     * GPA (hệ 4, làm tròn 2 chữ số) của các môn được chọn, không tính GDTC
+     */
+    public ReadOnlyDoubleProperty gpaProperty() {
+        return gpa.getReadOnlyProperty();
+    }
+
+    /**
+     * Có môn nào được chọn để tính GPA không
+     */
+    public ReadOnlyBooleanProperty hasGpaProperty() {
+        return hasGpa.getReadOnlyProperty();
+    }
+
+    public ReadOnlyIntegerProperty completedCountProperty() {
+        return completed.getReadOnlyProperty();
+    }
+
+    public ReadOnlyIntegerProperty completedCreditsProperty() {
+        return completedCreditTotal.getReadOnlyProperty();
+    }
+
+    public ReadOnlyIntegerProperty failedCountProperty() {
+        return failed.getReadOnlyProperty();
+    }
+
+    /**
+     * Mọi môn trong danh sách đều được chọn (false nếu danh sách rỗng)
+     */
+    public ReadOnlyBooleanProperty allSelectedProperty() {
+        return allSelected.getReadOnlyProperty();
+    }
+
+    private void attach(VirtualScoreItem item) {
+        if (tracked.containsKey(item)) {
+            return;
+        }
+
+        Tracked entry = new Tracked(item);
+        entry.listener = (obs, oldValue, newValue) -> {
+            apply(entry.contribution, -1);
+            entry.contribution = Contribution.of(item);
+            apply(entry.contribution, 1);
+            publish();
+        };
+        for (ObservableValue<?> property : observedProperties(item)) {
+            property.addListener(entry.listener);
+        }
+
+        tracked.put(item, entry);
+        apply(entry.contribution, 1);
+    }
+
+    private void detach(VirtualScoreItem item) {
+        Tracked entry = tracked.remove(item);
+        if (entry == null) {
+            return;
+        }
+
+        for (ObservableValue<?> property : observedProperties(item)) {
+            property.removeListener(entry.listener);
+        }
+        apply(entry.contribution, -1);
+    }
+
+    /**
+     * Các thuộc tính ảnh hưởng tới phần đóng góp của một môn
+     */
+    private static List<ObservableValue<?>> observedProperties(VirtualScoreItem item) {
+        return List.of(item.selectedProperty(), item.subjectCreditProperty(), item.scoreOverallProperty(),
+                item.scoreFinalProperty(), item.subjectNameProperty());
+    }
+
+    private void apply(Contribution c, int sign) {
+        selectedPointHundredths += sign * c.selectedPointHundredths;
+        selectedCredits += sign * c.selectedCredits;
+        selectedGpaCount += sign * c.selectedGpaCount;
+        selectedCount += sign * c.selectedCount;
+        completedCount += sign * c.completedCount;
+        completedCredits += sign * c.completedCredits;
+        failedCount += sign * c.failedCount;
+    }
+
+    /**
+     * Đẩy các tổng hiện tại ra property (listener chỉ được báo khi giá trị thực sự đổi)
+     */
+    private void publish() {
+        double value = selectedCredits > 0 ? selectedPointHundredths / 100.0 / selectedCredits : 0.0;
+        gpa.set(Math.round(value * 100.0) / 100.0);
+        hasGpa.set(selectedGpaCount > 0);
+        completed.set(completedCount);
+        completedCreditTotal.set(completedCredits);
+        failed.set(failedCount);
+        allSelected.set(!tracked.isEmpty() && selectedCount == tracked.size());
+    }
+
+    private static final class Tracked {
+        private Contribution contribution;
+        private ChangeListener<Object> listener;
+
+        private Tracked(VirtualScoreItem item) {
+            this.contribution = Contribution.of(item);
+        }
+    }
+
+    /**
+     * Phần đóng góp của một môn vào các tổng
+     */
+    private static final class Contribution {
+        private final long selectedPointHundredths;
+        private final int selectedCredits;
+        private final int selectedGpaCount;
+        private final int selectedCount;
+        private final int completedCount;
+        private final int completedCredits;
+        private final int failedCount;
+
+        private Contribution(long selectedPointHundredths, int selectedCredits, int selectedGpaCount, int selectedCount,
+                int completedCount, int completedCredits, int failedCount) {
+            this.selectedPointHundredths = selectedPointHundredths;
+            this.selectedCredits = selectedCredits;
+            this.selectedGpaCount = selectedGpaCount;
+            this.selectedCount = selectedCount;
+            this.completedCount = completedCount;
+            this.completedCredits = completedCredits;
+            this.failedCount = failedCount;
+        }
+
+        static Contribution of(VirtualScoreItem item) {
+            boolean physicalEducation = item.isPhysicalEducation();
+            int credit = item.getSubjectCredit();
+
+            // GPA: môn được chọn, không tính GDTC, chỉ môn có tín chỉ mới có trọng số
+            long pointHundredths = 0;
+            int credits = 0;
+            boolean countsForGpa = item.isSelected() && !physicalEducation;
+            if (countsForGpa && credit > 0) {
+                pointHundredths = Math.round(GradingPolicy.current().toScale4(item.getScoreOverall()) * 100) * credit;
+                credits = credit;
+            }
+
+            // Thống kê: mọi môn đã có điểm (không tính GDTC), không chỉ môn được chọn
+            int completedCount = 0;
+            int completedCredits = 0;
+            int failedCount = 0;
+            if (!physicalEducation && item.getScoreOverall() > 0) {
+                if (!item.checkFailed()) {
+                    completedCount = 1;
+                    completedCredits = credit;
+                } else {
+                    failedCount = 1;
+                }
+            }
+
+            return new Contribution(pointHundredths, credits, countsForGpa ? 1 : 0, item.isSelected() ? 1 : 0,
+                    completedCount, completedCredits, failedCount);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package org.example.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Kho key-value nhúng dạng append-only log (một file duy nhất).
+ *
+ * Mỗi lần put/remove chỉ nối thêm một bản ghi vào cuối file; chỉ mục trong bộ nhớ giữ vị trí
+ * bản ghi mới nhất của từng key nên đọc một key là một lần đọc theo vị trí, không parse lại cả file.
+ * Mỗi bản ghi có CRC32: khi mở, phần đuôi bị ghi dở (crash giữa chừng) được cắt bỏ.
+ * Khi phần dữ liệu cũ (bị ghi đè/xóa) chiếm quá nửa file thì compact: chép các bản ghi còn sống
+ * sang file tạm rồi atomic move đè file cũ.
+ * Chỉ một tiến trình được mở kho: khóa độc quyền trên file ".lock" bên cạnh được giữ tới khi close()
+ * (không khóa chính file dữ liệu vì compact thay file đó bằng file mới).
+ *
+ * Định dạng: header [MAGIC:int][FORMAT_VERSION:short], sau đó là các bản ghi
+ * [type:byte][keyLength:int][valueLength:int][key][value][crc32:int].
+ */
+public class KeyValueStore implements AutoCloseable {
+    private static final int MAGIC = 0x4B4D414C; // "KMAL"
+    private static final short FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 2;
+    private static final int RECORD_OVERHEAD = 1 + 4 + 4 + 4;
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_REMOVE = 2;
+    private static final int MAX_KEY_LENGTH = 1024;
+    private static final long COMPACT_MIN_BYTES = 256 * 1024;
+    private static final String SCHEMA_VERSION_KEY = "meta/schema-version";
+
+    private final Path file;
+    private FileChannel channel;
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private final Map<String, Slot> index = new HashMap<>();
+    private long endOffset;
+    private long liveBytes;
+
+    private KeyValueStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Mở (hoặc tạo) kho tại đường dẫn đã cho và dựng chỉ mục
+     */
+    public static KeyValueStore open(Path file) throws IOException {
+        KeyValueStore store = new KeyValueStore(file);
+        store.acquireLock();
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            store.releaseLock();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Giá trị của key, null nếu không có
+     */
+    public synchronized byte[] get(String key) throws IOException {
+        Slot slot = index.get(key);
+        if (slot == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(slot.valueLength);
+        readFully(buffer, slot.valueOffset);
+        return buffer.array();
+    }
+
+    public String getString(String key) throws IOException {
+        byte[] value = get(key);
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+
+    public synchronized boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Các key bắt đầu bằng prefix, sắp xếp tăng dần
+     */
+    public synchronized List<String> keys(String prefix) {
+        List<String> result = new ArrayList<>();
+        for (String key : index.keySet()) {
+            if (key.startsWith(prefix)) {
+                result.add(key);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Ghi giá trị mới cho key (nối vào cuối log, chưa fsync)
+     */
+    public synchronized void put(String key, byte[] value) throws IOException {
+        byte[] keyBytes = encodeKey(key);
+        long offset = append(TYPE_PUT, keyBytes, value);
+        Slot previous = index.put(key, new Slot(offset + 1 + 4 + 4 + keyBytes.length, value.length,
+                RECORD_OVERHEAD + keyBytes.length + value.length));
+        if (previous != null) {
+            liveBytes -= previous.recordLength;
+        }
+        liveBytes += RECORD_OVERHEAD + keyBytes.length + value.length;
+    }
+
+    public void putString(String key, String value) throws IOException {
+        put(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Xóa key (ghi bản ghi xóa nếu key đang tồn tại)
+     */
+    public synchronized void remove(String key) throws IOException {
+        Slot previous = index.remove(key);
+        if (previous != null) {
+            append(TYPE_REMOVE, encodeKey(key), new byte[0]);
+            liveBytes -= previous.recordLength;
+        }
+    }
+
+    /**
+     * Phiên bản schema dữ liệu (0 nếu kho mới tạo), dùng để biết cần migrate gì
+     */
+    public synchronized int getSchemaVersion() throws IOException {
+        byte[] value = get(SCHEMA_VERSION_KEY);
+        return value != null && value.length == 4 ? ByteBuffer.wrap(value).getInt() : 0;
+    }
+
+    public synchronized void setSchemaVersion(int version) throws IOException {
+        put(SCHEMA_VERSION_KEY, ByteBuffer.allocate(4).putInt(version).array());
+    }
+
+    /**
+     * Đẩy các bản ghi đã nối xuống đĩa
+     */
+    public synchronized void sync() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Compact nếu file đủ lớn và hơn nửa là dữ liệu cũ
+     */
+    public synchronized void compactIfNeeded() throws IOException {
+        if (endOffset >= COMPACT_MIN_BYTES && endOffset - HEADER_SIZE > 2 * liveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Chép các bản ghi còn sống sang file mới (qua file tạm + atomic move)
+     */
+    public synchronized void compact() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".compact");
+        Map<String, Slot> newIndex = new HashMap<>();
+        long offset;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(out, header(), 0);
+            offset = HEADER_SIZE;
+            List<String> keys = new ArrayList<>(index.keySet());
+            Collections.sort(keys);
+            for (String key : keys) {
+                byte[] keyBytes = encodeKey(key);
+                ByteBuffer record = record(TYPE_PUT, keyBytes, get(key));
+                int recordLength = record.remaining();
+                writeFully(out, record, offset);
+                newIndex.put(key, new Slot(offset + 1 + 4 + 4 + keyBytes.length,
+                        recordLength - RECORD_OVERHEAD - keyBytes.length, recordLength));
+                offset += recordLength;
+            }
+            out.force(true);
+        }
+
+        // Đóng channel trước khi thay file (Windows không cho thay file đang mở).
+        // Nếu move lỗi (ví dụ file bị phần mềm khác giữ) thì mở lại file cũ với chỉ mục cũ,
+        // kho vẫn dùng được và lần compact sau thử lại
+        channel.close();
+        boolean moved = false;
+        try {
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+        } finally {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (!moved) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    System.err.println("Cannot delete " + temp + ": " + e.getMessage());
+                }
+            }
+        }
+        index.clear();
+        index.putAll(newIndex);
+        endOffset = offset;
+        liveBytes = offset - HEADER_SIZE;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            channel.force(false);
+            channel.close();
+        } finally {
+            releaseLock();
+        }
+    }
+
+    /**
+     * Giữ khóa độc quyền của kho; tiến trình khác đang mở kho thì báo lỗi thay vì ghi chồng lên log
+     */
+    private void acquireLock() throws IOException {
+        Files.createDirectories(file.getParent());
+        Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+        lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            lockChannel = null;
+            throw new IOException("Store is already in use by another instance: " + file);
+        }
+    }
+
+    private void releaseLock() throws IOException {
+        if (lockChannel != null) {
+            lockChannel.close(); // Đóng channel cũng nhả khóa
+            lockChannel = null;
+            lock = null;
+        }
+    }
+
+    /**
+     * Đọc toàn bộ log, dựng chỉ mục và cắt phần đuôi hỏng nếu có
+     */
+    private void load() throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".compact"));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            channel.truncate(0);
+            writeFully(channel, header(), 0);
+            channel.force(true);
+            endOffset = HEADER_SIZE;
+            return;
+        }
+
+        ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(headerBuffer, 0);
+        headerBuffer.flip();
+        if (headerBuffer.getInt() != MAGIC || headerBuffer.getShort() != FORMAT_VERSION) {
+            throw new IOException("Unsupported store format: " + file);
+        }
+
+        long offset = HEADER_SIZE;
+        ByteBuffer prefix = ByteBuffer.allocate(1 + 4 + 4);
+        while (offset + RECORD_OVERHEAD <= size) {
+            prefix.clear();
+            readFully(prefix, offset);
+            prefix.flip();
+            byte type = prefix.get();
+            int keyLength = prefix.getInt();
+            int valueLength = prefix.getInt();
+            if ((type != TYPE_PUT && type != TYPE_REMOVE) || keyLength < 0 || keyLength > MAX_KEY_LENGTH
+                    || valueLength < 0 || offset + RECORD_OVERHEAD + keyLength + valueLength > size) {
+                break;
+            }
+
+            int recordLength = RECORD_OVERHEAD + keyLength + valueLength;
+            ByteBuffer body = ByteBuffer.allocate(recordLength - 1 - 4 - 4);
+            readFully(body, offset + 1 + 4 + 4);
+            body.flip();
+            CRC32 crc = new CRC32();
+            prefix.rewind();
+            crc.update(prefix);
+            crc.update(body.array(), 0, keyLength + valueLength);
+            if ((int) crc.getValue() != body.getInt(keyLength + valueLength)) {
+                break;
+            }
+
+            String key = new String(body.array(), 0, keyLength, StandardCharsets.UTF_8);
+            Slot previous = type == TYPE_PUT
+                    ? index.put(key, new Slot(offset + 1 + 4 + 4 + keyLength, valueLength, recordLength))
+                    : index.remove(key);
+            if (previous != null) {
+                liveBytes -= previous.recordLength;
+            }
+            if (type == TYPE_PUT) {
+                liveBytes += recordLength;
+            }
+            offset += recordLength;
+        }
+
+        if (offset < size) {
+            System.err.println("Truncating damaged tail of " + file + " at " + offset);
+            channel.truncate(offset);
+            channel.force(true);
+        }
+        endOffset = offset;
+    }
+
+    private long append(byte type, byte[] keyBytes, byte[] value) throws IOException {
+        long offset = endOffset;
+        ByteBuffer record = record(type, keyBytes, value);
+        int length = record.remaining();
+        writeFully(channel, record, offset);
+        endOffset += length;
+        return offset;
+    }
+
+    private static ByteBuffer record(byte type, byte[] keyBytes, byte[] value) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_OVERHEAD + keyBytes.length + value.length);
+        buffer.put(type).putInt(keyBytes.length).putInt(value.length).put(keyBytes).put(value);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.putInt(MAGIC).putShort(FORMAT_VERSION);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] encodeKey(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length == 0 || keyBytes.length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Invalid key length: " + key);
+        }
+        return keyBytes;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of store: " + file);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            out.write(buffer, start + buffer.position());
+        }
+    }
+
+    /**
+     * Vị trí giá trị mới nhất của một key trong file
+     */
+    private static final class Slot {
+        private final long valueOffset;
+        private final int valueLength;
+        private final int recordLength;
+
+        private Slot(long valueOffset, int valueLength, int recordLength) {
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.recordLength = recordLength;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import javafx.application.Platform;
+import org.example.model.ScoreItem;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Cache đọc-xuyên (read-through) đặt trước LocalStorageService.
+ * Lần đọc đầu đọc và giải mã dữ liệu rồi giữ object trong bộ nhớ; các màn hình đọc lại không chạm đĩa
+ * và không parse/giải mã lại. Mỗi lần LocalStorageService lưu/xóa một key thì giá trị cache của key đó
+ * bị bỏ và các subscriber được báo giá trị mới trên JavaFX Application Thread.
+ *
+ * Object trả về được dùng chung giữa các màn hình: chỉ đọc, không sửa trực tiếp.
+ */
+public final class LocalDataCache {
+    public static final Entry<JsonObject> STUDENT_INFO =
+            new Entry<>(LocalStorageService.STUDENT_INFO_KEY, LocalStorageService::loadStudentInfo);
+    public static final Entry<JsonObject> CREDENTIALS =
+            new Entry<>(LocalStorageService.CREDENTIALS_KEY, LocalStorageService::loadCredentials);
+    public static final Entry<List<ScoreItem>> BACKUP_SCORES =
+            new Entry<>(LocalStorageService.BACKUP_SCORES_KEY, LocalStorageService::loadBackupScores);
+    public static final Entry<JsonObject> FILTER_STATE =
+            new Entry<>(LocalStorageService.FILTER_STATE_KEY, LocalStorageService::loadFilterState);
+    public static final Entry<JsonArray> VIRTUAL_SCHEDULE_SELECTIONS =
+            new Entry<>(LocalStorageService.VIRTUAL_SCHEDULE_SELECTIONS_KEY, LocalStorageService::loadVirtualScheduleSelections);
+    public static final Entry<String> SCHEDULE =
+            new Entry<>(LocalStorageService.SCHEDULE_KEY, LocalStorageService::loadSchedule);
+
+    private static final List<Entry<?>> ENTRIES =
+            List.of(STUDENT_INFO, CREDENTIALS, BACKUP_SCORES, FILTER_STATE, VIRTUAL_SCHEDULE_SELECTIONS, SCHEDULE);
+    // Giá trị null (chưa có dữ liệu) cũng được cache
+    private static final Object ABSENT = new Object();
+
+    private static LocalDataCache instance;
+
+    private final LocalStorageService storage;
+    private final Map<Entry<?>, Object> values = new HashMap<>();
+    private final Map<Entry<?>, List<Consumer<?>>> subscribers = new HashMap<>();
+
+    private LocalDataCache() {
+        storage = LocalStorageService.getInstance();
+        storage.addChangeListener(this::onStorageChanged);
+    }
+
+    public static synchronized LocalDataCache getInstance() {
+        if (instance == null) {
+            instance = new LocalDataCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Giá trị đã parse của entry (đọc từ storage nếu chưa có trong cache), null nếu chưa lưu
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(Entry<T> entry) throws IOException {
+        Object value = values.get(entry);
+        if (value == null) {
+            T loaded = entry.loader.load(storage);
+            value = loaded != null ? loaded : ABSENT;
+            values.put(entry, value);
+        }
+        return value == ABSENT ? null : (T) value;
+    }
+
+    /**
+     * Nhận giá trị mới (có thể null) trên FX thread mỗi khi entry thay đổi.
+     *
+     * @return Runnable để hủy đăng ký
+     */
+    public synchronized <T> Runnable subscribe(Entry<T> entry, Consumer<T> listener) {
+        subscribers.computeIfAbsent(entry, key -> new CopyOnWriteArrayList<>()).add(listener);
+        return () -> unsubscribe(entry, listener);
+    }
+
+    private synchronized void unsubscribe(Entry<?> entry, Consumer<?> listener) {
+        List<Consumer<?>> listeners = subscribers.get(entry);
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    private void onStorageChanged(String key) {
+        for (Entry<?> entry : ENTRIES) {
+            if (entry.key.equals(key)) {
+                List<Consumer<?>> listeners;
+                synchronized (this) {
+                    values.remove(entry);
+                    listeners = subscribers.get(entry);
+                }
+                if (listeners != null && !listeners.isEmpty()) {
+                    Platform.runLater(() -> publish(entry));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void publish(Entry<T> entry) {
+        T value;
+        List<Consumer<?>> listeners;
+        try {
+            synchronized (this) {
+                value = get(entry);
+                listeners = subscribers.get(entry);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reloading " + entry.key + ": " + e.getMessage());
+            return;
+        }
+        for (Consumer<?> listener : listeners) {
+            ((Consumer<T>) listener).accept(value);
+        }
+    }
+
+    /**
+     * Một tập dữ liệu trong local storage và cách đọc nó
+     */
+    public static final class Entry<T> {
+        private final String key;
+        private final Loader<T> loader;
+
+        private Entry(String key, Loader<T> loader) {
+            this.key = key;
+            this.loader = loader;
+        }
+    }
+
+    private interface Loader<T> {
+        T load(LocalStorageService storage) throws IOException;
+    }
+}
@@ -1,7 +1,10 @@
 package org.example.service;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import org.example.model.ScheduleItem;
+import org.example.model.ScoreItem;
 
 import java.io.File;
 import java.io.IOException;
@@ -9,48 +12,105 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Service để lưu trữ dữ liệu local (như localStorage trên web)
+ *
+ * Dữ liệu nằm trong một KeyValueStore (append-only log ~/.kma-legend/store.db): mỗi tập dữ liệu
+ * là một bản ghi, cập nhật một bản ghi chỉ nối thêm vào log chứ không ghi lại cả file.
+ * Ghi theo kiểu write-behind: lệnh lưu chỉ đặt nội dung mới nhất của key vào hàng chờ rồi trả về
+ * ngay, một thread nền ghi xuống log sau WRITE_DELAY_MS và fsync một lần cho cả lượt. Nhiều lần
+ * lưu cùng key trong khoảng đó gộp thành một lần ghi. Lệnh đọc ưu tiên nội dung đang chờ ghi
+ * nên luôn thấy dữ liệu vừa lưu.
+ * Lịch học và điểm backup được lưu ở định dạng nhị phân nén (BinarySnapshot).
  */
 public class LocalStorageService {
+    private static final long WRITE_DELAY_MS = 300;
+    private static final int SCHEMA_VERSION = 2;
+
     private static LocalStorageService instance;
     private static final String STORAGE_DIR = System.getProperty("user.home") + File.separator + ".kma-legend";
-    private static final String STUDENT_INFO_FILE = "student_info.json";
-    private static final String SCHEDULE_FILE = "schedule.json";
-    private static final String FILTER_STATE_FILE = "filter_state.json";
-    private static final String CREDENTIALS_FILE = "credentials.json";
-    private static final String BACKUP_SCORES_FILE = "backup_scores.json";
-    private static final String VIRTUAL_SCHEDULE_SELECTIONS_FILE = "virtual_schedule_selections.json";
-    
+    private static final String STORE_FILE = "store.db";
+    static final String STUDENT_INFO_KEY = "student_info";
+    static final String SCHEDULE_KEY = "schedule";
+    static final String SCHEDULE_SNAPSHOT_KEY = "schedule_snapshot";
+    static final String FILTER_STATE_KEY = "filter_state";
+    static final String CREDENTIALS_KEY = "credentials";
+    static final String BACKUP_SCORES_KEY = "backup_scores";
+    static final String VIRTUAL_SCHEDULE_SELECTIONS_KEY = "virtual_schedule_selections";
+    private static final List<String> DATASET_KEYS = List.of(STUDENT_INFO_KEY, SCHEDULE_KEY,
+            SCHEDULE_SNAPSHOT_KEY, FILTER_STATE_KEY, CREDENTIALS_KEY, BACKUP_SCORES_KEY, VIRTUAL_SCHEDULE_SELECTIONS_KEY);
+    // Các file JSON rời trước schema v1
+    private static final List<String> LEGACY_FILE_KEYS = List.of(STUDENT_INFO_KEY, SCHEDULE_KEY, FILTER_STATE_KEY,
+            CREDENTIALS_KEY, BACKUP_SCORES_KEY, VIRTUAL_SCHEDULE_SELECTIONS_KEY);
+
+    // Đánh dấu key chờ xóa trong hàng chờ (so sánh theo tham chiếu)
+    private static final byte[] REMOVED = new byte[0];
+
+    // Nội dung chờ ghi theo key (lần lưu sau đè lần trước)
+    private final Map<String, byte[]> pendingWrites = new ConcurrentHashMap<>();
+    // Khóa cho mọi thao tác ghi/xóa trên store
+    private final Object storeLock = new Object();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "local-storage-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean flushScheduled = false;
+    // Được báo key vừa thay đổi (LocalDataCache dùng để bỏ giá trị đã parse)
+    private final List<Consumer<String>> changeListeners = new CopyOnWriteArrayList<>();
+    private KeyValueStore store;
+    private IOException storeError;
+
     private LocalStorageService() {
-        // Tạo thư mục nếu chưa có
+        // Tạo thư mục nếu chưa có, mở store và migrate dữ liệu cũ
         try {
             Files.createDirectories(Paths.get(STORAGE_DIR));
+            store = KeyValueStore.open(Paths.get(STORAGE_DIR, STORE_FILE));
+            migrate();
         } catch (IOException e) {
-            System.err.println("Cannot create storage directory: " + e.getMessage());
+            storeError = e;
+            System.err.println("Cannot open local storage: " + e.getMessage());
         }
     }
     
-    public static LocalStorageService getInstance() {
+    public static synchronized LocalStorageService getInstance() {
         if (instance == null) {
             instance = new LocalStorageService();
         }
         return instance;
     }
     
+    /**
+     * Thư mục lưu trữ local (~/.kma-legend)
+     */
+    static Path storageDir() {
+        return Paths.get(STORAGE_DIR);
+    }
+    
     /**
      * Lưu student info
      */
     public void saveStudentInfo(JsonObject studentInfo) throws IOException {
-        saveToFile(STUDENT_INFO_FILE, studentInfo.toString());
+        saveValue(STUDENT_INFO_KEY, studentInfo.toString());
     }
     
     /**
      * Đọc student info
      */
     public JsonObject loadStudentInfo() throws IOException {
-        String content = loadFromFile(STUDENT_INFO_FILE);
+        String content = loadValue(STUDENT_INFO_KEY);
         if (content != null && !content.isEmpty()) {
             return JsonParser.parseString(content).getAsJsonObject();
         }
@@ -58,17 +118,33 @@ public class LocalStorageService {
     }
     
     /**
-     * Lưu schedule
+     * Lưu schedule (JSON gốc từ server, nén Deflate)
      */
     public void saveSchedule(String scheduleJson) throws IOException {
-        saveToFile(SCHEDULE_FILE, scheduleJson);
+        saveBytes(SCHEDULE_KEY, BinarySnapshot.encodeText(scheduleJson));
     }
     
     /**
      * Đọc schedule
      */
     public String loadSchedule() throws IOException {
-        return loadFromFile(SCHEDULE_FILE);
+        byte[] data = loadBytes(SCHEDULE_KEY);
+        return data != null ? BinarySnapshot.decodeText(data) : null;
+    }
+    
+    /**
+     * Lưu các buổi học đã tách từ schedule JSON, kèm dấu vân tay của JSON nguồn
+     */
+    public void saveScheduleSnapshot(List<ScheduleItem> items, long sourceFingerprint) throws IOException {
+        saveBytes(SCHEDULE_SNAPSHOT_KEY, BinarySnapshot.encodeSchedule(items, sourceFingerprint));
+    }
+    
+    /**
+     * Đọc các buổi học đã tách (null nếu chưa có hoặc không đọc được)
+     */
+    public BinarySnapshot.Schedule loadScheduleSnapshot() throws IOException {
+        byte[] data = loadBytes(SCHEDULE_SNAPSHOT_KEY);
+        return data != null ? BinarySnapshot.decodeSchedule(data) : null;
     }
     
     /**
@@ -82,14 +158,14 @@ public class LocalStorageService {
         if (dateFilter != null) {
             filterState.addProperty("dateFilter", dateFilter);
         }
-        saveToFile(FILTER_STATE_FILE, filterState.toString());
+        saveValue(FILTER_STATE_KEY, filterState.toString());
     }
     
     /**
      * Đọc filter state
      */
     public JsonObject loadFilterState() throws IOException {
-        String content = loadFromFile(FILTER_STATE_FILE);
+        String content = loadValue(FILTER_STATE_KEY);
         if (content != null && !content.isEmpty()) {
             return JsonParser.parseString(content).getAsJsonObject();
         }
@@ -104,14 +180,14 @@ public class LocalStorageService {
         credentials.addProperty("encryptedKey", encryptedKey);
         credentials.addProperty("encryptedData", encryptedData);
         credentials.addProperty("iv", iv);
-        saveToFile(CREDENTIALS_FILE, credentials.toString());
+        saveValue(CREDENTIALS_KEY, credentials.toString());
     }
     
     /**
      * Đọc credentials đã mã hóa
      */
     public JsonObject loadCredentials() throws IOException {
-        String content = loadFromFile(CREDENTIALS_FILE);
+        String content = loadValue(CREDENTIALS_KEY);
         if (content != null && !content.isEmpty()) {
             return JsonParser.parseString(content).getAsJsonObject();
         }
@@ -121,29 +197,30 @@ public class LocalStorageService {
     /**
      * Lưu backup scores từ bảng điểm thi
      */
-    public void saveBackupScores(String scoresJson) throws IOException {
-        saveToFile(BACKUP_SCORES_FILE, scoresJson);
+    public void saveBackupScores(List<ScoreItem> scores) throws IOException {
+        saveBytes(BACKUP_SCORES_KEY, BinarySnapshot.encodeScores(scores));
     }
     
     /**
-     * Đọc backup scores
+     * Đọc backup scores (null nếu chưa có)
      */
-    public String loadBackupScores() throws IOException {
-        return loadFromFile(BACKUP_SCORES_FILE);
+    public List<ScoreItem> loadBackupScores() throws IOException {
+        byte[] data = loadBytes(BACKUP_SCORES_KEY);
+        return data != null ? BinarySnapshot.decodeScores(data) : null;
     }
     
     /**
      * Lưu danh sách môn học ảo đã chọn (danh sách courseName)
      */
     public void saveVirtualScheduleSelections(com.google.gson.JsonArray selections) throws IOException {
-        saveToFile(VIRTUAL_SCHEDULE_SELECTIONS_FILE, selections.toString());
+        saveValue(VIRTUAL_SCHEDULE_SELECTIONS_KEY, selections.toString());
     }
     
     /**
      * Đọc danh sách môn học ảo đã chọn
      */
     public com.google.gson.JsonArray loadVirtualScheduleSelections() throws IOException {
-        String content = loadFromFile(VIRTUAL_SCHEDULE_SELECTIONS_FILE);
+        String content = loadValue(VIRTUAL_SCHEDULE_SELECTIONS_KEY);
         if (content != null && !content.isEmpty()) {
             return JsonParser.parseString(content).getAsJsonArray();
         }
@@ -154,34 +231,221 @@ public class LocalStorageService {
      * Xóa tất cả dữ liệu
      */
     public void clearAll() {
+        for (String key : DATASET_KEYS) {
+            pendingWrites.put(key, REMOVED);
+            fireChanged(key);
+        }
+        flush();
+        ResponseCache.getInstance().clear();
+    }
+    
+    /**
+     * Ghi ngay mọi nội dung đang chờ xuống đĩa (gọi khi ứng dụng thoát)
+     */
+    public void flush() {
+        synchronized (storeLock) {
+            writePending();
+        }
+    }
+    
+    /**
+     * Lưu một bản ghi tùy ý theo key (dùng cho các tập dữ liệu nhiều bản ghi như lịch sử)
+     */
+    void saveRecord(String key, byte[] content) throws IOException {
+        saveBytes(key, content);
+    }
+    
+    byte[] loadRecord(String key) throws IOException {
+        return loadBytes(key);
+    }
+    
+    void removeRecord(String key) {
+        pendingWrites.put(key, REMOVED);
+        fireChanged(key);
+        scheduleFlush();
+    }
+    
+    /**
+     * Các key bắt đầu bằng prefix (kể cả key đang chờ ghi), tăng dần
+     */
+    List<String> recordKeys(String prefix) throws IOException {
+        TreeSet<String> keys = new TreeSet<>(requireStore().keys(prefix));
+        for (Map.Entry<String, byte[]> entry : pendingWrites.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                if (entry.getValue() == REMOVED) {
+                    keys.remove(entry.getKey());
+                } else {
+                    keys.add(entry.getKey());
+                }
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+    
+    private void saveValue(String key, String content) throws IOException {
+        saveBytes(key, content.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private void saveBytes(String key, byte[] content) throws IOException {
+        requireStore();
+        pendingWrites.put(key, content);
+        fireChanged(key);
+        scheduleFlush();
+    }
+    
+    /**
+     * Đăng ký nhận tên key mỗi khi key được lưu/xóa (gọi trên thread thực hiện lệnh lưu)
+     */
+    void addChangeListener(Consumer<String> listener) {
+        changeListeners.add(listener);
+    }
+    
+    private void fireChanged(String key) {
+        for (Consumer<String> listener : changeListeners) {
+            listener.accept(key);
+        }
+    }
+    
+    private void scheduleFlush() {
+        synchronized (this) {
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        writer.schedule(() -> {
+            synchronized (this) {
+                flushScheduled = false;
+            }
+            flush();
+        }, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Ghi các key đang chờ rồi fsync một lần. Chỉ bỏ khỏi hàng chờ sau khi đã fsync và nội dung
+     * chưa bị thay trong lúc ghi; nếu lỗi thì giữ lại để thử lại ở lần flush sau.
+     */
+    private void writePending() {
+        if (store == null || pendingWrites.isEmpty()) {
+            return;
+        }
+        Map<String, byte[]> batch = new LinkedHashMap<>(pendingWrites);
         try {
-            deleteFile(STUDENT_INFO_FILE);
-            deleteFile(SCHEDULE_FILE);
-            deleteFile(FILTER_STATE_FILE);
-            deleteFile(CREDENTIALS_FILE);
-            deleteFile(BACKUP_SCORES_FILE);
-            deleteFile(VIRTUAL_SCHEDULE_SELECTIONS_FILE);
+            for (Map.Entry<String, byte[]> entry : batch.entrySet()) {
+                if (entry.getValue() == REMOVED) {
+                    store.remove(entry.getKey());
+                } else {
+                    store.put(entry.getKey(), entry.getValue());
+                }
+            }
+            store.sync();
+            for (Map.Entry<String, byte[]> entry : batch.entrySet()) {
+                pendingWrites.remove(entry.getKey(), entry.getValue());
+            }
+            store.compactIfNeeded();
         } catch (IOException e) {
-            System.err.println("Error clearing storage: " + e.getMessage());
+            System.err.println("Error writing local storage: " + e.getMessage());
         }
     }
     
-    private void saveToFile(String filename, String content) throws IOException {
-        Path filePath = Paths.get(STORAGE_DIR, filename);
-        Files.write(filePath, content.getBytes(StandardCharsets.UTF_8));
+    private String loadValue(String key) throws IOException {
+        byte[] content = loadBytes(key);
+        return content != null ? new String(content, StandardCharsets.UTF_8) : null;
     }
     
-    private String loadFromFile(String filename) throws IOException {
-        Path filePath = Paths.get(STORAGE_DIR, filename);
-        if (!Files.exists(filePath)) {
-            return null;
+    private byte[] loadBytes(String key) throws IOException {
+        byte[] pending = pendingWrites.get(key);
+        if (pending != null) {
+            return pending == REMOVED ? null : pending;
         }
-        return Files.readString(filePath, StandardCharsets.UTF_8);
+        return requireStore().get(key);
     }
     
-    private void deleteFile(String filename) throws IOException {
-        Path filePath = Paths.get(STORAGE_DIR, filename);
-        Files.deleteIfExists(filePath);
+    private KeyValueStore requireStore() throws IOException {
+        if (store == null) {
+            throw new IOException("Local storage unavailable", storeError);
+        }
+        return store;
+    }
+    
+    /**
+     * Nâng dữ liệu lên SCHEMA_VERSION.
+     * v1: chuyển các file JSON rời (student_info.json, ...) vào store rồi xóa file cũ.
+     * v2: schedule nén Deflate, backup scores chuyển từ JSON sang BinarySnapshot.
+     */
+    private void migrate() throws IOException {
+        int version = store.getSchemaVersion();
+        if (version >= SCHEMA_VERSION) {
+            return;
+        }
+        if (version < 1) {
+            for (String key : LEGACY_FILE_KEYS) {
+                Path legacyFile = Paths.get(STORAGE_DIR, key + ".json");
+                if (Files.exists(legacyFile) && !store.contains(key)) {
+                    store.putString(key, Files.readString(legacyFile, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        if (version < 2) {
+            String scheduleJson = store.getString(SCHEDULE_KEY);
+            if (scheduleJson != null) {
+                store.put(SCHEDULE_KEY, BinarySnapshot.encodeText(scheduleJson));
+            }
+            String backupJson = store.getString(BACKUP_SCORES_KEY);
+            if (backupJson != null) {
+                List<ScoreItem> backupScores;
+                try {
+                    backupScores = parseLegacyBackupScores(backupJson);
+                } catch (RuntimeException e) {
+                    // File cũ bị cắt dở / hỏng: bỏ bản backup thay vì làm hỏng mọi lần khởi động
+                    System.err.println("Dropping unreadable legacy backup scores: " + e.getMessage());
+                    backupScores = null;
+                }
+                if (backupScores != null) {
+                    store.put(BACKUP_SCORES_KEY, BinarySnapshot.encodeScores(backupScores));
+                } else {
+                    store.remove(BACKUP_SCORES_KEY);
+                }
+            }
+        }
+        store.setSchemaVersion(SCHEMA_VERSION);
+        store.sync();
+        if (version < 1) {
+            for (String key : LEGACY_FILE_KEYS) {
+                Files.deleteIfExists(Paths.get(STORAGE_DIR, key + ".json"));
+                Files.deleteIfExists(Paths.get(STORAGE_DIR, key + ".json.tmp"));
+            }
+        }
+    }
+    
+    /**
+     * Đọc backup scores dạng JSON cũ ({"scoreDTOS": [...]})
+     */
+    private static List<ScoreItem> parseLegacyBackupScores(String backupJson) {
+        List<ScoreItem> scores = new ArrayList<>();
+        JsonObject backupData = JsonParser.parseString(backupJson).getAsJsonObject();
+        if (backupData.has("scoreDTOS") && backupData.get("scoreDTOS").isJsonArray()) {
+            for (JsonElement element : backupData.getAsJsonArray("scoreDTOS")) {
+                JsonObject scoreObj = element.getAsJsonObject();
+                ScoreItem item = new ScoreItem();
+                item.setSubjectName(legacyString(scoreObj, "subjectName"));
+                item.setSubjectCredit(legacyNumber(scoreObj, "subjectCredit").intValue());
+                item.setScoreFirst(legacyNumber(scoreObj, "scoreFirst").doubleValue());
+                item.setScoreSecond(legacyNumber(scoreObj, "scoreSecond").doubleValue());
+                item.setScoreFinal(legacyNumber(scoreObj, "scoreFinal").doubleValue());
+                item.setScoreOverall(legacyNumber(scoreObj, "scoreOverall").doubleValue());
+                item.setScoreText(legacyString(scoreObj, "scoreText"));
+                scores.add(item);
+            }
+        }
+        return scores;
+    }
+    
+    private static String legacyString(JsonObject obj, String key) {
+        return obj.has(key) && !obj.get(key).isJsonNull() ? obj.get(key).getAsString() : "";
+    }
+    
+    private static Number legacyNumber(JsonObject obj, String key) {
+        return obj.has(key) && !obj.get(key).isJsonNull() ? obj.get(key).getAsNumber() : 0;
     }
 }
-
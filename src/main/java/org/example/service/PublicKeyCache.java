@@ -0,0 +1,190 @@
+package org.example.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cache public key của backend (đã parse sẵn trong EncryptionService).
+ * Trong thời gian TTL không gọi lại API; hết TTL thì revalidate bằng ETag
+ * (If-None-Match), server trả 304 thì giữ nguyên key. Key chỉ bị bỏ khi server
+ * báo không giải mã được request.
+ */
+public class PublicKeyCache {
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final int MAX_ERROR_LENGTH = 4096;
+
+    private static PublicKeyCache instance;
+
+    private final ApiService apiService;
+    private final EncryptionService encryptionService;
+
+    private String etag;
+    private long validatedAt; // Thời điểm key được xác nhận còn hiệu lực (ms)
+    private boolean valid = false;
+    private CompletableFuture<Void> refreshing; // Lần revalidate đang chạy (dùng chung)
+
+    private PublicKeyCache() {
+        this.apiService = ApiService.getInstance();
+        this.encryptionService = EncryptionService.getInstance();
+    }
+
+    public static synchronized PublicKeyCache getInstance() {
+        if (instance == null) {
+            instance = new PublicKeyCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Đảm bảo EncryptionService có public key còn hiệu lực (chặn thread hiện tại)
+     */
+    public void ensurePublicKey() throws IOException {
+        String currentEtag;
+        synchronized (this) {
+            if (isFresh()) {
+                return;
+            }
+            currentEtag = valid ? etag : null;
+        }
+        apply(apiService.fetchPublicKey(currentEtag));
+    }
+
+    /**
+     * Đảm bảo có public key còn hiệu lực, không chặn thread.
+     * Nhiều màn hình gọi cùng lúc chỉ tạo một request revalidate.
+     */
+    public synchronized CompletableFuture<Void> ensurePublicKeyAsync() {
+        if (isFresh()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (refreshing == null) {
+            CompletableFuture<Void> refresh = apiService.fetchPublicKeyAsync(valid ? etag : null)
+                    .thenAccept(this::apply);
+            refreshing = refresh;
+            refresh.whenComplete((result, error) -> {
+                synchronized (this) {
+                    if (refreshing == refresh) {
+                        refreshing = null;
+                    }
+                }
+            });
+        }
+        return refreshing;
+    }
+
+    /**
+     * Bỏ key đang cache (server không giải mã được request)
+     */
+    public synchronized void invalidate() {
+        valid = false;
+        etag = null;
+    }
+
+    /**
+     * Gọi API cần mã hóa: đảm bảo có key, gọi request; nếu server báo lỗi giải mã
+     * thì lấy lại key và gọi lại đúng một lần. encryptedCall phải mã hóa lại mỗi lần gọi.
+     */
+    public String call(EncryptedCall encryptedCall) throws IOException {
+        ensurePublicKey();
+        String response;
+        try {
+            response = encryptedCall.call();
+        } catch (IOException e) {
+            if (!isDecryptionFailure(e.getMessage())) {
+                throw e;
+            }
+            response = null;
+        }
+        if (response != null && !isDecryptionFailure(response)) {
+            return response;
+        }
+
+        invalidate();
+        ensurePublicKey();
+        return encryptedCall.call();
+    }
+
+    /**
+     * Bản bất đồng bộ của call(): thử lại một lần khi server báo lỗi giải mã,
+     * dù lỗi nằm trong body trả về hay trong IOException (HTTP lỗi kèm body)
+     */
+    public CompletableFuture<String> callAsync(Supplier<CompletableFuture<String>> encryptedCall) {
+        return ensurePublicKeyAsync()
+                .thenCompose(ignored -> encryptedCall.get())
+                .handle((response, error) -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    boolean decryptionFailure = cause == null
+                            ? isDecryptionFailure(response)
+                            : cause instanceof IOException && isDecryptionFailure(cause.getMessage());
+                    if (decryptionFailure) {
+                        invalidate();
+                        return ensurePublicKeyAsync().thenCompose(ignored -> encryptedCall.get());
+                    }
+                    return cause == null
+                            ? CompletableFuture.completedFuture(response)
+                            : CompletableFuture.<String>failedFuture(cause);
+                })
+                .thenCompose(future -> future);
+    }
+
+    private boolean isFresh() {
+        return valid && encryptionService.isPublicKeyLoaded()
+                && System.currentTimeMillis() - validatedAt < TTL_MILLIS;
+    }
+
+    private void apply(ApiService.PublicKeyResponse response) {
+        // 200 với key mới: setPublicKey tự bỏ qua parse nếu key không đổi (cùng fingerprint)
+        if (!response.isNotModified()) {
+            encryptionService.setPublicKey(response.getPublicKey());
+        }
+        synchronized (this) {
+            if (response.getEtag() != null) {
+                etag = response.getEtag();
+            }
+            validatedAt = System.currentTimeMillis();
+            valid = true;
+        }
+    }
+
+    /**
+     * Nhận diện phản hồi báo lỗi giải mã (JSON code khác 200 hoặc thông báo lỗi)
+     */
+    static boolean isDecryptionFailure(String text) {
+        // Phản hồi lỗi luôn ngắn; bỏ qua payload lớn (danh sách môn, bảng điểm) để không parse JSON hai lần
+        if (text == null || text.isEmpty() || text.length() > MAX_ERROR_LENGTH) {
+            return false;
+        }
+        String message = text;
+        String trimmed = text.trim();
+        if (trimmed.startsWith("{")) {
+            try {
+                JsonObject json = JsonParser.parseString(trimmed).getAsJsonObject();
+                JsonElement code = json.get("code");
+                if (code == null || code.isJsonNull() || "200".equals(code.getAsString())) {
+                    return false;
+                }
+                JsonElement messageElement = json.get("message");
+                message = messageElement != null && !messageElement.isJsonNull() ? messageElement.getAsString() : "";
+            } catch (Exception e) {
+                return false;
+            }
+        } else if (trimmed.startsWith("[")) {
+            return false;
+        }
+        String lower = message.toLowerCase();
+        return lower.contains("decrypt") || lower.contains("giải mã") || lower.contains("giai ma");
+    }
+
+    @FunctionalInterface
+    public interface EncryptedCall {
+        String call() throws IOException;
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.service;
+
+import javafx.application.Platform;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Gom các request bất đồng bộ của một màn hình.
+ * Khi người dùng rời màn hình, cancelAll() hủy mọi HTTP call còn chạy và chặn
+ * các cập nhật UI đến sau (runLater không chạy nữa).
+ */
+public class RequestScope {
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+
+    /**
+     * Theo dõi future; nếu scope đã bị hủy thì hủy future ngay
+     */
+    public <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        if (cancelled) {
+            future.cancel(true);
+            return future;
+        }
+        pending.add(future);
+        future.whenComplete((result, error) -> pending.remove(future));
+        if (cancelled) {
+            future.cancel(true);
+        }
+        return future;
+    }
+
+    /**
+     * Hủy tất cả request đang chạy của màn hình
+     */
+    public void cancelAll() {
+        cancelled = true;
+        for (CompletableFuture<?> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Platform.runLater nhưng bỏ qua nếu màn hình đã bị đóng
+     */
+    public void runLater(Runnable action) {
+        if (cancelled) {
+            return;
+        }
+        Platform.runLater(() -> {
+            if (!cancelled) {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Lấy lỗi gốc từ exception của CompletableFuture
+     */
+    public static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,290 @@
+package org.example.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Cache response API trên đĩa (~/.kma-legend/cache) theo kiểu stale-while-revalidate:
+ * màn hình hiển thị ngay bản đã lưu, đồng thời gọi API; khi dữ liệu mới về và khác
+ * bản đã lưu thì mới hiển thị lại.
+ * Key gồm endpoint và danh tính của request ở dạng rõ (ví dụ mã sinh viên), vì body
+ * đã mã hóa thay đổi mỗi lần gửi.
+ * Mỗi lần ghi dùng một file tạm riêng rồi atomic move vào chỗ, nên hai lần tải cùng key
+ * chạy song song không ghi đè lên nhau và người đọc không bao giờ thấy file ghi dở.
+ */
+public class ResponseCache {
+    private static final String CACHE_DIR = "cache";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static ResponseCache instance;
+
+    private final Path cacheDir;
+
+    private ResponseCache() {
+        this.cacheDir = LocalStorageService.storageDir().resolve(CACHE_DIR);
+        try {
+            Files.createDirectories(cacheDir);
+            // File tạm còn sót lại do app bị tắt giữa lúc ghi
+            try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(cacheDir, "*" + TEMP_SUFFIX)) {
+                for (Path file : leftovers) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot create cache directory: " + e.getMessage());
+        }
+    }
+
+    public static synchronized ResponseCache getInstance() {
+        if (instance == null) {
+            instance = new ResponseCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Tạo key cache từ endpoint và danh tính request
+     */
+    public static String key(String endpoint, String identity) {
+        return endpoint + "|" + (identity != null ? identity : "");
+    }
+
+    /**
+     * Đọc response đã lưu, null nếu chưa có
+     */
+    public String get(String key) {
+        Path file = fileFor(key);
+        try {
+            return Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            System.err.println("Error reading cached response: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Lưu response (chỉ gọi với response hợp lệ, đã parse thành công)
+     */
+    public void put(String key, String body) {
+        Path target = fileFor(key);
+        Path temp = null;
+        try {
+            temp = createTemp(target);
+            Files.writeString(temp, body, StandardCharsets.UTF_8);
+            moveIntoPlace(temp, target);
+        } catch (IOException e) {
+            System.err.println("Error writing cached response: " + e.getMessage());
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Mở bản đã lưu để đọc dạng stream, null nếu chưa có
+     */
+    public InputStream openCached(String key) throws IOException {
+        Path file = fileFor(key);
+        return Files.exists(file) ? Files.newInputStream(file) : null;
+    }
+
+    /**
+     * Bắt đầu lưu một response đọc dạng stream (không giữ cả body trong bộ nhớ).
+     * Dữ liệu được ghi vào file tạm trong lúc đọc; gọi commit khi đã giải mã thành công,
+     * abort nếu lỗi.
+     */
+    public StreamingEntry beginStreaming(String key) throws IOException {
+        return new StreamingEntry(fileFor(key));
+    }
+
+    /**
+     * Xóa toàn bộ cache (khi đăng xuất / xóa dữ liệu)
+     */
+    public void clear() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            System.err.println("Error clearing response cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stale-while-revalidate: đọc bản đã lưu trên thread nền và gọi onCached (nếu có và
+     * dữ liệu mới chưa về), đồng thời gọi fetch. Future trả về hoàn thành với response mới,
+     * hoặc null nếu response mới giống hệt bản đã hiển thị từ cache.
+     * onCached chạy trên thread nền; caller tự đưa cập nhật UI về FX thread.
+     */
+    public CompletableFuture<String> load(String key, Supplier<CompletableFuture<String>> fetch,
+            Consumer<String> onCached) {
+        Revalidation state = new Revalidation();
+
+        CompletableFuture.supplyAsync(() -> get(key)).thenAccept(cached -> {
+            if (cached == null) {
+                return;
+            }
+            synchronized (state) {
+                // Dữ liệu mới đã về thì không hiển thị bản cũ đè lên
+                if (state.freshArrived) {
+                    return;
+                }
+                state.shownBody = cached;
+                onCached.accept(cached);
+            }
+        });
+
+        return fetch.get().thenApply(fresh -> {
+            synchronized (state) {
+                state.freshArrived = true;
+                return fresh.equals(state.shownBody) ? null : fresh;
+            }
+        });
+    }
+
+    private Path fileFor(String key) {
+        return cacheDir.resolve(sha256Hex(key) + ".json");
+    }
+
+    /**
+     * File tạm riêng cho mỗi lần ghi, cùng thư mục với file đích để move được atomic
+     */
+    private static Path createTemp(Path target) throws IOException {
+        return Files.createTempFile(target.getParent(), target.getFileName().toString() + ".", TEMP_SUFFIX);
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Error deleting temp file: " + e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String sha256Hex(String text) {
+        byte[] digest = sha256().digest(text.getBytes(StandardCharsets.UTF_8));
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >>> 4) & 0x0F];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0x0F];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Response đang được ghi vào cache trong lúc đọc từ mạng
+     */
+    public static final class StreamingEntry {
+        private final Path target;
+        private final Path temp;
+        private final OutputStream out;
+        private final MessageDigest digest = sha256();
+
+        private StreamingEntry(Path target) throws IOException {
+            this.target = target;
+            this.temp = createTemp(target);
+            this.out = Files.newOutputStream(temp);
+        }
+
+        /**
+         * Bọc body: mọi byte caller đọc được đồng thời ghi vào file tạm và tính digest
+         */
+        public InputStream tee(InputStream body) {
+            return new FilterInputStream(body) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        out.write(b);
+                        digest.update((byte) b);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int n = super.read(buffer, offset, length);
+                    if (n > 0) {
+                        out.write(buffer, offset, n);
+                        digest.update(buffer, offset, n);
+                    }
+                    return n;
+                }
+            };
+        }
+
+        /**
+         * Thay bản đã lưu bằng dữ liệu vừa đọc.
+         *
+         * @return true nếu nội dung khác bản đã lưu trước đó (hoặc chưa có bản nào)
+         */
+        public boolean commit() throws IOException {
+            out.close();
+            byte[] fresh = digest.digest();
+            if (Files.exists(target) && Arrays.equals(fresh, digestOf(target))) {
+                Files.deleteIfExists(temp);
+                return false;
+            }
+            moveIntoPlace(temp, target);
+            return true;
+        }
+
+        /**
+         * Bỏ dữ liệu đang ghi dở (response lỗi hoặc bị hủy)
+         */
+        public void abort() {
+            try {
+                out.close();
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                System.err.println("Error discarding cached response: " + e.getMessage());
+            }
+        }
+
+        private static byte[] digestOf(Path file) throws IOException {
+            MessageDigest md = sha256();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file), md)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return md.digest();
+        }
+    }
+
+    private static final class Revalidation {
+        private boolean freshArrived = false;
+        private String shownBody; // Bản cache đã hiển thị (nếu có)
+    }
+}
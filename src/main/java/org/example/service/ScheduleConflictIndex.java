@@ -0,0 +1,179 @@
+package org.example.service;
+
+import org.example.model.VirtualCourse;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chỉ mục kiểm tra trùng lịch cho môn học ảo.
+ * Mỗi lớp được mã hóa một lần thành bitset theo (ngày, tiết): mỗi ngày chiếm 16 bit
+ * (tiết 1-16), mỗi word 64 bit chứa 4 ngày liên tiếp theo epoch-day.
+ * Kiểm tra trùng giữa hai lớp chỉ còn là AND các word trong khoảng ngày giao nhau.
+ * Tiết ngoài 1-16 (hiếm) không nằm trong bitset mà được so chính xác theo danh sách (ngày, tiết) riêng.
+ */
+public class ScheduleConflictIndex {
+    public static final int LESSONS_PER_DAY = VirtualCourse.LESSONS_PER_DAY;
+    private static final int DAYS_PER_WORD = Long.SIZE / LESSONS_PER_DAY;
+
+    private final Map<VirtualCourse, Occupancy> occupancies = new ConcurrentHashMap<>();
+
+    /**
+     * Lấy bitset lịch học của lớp (mã hóa lần đầu, sau đó dùng lại)
+     */
+    public Occupancy occupancyOf(VirtualCourse course) {
+        return occupancies.computeIfAbsent(course, Occupancy::of);
+    }
+
+    /**
+     * Kiểm tra hai lớp có trùng lịch không (chính xác với mọi độ dài lịch)
+     */
+    public boolean conflicts(VirtualCourse course1, VirtualCourse course2) {
+        return occupancyOf(course1).intersects(occupancyOf(course2));
+    }
+
+    /**
+     * Tìm các lớp trong danh sách đã chọn bị trùng lịch với lớp mới
+     */
+    public List<VirtualCourse> findConflicts(VirtualCourse newCourse, Collection<VirtualCourse> selectedCourses) {
+        List<VirtualCourse> conflicts = new ArrayList<>();
+        Occupancy occupancy = occupancyOf(newCourse);
+        if (occupancy.isEmpty()) {
+            return conflicts;
+        }
+
+        for (VirtualCourse selectedCourse : selectedCourses) {
+            if (selectedCourse != newCourse && occupancy.intersects(occupancyOf(selectedCourse))) {
+                conflicts.add(selectedCourse);
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Xóa cache khi danh sách môn học được tải lại
+     */
+    public void clear() {
+        occupancies.clear();
+    }
+
+    /**
+     * Bitset bất biến biểu diễn các (ngày, tiết) mà một lớp chiếm
+     */
+    public static final class Occupancy {
+        private static final Occupancy EMPTY = new Occupancy(0, new long[0], new long[0]);
+
+        private final int firstWord; // Chỉ số word đầu tiên (epochDay / 4)
+        private final long[] words;
+        private final long[] extraLessons; // (epochDay << 32) | tiết, tiết ngoài 1-16, đã sắp xếp
+
+        private Occupancy(int firstWord, long[] words, long[] extraLessons) {
+            this.firstWord = firstWord;
+            this.words = words;
+            this.extraLessons = extraLessons;
+        }
+
+        static Occupancy of(VirtualCourse course) {
+            int slotCount = course.getSlotCount();
+            if (slotCount == 0) {
+                return EMPTY;
+            }
+
+            int minDay = Integer.MAX_VALUE;
+            int maxDay = Integer.MIN_VALUE;
+            for (int i = 0; i < slotCount; i++) {
+                int epochDay = course.getSlotEpochDay(i);
+                minDay = Math.min(minDay, epochDay);
+                maxDay = Math.max(maxDay, epochDay);
+            }
+
+            int firstWord = Math.floorDiv(minDay, DAYS_PER_WORD);
+            int lastWord = Math.floorDiv(maxDay, DAYS_PER_WORD);
+            long[] words = new long[lastWord - firstWord + 1];
+
+            for (int i = 0; i < slotCount; i++) {
+                int epochDay = course.getSlotEpochDay(i);
+                int word = Math.floorDiv(epochDay, DAYS_PER_WORD) - firstWord;
+                int shift = Math.floorMod(epochDay, DAYS_PER_WORD) * LESSONS_PER_DAY;
+                words[word] |= (long) course.getSlotLessonMask(i) << shift;
+            }
+
+            return new Occupancy(firstWord, words, course.getOutOfRangeLessons());
+        }
+
+        public boolean isEmpty() {
+            for (long word : words) {
+                if (word != 0) {
+                    return false;
+                }
+            }
+            return extraLessons.length == 0;
+        }
+
+        /**
+         * Lớp có tiết ngoài 1-16 (không nằm trong bitset, orInto không chép được)
+         */
+        public boolean hasOutOfRangeLessons() {
+            return extraLessons.length > 0;
+        }
+
+        /**
+         * Chỉ số word đầu tiên (tính theo epoch-day / 4)
+         */
+        public int getFirstWord() {
+            return firstWord;
+        }
+
+        /**
+         * Chỉ số word ngay sau word cuối cùng
+         */
+        public int getEndWord() {
+            return firstWord + words.length;
+        }
+
+        /**
+         * OR bitset này vào mảng đích, với target[0] ứng với word targetFirstWord
+         */
+        public void orInto(long[] target, int targetFirstWord) {
+            for (int i = 0; i < words.length; i++) {
+                target[firstWord - targetFirstWord + i] |= words[i];
+            }
+        }
+
+        public boolean intersects(Occupancy other) {
+            return wordsIntersect(other) || extraLessonsIntersect(other);
+        }
+
+        private boolean wordsIntersect(Occupancy other) {
+            int from = Math.max(firstWord, other.firstWord);
+            int to = Math.min(firstWord + words.length, other.firstWord + other.words.length);
+            for (int w = from; w < to; w++) {
+                if ((words[w - firstWord] & other.words[w - other.firstWord]) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean extraLessonsIntersect(Occupancy other) {
+            long[] a = extraLessons;
+            long[] b = other.extraLessons;
+            int i = 0;
+            int j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] == b[j]) {
+                    return true;
+                }
+                if (a[i] < b[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            return false;
+        }
+    }
+}
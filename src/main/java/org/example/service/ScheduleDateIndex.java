@@ -0,0 +1,123 @@
+package org.example.service;
+
+import org.example.model.ScheduleItem;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Chỉ mục lịch học theo ngày.
+ * Các buổi học được sắp xếp theo thời gian một lần khi build; song song là mảng epoch-day
+ * tăng dần. Lọc theo ngày, tháng hay khoảng ngày chỉ là hai lần tìm kiếm nhị phân và trả về
+ * view (subList) trên danh sách đã sắp xếp, không quét lại hay format ngày thành chuỗi.
+ */
+public class ScheduleDateIndex {
+    /**
+     * Thứ tự hiển thị: ngày rồi giờ bắt đầu
+     */
+    public static final Comparator<ScheduleItem> CHRONOLOGICAL = (a, b) -> {
+        int dateCompare = a.getDate().compareTo(b.getDate());
+        if (dateCompare != 0) {
+            return dateCompare;
+        }
+        if (a.getStartTime() != null && b.getStartTime() != null) {
+            return a.getStartTime().compareTo(b.getStartTime());
+        }
+        return 0;
+    };
+
+    private List<ScheduleItem> items = Collections.emptyList();
+    private long[] epochDays = new long[0]; // epochDays[i] = ngày của items[i]
+    private List<YearMonth> months = Collections.emptyList(); // Các tháng có lịch, tăng dần
+
+    /**
+     * Xây dựng lại chỉ mục (bỏ qua buổi học không có ngày)
+     */
+    public void build(List<ScheduleItem> scheduleItems) {
+        List<ScheduleItem> sorted = new ArrayList<>(scheduleItems.size());
+        for (ScheduleItem item : scheduleItems) {
+            if (item.getDate() != null) {
+                sorted.add(item);
+            }
+        }
+        sorted.sort(CHRONOLOGICAL);
+
+        long[] days = new long[sorted.size()];
+        List<YearMonth> monthList = new ArrayList<>();
+        for (int i = 0; i < days.length; i++) {
+            LocalDate date = sorted.get(i).getDate();
+            days[i] = date.toEpochDay();
+            // Chỉ tạo YearMonth khi sang ngày mới
+            if (i == 0 || days[i] != days[i - 1]) {
+                YearMonth month = YearMonth.from(date);
+                if (monthList.isEmpty() || !monthList.get(monthList.size() - 1).equals(month)) {
+                    monthList.add(month);
+                }
+            }
+        }
+
+        items = Collections.unmodifiableList(sorted);
+        epochDays = days;
+        months = Collections.unmodifiableList(monthList);
+    }
+
+    /**
+     * Toàn bộ buổi học theo thứ tự thời gian
+     */
+    public List<ScheduleItem> all() {
+        return items;
+    }
+
+    /**
+     * Các tháng có lịch học, tăng dần
+     */
+    public List<YearMonth> getMonths() {
+        return months;
+    }
+
+    /**
+     * Các buổi học trong khoảng [from, to] (null: không giới hạn phía đó)
+     */
+    public List<ScheduleItem> between(LocalDate from, LocalDate to) {
+        int start = from != null ? lowerBound(from.toEpochDay()) : 0;
+        int end = to != null ? lowerBound(to.toEpochDay() + 1) : items.size();
+        return start < end ? items.subList(start, end) : Collections.emptyList();
+    }
+
+    public List<ScheduleItem> inMonth(YearMonth month) {
+        return between(month.atDay(1), month.atEndOfMonth());
+    }
+
+    public List<ScheduleItem> onDate(LocalDate date) {
+        return between(date, date);
+    }
+
+    /**
+     * Ngày có lịch đầu tiên từ ngày đã cho trở đi, null nếu không có
+     */
+    public LocalDate firstDateOnOrAfter(LocalDate date) {
+        int index = lowerBound(date.toEpochDay());
+        return index < items.size() ? items.get(index).getDate() : null;
+    }
+
+    /**
+     * Vị trí đầu tiên có epoch-day >= day
+     */
+    private int lowerBound(long day) {
+        int low = 0;
+        int high = epochDays.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochDays[mid] < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,361 @@
+package org.example.service;
+
+import org.example.model.ScoreItem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Lịch sử bảng điểm của một sinh viên: chuỗi thời gian append-only trong local storage.
+ *
+ * Mỗi lần lấy điểm mới từ server, bảng điểm được so với bản gần nhất; giống hệt (cùng content hash)
+ * thì không ghi gì, khác thì ghi một bản ghi chỉ chứa các môn thay đổi/thêm/bớt kèm GPA, CPA lúc đó.
+ * Cứ FULL_SNAPSHOT_INTERVAL bản ghi thì ghi lại toàn bộ bảng điểm để không phải áp quá nhiều delta.
+ * Lần dùng đầu đọc lại toàn bộ chuỗi để dựng bảng điểm mới nhất và đường GPA/CPA trong bộ nhớ.
+ *
+ * Môn học được nhận diện theo tên; môn trùng tên được đánh số thứ tự xuất hiện ("Tên#2").
+ */
+public final class ScoreHistory {
+    private static final String KEY_PREFIX = "score_history/";
+    private static final byte RECORD_VERSION = 1;
+    private static final int FULL_SNAPSHOT_INTERVAL = 16;
+
+    private static final Map<String, ScoreHistory> instances = new HashMap<>();
+
+    private final LocalStorageService storage;
+    private final String keyPrefix;
+    private boolean loaded = false;
+    private Map<String, ScoreItem> latest = new LinkedHashMap<>();
+    private long latestHash = 0;
+    private long latestTimestamp = 0;
+    private int deltasSinceFull = 0;
+    private Diff lastChanges = Diff.EMPTY;
+    private final List<Point> trajectory = new ArrayList<>();
+
+    private ScoreHistory(String studentCode) {
+        this.storage = LocalStorageService.getInstance();
+        this.keyPrefix = KEY_PREFIX + studentCode + "/";
+    }
+
+    /**
+     * Lịch sử điểm của sinh viên (mỗi mã sinh viên một chuỗi riêng)
+     */
+    public static synchronized ScoreHistory forStudent(String studentCode) {
+        return instances.computeIfAbsent(studentCode, ScoreHistory::new);
+    }
+
+    /**
+     * Ghi bảng điểm vừa lấy từ server nếu khác bản gần nhất.
+     *
+     * @return thay đổi so với bản gần nhất (rỗng nếu không đổi)
+     */
+    public synchronized Diff record(List<ScoreItem> scores, double gpa, double cpa) throws IOException {
+        ensureLoaded();
+        // Giữ bản sao: các dòng của bảng điểm đang hiển thị có thể bị sửa sau khi ghi
+        List<ScoreItem> copies = new ArrayList<>(scores.size());
+        for (ScoreItem item : scores) {
+            copies.add(copyOf(item));
+        }
+        Map<String, ScoreItem> current = keyed(copies);
+        long hash = contentHash(current);
+        if (latestTimestamp != 0 && hash == latestHash) {
+            return Diff.EMPTY;
+        }
+
+        Diff diff = diff(latest, current, latestTimestamp);
+        long timestamp = Math.max(System.currentTimeMillis(), latestTimestamp + 1);
+        boolean full = latestTimestamp == 0 || deltasSinceFull + 1 >= FULL_SNAPSHOT_INTERVAL;
+
+        List<String> changedKeys = new ArrayList<>(diff.added);
+        changedKeys.addAll(diff.changed);
+        List<ScoreItem> stored = new ArrayList<>();
+        List<String> storedKeys = full ? new ArrayList<>(current.keySet()) : changedKeys;
+        for (String key : storedKeys) {
+            stored.add(current.get(key));
+        }
+        storage.saveRecord(recordKey(timestamp), encode(timestamp, hash, gpa, cpa, full,
+                full ? Collections.emptyList() : diff.removed, storedKeys, stored));
+
+        apply(timestamp, hash, gpa, cpa, full, current.size(), diff, current);
+        return diff;
+    }
+
+    /**
+     * Bảng điểm mới nhất đã lưu (rỗng nếu chưa có)
+     */
+    public synchronized List<ScoreItem> latest() throws IOException {
+        ensureLoaded();
+        return new ArrayList<>(latest.values());
+    }
+
+    /**
+     * Thay đổi của lần cập nhật điểm gần nhất so với bản trước đó
+     */
+    public synchronized Diff lastChanges() throws IOException {
+        ensureLoaded();
+        return lastChanges;
+    }
+
+    /**
+     * GPA/CPA theo thời gian, mỗi điểm là một lần bảng điểm thay đổi
+     */
+    public synchronized List<Point> trajectory() throws IOException {
+        ensureLoaded();
+        return new ArrayList<>(trajectory);
+    }
+
+    /**
+     * Khóa nhận diện từng môn trong bảng điểm (giữ thứ tự)
+     */
+    public static Map<String, ScoreItem> keyed(List<ScoreItem> scores) {
+        Map<String, ScoreItem> keyedScores = new LinkedHashMap<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (ScoreItem item : scores) {
+            String name = item.getSubjectName() != null ? item.getSubjectName() : "";
+            int occurrence = occurrences.merge(name, 1, Integer::sum);
+            keyedScores.put(occurrence == 1 ? name : name + "#" + occurrence, item);
+        }
+        return keyedScores;
+    }
+
+    /**
+     * Hai bản ghi điểm của cùng một môn có giống nhau không (tín chỉ, các đầu điểm, điểm chữ)
+     */
+    public static boolean sameScore(ScoreItem a, ScoreItem b) {
+        return a.getSubjectCredit() == b.getSubjectCredit()
+                && Double.compare(a.getScoreFirst(), b.getScoreFirst()) == 0
+                && Double.compare(a.getScoreSecond(), b.getScoreSecond()) == 0
+                && Double.compare(a.getScoreFinal(), b.getScoreFinal()) == 0
+                && Double.compare(a.getScoreOverall(), b.getScoreOverall()) == 0
+                && Objects.equals(a.getScoreText(), b.getScoreText());
+    }
+
+    private static ScoreItem copyOf(ScoreItem item) {
+        ScoreItem copy = new ScoreItem();
+        copy.setSubjectName(item.getSubjectName());
+        copy.setSubjectCredit(item.getSubjectCredit());
+        copy.setScoreFirst(item.getScoreFirst());
+        copy.setScoreSecond(item.getScoreSecond());
+        copy.setScoreFinal(item.getScoreFinal());
+        copy.setScoreOverall(item.getScoreOverall());
+        copy.setScoreText(item.getScoreText());
+        copy.setRecentSemester(item.isRecentSemester());
+        copy.setFailed(item.isFailed());
+        return copy;
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (loaded) {
+            return;
+        }
+        for (String key : storage.recordKeys(keyPrefix)) {
+            byte[] data = storage.loadRecord(key);
+            if (data != null) {
+                replay(data);
+            }
+        }
+        loaded = true;
+    }
+
+    /**
+     * Áp một bản ghi đã lưu vào trạng thái trong bộ nhớ
+     */
+    private void replay(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readByte() != RECORD_VERSION) {
+            throw new IOException("Unsupported score history record");
+        }
+        long timestamp = in.readLong();
+        long hash = in.readLong();
+        double gpa = in.readDouble();
+        double cpa = in.readDouble();
+        boolean full = in.readBoolean();
+        int removedCount = in.readInt();
+        List<String> removed = new ArrayList<>(removedCount);
+        for (int i = 0; i < removedCount; i++) {
+            removed.add(in.readUTF());
+        }
+        int keyCount = in.readInt();
+        List<String> keys = new ArrayList<>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            keys.add(in.readUTF());
+        }
+        byte[] snapshot = in.readNBytes(in.readInt());
+        List<ScoreItem> items = BinarySnapshot.decodeScores(snapshot);
+        if (items.size() != keys.size()) {
+            throw new IOException("Corrupted score history record");
+        }
+
+        Map<String, ScoreItem> next = full ? new LinkedHashMap<>() : new LinkedHashMap<>(latest);
+        for (String key : removed) {
+            next.remove(key);
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            next.put(keys.get(i), items.get(i));
+        }
+        apply(timestamp, hash, gpa, cpa, full, next.size(), diff(latest, next, latestTimestamp), next);
+    }
+
+    private void apply(long timestamp, long hash, double gpa, double cpa, boolean full, int subjectCount,
+            Diff diff, Map<String, ScoreItem> state) {
+        latest = state;
+        latestHash = hash;
+        latestTimestamp = timestamp;
+        deltasSinceFull = full ? 0 : deltasSinceFull + 1;
+        lastChanges = diff;
+        trajectory.add(new Point(timestamp, gpa, cpa, subjectCount));
+    }
+
+    private static Diff diff(Map<String, ScoreItem> previous, Map<String, ScoreItem> current, long since) {
+        List<String> added = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (Map.Entry<String, ScoreItem> entry : current.entrySet()) {
+            ScoreItem before = previous.get(entry.getKey());
+            if (before == null) {
+                added.add(entry.getKey());
+            } else if (!sameScore(before, entry.getValue())) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String key : previous.keySet()) {
+            if (!current.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+        return new Diff(since, added, changed, removed);
+    }
+
+    private static byte[] encode(long timestamp, long hash, double gpa, double cpa, boolean full,
+            List<String> removed, List<String> keys, List<ScoreItem> items) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(RECORD_VERSION);
+        out.writeLong(timestamp);
+        out.writeLong(hash);
+        out.writeDouble(gpa);
+        out.writeDouble(cpa);
+        out.writeBoolean(full);
+        out.writeInt(removed.size());
+        for (String key : removed) {
+            out.writeUTF(key);
+        }
+        out.writeInt(keys.size());
+        for (String key : keys) {
+            out.writeUTF(key);
+        }
+        byte[] snapshot = BinarySnapshot.encodeScores(items);
+        out.writeInt(snapshot.length);
+        out.write(snapshot);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Content hash của bảng điểm, không phụ thuộc thứ tự môn
+     */
+    private static long contentHash(Map<String, ScoreItem> scores) {
+        StringBuilder canonical = new StringBuilder();
+        for (Map.Entry<String, ScoreItem> entry : new TreeMap<>(scores).entrySet()) {
+            ScoreItem item = entry.getValue();
+            canonical.append(entry.getKey()).append('|')
+                    .append(item.getSubjectCredit()).append('|')
+                    .append(item.getScoreFirst()).append('|')
+                    .append(item.getScoreSecond()).append('|')
+                    .append(item.getScoreFinal()).append('|')
+                    .append(item.getScoreOverall()).append('|')
+                    .append(item.getScoreText()).append('\n');
+        }
+        return BinarySnapshot.fingerprint(canonical.toString());
+    }
+
+    private String recordKey(long timestamp) {
+        return keyPrefix + String.format("%019d", timestamp);
+    }
+
+    /**
+     * Các môn thêm mới, đổi điểm và bị bỏ so với bản trước (theo khóa môn)
+     */
+    public static final class Diff {
+        static final Diff EMPTY = new Diff(0, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+
+        private final long since;
+        private final List<String> added;
+        private final List<String> changed;
+        private final List<String> removed;
+
+        private Diff(long since, List<String> added, List<String> changed, List<String> removed) {
+            this.since = since;
+            this.added = Collections.unmodifiableList(added);
+            this.changed = Collections.unmodifiableList(changed);
+            this.removed = Collections.unmodifiableList(removed);
+        }
+
+        /**
+         * Thời điểm của bản được so sánh (0 nếu đây là bản đầu tiên)
+         */
+        public long getSince() {
+            return since;
+        }
+
+        public List<String> getAdded() {
+            return added;
+        }
+
+        public List<String> getChanged() {
+            return changed;
+        }
+
+        public List<String> getRemoved() {
+            return removed;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    /**
+     * Một điểm trên đường GPA/CPA
+     */
+    public static final class Point {
+        private final long timestamp;
+        private final double gpa;
+        private final double cpa;
+        private final int subjectCount;
+
+        private Point(long timestamp, double gpa, double cpa, int subjectCount) {
+            this.timestamp = timestamp;
+            this.gpa = gpa;
+            this.cpa = cpa;
+            this.subjectCount = subjectCount;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public double getGpa() {
+            return gpa;
+        }
+
+        public double getCpa() {
+            return cpa;
+        }
+
+        public int getSubjectCount() {
+            return subjectCount;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Đo thời gian khởi động: các mốc được tính bằng ms kể từ lúc tiến trình JVM bắt đầu.
+ * Khi ứng dụng dùng được (form đăng nhập đã hiện và public key đã sẵn sàng) thì in
+ * báo cáo time-to-interactive ra console một lần.
+ */
+public final class StartupMetrics {
+    private static final long PROCESS_START_MILLIS = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli)
+            .orElse(System.currentTimeMillis());
+
+    private static final List<String> MARKS = new ArrayList<>();
+    private static boolean reported = false;
+
+    private StartupMetrics() {
+    }
+
+    /**
+     * Ghi lại một mốc khởi động
+     */
+    public static synchronized void mark(String name) {
+        if (!reported) {
+            MARKS.add(String.format("  %-28s %6d ms", name, System.currentTimeMillis() - PROCESS_START_MILLIS));
+        }
+    }
+
+    /**
+     * Ghi lại thời gian chạy của một tác vụ warm-up
+     */
+    public static synchronized void task(String name, long startNanos) {
+        if (!reported) {
+            MARKS.add(String.format("  %-28s %6d ms (mất %d ms)", name,
+                    System.currentTimeMillis() - PROCESS_START_MILLIS, (System.nanoTime() - startNanos) / 1_000_000));
+        }
+    }
+
+    /**
+     * Mốc cuối: ứng dụng đã dùng được. Chỉ lần gọi đầu tiên in báo cáo.
+     *
+     * @return true nếu đây là lần đầu (báo cáo vừa được in)
+     */
+    public static synchronized boolean interactive() {
+        if (reported) {
+            return false;
+        }
+        mark("interactive");
+        reported = true;
+
+        StringBuilder report = new StringBuilder("Startup time-to-interactive report:\n");
+        for (String line : MARKS) {
+            report.append(line).append('\n');
+        }
+        System.out.print(report);
+        MARKS.clear();
+        return true;
+    }
+}
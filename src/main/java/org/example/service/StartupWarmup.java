@@ -0,0 +1,83 @@
+package org.example.service;
+
+import org.example.config.AppConfig;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Khởi động song song các việc nặng trong lúc form đăng nhập đang được dựng:
+ * phân giải DNS backend, tạo OkHttp client rồi lấy public key, khởi tạo cipher.
+ * Các việc chạy trên thread daemon riêng nên không giữ JVM khi ứng dụng thoát.
+ */
+public final class StartupWarmup {
+    private static CompletableFuture<Void> publicKeyReady;
+
+    private StartupWarmup() {
+    }
+
+    /**
+     * Bắt đầu warm-up (chỉ lần gọi đầu có tác dụng)
+     */
+    public static synchronized void start() {
+        if (publicKeyReady != null) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3, runnable -> {
+            Thread thread = new Thread(runnable, "startup-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // DNS: song song với việc tạo client, lần kết nối đầu dùng kết quả đã cache của JVM
+        CompletableFuture.runAsync(() -> timed("dns", () -> {
+            String host = URI.create(AppConfig.BACKEND_BASE_URL).getHost();
+            if (host != null) {
+                InetAddress.getAllByName(host);
+            }
+        }), executor);
+
+        // Cipher và SecureRandom
+        CompletableFuture.runAsync(() -> timed("cipher", () -> EncryptionService.getInstance().warmUp()), executor);
+
+        // OkHttp client + public key (mở luôn kết nối TLS dùng lại cho lần đăng nhập)
+        publicKeyReady = CompletableFuture.runAsync(() -> timed("public-key", () -> {
+            ApiService.getInstance();
+            PublicKeyCache.getInstance().ensurePublicKey();
+        }), executor);
+        publicKeyReady.whenComplete((result, error) -> executor.shutdown());
+    }
+
+    /**
+     * Future hoàn thành khi public key đã sẵn sàng (bắt đầu warm-up nếu chưa chạy).
+     * Lần gọi sau khi đã xong (ví dụ quay lại màn hình đăng nhập) chỉ kiểm tra lại cache key.
+     */
+    public static synchronized CompletableFuture<Void> publicKeyReady() {
+        if (publicKeyReady == null) {
+            start();
+        } else if (publicKeyReady.isDone()) {
+            publicKeyReady = PublicKeyCache.getInstance().ensurePublicKeyAsync();
+        }
+        return publicKeyReady;
+    }
+
+    private static void timed(String name, WarmupTask task) {
+        long startNanos = System.nanoTime();
+        try {
+            task.run();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            StartupMetrics.task("warm-up " + name, startNanos);
+        }
+    }
+
+    private interface WarmupTask {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,620 @@
+package org.example.service;
+
+import org.example.model.VirtualCourse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Tự động xếp thời khóa biểu ảo: chọn đúng một lớp cho mỗi môn sao cho không trùng lịch,
+ * và xếp hạng các phương án theo mục tiêu của người dùng (ít ngày lên trường, tránh buổi tối, ít tiết trống).
+ *
+ * Tìm kiếm quay lui với forward checking: miền giá trị của mỗi môn là bitmask các lớp còn hợp lệ,
+ * được thu hẹp bằng AND với bitmask tương thích tính sẵn. Các nhánh của môn được chọn đầu tiên
+ * chạy song song trên ForkJoinPool và dùng chung ngưỡng top-k để cắt nhánh.
+ * Các lớp giữ cố định (đã chọn ở môn khác) được tính sẵn vào lịch: lớp trùng với chúng bị loại khỏi miền
+ * ngay từ đầu, nên mọi phương án trả về đều áp dụng được mà không trùng với lịch hiện có.
+ */
+public class TimetableOptimizer {
+    private static final int LESSONS_PER_DAY = ScheduleConflictIndex.LESSONS_PER_DAY;
+    private static final int DAYS_PER_WORD = Long.SIZE / LESSONS_PER_DAY;
+    private static final int DAY_MASK = (1 << LESSONS_PER_DAY) - 1;
+    private static final int EVENING_MASK = 0xF000; // Tiết 13, 14, 15, 16
+    private static final long DEFAULT_TIME_BUDGET_MS = 1000;
+
+    private final ScheduleConflictIndex conflictIndex;
+
+    public TimetableOptimizer(ScheduleConflictIndex conflictIndex) {
+        this.conflictIndex = conflictIndex;
+    }
+
+    /**
+     * Tìm top-k thời khóa biểu với giới hạn thời gian mặc định (1 giây)
+     */
+    public Result optimize(Map<String, List<VirtualCourse>> sectionsBySubject, Objectives objectives, int topK) {
+        return optimize(sectionsBySubject, Collections.emptyList(), objectives, topK, DEFAULT_TIME_BUDGET_MS);
+    }
+
+    /**
+     * Tìm top-k thời khóa biểu quanh các lớp cố định, giới hạn thời gian mặc định (1 giây)
+     */
+    public Result optimize(Map<String, List<VirtualCourse>> sectionsBySubject, List<VirtualCourse> fixedCourses,
+            Objectives objectives, int topK) {
+        return optimize(sectionsBySubject, fixedCourses, objectives, topK, DEFAULT_TIME_BUDGET_MS);
+    }
+
+    /**
+     * Tìm top-k thời khóa biểu
+     *
+     * @param sectionsBySubject các lớp có thể chọn, nhóm theo tên môn (displayCourseName)
+     * @param fixedCourses      các lớp giữ nguyên trong lịch; phương án không được trùng với chúng
+     *                          và điểm đánh giá tính cả lịch của chúng
+     * @param timeBudgetMs      hết thời gian thì trả về các phương án tốt nhất đã tìm được
+     */
+    public Result optimize(Map<String, List<VirtualCourse>> sectionsBySubject, List<VirtualCourse> fixedCourses,
+            Objectives objectives, int topK, long timeBudgetMs) {
+        if (sectionsBySubject.isEmpty() || topK <= 0) {
+            return new Result(Collections.emptyList(), true);
+        }
+        for (List<VirtualCourse> sections : sectionsBySubject.values()) {
+            if (sections == null || sections.isEmpty()) {
+                return new Result(Collections.emptyList(), true);
+            }
+        }
+
+        Problem problem = new Problem(sectionsBySubject, fixedCourses, objectives);
+        Collector collector = new Collector(topK);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+        Search search = new Search(problem, collector, deadline);
+
+        search.run();
+
+        List<Timetable> timetables = new ArrayList<>();
+        for (Candidate candidate : collector.sorted()) {
+            timetables.add(problem.toTimetable(candidate));
+        }
+        return new Result(timetables, !search.timedOut);
+    }
+
+    /**
+     * Trọng số các mục tiêu (0 = bỏ qua mục tiêu đó). Điểm càng thấp càng tốt.
+     */
+    public static class Objectives {
+        private final int campusDayWeight;
+        private final int eveningWeight;
+        private final int gapWeight;
+
+        public Objectives(int campusDayWeight, int eveningWeight, int gapWeight) {
+            this.campusDayWeight = campusDayWeight;
+            this.eveningWeight = eveningWeight;
+            this.gapWeight = gapWeight;
+        }
+
+        public static Objectives defaults() {
+            return new Objectives(10, 30, 1);
+        }
+
+        public int getCampusDayWeight() {
+            return campusDayWeight;
+        }
+
+        public int getEveningWeight() {
+            return eveningWeight;
+        }
+
+        public int getGapWeight() {
+            return gapWeight;
+        }
+    }
+
+    /**
+     * Một phương án thời khóa biểu không trùng lịch
+     */
+    public static class Timetable {
+        private final List<VirtualCourse> sections;
+        private final long score;
+        private final int campusDays;
+        private final int eveningDays;
+        private final int gapLessons;
+
+        Timetable(List<VirtualCourse> sections, long score, int campusDays, int eveningDays, int gapLessons) {
+            this.sections = sections;
+            this.score = score;
+            this.campusDays = campusDays;
+            this.eveningDays = eveningDays;
+            this.gapLessons = gapLessons;
+        }
+
+        public List<VirtualCourse> getSections() {
+            return sections;
+        }
+
+        public long getScore() {
+            return score;
+        }
+
+        public int getCampusDays() {
+            return campusDays;
+        }
+
+        public int getEveningDays() {
+            return eveningDays;
+        }
+
+        public int getGapLessons() {
+            return gapLessons;
+        }
+    }
+
+    /**
+     * Kết quả tìm kiếm; complete = false nếu dừng do hết thời gian
+     */
+    public static class Result {
+        private final List<Timetable> timetables;
+        private final boolean complete;
+
+        Result(List<Timetable> timetables, boolean complete) {
+            this.timetables = timetables;
+            this.complete = complete;
+        }
+
+        public List<Timetable> getTimetables() {
+            return timetables;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    /**
+     * Dữ liệu bài toán đã mã hóa: bitset lịch học căn theo cùng một khoảng word,
+     * và bitmask các lớp tương thích giữa từng cặp môn
+     */
+    private class Problem {
+        final int subjectCount;
+        final VirtualCourse[][] sections;
+        final long[][][] occupancy; // [môn][lớp][word]
+        final int[][][] activeWords; // [môn][lớp] -> các word khác 0
+        final long[][][][] compatible; // [môn][lớp][môn khác] -> bitmask lớp không trùng
+        final boolean[][] feasible; // [môn][lớp] -> không trùng với lớp cố định nào
+        final long[] fixedUnion; // Bitset lịch của các lớp cố định
+        final int wordCount;
+        final Objectives objectives;
+
+        Problem(Map<String, List<VirtualCourse>> sectionsBySubject, List<VirtualCourse> fixedCourses,
+                Objectives objectives) {
+            this.objectives = objectives;
+            this.subjectCount = sectionsBySubject.size();
+            this.sections = new VirtualCourse[subjectCount][];
+
+            int subject = 0;
+            int firstWord = Integer.MAX_VALUE;
+            int endWord = Integer.MIN_VALUE;
+            for (VirtualCourse course : fixedCourses) {
+                ScheduleConflictIndex.Occupancy occ = conflictIndex.occupancyOf(course);
+                if (!occ.isEmpty()) {
+                    firstWord = Math.min(firstWord, occ.getFirstWord());
+                    endWord = Math.max(endWord, occ.getEndWord());
+                }
+            }
+            for (List<VirtualCourse> list : sectionsBySubject.values()) {
+                sections[subject] = list.toArray(new VirtualCourse[0]);
+                for (VirtualCourse course : sections[subject]) {
+                    ScheduleConflictIndex.Occupancy occ = conflictIndex.occupancyOf(course);
+                    if (!occ.isEmpty()) {
+                        firstWord = Math.min(firstWord, occ.getFirstWord());
+                        endWord = Math.max(endWord, occ.getEndWord());
+                    }
+                }
+                subject++;
+            }
+            if (firstWord > endWord) {
+                firstWord = 0;
+                endWord = 0;
+            }
+            this.wordCount = endWord - firstWord;
+
+            // Bitset dày căn theo firstWord chung để OR/AND trực tiếp
+            occupancy = new long[subjectCount][][];
+            activeWords = new int[subjectCount][][];
+            for (int i = 0; i < subjectCount; i++) {
+                occupancy[i] = new long[sections[i].length][wordCount];
+                activeWords[i] = new int[sections[i].length][];
+                for (int j = 0; j < sections[i].length; j++) {
+                    long[] words = occupancy[i][j];
+                    conflictIndex.occupancyOf(sections[i][j]).orInto(words, firstWord);
+                    activeWords[i][j] = IntStream.range(0, wordCount)
+                            .filter(w -> words[w] != 0)
+                            .toArray();
+                }
+            }
+
+            fixedUnion = new long[wordCount];
+            for (VirtualCourse course : fixedCourses) {
+                conflictIndex.occupancyOf(course).orInto(fixedUnion, firstWord);
+            }
+            feasible = new boolean[subjectCount][];
+            for (int i = 0; i < subjectCount; i++) {
+                feasible[i] = new boolean[sections[i].length];
+                for (int j = 0; j < sections[i].length; j++) {
+                    feasible[i][j] = !intersects(occupancy[i][j], fixedUnion);
+                    for (VirtualCourse fixed : fixedCourses) {
+                        feasible[i][j] &= !conflictsOutOfRange(sections[i][j], fixed);
+                    }
+                }
+            }
+
+            compatible = new long[subjectCount][][][];
+            for (int i = 0; i < subjectCount; i++) {
+                compatible[i] = new long[sections[i].length][subjectCount][];
+                for (int j = 0; j < sections[i].length; j++) {
+                    for (int k = 0; k < subjectCount; k++) {
+                        compatible[i][j][k] = new long[maskWords(sections[k].length)];
+                    }
+                }
+            }
+            for (int i = 0; i < subjectCount; i++) {
+                for (int k = i + 1; k < subjectCount; k++) {
+                    for (int j = 0; j < sections[i].length; j++) {
+                        for (int l = 0; l < sections[k].length; l++) {
+                            if (!intersects(occupancy[i][j], occupancy[k][l])
+                                    && !conflictsOutOfRange(sections[i][j], sections[k][l])) {
+                                compatible[i][j][k][l >>> 6] |= 1L << l;
+                                compatible[k][l][i][j >>> 6] |= 1L << j;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Tiết ngoài 1-16 không có trong bitset dày: so chính xác qua chỉ mục nếu một bên có loại tiết này
+         */
+        boolean conflictsOutOfRange(VirtualCourse course, VirtualCourse other) {
+            ScheduleConflictIndex.Occupancy occ = conflictIndex.occupancyOf(course);
+            ScheduleConflictIndex.Occupancy otherOcc = conflictIndex.occupancyOf(other);
+            return (occ.hasOutOfRangeLessons() || otherOcc.hasOutOfRangeLessons()) && occ.intersects(otherOcc);
+        }
+
+        long[][] initialDomains() {
+            long[][] domains = new long[subjectCount][];
+            for (int i = 0; i < subjectCount; i++) {
+                int n = sections[i].length;
+                domains[i] = new long[maskWords(n)];
+                for (int j = 0; j < n; j++) {
+                    if (feasible[i][j]) {
+                        domains[i][j >>> 6] |= 1L << j;
+                    }
+                }
+            }
+            return domains;
+        }
+
+        /**
+         * Chi phí tăng thêm khi thêm lớp vào lịch hiện tại: số ngày học mới và buổi tối mới.
+         * Hai đại lượng này chỉ tăng khi thêm lớp nên dùng được làm cận dưới để cắt nhánh.
+         */
+        long increment(long[] union, int subject, int section) {
+            long[] occ = occupancy[subject][section];
+            int days = 0;
+            int evenings = 0;
+            for (int w : activeWords[subject][section]) {
+                long o = occ[w];
+                long u = union[w];
+                for (int d = 0; d < DAYS_PER_WORD; d++) {
+                    int shift = d * LESSONS_PER_DAY;
+                    int oc = (int) (o >>> shift) & DAY_MASK;
+                    if (oc == 0) {
+                        continue;
+                    }
+                    int uc = (int) (u >>> shift) & DAY_MASK;
+                    if (uc == 0) {
+                        days++;
+                    }
+                    if ((oc & EVENING_MASK) != 0 && (uc & EVENING_MASK) == 0) {
+                        evenings++;
+                    }
+                }
+            }
+            return (long) objectives.campusDayWeight * days + (long) objectives.eveningWeight * evenings;
+        }
+
+        /**
+         * Tổng số tiết trống giữa tiết đầu và tiết cuối của mỗi ngày
+         */
+        int gaps(long[] union) {
+            return metrics(union)[2];
+        }
+
+        int[] metrics(long[] union) {
+            int days = 0;
+            int evenings = 0;
+            int gaps = 0;
+            for (long word : union) {
+                if (word == 0) {
+                    continue;
+                }
+                for (int d = 0; d < DAYS_PER_WORD; d++) {
+                    int day = (int) (word >>> (d * LESSONS_PER_DAY)) & DAY_MASK;
+                    if (day != 0) {
+                        days++;
+                        if ((day & EVENING_MASK) != 0) {
+                            evenings++;
+                        }
+                        int span = (31 - Integer.numberOfLeadingZeros(day)) - Integer.numberOfTrailingZeros(day) + 1;
+                        gaps += span - Integer.bitCount(day);
+                    }
+                }
+            }
+            return new int[] { days, evenings, gaps };
+        }
+
+        long score(int[] metrics) {
+            return (long) objectives.campusDayWeight * metrics[0]
+                    + (long) objectives.eveningWeight * metrics[1]
+                    + (long) objectives.gapWeight * metrics[2];
+        }
+
+        Timetable toTimetable(Candidate candidate) {
+            List<VirtualCourse> chosen = new ArrayList<>(subjectCount);
+            long[] union = fixedUnion.clone();
+            for (int i = 0; i < subjectCount; i++) {
+                chosen.add(sections[i][candidate.choice[i]]);
+                or(union, occupancy[i][candidate.choice[i]]);
+            }
+            int[] metrics = metrics(union);
+            return new Timetable(Collections.unmodifiableList(chosen), candidate.score,
+                    metrics[0], metrics[1], metrics[2]);
+        }
+    }
+
+    /**
+     * Quay lui song song: mỗi lớp của môn chọn đầu tiên là một nhánh ForkJoin
+     */
+    private static class Search {
+        final Problem problem;
+        final Collector collector;
+        final long deadline;
+        volatile boolean timedOut = false;
+
+        Search(Problem problem, Collector collector, long deadline) {
+            this.problem = problem;
+            this.collector = collector;
+            this.deadline = deadline;
+        }
+
+        void run() {
+            long[][] domains = problem.initialDomains();
+            int[] choice = new int[problem.subjectCount];
+            Arrays.fill(choice, -1);
+            long[] fixedUnion = problem.fixedUnion;
+
+            int first = selectSubject(domains, choice);
+            int[] firstSections = orderedSections(domains[first], first, fixedUnion);
+            List<RecursiveAction> branches = new ArrayList<>();
+            for (int i = 0; i < firstSections.length; i += 2) {
+                int section = firstSections[i];
+                long bound = firstSections[i + 1];
+                branches.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        assign(domains, choice, fixedUnion, bound, first, section, 0);
+                    }
+                });
+            }
+
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(branches);
+                }
+            });
+        }
+
+        private void search(long[][] domains, int[] choice, long[] union, long unionBound, int assignedCount) {
+            if (assignedCount == problem.subjectCount) {
+                long score = unionBound + (long) problem.objectives.gapWeight * problem.gaps(union);
+                collector.offer(score, choice.clone());
+                return;
+            }
+            if (timedOut || System.nanoTime() > deadline) {
+                timedOut = true;
+                return;
+            }
+
+            // Cận dưới: mỗi môn chưa xếp còn phải thêm ít nhất chi phí của lớp rẻ nhất trong miền
+            if (collector.threshold() != Long.MAX_VALUE) {
+                long maxMinIncrement = 0;
+                for (int k = 0; k < domains.length; k++) {
+                    if (choice[k] < 0) {
+                        maxMinIncrement = Math.max(maxMinIncrement, minIncrement(domains[k], k, union));
+                        if (unionBound + maxMinIncrement >= collector.threshold()) {
+                            return;
+                        }
+                    }
+                }
+            }
+
+            int subject = selectSubject(domains, choice);
+            int[] ordered = orderedSections(domains[subject], subject, union);
+            for (int i = 0; i < ordered.length; i += 2) {
+                long bound = unionBound + ordered[i + 1];
+                if (bound >= collector.threshold()) {
+                    return; // Các lớp sau còn tốn hơn
+                }
+                assign(domains, choice, union, bound, subject, ordered[i], assignedCount);
+                if (timedOut) {
+                    return;
+                }
+            }
+        }
+
+        private void assign(long[][] domains, int[] choice, long[] union, long bound, int subject, int section,
+                int assignedCount) {
+            // Forward checking: thu hẹp miền của các môn chưa chọn, cắt nhánh nếu có môn hết lớp
+            long[][] compat = problem.compatible[subject][section];
+            long[][] newDomains = new long[domains.length][];
+            for (int k = 0; k < domains.length; k++) {
+                if (choice[k] >= 0 || k == subject) {
+                    newDomains[k] = domains[k];
+                    continue;
+                }
+                long[] narrowed = new long[domains[k].length];
+                boolean any = false;
+                for (int w = 0; w < narrowed.length; w++) {
+                    narrowed[w] = domains[k][w] & compat[k][w];
+                    any |= narrowed[w] != 0;
+                }
+                if (!any) {
+                    return;
+                }
+                newDomains[k] = narrowed;
+            }
+
+            long[] newUnion = union.clone();
+            or(newUnion, problem.occupancy[subject][section]);
+            int[] newChoice = choice.clone();
+            newChoice[subject] = section;
+            search(newDomains, newChoice, newUnion, bound, assignedCount + 1);
+        }
+
+        private long minIncrement(long[] domain, int subject, long[] union) {
+            long min = Long.MAX_VALUE;
+            for (int w = 0; w < domain.length; w++) {
+                long bits = domain[w];
+                while (bits != 0) {
+                    int section = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    min = Math.min(min, problem.increment(union, subject, section));
+                }
+            }
+            return min;
+        }
+
+        /**
+         * Các lớp trong miền, sắp theo chi phí tăng thêm: [lớp, chi phí, lớp, chi phí, ...]
+         */
+        private int[] orderedSections(long[] domain, int subject, long[] union) {
+            int count = 0;
+            for (long word : domain) {
+                count += Long.bitCount(word);
+            }
+            long[] keyed = new long[count];
+            int n = 0;
+            for (int w = 0; w < domain.length; w++) {
+                long bits = domain[w];
+                while (bits != 0) {
+                    int section = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    keyed[n++] = (problem.increment(union, subject, section) << 32) | section;
+                }
+            }
+            Arrays.sort(keyed);
+            int[] result = new int[count * 2];
+            for (int i = 0; i < count; i++) {
+                result[2 * i] = (int) (keyed[i] & 0xFFFFFFFFL);
+                result[2 * i + 1] = (int) (keyed[i] >>> 32);
+            }
+            return result;
+        }
+
+        /**
+         * Chọn môn chưa xếp có ít lớp hợp lệ nhất (MRV)
+         */
+        private int selectSubject(long[][] domains, int[] choice) {
+            int best = -1;
+            int bestCount = Integer.MAX_VALUE;
+            for (int k = 0; k < domains.length; k++) {
+                if (choice[k] >= 0) {
+                    continue;
+                }
+                int count = 0;
+                for (long word : domains[k]) {
+                    count += Long.bitCount(word);
+                }
+                if (count < bestCount) {
+                    best = k;
+                    bestCount = count;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Giữ k phương án tốt nhất, dùng chung giữa các luồng
+     */
+    private static class Collector {
+        private final int capacity;
+        private final PriorityQueue<Candidate> worstFirst =
+                new PriorityQueue<>(Comparator.comparingLong((Candidate c) -> c.score).reversed());
+        private volatile long threshold = Long.MAX_VALUE;
+
+        Collector(int capacity) {
+            this.capacity = capacity;
+        }
+
+        long threshold() {
+            return threshold;
+        }
+
+        synchronized void offer(long score, int[] choice) {
+            if (score >= threshold) {
+                return;
+            }
+            worstFirst.add(new Candidate(score, choice));
+            if (worstFirst.size() > capacity) {
+                worstFirst.poll();
+            }
+            if (worstFirst.size() == capacity) {
+                threshold = worstFirst.peek().score;
+            }
+        }
+
+        synchronized List<Candidate> sorted() {
+            List<Candidate> result = new ArrayList<>(worstFirst);
+            result.sort(Comparator.comparingLong(c -> c.score));
+            return result;
+        }
+    }
+
+    private static class Candidate {
+        final long score;
+        final int[] choice;
+
+        Candidate(long score, int[] choice) {
+            this.score = score;
+            this.choice = choice;
+        }
+    }
+
+    private static int maskWords(int bitCount) {
+        return Math.max(1, (bitCount + 63) >>> 6);
+    }
+
+    private static boolean intersects(long[] a, long[] b) {
+        for (int w = 0; w < a.length; w++) {
+            if ((a[w] & b[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void or(long[] target, long[] source) {
+        for (int w = 0; w < target.length; w++) {
+            target[w] |= source[w];
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.example.service;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.example.model.VirtualCourse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Giải mã response virtual calendar dạng stream bằng JsonReader.
+ * Mỗi phần tử của "virtual_calendar" được chuyển thẳng thành VirtualCourse khi đọc tới,
+ * không giữ cả chuỗi response hay cây JsonObject trong bộ nhớ. Các lớp được giao cho
+ * caller theo từng lô để có thể hiển thị dần trong khi dữ liệu vẫn đang về.
+ */
+public final class VirtualCalendarDecoder {
+    public static final int DEFAULT_CHUNK_SIZE = 200;
+
+    private static final String DEFAULT_ERROR = "Không thể tải danh sách môn học ảo";
+
+    private VirtualCalendarDecoder() {
+    }
+
+    /**
+     * Đọc toàn bộ response, gọi onChunk (trên thread hiện tại) với từng lô tối đa chunkSize lớp.
+     * Ném IOException (kèm message của server) nếu code khác 200.
+     *
+     * @return tổng số lớp đã giải mã
+     */
+    public static int decode(InputStream body, int chunkSize, Consumer<List<VirtualCourse>> onChunk)
+            throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String code = null;
+        String message = null;
+        int total = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "code":
+                    code = readString(reader);
+                    break;
+                case "message":
+                    message = readString(reader);
+                    break;
+                case "virtual_calendar":
+                    // Server thường trả code trước dữ liệu: báo lỗi sớm, không đọc tiếp
+                    if (code != null && !"200".equals(code)) {
+                        throw new IOException(message != null ? message : DEFAULT_ERROR);
+                    }
+                    total += readCourses(reader, chunkSize, onChunk);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!"200".equals(code)) {
+            throw new IOException(message != null ? message : DEFAULT_ERROR);
+        }
+        return total;
+    }
+
+    private static int readCourses(JsonReader reader, int chunkSize, Consumer<List<VirtualCourse>> onChunk)
+            throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return 0;
+        }
+
+        int count = 0;
+        List<VirtualCourse> chunk = new ArrayList<>(chunkSize);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            chunk.add(readCourse(reader));
+            count++;
+            if (chunk.size() >= chunkSize) {
+                onChunk.accept(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        reader.endArray();
+
+        if (!chunk.isEmpty()) {
+            onChunk.accept(chunk);
+        }
+        return count;
+    }
+
+    private static VirtualCourse readCourse(JsonReader reader) throws IOException {
+        VirtualCourse course = new VirtualCourse();
+        course.setCourse("");
+        course.setBaseTime("");
+        String displayCourseName = "";
+        String detailsCourseName = "";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "course":
+                    course.setCourse(readString(reader));
+                    break;
+                case "base_time":
+                    course.setBaseTime(readString(reader));
+                    break;
+                case "course_name":
+                    // course_name ở ngoài: tên thường, không có mã lớp - dùng để filter
+                    displayCourseName = readString(reader);
+                    break;
+                case "details":
+                    detailsCourseName = readDetails(reader, course);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        course.setDisplayCourseName(displayCourseName);
+        // Ưu tiên course_name trong details (có mã lớp trong ngoặc như A22C10D901)
+        course.setCourseName(!detailsCourseName.isEmpty() ? detailsCourseName : displayCourseName);
+        return course;
+    }
+
+    /**
+     * Đọc object details vào course, trả về course_name trong details ("" nếu không có)
+     */
+    private static String readDetails(JsonReader reader, VirtualCourse course) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return "";
+        }
+
+        String courseName = "";
+        course.setCourseCode("");
+        course.setTeacher("");
+        course.setStudyLocation("");
+        course.setStudyDays("");
+        course.setLessons("");
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "course_name":
+                    courseName = readString(reader);
+                    break;
+                case "course_code":
+                    course.setCourseCode(readString(reader));
+                    break;
+                case "teacher":
+                    course.setTeacher(readString(reader));
+                    break;
+                case "study_location":
+                    course.setStudyLocation(readString(reader));
+                    break;
+                case "study_days":
+                    course.setStudyDays(readString(reader));
+                    break;
+                case "lessons":
+                    course.setLessons(readString(reader));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return courseName;
+    }
+
+    /**
+     * Đọc giá trị dạng chuỗi; null thành "", số và boolean chuyển thành chuỗi
+     */
+    private static String readString(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case NULL:
+                reader.nextNull();
+                return "";
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            default:
+                reader.skipValue();
+                return "";
+        }
+    }
+}